@@ -1,6 +1,15 @@
 package com.riversql;
 
+import com.riversql.actions.Import;
+import com.riversql.actions.export.impl.PDFTableExporter;
+import com.riversql.actions.imports.CSVImport;
 import com.riversql.dao.DriversDAO;
+import com.riversql.databases.CatalogQueries;
+import com.riversql.dbtree.MetaDataCrawler;
+import com.riversql.sql.ConnectionPools;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.MetaDataSnapshots;
+import com.riversql.utils.QueryJobs;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -8,6 +17,7 @@ import javax.persistence.Persistence;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -31,6 +41,11 @@ public class ContextListener implements ServletContextListener {
     }
 
     public void contextDestroyed(ServletContextEvent sce) {
+        MetaDataCrawler.shutdown();
+        MetaDataSnapshots.shutdown();
+        QueryJobs.shutdown();
+        ConnectionPools.shutdown();
+        MetaDataCache.clearAll();
         EntityManagerFactory emf = (EntityManagerFactory) sce.getServletContext().getAttribute("emf");
         if (emf != null)
             emf.close();
@@ -67,5 +82,60 @@ public class ContextListener implements ServletContextListener {
             throw new IllegalStateException(e);
         }
         sc.setAttribute("riversql_version", sc.getInitParameter("riversql_version"));
+
+        IDManager.configure(getIntParameter(sc, "maxObjectsPerSession", IDManager.DEFAULT_MAX_SIZE),
+                getIntParameter(sc, "objectIdleTimeoutMinutes", (int) (IDManager.DEFAULT_IDLE_TIMEOUT / 60000)) * 60000L);
+        ConnectionPools.start(getIntParameter(sc, "poolMinIdle", ConnectionPools.DEFAULT_MIN_IDLE),
+                getIntParameter(sc, "poolMaxSize", ConnectionPools.DEFAULT_MAX_SIZE),
+                getIntParameter(sc, "poolIdleTimeoutMinutes", ConnectionPools.DEFAULT_IDLE_TIMEOUT_MINUTES) * 60000L,
+                getIntParameter(sc, "poolValidationTimeoutSeconds", ConnectionPools.DEFAULT_VALIDATION_TIMEOUT_SECONDS));
+        QueryJobs.start(getIntParameter(sc, "queryJobThreads", QueryJobs.DEFAULT_THREADS),
+                getIntParameter(sc, "queryJobQueueSize", QueryJobs.DEFAULT_QUEUE_SIZE));
+        MetaDataCache.configure(getIntParameter(sc, "metadataCacheTtlMinutes", MetaDataCache.DEFAULT_TTL_MINUTES) * 60000L,
+                getIntParameter(sc, "metadataCacheMaxEntries", MetaDataCache.DEFAULT_MAX_ENTRIES));
+        PDFTableExporter.configure(getIntParameter(sc, "pdfExportMaxRows", PDFTableExporter.DEFAULT_MAX_ROWS));
+        String uploadDir = sc.getInitParameter("importUploadDir");
+        Import.configure(getIntParameter(sc, "importMaxUploadMegabytes", Import.DEFAULT_MAX_SIZE_MB),
+                uploadDir == null || uploadDir.trim().length() == 0
+                        ? new File(getWorkDir(sc), "riversql-upload") : new File(uploadDir.trim()),
+                getIntParameter(sc, "importUploadExpiryHours", Import.DEFAULT_EXPIRY_HOURS));
+        CSVImport.configure(getIntParameter(sc, "importBatchSize", CSVImport.DEFAULT_BATCH_SIZE),
+                getIntParameter(sc, "importCommitInterval", CSVImport.DEFAULT_COMMIT_INTERVAL));
+        CatalogQueries.setEnabled(getBooleanParameter(sc, "nativeCatalogQueries", true));
+        String snapshotDir = sc.getInitParameter("metadataSnapshotDir");
+        MetaDataSnapshots.start(snapshotDir == null || snapshotDir.trim().length() == 0 ? null : new File(snapshotDir.trim()));
+        MetaDataCrawler.start(getBooleanParameter(sc, "crawlMetadata", false),
+                getIntParameter(sc, "crawlerThreads", MetaDataCrawler.DEFAULT_THREADS),
+                getIntParameter(sc, "crawlerQueueSize", MetaDataCrawler.DEFAULT_QUEUE_SIZE),
+                getIntParameter(sc, "crawlerConnections", MetaDataCrawler.DEFAULT_CONNECTIONS));
+    }
+
+    /**
+     * @return the private work directory the container gives the
+     * application, rather than a directory shared with other users such as
+     * <TT>/tmp</TT>, or the temporary directory of the JVM without one.
+     */
+    private static File getWorkDir(ServletContext sc) {
+        Object dir = sc.getAttribute(ServletContext.TEMPDIR);
+        if (dir instanceof File) {
+            return (File) dir;
+        }
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    private static boolean getBooleanParameter(ServletContext sc, String name, boolean defaultValue) {
+        String value = sc.getInitParameter(name);
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int getIntParameter(ServletContext sc, String name, int defaultValue) {
+        String value = sc.getInitParameter(name);
+        if (value == null || value.trim().length() == 0) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.riversql;
 
 import com.riversql.actions.*;
+import com.riversql.utils.JSONStreamWriter;
 import org.apache.commons.beanutils.BeanUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -13,8 +14,10 @@ import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -27,6 +30,8 @@ public class Do extends DoServlet {
 
     Map<String, Class<? extends JSONAction>> jsonActionMap;
 
+    Map<String, Class<? extends JSONStreamingAction>> jsonStreamingActionMap;
+
     Map<String, Class<? extends IPageAction>> pageActionMap;
 
 
@@ -49,8 +54,6 @@ public class Do extends DoServlet {
         tmp.put("getFK", GetFK.class);
         tmp.put("getMeta", GetMeta.class);
         tmp.put("getExportedKeys", GetExportedKeys.class);
-        tmp.put("getAdditionalData", GetAdditionalData.class);
-        tmp.put("redoQuery", RedoQuery.class);
         tmp.put("changeCatalog", ChangeCatalog.class);
         tmp.put("getColumnsForViewer", GetColumnsForViewer.class);
         tmp.put("getSources", GetSources.class);
@@ -85,11 +88,28 @@ public class Do extends DoServlet {
         tmp.put("testSourceConnection", TestSourceConnection.class);
         tmp.put("connect", Connect.class);
 
-        tmp.put("execute", ExecuteSQL.class);
         tmp.put("export", Export.class);
         tmp.put("import", Import.class);
+        tmp.put("cancelQuery", CancelQuery.class);
+        tmp.put("submitQuery", SubmitQuery.class);
+        tmp.put("jobStatus", JobStatus.class);
+        tmp.put("getRegistryStats", GetRegistryStats.class);
+        tmp.put("invalidateMetadata", InvalidateMetadata.class);
+        tmp.put("getCrawlStatus", GetCrawlStatus.class);
+        tmp.put("reverseEngineering", ReverseEngineering.class);
+        tmp.put("autocomplete", Autocomplete.class);
+        tmp.put("findObjects", FindObjects.class);
+        tmp.put("importCSV", ImportCSV.class);
+        tmp.put("importStatus", ImportStatus.class);
         jsonActionMap = Collections.unmodifiableMap(tmp);
 
+        HashMap<String, Class<? extends JSONStreamingAction>> tmp3 = new HashMap<String, Class<? extends JSONStreamingAction>>();
+        tmp3.put("execute", ExecuteSQL.class);
+        tmp3.put("getAdditionalData", GetAdditionalData.class);
+        tmp3.put("redoQuery", RedoQuery.class);
+        tmp3.put("jobResult", JobResult.class);
+        jsonStreamingActionMap = Collections.unmodifiableMap(tmp3);
+
         HashMap<String, Class<? extends IPageAction>> tmp2 = new HashMap<String, Class<? extends IPageAction>>();
 
 
@@ -105,14 +125,59 @@ public class Do extends DoServlet {
         tmp2.put("excelExport", ExcelExport.class);
         tmp2.put("pdfExport", PdfExport.class);
         tmp2.put("csvExport", CsvExport.class);
+        tmp2.put("exportQuery", ExportQuery.class);
+        tmp2.put("importRejects", ImportRejects.class);
 
         pageActionMap = Collections.unmodifiableMap(tmp2);
 
     }
 
+    /**
+     * Streams the response of a {@link JSONStreamingAction}. The "success"
+     * member is written last, so that an error occuring while the result is
+     * being written can still be reported.
+     */
+    private void executeStreaming(HttpServletRequest req, HttpServletResponse resp, EntityManager em, EntityTransaction et,
+                                  String action, Class<? extends JSONStreamingAction> iactionclass) throws Exception {
+        resp.setHeader("Content-Type", "text/html;charset=ISO-8859-1");
+        Writer writer = new BufferedWriter(resp.getWriter(), 8192);
+        JSONStreamWriter out = new JSONStreamWriter(writer);
+        out.object();
+        try {
+            JSONStreamingAction iaction = iactionclass.newInstance();
+            BeanUtils.populate(iaction, req.getParameterMap());
+
+            et = em.getTransaction();
+            et.begin();
+            out.key("result");
+            iaction.execute(req, resp, em, et, out);
+            if (et.isActive())
+                et.commit();
+            out.key("success").value(true);
+        } catch (Exception e) {
+            LOGGER.error("While handling action '" + action + "'", e);
+            if (et != null && et.isActive())
+                et.rollback();
+            out.unwind(1);
+            out.key("success").value(false);
+            out.key("error").value(e.toString());
+        } finally {
+            IDManager.set(null);
+            if (em != null)
+                em.close();
+        }
+        out.endObject();
+        writer.flush();
+    }
+
     @Override
     public void execute(HttpServletRequest req, HttpServletResponse resp, EntityManager em, EntityTransaction et) throws Exception {
         String action = req.getParameter("action");
+        Class<? extends JSONStreamingAction> istreamingactionclass = jsonStreamingActionMap.get(action);
+        if (istreamingactionclass != null) {
+            executeStreaming(req, resp, em, et, action, istreamingactionclass);
+            return;
+        }
         Class<? extends JSONAction> iactionclass = jsonActionMap.get(action);
         if (iactionclass != null) {
             JSONObject obj = new JSONObject();
@@ -163,6 +228,11 @@ public class Do extends DoServlet {
                     //TODO return page with error
                     if (et != null && et.isActive())
                         et.rollback();
+                    if (resp.isCommitted()) {
+                        // part of a streamed export was sent already, the
+                        // error page would only be appended to it
+                        return;
+                    }
                     try {
                         req.setAttribute("pageid", req.getParameter("pageid"));
                         req.setAttribute("emsg", e.getMessage());
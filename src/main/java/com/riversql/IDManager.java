@@ -1,13 +1,95 @@
 package com.riversql;
 
-import java.util.HashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
+/**
+ * Gives ids to the objects the client refers to (tree nodes, connections,
+ * result sets...) and finds them back.
+ *
+ * <P>Objects are dropped when released, when they have not been accessed for
+ * <TT>idleTimeout</TT> milliseconds, or, least recently used first, when the
+ * registry holds more than <TT>maxSize</TT> of them. Objects registered with
+ * <TT>putPinned()</TT>, the sessions and the jobs while they run, are only
+ * dropped when released, and do not count in <TT>maxSize</TT>. A dropped
+ * object which is <TT>AutoCloseable</TT>, such as a <TT>SQLExecutor</TT>, is
+ * closed.
+ *
+ * <P>The tree nodes count in <TT>maxSize</TT> but are never dropped one by
+ * one, their parent still referring to them: see <TT>Subtree</TT>.
+ */
 public class IDManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IDManager.class);
+
+    public static final int DEFAULT_MAX_SIZE = 50000;
+    public static final long DEFAULT_IDLE_TIMEOUT = 2 * 60 * 60 * 1000L;
+
+    /**
+     * Minimum delay between two scans for idle objects.
+     */
+    private static final long SWEEP_INTERVAL = 60 * 1000L;
+
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+    private static volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
     private static ThreadLocal<IDManager> threadlocalIDManager = new ThreadLocal<IDManager>();
     AtomicInteger ai = new AtomicInteger(0);
     AtomicInteger ai2 = new AtomicInteger(0);
-    HashMap<String, Object> map = new HashMap<String, Object>();
+    final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<String, Entry>();
+
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private volatile long lastSweep = System.currentTimeMillis();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicInteger pinned = new AtomicInteger();
+    /**
+     * Orders the accesses for the LRU eviction, more finely than the clock.
+     */
+    private final AtomicLong tick = new AtomicLong();
+    /**
+     * The size under which the registry is not swept for being too large,
+     * raised when a sweep could not bring it under <TT>maxSize</TT>.
+     */
+    private volatile int nextSweepSize;
+
+    /**
+     * A registered object holding others, as a tree node holds its children.
+     * The objects it holds are only dropped all at once, by
+     * <TT>refresh()</TT>, and read again when it is next used: the subtrees
+     * whose children hold nothing themselves are refreshed, least recently
+     * used first, like the other objects, the use of a subtree being the
+     * last use of the object or of any of its children.
+     */
+    public interface Subtree {
+
+        /**
+         * @return the ids of the objects it holds, none when they have not
+         * been read, <TT>null</TT> while they are being read.
+         */
+        Collection<String> getChildIds();
+
+        /**
+         * Releases the objects it holds, which are read again when next
+         * used.
+         */
+        void refresh();
+    }
 
     protected IDManager() {
     }
@@ -21,6 +103,18 @@ public class IDManager {
         threadlocalIDManager.set(ex);
     }
 
+    /**
+     * Sets the limits applied to every session.
+     *
+     * @param maxObjects  maximum number of objects per session.
+     * @param idleTimeout time in milliseconds after which an object which
+     *                    has not been accessed is dropped.
+     */
+    public static void configure(int maxObjects, long idleTimeout) {
+        IDManager.maxSize = maxObjects;
+        IDManager.idleTimeout = idleTimeout;
+    }
+
     protected int nextInt() {
         return ai.incrementAndGet();
     }
@@ -29,16 +123,299 @@ public class IDManager {
         return "0000" + Integer.toHexString(nextInt());
     }
 
-    synchronized public void put(String id, Object schemaNode) {
-        map.put(id, schemaNode);
+    public void put(String id, Object schemaNode) {
+        put(id, schemaNode, false);
+    }
+
+    /**
+     * Registers an object which is neither expired nor evicted, such as a
+     * connection. See <TT>unpin()</TT>.
+     */
+    public void putPinned(String id, Object obj) {
+        put(id, obj, true);
+    }
+
+    /**
+     * Lets an object registered with <TT>putPinned()</TT> expire or be evicted
+     * from now on, if it is still registered.
+     */
+    public void unpin(String id) {
+        Entry entry = map.get(id);
+        if (entry != null && entry.pinned
+                && map.replace(id, entry, new Entry(entry.value, false, tick.incrementAndGet()))) {
+            pinned.decrementAndGet();
+        }
+    }
+
+    private void put(String id, Object obj, boolean pinned) {
+        Entry old = map.put(id, new Entry(obj, pinned, tick.incrementAndGet()));
+        if (pinned) {
+            this.pinned.incrementAndGet();
+        }
+        if (old != null) {
+            if (old.pinned) {
+                this.pinned.decrementAndGet();
+            }
+            if (old.value != obj) {
+                close(old.value);
+            }
+        }
+        long now = System.currentTimeMillis();
+        int size = map.size() - this.pinned.get();
+        if (size > maxSize && size > nextSweepSize || now - lastSweep > SWEEP_INTERVAL) {
+            sweep(now);
+        }
+    }
+
+    public Object get(String id) {
+        if (id == null) {
+            return null;
+        }
+        Entry entry = map.get(id);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (!entry.pinned && !(entry.value instanceof Subtree) && now - entry.lastAccess > idleTimeout) {
+            if (map.remove(id, entry)) {
+                expired.incrementAndGet();
+                close(entry.value);
+            }
+            return null;
+        }
+        entry.lastAccess = now;
+        entry.lastUse = tick.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Forgets an object, closing it if it is <TT>AutoCloseable</TT>.
+     */
+    public void release(String id) {
+        if (id == null) {
+            return;
+        }
+        Entry entry = map.remove(id);
+        if (entry != null) {
+            if (entry.pinned) {
+                pinned.decrementAndGet();
+            }
+            released.incrementAndGet();
+            close(entry.value);
+        }
+    }
 
+    /**
+     * Releases the objects accepted by <TT>filter</TT>.
+     */
+    public void release(Predicate<Object> filter) {
+        for (Map.Entry<String, Entry> e : map.entrySet()) {
+            if (filter.test(e.getValue().value)) {
+                release(e.getKey());
+            }
+        }
     }
 
-    synchronized public Object get(String id) {
-        return map.get(id);
+    /**
+     * Releases every object, pinned or not.
+     */
+    public void clear() {
+        for (String id : new ArrayList<String>(map.keySet())) {
+            release(id);
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * @return the number of registered objects by class name, and the number
+     * of objects released, expired and evicted so far.
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> stats = new TreeMap<String, Long>();
+        for (Entry entry : map.values()) {
+            String key = entry.value == null ? "null" : entry.value.getClass().getSimpleName();
+            Long count = stats.get(key);
+            stats.put(key, count == null ? 1L : count + 1);
+        }
+        stats.put("_total", (long) map.size());
+        stats.put("_pinned", (long) pinned.get());
+        stats.put("_released", released.get());
+        stats.put("_expired", expired.get());
+        stats.put("_evicted", evicted.get());
+        return stats;
     }
 
     public int nextSessionID() {
         return ai2.incrementAndGet();
     }
+
+    /**
+     * Drops the idle objects and subtrees, then the least recently used ones
+     * while the registry is too large. Only one thread sweeps at a time, the
+     * others go on.
+     */
+    private void sweep(long now) {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            lastSweep = now;
+            long timeout = idleTimeout;
+            List<Candidate> candidates = new ArrayList<Candidate>();
+            for (Map.Entry<String, Entry> e : map.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.pinned) {
+                    continue;
+                }
+                if (entry.value instanceof Subtree) {
+                    Candidate c = subtreeCandidate(e.getKey(), entry);
+                    if (c == null) {
+                        continue;
+                    }
+                    if (now - c.lastAccess > timeout) {
+                        expired.addAndGet(refresh(c));
+                    } else {
+                        candidates.add(c);
+                    }
+                } else if (now - entry.lastAccess > timeout) {
+                    if (map.remove(e.getKey(), entry)) {
+                        expired.incrementAndGet();
+                        close(entry.value);
+                    }
+                } else {
+                    candidates.add(new Candidate(e.getKey(), entry));
+                }
+            }
+            int max = maxSize;
+            int size = map.size() - pinned.get();
+            if (size > max) {
+                // evict down to 90% of the maximum so that this does not
+                // happen again on the next put
+                int toEvict = size - max * 9 / 10;
+                Collections.sort(candidates, new Comparator<Candidate>() {
+                    public int compare(Candidate o1, Candidate o2) {
+                        return Long.compare(o1.lastUse, o2.lastUse);
+                    }
+                });
+                for (int i = 0; i < candidates.size() && toEvict > 0; i++) {
+                    Candidate c = candidates.get(i);
+                    if (c.children != null) {
+                        int n = refresh(c);
+                        evicted.addAndGet(n);
+                        toEvict -= n;
+                    } else if (map.remove(c.id, c.entry)) {
+                        evicted.incrementAndGet();
+                        toEvict--;
+                        close(c.entry.value);
+                    }
+                }
+            }
+            // what is left is in use, do not sweep again before it grows
+            size = map.size() - pinned.get();
+            nextSweepSize = size > max ? size + max / 10 : 0;
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * @return the candidate for the eviction of the children of a subtree,
+     * or <TT>null</TT> if it holds nothing or if one of its children holds
+     * something.
+     */
+    private Candidate subtreeCandidate(String id, Entry entry) {
+        try {
+            Collection<String> childIds = ((Subtree) entry.value).getChildIds();
+            if (childIds == null || childIds.isEmpty()) {
+                return null;
+            }
+            Candidate c = new Candidate(id, entry);
+            c.children = childIds;
+            for (String childId : childIds) {
+                Entry child = map.get(childId);
+                if (child == null) {
+                    continue;
+                }
+                if (child.value instanceof Subtree) {
+                    Collection<String> grandChildIds = ((Subtree) child.value).getChildIds();
+                    if (grandChildIds == null || !grandChildIds.isEmpty()) {
+                        return null;
+                    }
+                }
+                c.lastUse = Math.max(c.lastUse, child.lastUse);
+                c.lastAccess = Math.max(c.lastAccess, child.lastAccess);
+            }
+            return c;
+        } catch (ConcurrentModificationException e) {
+            // being loaded, so in use
+            return null;
+        }
+    }
+
+    /**
+     * Refreshes the subtree of a candidate, which releases its children
+     * through the registry of the current thread.
+     *
+     * @return the number of objects released.
+     */
+    private int refresh(Candidate c) {
+        int size = map.size();
+        IDManager previous = get();
+        set(this);
+        try {
+            ((Subtree) c.entry.value).refresh();
+        } catch (RuntimeException e) {
+            LOGGER.warn("While refreshing " + c.entry.value, e);
+        } finally {
+            set(previous);
+        }
+        return Math.max(0, size - map.size());
+    }
+
+    private static void close(Object obj) {
+        if (obj instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) obj).close();
+            } catch (Exception e) {
+                LOGGER.warn("While closing " + obj, e);
+            }
+        }
+    }
+
+    static final class Entry {
+        final Object value;
+        final boolean pinned;
+        volatile long lastAccess;
+        volatile long lastUse;
+
+        Entry(Object value, boolean pinned, long tick) {
+            this.value = value;
+            this.pinned = pinned;
+            this.lastAccess = System.currentTimeMillis();
+            this.lastUse = tick;
+        }
+    }
+
+    /**
+     * An entry considered for eviction, or a subtree whose children are,
+     * with its last use frozen so that the entries can be sorted while being
+     * accessed.
+     */
+    private static final class Candidate {
+        final String id;
+        final Entry entry;
+        long lastUse;
+        long lastAccess;
+        Collection<String> children;
+
+        Candidate(String id, Entry entry) {
+            this.id = id;
+            this.entry = entry;
+            this.lastUse = entry.lastUse;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
 }
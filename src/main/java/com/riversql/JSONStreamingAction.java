@@ -0,0 +1,17 @@
+package com.riversql;
+
+import com.riversql.utils.JSONStreamWriter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A JSON action that writes its result directly to the response instead of
+ * returning a <TT>JSONObject</TT>. The action must write exactly one value
+ * to <TT>out</TT>; it becomes the "result" member of the response.
+ */
+public interface JSONStreamingAction {
+    public void execute(HttpServletRequest request, HttpServletResponse response, EntityManager em, EntityTransaction et, JSONStreamWriter out) throws Exception;
+}
@@ -2,11 +2,14 @@ package com.riversql;
 
 
 import com.riversql.dbtree.SQLSession;
+import com.riversql.sql.SQLConnection;
 import com.riversql.utils.SQLExecutor;
+import com.riversql.utils.StatementRegistry;
 
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 
 @SuppressWarnings("serial")
@@ -14,23 +17,19 @@ public class WebSQLSession implements Serializable {
 
 
     private transient ArrayList<SQLSession> sqlsessions;
-    private transient ArrayList<SQLExecutor> executors;
     private transient IDManager idmanager;
+    private transient StatementRegistry runningStatements;
     private String username;
 
     public WebSQLSession() {
         this.idmanager = new IDManager();
         this.sqlsessions = new ArrayList<SQLSession>();
-        executors = new ArrayList<SQLExecutor>();
     }
 
     public void closeSessions() {
-        for (SQLExecutor exec : getExecutors()) {
-            try {
-                exec.close();
-            } catch (Exception e) {
-            }
-        }
+        getRunningStatements().cancelAll();
+        // closes the executors still registered
+        getIDManager().clear();
         for (SQLSession conn : getSqlsessions()) {
             try {
                 conn.getConn().close();
@@ -40,19 +39,17 @@ public class WebSQLSession implements Serializable {
 
     }
 
-    public ArrayList<SQLExecutor> getExecutors() {
-        if (executors == null) {
-            executors = new ArrayList<SQLExecutor>();
-        }
-        return executors;
-
-    }
-
-    public void setExecutors(ArrayList<SQLExecutor> executors) {
-        this.executors = executors;
-    }
-
     public void closeSession(SQLSession sqlsession) {
+        getRunningStatements().cancel(sqlsession.getId());
+        // the connection goes back to its pool: its statements must not outlive it
+        final SQLConnection conn = sqlsession.getConn();
+        getIDManager().release(new Predicate<Object>() {
+            public boolean test(Object obj) {
+                return obj instanceof SQLExecutor && ((SQLExecutor) obj).getSQLConnection() == conn;
+            }
+        });
+        sqlsession.getDatabaseNode().release();
+        getIDManager().release(sqlsession.getId());
         try {
             sqlsession.getConn().close();
         } catch (SQLException e) {
@@ -79,6 +76,17 @@ public class WebSQLSession implements Serializable {
         return idmanager;
     }
 
+    /**
+     * The statements currently executing, so that they can be cancelled from
+     * another request.
+     */
+    public synchronized StatementRegistry getRunningStatements() {
+        if (runningStatements == null) {
+            runningStatements = new StatementRegistry();
+        }
+        return runningStatements;
+    }
+
     public String getUser() {
         return username;
     }
@@ -0,0 +1,146 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.dbtree.MetaDataCrawler;
+import com.riversql.dbtree.SQLSession;
+import com.riversql.sql.NameIndex;
+import com.riversql.sql.SQLConnection;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Completes the name being typed in the editor from the <TT>NameIndex</TT>
+ * of the metadata cache of the session, without querying the database: the
+ * names of the whole source are read in the background on first use, and
+ * what is known meanwhile is completed.
+ *
+ * <P>When <TT>sql</TT> is given, the tables and aliases it names after
+ * <TT>FROM</TT>, <TT>JOIN</TT> and the like are used: a qualifier which is
+ * an alias stands for its table, and the columns of the tables come first
+ * when there is no qualifier.
+ */
+public class Autocomplete implements JSONAction {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private static final Pattern TABLE_REFERENCE = Pattern.compile(
+            "(?:\\bFROM|\\bJOIN|\\bUPDATE|\\bINTO|,)\\s+((?:[\\w$#\"]+\\.)*[\\w$#\"]+)(?:\\s+(?:AS\\s+)?([\\w$#]+))?",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Words which may follow a table name without being its alias.
+     */
+    private static final Set<String> NOT_ALIASES = new HashSet<String>(Arrays.asList(
+            "WHERE", "ON", "USING", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "NATURAL",
+            "GROUP", "ORDER", "HAVING", "UNION", "EXCEPT", "INTERSECT", "MINUS", "LIMIT", "SET", "VALUES",
+            "SELECT", "FROM", "WINDOW", "FOR"));
+
+    String sessionid, prefix, qualifier, sql;
+    int limit = DEFAULT_LIMIT;
+
+    public void setSessionid(String sessionid) {
+        this.sessionid = sessionid;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param qualifier what precedes the dot before the name being typed.
+     */
+    public void setQualifier(String qualifier) {
+        this.qualifier = qualifier;
+    }
+
+    /**
+     * @param sql the statement being typed.
+     */
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        Object obj = IDManager.get().get(sessionid);
+        if (!(obj instanceof SQLSession)) {
+            throw new IllegalArgumentException("No such session : " + sessionid);
+        }
+        SQLConnection conn = ((SQLSession) obj).getConn();
+        MetaDataCrawler.readNames(conn);
+        NameIndex index = conn.getMetaDataCache().getNameIndex();
+        if (!index.hasSourceKeywords()) {
+            try {
+                index.setKeywords(conn.getSQLMetaData().getSQLKeywords());
+            } catch (SQLException e) {
+                index.setKeywords(new String[0]);
+            }
+        }
+
+        List<String[]> names = complete(index, sql, qualifier, prefix == null ? "" : prefix,
+                limit > 0 ? limit : DEFAULT_LIMIT);
+
+        JSONArray items = new JSONArray();
+        for (String[] name : names) {
+            JSONObject item = new JSONObject();
+            item.put("name", name[0]);
+            item.put("kind", name[1]);
+            items.put(item);
+        }
+        JSONObject ret = new JSONObject();
+        ret.put("items", items);
+        return ret;
+    }
+
+    /**
+     * Completes <TT>prefix</TT> with the tables and aliases of
+     * <TT>sql</TT>, which may be <TT>null</TT>.
+     */
+    static List<String[]> complete(NameIndex index, String sql, String qualifier, String prefix, int limit) {
+        Map<String, String> aliases = new HashMap<String, String>();
+        Set<String> tables = new LinkedHashSet<String>();
+        if (sql != null) {
+            Matcher m = TABLE_REFERENCE.matcher(sql);
+            while (m.find()) {
+                String table = m.group(1).replace("\"", "");
+                tables.add(table);
+                String alias = m.group(2);
+                if (alias != null && !NOT_ALIASES.contains(alias.toUpperCase())) {
+                    aliases.put(alias.toLowerCase(), table);
+                }
+            }
+        }
+        String q = qualifier;
+        if (q != null) {
+            q = q.replace("\"", "");
+            if (q.length() == 0) {
+                q = null;
+            } else if (aliases.containsKey(q.toLowerCase())) {
+                q = aliases.get(q.toLowerCase());
+            }
+        }
+        return index.complete(q, prefix, tables, limit);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.WebSQLSession;
+import com.riversql.actions.imports.CSVImport;
+import com.riversql.utils.QueryJob;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Cancels the statements currently running on a connection, or a single
+ * query job or CSV import. The scripts they belong to stop there.
+ */
+public class CancelQuery implements JSONAction {
+    String sessionid, job;
+
+    public void setSessionid(String sessionid) {
+        this.sessionid = sessionid;
+    }
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        WebSQLSession sessions = (WebSQLSession) request.getSession(true).getAttribute("sessions");
+        int cancelled = 0;
+        if (job != null) {
+            Object o = IDManager.get().get(job);
+            if (o instanceof QueryJob && !((QueryJob) o).isFinished()) {
+                ((QueryJob) o).cancel();
+                cancelled = 1;
+            } else if (o instanceof CSVImport && !((CSVImport) o).isFinished()) {
+                ((CSVImport) o).cancel();
+                cancelled = 1;
+            }
+        } else if (sessionid != null && sessions != null) {
+            cancelled = sessions.getRunningStatements().cancel(sessionid);
+        }
+        JSONObject obj = new JSONObject();
+        obj.put("cancelled", cancelled);
+        return obj;
+    }
+
+}
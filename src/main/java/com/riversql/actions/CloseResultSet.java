@@ -2,7 +2,6 @@ package com.riversql.actions;
 
 import com.riversql.IDManager;
 import com.riversql.JSONAction;
-import com.riversql.utils.SQLExecutor;
 import org.json.JSONObject;
 
 import javax.persistence.EntityManager;
@@ -22,10 +21,8 @@ public class CloseResultSet implements JSONAction {
     public JSONObject execute(HttpServletRequest request,
                               HttpServletResponse response, EntityManager em, EntityTransaction et)
             throws Exception {
-        SQLExecutor executor = (SQLExecutor) IDManager.get().get(rset);
-        if (executor != null) {
-            executor.close();
-        }
+        // closes the executor
+        IDManager.get().release(rset);
         return null;
     }
 
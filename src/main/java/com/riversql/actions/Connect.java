@@ -5,11 +5,16 @@ import com.riversql.JSONAction;
 import com.riversql.WebSQLSession;
 import com.riversql.dao.DriversDAO;
 import com.riversql.dao.SourcesDAO;
+import com.riversql.dbtree.MetaDataCrawler;
 import com.riversql.dbtree.SQLSession;
 import com.riversql.entities.Driver;
 import com.riversql.entities.Source;
 import com.riversql.plugin.PluginManager;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ConnectionPools;
 import com.riversql.sql.ISQLDriver;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.MetaDataSnapshots;
 import com.riversql.sql.SQLConnection;
 import com.riversql.sql.SQLDriver;
 import org.json.JSONArray;
@@ -20,17 +25,22 @@ import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.SQLException;
 
 public class Connect implements JSONAction {
     String user, password;
     int driverid, sourceid;
     String autocommit;
+    String limitrows;
 
     public void setAutocommit(String autocommit) {
         this.autocommit = autocommit;
     }
 
+    public void setLimitrows(String limitrows) {
+        this.limitrows = limitrows;
+    }
+
     public void setUser(String user) {
         this.user = user;
     }
@@ -52,29 +62,59 @@ public class Connect implements JSONAction {
             throws Exception {
         Driver driver = DriversDAO.getDriver(em, driverid);
         Source source = SourcesDAO.getSource(em, sourceid);
-        ISQLDriver idriver = new SQLDriver();
+        final ISQLDriver idriver = new SQLDriver();
         idriver.setDriverClassName(driver.getDriverClassName());
 
         JSONObject obj = new JSONObject();
 
-        java.sql.Driver sqlDriver = (java.sql.Driver) Class.forName(driver.getDriverClassName()).newInstance();
-        DriverManager.registerDriver(sqlDriver);
-
-
-        Connection _conn = DriverManager.getConnection(source.getJdbcUrl(), user, password);
-        if (autocommit != null) {
-            _conn.setAutoCommit(true);
-        } else {
-            _conn.setAutoCommit(false);
+        final ConnectionPool pool = ConnectionPools.getPool(sourceid, driver.getDriverClassName(), source.getJdbcUrl(), user, password);
+        // the session keeps the connection until it is closed: poolMaxSize
+        // also bounds the sessions open at once with the same credentials
+        Connection _conn = pool.borrow();
+        SQLConnection conn = null;
+        SQLSession sqlsession = null;
+        final MetaDataCache cache;
+        JSONArray arr = new JSONArray();
+        try {
+            if (autocommit != null) {
+                _conn.setAutoCommit(true);
+            } else {
+                _conn.setAutoCommit(false);
+            }
+
+            conn = new SQLConnection(_conn, null, idriver, pool);
+            cache = MetaDataCache.getCache(sourceid, user);
+            conn.setMetaDataCache(cache);
+            MetaDataSnapshots.restore(cache);
+
+            sqlsession = new SQLSession(sourceid, source.getSourceName() + " (" + IDManager.get().nextSessionID() + ")", conn);
+            sqlsession.setLimitRows(limitrows != null);
+            PluginManager.getInstance().dynamicPluginScripts(arr, conn);
+        } catch (Exception e) {
+            if (sqlsession != null) {
+                sqlsession.getDatabaseNode().release();
+                IDManager.get().release(sqlsession.getId());
+            }
+            // gives the connection back
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e1) {
+                }
+            } else {
+                pool.giveBack(_conn);
+            }
+            throw e;
         }
 
-        SQLConnection conn = new SQLConnection(_conn, null, idriver);
-
         WebSQLSession sessions = (WebSQLSession) request.getSession(true).getAttribute("sessions");
-        sessions.getSqlsessions().add(new SQLSession(sourceid, source.getSourceName() + " (" + IDManager.get().nextSessionID() + ")", conn));
+        sessions.getSqlsessions().add(sqlsession);
+        MetaDataSnapshots.refresh(pool, idriver, cache, new Runnable() {
+            public void run() {
+                MetaDataCrawler.crawl(pool, idriver, cache);
+            }
+        });
         obj.put("success", true);
-        JSONArray arr = new JSONArray();
-        PluginManager.getInstance().dynamicPluginScripts(arr, conn);
         obj.put("pluginScripts", arr);
 
         return obj;
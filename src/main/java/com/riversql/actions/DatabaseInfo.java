@@ -69,6 +69,18 @@ public class DatabaseInfo extends JSONDispatchAction {
         return ret;
     }
 
+    /**
+     * @return the table of that name in the catalog, <TT>null</TT> if there
+     * is none.
+     */
+    static TableNode findTableNode(SQLConnection conn, String catalogName, String tableName) throws SQLException {
+        DatabaseInfo info = new DatabaseInfo();
+        info.setCatalogName(catalogName);
+        info.setTableName(tableName);
+        TablesNode tablesNode = info.getTablesNode(conn);
+        return tablesNode == null ? null : info.getTableNode(tablesNode);
+    }
+
     private TablesNode getTablesNode(SQLConnection conn) throws SQLException {
         CatalogNode catalogNode = new CatalogNode(catalogName, conn, false);
         catalogNode.nodeLoad();
@@ -2,10 +2,14 @@ package com.riversql.actions;
 
 import com.riversql.IDManager;
 import com.riversql.IPageAction;
+import com.riversql.actions.export.IStreamingTableExporter;
 import com.riversql.actions.export.ITableExporter;
 import com.riversql.actions.export.impl.CSVTableExporter;
 import com.riversql.actions.export.impl.ExcelTableExporter;
 import com.riversql.actions.export.impl.PDFTableExporter;
+import com.riversql.actions.export.impl.XLSXTableExporter;
+import com.riversql.databases.DialectFactory;
+import com.riversql.databases.FetchProfile;
 import com.riversql.dbtree.TableNode;
 import com.riversql.sql.SQLConnection;
 import com.riversql.utils.ResultSetReader;
@@ -18,7 +22,18 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 
+/**
+ * Exports the rows of a table. The exporters which can stream write the rows
+ * to the response as they are read, so that the memory used does not depend
+ * on the number of rows; the response is then sent without a length.
+ */
 public class DoExport implements IPageAction {
+
+    /**
+     * How often the output is checked while streaming, in rows.
+     */
+    private static final int FLUSH_ROWS = 10000;
+
     String id;
     int count;
     String format;
@@ -40,41 +55,83 @@ public class DoExport implements IPageAction {
             throws Exception {
         TableNode tn = (TableNode) IDManager.get().get(id);
         String sql = "SELECT * FROM " + tn.getQualifiedName();
-        SQLConnection conn = tn.getConn();
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-        ITableExporter tExp = null;
+        export(tn.getConn(), sql, count, newExporter(format, tn.getQualifiedName()), response);
+    }
+
+    static ITableExporter newExporter(String format, String title) throws Exception {
         if ("excel".equals(format))
-            tExp = new ExcelTableExporter(tn.getQualifiedName());
+            return new ExcelTableExporter(title);
+        else if ("xlsx".equals(format))
+            return new XLSXTableExporter(title);
         else if ("csv".equals(format))
-            tExp = new CSVTableExporter(tn.getQualifiedName());
+            return new CSVTableExporter(title);
         else
-            tExp = new PDFTableExporter(tn.getQualifiedName());
+            return new PDFTableExporter(title);
+    }
 
+    /**
+     * Runs <TT>sql</TT> on <TT>conn</TT> and exports all its rows, or the
+     * first <TT>count</TT> ones if it is positive, to the response.
+     */
+    static void export(SQLConnection conn, String sql, int count, ITableExporter tExp,
+                       HttpServletResponse response) throws Exception {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        FetchProfile profile = DialectFactory.getFetchProfile(conn);
+        boolean cursorBegun = false;
+        boolean exhausted = false;
+
+        IStreamingTableExporter streaming = tExp instanceof IStreamingTableExporter
+                ? (IStreamingTableExporter) tExp : null;
         try {
-            ps = conn.prepareStatement(sql);
-            try {
-                if (count > 0) ps.setMaxRows(count);
-            } catch (Exception e) {
+            conn.closeOpenCursor();
+            cursorBegun = profile.beginCursor(conn, sql);
+            ps = profile.prepareStatement(conn, sql);
+            int maxRows = count;
+            if (tExp instanceof PDFTableExporter) {
+                int cap = PDFTableExporter.getMaxRows();
+                if (maxRows <= 0 || maxRows > cap) {
+                    // one more row than the cap tells the exporter it is reached
+                    maxRows = cap + 1;
+                }
             }
             try {
-                ps.setFetchSize(500);
+                if (maxRows > 0) ps.setMaxRows(maxRows);
             } catch (Exception e) {
             }
+            profile.configure(ps, 500);
             rs = ps.executeQuery();
             ResultSetMetaData metadata = rs.getMetaData();
             int columncount = metadata.getColumnCount();
+            if (streaming != null) {
+                response.setContentType(tExp.getMimeType());
+                streaming.open(response.getOutputStream());
+            }
             tExp.configure(metadata);
             ResultSetReader reader = new ResultSetReader(rs);
             Object[] row;
+            int rows = 0;
             while ((row = reader.readRow()) != null) {
                 tExp.newLine();
                 for (int i = 0; i < columncount; i++) {
                     tExp.newCell(row[i]);
                 }
+                if (streaming != null && ++rows % FLUSH_ROWS == 0) {
+                    // stops reading when the client is gone
+                    streaming.flush();
+                }
             }
+            exhausted = true;
             tExp.finish();
+            if (streaming != null) {
+                streaming.flush();
+            }
         } finally {
+            if (rs != null && !exhausted) {
+                // the client is gone or the export failed : closing the
+                // result must not read the rows left first
+                profile.discard(ps);
+            }
             if (rs != null) {
                 try {
                     rs.close();
@@ -87,6 +144,15 @@ public class DoExport implements IPageAction {
                 } catch (Exception e1) {
                 }
             }
+            if (cursorBegun) {
+                try {
+                    profile.endCursor(conn);
+                } catch (Exception e1) {
+                }
+            }
+        }
+        if (streaming != null) {
+            return;
         }
         response.setContentLength(tExp.getContentSize());
         response.setContentType(tExp.getMimeType());
@@ -1,11 +1,19 @@
 package com.riversql.actions;
 
+import com.riversql.actions.export.impl.XLSXTableExporter;
+import org.json.JSONArray;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Sends back the workbook built by the client from a result grid, or, when
+ * <TT>format</TT> is <TT>xlsx</TT>, writes its <TT>meta</TT> and
+ * <TT>data</TT> as an .xlsx workbook, streamed to the response.
+ */
 public class ExcelExport extends ExportPage {
 
     String ex;
@@ -17,6 +25,10 @@ public class ExcelExport extends ExportPage {
     public void execute(HttpServletRequest request, HttpServletResponse response, EntityManager em, EntityTransaction et) throws Exception {
         loadUploadParameter(request);
 
+        if ("xlsx".equals(parameterMap.get("format"))) {
+            exportXLSX(response);
+            return;
+        }
         ex = parameterMap.get("ex");
 
         response.setHeader("Pragma", "public");
@@ -30,4 +42,26 @@ public class ExcelExport extends ExportPage {
         os.flush();
     }
 
+    private void exportXLSX(HttpServletResponse response) throws Exception {
+        JSONArray meta = new JSONArray(parameterMap.get("meta"));
+        JSONArray data = new JSONArray(parameterMap.get("data"));
+        XLSXTableExporter tableExporter = new XLSXTableExporter(meta);
+
+        response.setHeader("Pragma", "public");
+        response.setHeader("Expires", "0"); // set expiration time
+        response.setHeader("Cache-Control", "must-revalidate, post-check=0, pre-check=0");
+        response.setContentType(tableExporter.getMimeType());
+        response.setHeader("Content-Disposition", "attachment;filename=export.xlsx");
+        tableExporter.open(response.getOutputStream());
+        for (int i = 0; i < data.length(); i++) {
+            JSONArray row = data.getJSONArray(i);
+            tableExporter.newLine();
+            for (int j = 0; j < row.length(); j++) {
+                tableExporter.newCell(row.isNull(j) ? null : row.get(j));
+            }
+        }
+        tableExporter.finish();
+        tableExporter.flush();
+    }
+
 }
@@ -1,23 +1,31 @@
 package com.riversql.actions;
 
 import com.riversql.IDManager;
-import com.riversql.JSONAction;
+import com.riversql.JSONStreamingAction;
 import com.riversql.WebSQLSession;
 import com.riversql.dbtree.SQLSession;
 import com.riversql.sql.QueryTokenizer;
 import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLStatement;
+import com.riversql.utils.JSONStreamWriter;
 import com.riversql.utils.SQLExecutor;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
-public class ExecuteSQL implements JSONAction {
-    String sql, sessionid;
+public class ExecuteSQL implements JSONStreamingAction {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecuteSQL.class);
+
+    String sql, sessionid, limitrows;
 
     public void setSql(String sql) {
         this.sql = sql;
@@ -27,12 +35,25 @@ public class ExecuteSQL implements JSONAction {
         this.sessionid = sessionid;
     }
 
-    public JSONObject execute(HttpServletRequest request,
-                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+    /**
+     * "1" or "0" to force or prevent the rewriting of the queries to only
+     * fetch the rows shown, otherwise the default of the session applies.
+     */
+    public void setLimitrows(String limitrows) {
+        this.limitrows = limitrows;
+    }
+
+    public void execute(HttpServletRequest request,
+                        HttpServletResponse response, EntityManager em, EntityTransaction et,
+                        JSONStreamWriter out)
             throws Exception {
         SQLConnection conn = null;
+        SQLSession sqlsession = null;
+        boolean limitRows = "1".equals(limitrows);
         if (sessionid != null) {
-            SQLSession sqlsession = (SQLSession) IDManager.get().get(sessionid);
+            sqlsession = (SQLSession) IDManager.get().get(sessionid);
+            if (sqlsession != null && limitrows == null)
+                limitRows = sqlsession.isLimitRows();
             if (sqlsession == null) {
 
                 sqlsession = null;//GetTree.createSQLSession(request, em,sessionid);
@@ -41,15 +62,10 @@ public class ExecuteSQL implements JSONAction {
                 conn = sqlsession.getConn();
         }
 
-
-        JSONArray info = new JSONArray();
-
         long init = 0;
 
         init = System.nanoTime();
 
-        JSONArray resultSets = new JSONArray();
-
         QueryTokenizer qt = new QueryTokenizer(";", "--", false);
         qt.setScriptToTokenize(sql);
         String nextQuery = null;
@@ -58,40 +74,40 @@ public class ExecuteSQL implements JSONAction {
         HttpSession session = request.getSession(true);
         WebSQLSession sessions = (WebSQLSession) session.getAttribute("sessions");
 
+        Set<String> changedNodes = new LinkedHashSet<String>();
+        out.object();
+        out.key("resultSets").array();
         while (qt.hasQuery()) {
             nextQuery = qt.nextQuery();
-            SQLExecutor he = new SQLExecutor(conn, limit, maxLimit, nextQuery);
-            sessions.getExecutors().add(he);
-            JSONObject resultSet = new JSONObject();
-            JSONArray meta = new JSONArray();
-            JSONArray data = new JSONArray();
-            JSONArray info2 = new JSONArray();
-
-
-            try {
-                he.executeQuery(data, meta, info2);
-                info2.put(true);
-            } catch (Exception e) {
-                info2.put(false);
-                info2.put(e.getMessage());
+            SQLExecutor he = new SQLExecutor(conn, limit, maxLimit, nextQuery,
+                    sessions.getRunningStatements(), sessionid);
+            he.setLimitRows(limitRows);
+            if (he.executeQuery(out) && sqlsession != null) {
+                SQLStatement statement = SQLStatement.parse(nextQuery);
+                if (statement.changesMetaData()) {
+                    try {
+                        changedNodes.addAll(sqlsession.invalidate(statement));
+                    } catch (SQLException e) {
+                        LOGGER.warn("Cannot invalidate the metadata changed by " + nextQuery, e);
+                    }
+                }
+            }
+            if (he.isCancelled()) {
+                // cancelQuery stops the script, not only its running statement
+                break;
             }
-            resultSet.put("meta", meta);
-            resultSet.put("data", data);
-            resultSet.put("info", info2);
-            resultSets.put(resultSet);
         }
+        out.endArray();
 
         long end = System.nanoTime();
 
-
-        info.put((end - init) / 1000000);
-
-        JSONObject ret = new JSONObject();
-
-
-        ret.put("info", info);
-        ret.put("resultSets", resultSets);
-        return ret;
+        out.key("info").array().value((end - init) / 1000000).endArray();
+        out.key("changedNodes").array();
+        for (String node : changedNodes) {
+            out.value(node);
+        }
+        out.endArray();
+        out.endObject();
     }
 
 }
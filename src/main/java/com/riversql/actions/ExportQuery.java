@@ -0,0 +1,64 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.IPageAction;
+import com.riversql.actions.export.ITableExporter;
+import com.riversql.sql.SQLStatement;
+import com.riversql.utils.SQLExecutor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exports the result of a query shown in a grid, given the id of its
+ * <TT>SQLExecutor</TT>. The query is run again on the server and all its
+ * rows, or the first <TT>count</TT> ones, are streamed through the exporter
+ * of <TT>format</TT>, instead of the client posting back the rows it loaded.
+ */
+public class ExportQuery implements IPageAction {
+
+    String queryID;
+    String format;
+    int count;
+
+    public void setQueryID(String queryID) {
+        this.queryID = queryID;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void execute(HttpServletRequest request,
+                        HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        Object obj = IDManager.get().get(queryID);
+        if (!(obj instanceof SQLExecutor)) {
+            throw new IllegalArgumentException("The query to export is closed, run it again");
+        }
+        SQLExecutor executor = (SQLExecutor) obj;
+        String sql = executor.getQuery();
+        if (!SQLStatement.parse(sql).isReadOnly()) {
+            // running it again could change data
+            throw new IllegalArgumentException("Only the result of a query can be exported");
+        }
+        ITableExporter tExp = DoExport.newExporter(format, "Query");
+        String extension = "excel".equals(format) ? "xls" : format;
+        if (!"xlsx".equals(extension) && !"csv".equals(extension) && !"xls".equals(extension)) {
+            extension = "pdf";
+        }
+
+        response.setHeader("Pragma", "public");
+        response.setHeader("Expires", "0"); // set expiration time
+        response.setHeader("Cache-Control", "must-revalidate, post-check=0, pre-check=0");
+        response.setHeader("Content-Disposition", "attachment;filename=export." + extension);
+        DoExport.export(executor.getSQLConnection(), sql, count, tExp, response);
+    }
+
+}
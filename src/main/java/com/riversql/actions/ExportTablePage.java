@@ -2,6 +2,7 @@ package com.riversql.actions;
 
 import com.riversql.IDManager;
 import com.riversql.IPageAction;
+import com.riversql.actions.export.impl.PDFTableExporter;
 import com.riversql.dbtree.TableNode;
 import com.riversql.sql.SQLConnection;
 
@@ -51,6 +52,11 @@ public class ExportTablePage implements IPageAction {
             }
         }
         request.setAttribute("rowCount", count);
+        String pdf = "A PDF export would take about " + PDFTableExporter.estimatePages(count) + " pages";
+        if (count > PDFTableExporter.getMaxRows()) {
+            pdf += ", holding only the first " + PDFTableExporter.getMaxRows() + " rows";
+        }
+        request.setAttribute("pdfEstimate", pdf + ".");
         request.setAttribute("rnd", new Random().nextInt());
         request.getRequestDispatcher("exportTable.jsp").forward(request, response);
 
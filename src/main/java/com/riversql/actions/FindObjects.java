@@ -0,0 +1,147 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.dbtree.DBNode;
+import com.riversql.dbtree.DatabaseNode;
+import com.riversql.dbtree.IStructureNode;
+import com.riversql.dbtree.MetaDataCrawler;
+import com.riversql.dbtree.SQLSession;
+import com.riversql.dbtree.TablesNode;
+import com.riversql.plugin.BasePluginType;
+import com.riversql.sql.ObjectIndex;
+import com.riversql.sql.SQLConnection;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the tables, views, columns and objects of the plugins of a source
+ * whose name contains <TT>q</TT>, is close to it, or matches it with
+ * wildcards, in the <TT>ObjectIndex</TT> of the metadata cache of the
+ * session. The tables, columns and objects of the whole source are read
+ * into it in the background on first use, what is known meanwhile being
+ * searched.
+ *
+ * <P>Each match comes with the ids of the tree nodes leading to it, for the
+ * tree to be opened down to it: a table node is created without listing
+ * the other tables of its schema, a column leads to its table.
+ */
+public class FindObjects implements JSONAction {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    String sessionid, q;
+    int limit = DEFAULT_LIMIT;
+
+    public void setSessionid(String sessionid) {
+        this.sessionid = sessionid;
+    }
+
+    /**
+     * @param q a part of the name, which may be preceded by a schema or a
+     *          table and a dot.
+     */
+    public void setQ(String q) {
+        this.q = q;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        Object obj = IDManager.get().get(sessionid);
+        if (!(obj instanceof SQLSession)) {
+            throw new IllegalArgumentException("No such session : " + sessionid);
+        }
+        SQLSession session = (SQLSession) obj;
+        SQLConnection conn = session.getConn();
+        MetaDataCrawler.readNames(conn);
+        MetaDataCrawler.readObjects(conn);
+        ObjectIndex index = conn.getMetaDataCache().getObjectIndex();
+
+        List<ObjectIndex.Entry> found = index.find(q == null ? "" : q, limit > 0 ? limit : DEFAULT_LIMIT);
+
+        DatabaseNode dn = session.getDatabaseNode();
+        Map<String, List<IStructureNode>> schemas = new HashMap<String, List<IStructureNode>>();
+        JSONArray items = new JSONArray();
+        for (ObjectIndex.Entry entry : found) {
+            JSONObject item = new JSONObject();
+            item.put("name", entry.getName());
+            item.put("kind", entry.getKind());
+            item.put("type", entry.getType());
+            item.put("schema", entry.getSchemaName() != null ? entry.getSchemaName() : entry.getCatalogName());
+            item.put("table", entry.getTableName());
+            List<IStructureNode> path = getPath(dn, index, entry, schemas);
+            if (path != null) {
+                JSONArray ids = new JSONArray();
+                for (IStructureNode node : path) {
+                    ids.put(node.getId());
+                }
+                item.put("id", path.get(path.size() - 1).getId());
+                item.put("path", ids);
+            }
+            items.put(item);
+        }
+        JSONObject ret = new JSONObject();
+        ret.put("items", items);
+        return ret;
+    }
+
+    /**
+     * @return the nodes from the database node down to the node of
+     * <TT>entry</TT>, or to its table for a column, or <TT>null</TT> if
+     * it is not in the tree.
+     */
+    private static List<IStructureNode> getPath(DatabaseNode dn, ObjectIndex index, ObjectIndex.Entry entry,
+                                                Map<String, List<IStructureNode>> schemas) {
+        if (entry.getKind().equals(ObjectIndex.COLUMN)) {
+            entry = index.getTable(entry);
+            if (entry == null) {
+                return null;
+            }
+        }
+        String key = entry.getCatalogName() + "\u0000" + entry.getSchemaName();
+        if (!schemas.containsKey(key)) {
+            schemas.put(key, dn.getPath(entry.getCatalogName(), entry.getSchemaName()));
+        }
+        List<IStructureNode> schemaPath = schemas.get(key);
+        if (schemaPath == null) {
+            return null;
+        }
+        List<IStructureNode> path = new ArrayList<IStructureNode>(schemaPath);
+        IStructureNode schemaNode = schemaPath.get(schemaPath.size() - 1);
+        for (IStructureNode child : ((DBNode) schemaNode).getChildren()) {
+            if (entry.getKind().equals(ObjectIndex.TABLE) && child instanceof TablesNode
+                    && ((TablesNode) child).getTableType().equals(entry.getType())) {
+                path.add(child);
+                path.add(((TablesNode) child).getTableNode(entry.getTableInfo()));
+                return path;
+            }
+            if (entry.getKind().equals(ObjectIndex.OBJECT) && child instanceof BasePluginType
+                    && child.getName().equalsIgnoreCase(entry.getType())) {
+                path.add(child);
+                for (IStructureNode object : ((BasePluginType) child).getChildren()) {
+                    if (object.getName().equals(entry.getName())) {
+                        path.add(object);
+                        break;
+                    }
+                }
+                return path;
+            }
+        }
+        return null;
+    }
+
+}
@@ -1,10 +1,9 @@
 package com.riversql.actions;
 
 import com.riversql.IDManager;
-import com.riversql.JSONAction;
+import com.riversql.JSONStreamingAction;
+import com.riversql.utils.JSONStreamWriter;
 import com.riversql.utils.SQLExecutor;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
@@ -12,7 +11,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 
-public class GetAdditionalData implements JSONAction {
+public class GetAdditionalData implements JSONStreamingAction {
     String queryID = null;
     int all = 0;
 
@@ -24,15 +23,18 @@ public class GetAdditionalData implements JSONAction {
         this.all = all;
     }
 
-    public JSONObject execute(HttpServletRequest request,
-                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+    public void execute(HttpServletRequest request,
+                        HttpServletResponse response, EntityManager em, EntityTransaction et,
+                        JSONStreamWriter out)
             throws Exception {
-        SQLExecutor executor = (SQLExecutor) IDManager.get().get(queryID);
-        JSONArray data = new JSONArray();
-        executor.next(data, all == 1);
-        JSONObject ret = new JSONObject();
-        ret.put("data", data);
-        return ret;
+        Object obj = IDManager.get().get(queryID);
+        if (!(obj instanceof SQLExecutor)) {
+            throw new IllegalArgumentException("The query has expired, run it again");
+        }
+        SQLExecutor executor = (SQLExecutor) obj;
+        out.object().key("data");
+        executor.next(out, all == 1);
+        out.endObject();
     }
 
 }
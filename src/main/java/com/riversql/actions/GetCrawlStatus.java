@@ -0,0 +1,59 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.dbtree.MetaDataCrawler;
+import com.riversql.dbtree.SQLSession;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the progress of the metadata crawl of the source of a session,
+ * which is stopped when <TT>cancel</TT> is given.
+ */
+public class GetCrawlStatus implements JSONAction {
+    String id;
+    String cancel;
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setCancel(String cancel) {
+        this.cancel = cancel;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        Object obj = IDManager.get().get(id);
+        if (!(obj instanceof SQLSession)) {
+            throw new IllegalArgumentException("No such session : " + id);
+        }
+        MetaDataCrawler crawler = MetaDataCrawler.get(((SQLSession) obj).getConn().getMetaDataCache());
+        JSONObject ret = new JSONObject();
+        if (crawler == null) {
+            ret.put("status", "NONE");
+            ret.put("finished", true);
+            return ret;
+        }
+        if (cancel != null) {
+            crawler.cancel();
+        }
+        ret.put("status", crawler.getState().name());
+        ret.put("finished", crawler.isFinished());
+        ret.put("schemas", crawler.getSchemasFound());
+        ret.put("schemasDone", crawler.getSchemasDone());
+        ret.put("tables", crawler.getTablesFound());
+        ret.put("tablesDone", crawler.getTablesDone());
+        ret.put("errors", crawler.getErrors());
+        ret.put("current", crawler.getCurrent());
+        ret.put("elapsed", crawler.getElapsed());
+        return ret;
+    }
+
+}
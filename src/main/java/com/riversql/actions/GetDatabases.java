@@ -38,6 +38,7 @@ public class GetDatabases implements JSONAction {
             } catch (SQLException e) {
                 obj.put("autocommit", false);
             }
+            obj.put("limitrows", sqlsession.isLimitRows());
             boolean hasCatalogs = sqlsession.getDatabaseNode().supportsCatalogs();
             if (hasCatalogs) {
                 String catalogs[] = sqlsession.getDatabaseNode().getCatalogs();
@@ -3,6 +3,7 @@ package com.riversql.actions;
 import com.riversql.IDManager;
 import com.riversql.JSONAction;
 import com.riversql.dbtree.TableNode;
+import com.riversql.sql.MetaDataRows;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -11,8 +12,6 @@ import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
-import java.sql.Statement;
 
 
 public class GetIndexes implements JSONAction {
@@ -39,50 +38,35 @@ public class GetIndexes implements JSONAction {
                 meta.put(strs[i]);
             }
             TableNode table = ((TableNode) obj);
-            ResultSet rs = null;
-            try {
-                rs = table.getIndexes();
-                while (rs.next()) {
-                    boolean nonUnique = rs.getBoolean("NON_UNIQUE");
-                    String str = rs.getString("INDEX_NAME");
-                    short type = rs.getShort("TYPE");
-                    short order = rs.getShort("ORDINAL_POSITION");
-                    String name = rs.getString("COLUMN_NAME");
-                    String asc_or_des = rs.getString("ASC_OR_DESC");
-                    String cardinality = rs.getString("CARDINALITY");
-                    String pages = rs.getString("PAGES");
-                    if (str != null) {
-                        JSONArray record = new JSONArray();
-                        record.put(str);
-                        record.put(name);
-                        record.put(!nonUnique);
+            MetaDataRows.Cursor rs = table.getIndexes().cursor();
+            while (rs.next()) {
+                boolean nonUnique = rs.getBoolean("NON_UNIQUE");
+                String str = rs.getString("INDEX_NAME");
+                short type = rs.getShort("TYPE");
+                short order = rs.getShort("ORDINAL_POSITION");
+                String name = rs.getString("COLUMN_NAME");
+                String asc_or_des = rs.getString("ASC_OR_DESC");
+                String cardinality = rs.getString("CARDINALITY");
+                String pages = rs.getString("PAGES");
+                if (str != null) {
+                    JSONArray record = new JSONArray();
+                    record.put(str);
+                    record.put(name);
+                    record.put(!nonUnique);
 
-                        if (type == DatabaseMetaData.tableIndexClustered)
-                            record.put("Clustered");
-                        else if (type == DatabaseMetaData.tableIndexHashed)
-                            record.put("Hashed");
-                        else if (type == DatabaseMetaData.tableIndexStatistic)
-                            record.put("Statistics");
-                        else record.put("Other");
-
-                        record.put(order);
-                        record.put(asc_or_des);
-                        record.put(cardinality);
-                        record.put(pages);
-                        data.put(record);
-                    }
-                }
-
-            } finally {
-                try {
-                    if (rs != null) {
-                        Statement st = rs.getStatement();
-                        rs.close();
-                        if (st != null)
-                            st.close();
-                    }
-                } catch (Exception e) {
+                    if (type == DatabaseMetaData.tableIndexClustered)
+                        record.put("Clustered");
+                    else if (type == DatabaseMetaData.tableIndexHashed)
+                        record.put("Hashed");
+                    else if (type == DatabaseMetaData.tableIndexStatistic)
+                        record.put("Statistics");
+                    else record.put("Other");
 
+                    record.put(order);
+                    record.put(asc_or_des);
+                    record.put(cardinality);
+                    record.put(pages);
+                    data.put(record);
                 }
             }
         }
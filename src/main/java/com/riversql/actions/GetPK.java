@@ -3,6 +3,7 @@ package com.riversql.actions;
 import com.riversql.IDManager;
 import com.riversql.JSONAction;
 import com.riversql.dbtree.TableNode;
+import com.riversql.sql.MetaDataRows;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -10,8 +11,6 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.sql.ResultSet;
-import java.sql.Statement;
 
 
 public class GetPK implements JSONAction {
@@ -38,32 +37,17 @@ public class GetPK implements JSONAction {
                 meta.put(strs[i]);
             }
             TableNode table = ((TableNode) obj);
-            ResultSet rs = null;
-            try {
-                rs = table.getPK();
-                while (rs.next()) {
-                    String colName = rs.getString("COLUMN_NAME");
-                    short order = rs.getShort("KEY_SEQ");
-                    String pkName = rs.getString("PK_NAME");
-                    if (pkName != null) {
-                        JSONArray record = new JSONArray();
-                        record.put(pkName);
-                        record.put(colName);
-                        record.put(order);
-                        data.put(record);
-                    }
-                }
-
-            } finally {
-                try {
-                    if (rs != null) {
-                        Statement st = rs.getStatement();
-                        rs.close();
-                        if (st != null)
-                            st.close();
-                    }
-                } catch (Exception e) {
-
+            MetaDataRows.Cursor rs = table.getPK().cursor();
+            while (rs.next()) {
+                String colName = rs.getString("COLUMN_NAME");
+                short order = rs.getShort("KEY_SEQ");
+                String pkName = rs.getString("PK_NAME");
+                if (pkName != null) {
+                    JSONArray record = new JSONArray();
+                    record.put(pkName);
+                    record.put(colName);
+                    record.put(order);
+                    data.put(record);
                 }
             }
         }
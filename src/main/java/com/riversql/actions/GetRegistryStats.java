@@ -0,0 +1,28 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Returns how many objects the session keeps by type, to watch its memory.
+ */
+public class GetRegistryStats implements JSONAction {
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        JSONObject obj = new JSONObject();
+        for (Map.Entry<String, Long> e : IDManager.get().getStatistics().entrySet()) {
+            obj.put(e.getKey(), e.getValue());
+        }
+        return obj;
+    }
+
+}
@@ -24,7 +24,7 @@ public class GetTableColumnsForAlterTable implements JSONAction {
                               HttpServletResponse response, EntityManager em, EntityTransaction et)
             throws Exception {
         TableNode tn = (TableNode) IDManager.get().get(id);
-        TableColumnInfo colsInfo[] = tn.getConn().getSQLMetaData().getColumnInfo(tn.getITableInfo());
+        TableColumnInfo colsInfo[] = tn.getColumnInfo();
         JSONObject ret = new JSONObject();
         JSONArray arr = new JSONArray();
         for (int i = 0; i < colsInfo.length; i++) {
@@ -3,6 +3,7 @@ package com.riversql.actions;
 import com.riversql.IDManager;
 import com.riversql.JSONAction;
 import com.riversql.dbtree.TableNode;
+import com.riversql.sql.MetaDataRows;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -10,8 +11,6 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -31,42 +30,28 @@ public class GetTableIndexesForAlterTable implements JSONAction {
         TableNode tn = (TableNode) IDManager.get().get(id);
         String pkName = tn.getPkName();
 
-        ResultSet rs = null;
         class IndexInfo {
 
             boolean unique;
             List<String> ls = new ArrayList<String>();
         }
         TreeMap<String, IndexInfo> mp = new TreeMap<String, IndexInfo>();
-        try {
-            rs = tn.getIndexes();
-            while (rs.next()) {
-                boolean nonUnique = rs.getBoolean("NON_UNIQUE");
-                String column_name = rs.getString("COLUMN_NAME");
-                String index_name = rs.getString("INDEX_NAME");
-                if (index_name != null) {
-                    if (index_name.equals(pkName))
-                        continue;
-                    IndexInfo ii = mp.get(index_name);
-                    if (ii == null) {
-                        ii = new IndexInfo();
+        MetaDataRows.Cursor rs = tn.getIndexes().cursor();
+        while (rs.next()) {
+            boolean nonUnique = rs.getBoolean("NON_UNIQUE");
+            String column_name = rs.getString("COLUMN_NAME");
+            String index_name = rs.getString("INDEX_NAME");
+            if (index_name != null) {
+                if (index_name.equals(pkName))
+                    continue;
+                IndexInfo ii = mp.get(index_name);
+                if (ii == null) {
+                    ii = new IndexInfo();
 
-                        ii.unique = !nonUnique;
-                        mp.put(index_name, ii);
-                    }
-                    ii.ls.add(column_name);
+                    ii.unique = !nonUnique;
+                    mp.put(index_name, ii);
                 }
-            }
-        } finally {
-            try {
-                if (rs != null) {
-                    Statement st = rs.getStatement();
-                    rs.close();
-                    if (st != null)
-                        st.close();
-                }
-            } catch (Exception e) {
-
+                ii.ls.add(column_name);
             }
         }
 
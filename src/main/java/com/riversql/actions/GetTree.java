@@ -2,6 +2,7 @@ package com.riversql.actions;
 
 import com.riversql.IDManager;
 import com.riversql.JSONAction;
+import com.riversql.dbtree.DBNode;
 import com.riversql.dbtree.DatabaseNode;
 import com.riversql.dbtree.IStructureNode;
 import com.riversql.dbtree.SQLSession;
@@ -17,6 +18,8 @@ import javax.servlet.http.HttpServletResponse;
 public class GetTree implements JSONAction {
     String node, refresh;
     String dbid;
+    String filter;
+    int start, limit;
     private boolean refreshing;
 
     public void setDbid(String dbid) {
@@ -27,6 +30,18 @@ public class GetTree implements JSONAction {
         this.node = node;
     }
 
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
     public JSONObject execute(HttpServletRequest request,
                               HttpServletResponse response,
                               EntityManager em, EntityTransaction et) throws Exception {
@@ -54,8 +69,10 @@ public class GetTree implements JSONAction {
             }
 
             DatabaseNode dn = sqlsession.getDatabaseNode();
-            if (refreshing)
+            if (refreshing) {
+                dn.invalidateMetaData();
                 dn.refresh();
+            }
             return dn.toJSON();
 
         } else {
@@ -63,8 +80,13 @@ public class GetTree implements JSONAction {
             Object obj = IDManager.get().get(id);
             if (obj != null) {
                 if (obj instanceof IStructureNode) {
-                    if (refreshing)
+                    if (refreshing) {
+                        if (obj instanceof DBNode)
+                            ((DBNode) obj).invalidateMetaData();
                         ((IStructureNode) obj).refresh();
+                    }
+                    if (obj instanceof DBNode)
+                        return ((DBNode) obj).getChildrenToJSon(start, limit, filter);
                     JSONObject js = ((IStructureNode) obj).getChildrenToJSon();
                     return js;
                 }
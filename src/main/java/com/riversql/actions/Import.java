@@ -7,6 +7,7 @@ package com.riversql.actions;
 
 import com.riversql.JSONAction;
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.json.JSONObject;
@@ -20,6 +21,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.util.Iterator;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * @author river.liao
@@ -28,7 +30,58 @@ public class Import implements JSONAction {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Import.class);
 
-    final long MAX_SIZE = 3 * 1024 * 1024;
+    private static final Pattern EXTENSION = Pattern.compile("[A-Za-z0-9]{1,8}");
+
+    public static final int DEFAULT_MAX_SIZE_MB = 4096;
+    public static final int DEFAULT_EXPIRY_HOURS = 24;
+
+    private static volatile long maxSize = DEFAULT_MAX_SIZE_MB * 1024L * 1024L;
+    private static volatile File uploadDirectory = new File(System.getProperty("java.io.tmpdir"), "riversql-upload");
+    private static volatile long expiry = DEFAULT_EXPIRY_HOURS * 60 * 60 * 1000L;
+
+    /**
+     * @param maxSizeMB   the size of the largest file accepted, in megabytes;
+     *                    0 for no limit.
+     * @param directory   where the uploaded files, and the records their
+     *                    import rejected, are kept; outside of the web
+     *                    application, so that they are never served.
+     * @param expiryHours the hours after which a file left there is deleted.
+     */
+    public static void configure(int maxSizeMB, File directory, int expiryHours) {
+        maxSize = maxSizeMB > 0 ? maxSizeMB * 1024L * 1024L : -1;
+        uploadDirectory = directory;
+        expiry = expiryHours * 60 * 60 * 1000L;
+    }
+
+    /**
+     * @return where the uploaded files are kept until they are imported,
+     * created if needed.
+     */
+    static File getUploadDirectory() {
+        File directory = uploadDirectory;
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IllegalStateException("Cannot create the upload directory " + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Deletes the files left in the upload directory for longer than the
+     * expiry: the uploads never imported, and the rejected records never
+     * downloaded or forgotten by a restart.
+     */
+    static void deleteExpired(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - expiry;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < limit && !file.delete()) {
+                LOGGER.warn("Cannot delete the expired upload " + file);
+            }
+        }
+    }
 
     public JSONObject execute(HttpServletRequest request, HttpServletResponse response, EntityManager em, EntityTransaction et) throws Exception {
 
@@ -38,15 +91,18 @@ public class Import implements JSONAction {
 
         DiskFileItemFactory dfif = new DiskFileItemFactory();
         dfif.setSizeThreshold(1024 * 100);
-        dfif.setRepository(new File(request.getServletContext().getRealPath("/") + "/WEB-INF/upload"));
+        File uploadDirectory = getUploadDirectory();
+        deleteExpired(uploadDirectory);
+        dfif.setRepository(uploadDirectory);
 
         ServletFileUpload sfu = new ServletFileUpload(dfif);
-        sfu.setSizeMax(MAX_SIZE);
-        List fileList = null;
+        sfu.setSizeMax(maxSize);
+        List fileList;
         try {
             fileList = sfu.parseRequest(request);
-        } catch (Exception e) {
-            LOGGER.error("execute", e);
+        } catch (FileUploadBase.SizeLimitExceededException e) {
+            throw new IllegalArgumentException("The file is larger than the " + maxSize / (1024 * 1024)
+                    + " MB accepted");
         }
         Iterator fileItr = fileList.iterator();
         while (fileItr.hasNext()) {
@@ -61,19 +117,26 @@ public class Import implements JSONAction {
 
             path = fileItem.getName();
             size = fileItem.getSize();
-            String t_name = path.substring(path.lastIndexOf("\\") + 1);
+            // the name of the client only gives the extension, if a plain one
+            String t_name = path == null ? "" : path.substring(path.lastIndexOf("\\") + 1);
             String t_ext = t_name.substring(t_name.lastIndexOf(".") + 1);
-            long now = System.currentTimeMillis();
-            String prefix = String.valueOf(now);
-            file_name = prefix + "." + t_ext;
-            String u_name = request.getServletContext().getRealPath("/") + "/WEB-INF/upload/" + prefix + "." + t_ext;
+            if (!EXTENSION.matcher(t_ext).matches()) {
+                t_ext = "csv";
+            }
+            File file = File.createTempFile("upload", "." + t_ext, uploadDirectory);
             try {
-                fileItem.write(new File(u_name));
-                LOGGER.info("Upload succeed with name: " + prefix + "." + t_ext
-                        + " &nbsp;&nbsp;fielzone: " + size + "<p />");
+                fileItem.write(file);
             } catch (Exception e) {
-                LOGGER.error("execute", e);
+                file.delete();
+                throw e;
+            } finally {
+                fileItem.delete();
             }
+            file_name = file.getName();
+            LOGGER.info("Uploaded " + t_name + " as " + file_name + ", " + size + " bytes");
+        }
+        if (file_name.length() == 0) {
+            throw new IllegalArgumentException("No file was uploaded");
         }
 
         JSONObject results = new JSONObject();
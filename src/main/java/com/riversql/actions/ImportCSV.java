@@ -0,0 +1,165 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.actions.imports.CSVImport;
+import com.riversql.dbtree.SQLSession;
+import com.riversql.dbtree.TableNode;
+import com.riversql.sql.SQLConnection;
+import com.riversql.utils.QueryJobs;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Loads a file uploaded by <TT>import</TT> into a table, in the background,
+ * and returns the id of the import at once. Use <TT>importStatus</TT> to
+ * follow it, <TT>cancelQuery</TT> to stop it and <TT>importRejects</TT> to
+ * download the records which were rejected.
+ */
+public class ImportCSV implements JSONAction {
+
+    String id, catalogName, tableName, filename, separator, fileencoding, columns;
+    boolean header;
+    int batchSize = CSVImport.getDefaultBatchSize();
+    int commitInterval = CSVImport.getDefaultCommitInterval();
+
+    /**
+     * @param id the id of the <TT>SQLSession</TT>.
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setCatalogName(String catalogName) {
+        this.catalogName = catalogName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * @param filename the name <TT>import</TT> gave the uploaded file.
+     */
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * @param separator "comma", "tab", "verticalbar", "semicolon" or the
+     *                  separator itself.
+     */
+    public void setSeparator(String separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * @param fileencoding "ascii", "utf8", "unicode" or the name of a
+     *                     charset.
+     */
+    public void setFileencoding(String fileencoding) {
+        this.fileencoding = fileencoding;
+    }
+
+    /**
+     * @param columns the columns the fields of each record go to, separated
+     *                by commas.
+     */
+    public void setColumns(String columns) {
+        this.columns = columns;
+    }
+
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        SQLSession sqlsession = (SQLSession) IDManager.get().get(id);
+        if (sqlsession == null) {
+            throw new IllegalArgumentException("No such connection : " + id);
+        }
+        SQLConnection conn = sqlsession.getConn();
+        TableNode tn = DatabaseInfo.findTableNode(conn, catalogName, tableName);
+        if (tn == null) {
+            throw new IllegalArgumentException("No such table : " + tableName);
+        }
+        // only the files of the upload directory can be imported
+        if (filename == null || filename.length() == 0 || !filename.equals(new File(filename).getName())) {
+            throw new IllegalArgumentException("Invalid file name : " + filename);
+        }
+        File directory = Import.getUploadDirectory();
+        File file = new File(directory, filename);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("No such file : " + filename);
+        }
+        String prefix = filename.indexOf('.') > 0 ? filename.substring(0, filename.indexOf('.')) : filename;
+        File rejectedFile = new File(directory, prefix + ".rejected.csv");
+
+        List<String> columnList = new ArrayList<String>();
+        if (columns != null) {
+            for (String column : columns.split(",")) {
+                if (column.trim().length() > 0) {
+                    columnList.add(column.trim());
+                }
+            }
+        }
+        CSVImport job = new CSVImport(conn, tn, file, rejectedFile, getCharset(), getSeparator(), header, columnList);
+        job.setBatchSize(batchSize);
+        job.setCommitInterval(commitInterval);
+        try {
+            QueryJobs.submit(job);
+        } catch (RejectedExecutionException e) {
+            IDManager.get().release(job.getId());
+            throw e;
+        }
+
+        JSONObject obj = new JSONObject();
+        obj.put("job", job.getId());
+        return obj;
+    }
+
+    private char getSeparator() {
+        if (separator == null || separator.length() == 0 || "comma".equals(separator)) {
+            return ',';
+        } else if ("tab".equals(separator)) {
+            return '\t';
+        } else if ("verticalbar".equals(separator)) {
+            return '|';
+        } else if ("semicolon".equals(separator)) {
+            return ';';
+        }
+        return separator.charAt(0);
+    }
+
+    private Charset getCharset() {
+        if (fileencoding == null || fileencoding.length() == 0 || "ascii".equals(fileencoding)) {
+            // a superset of ASCII which accepts any byte
+            return Charset.forName("ISO-8859-1");
+        } else if ("utf8".equals(fileencoding)) {
+            return Charset.forName("UTF-8");
+        } else if ("unicode".equals(fileencoding)) {
+            return Charset.forName("UTF-16");
+        }
+        return Charset.forName(fileencoding);
+    }
+
+}
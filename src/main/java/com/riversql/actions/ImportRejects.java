@@ -0,0 +1,65 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.IPageAction;
+import com.riversql.actions.imports.CSVImport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * Sends back the records a finished CSV import rejected, in the format they
+ * were read in, and deletes them.
+ */
+public class ImportRejects implements IPageAction {
+    String job;
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+    public void execute(HttpServletRequest request,
+                        HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        CSVImport ci = (CSVImport) IDManager.get().get(job);
+        if (ci == null || !ci.isFinished()) {
+            throw new IllegalArgumentException("No such finished import : " + job);
+        }
+        File file = ci.getRejectedFile();
+        if (ci.getRejected() == 0) {
+            throw new IllegalArgumentException("No record was rejected");
+        }
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("The rejected records were already downloaded");
+        }
+        response.setHeader("Pragma", "public");
+        response.setHeader("Expires", "0"); // set expiration time
+        response.setHeader("Cache-Control", "must-revalidate, post-check=0, pre-check=0");
+        response.setContentType("application/x-msdownload");
+        response.setHeader("Content-Disposition", "attachment;filename=rejected.csv");
+        if (file.length() <= Integer.MAX_VALUE) {
+            response.setContentLength((int) file.length());
+        }
+        ServletOutputStream os = response.getOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                os.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        os.flush();
+        // otherwise deleted once expired
+        file.delete();
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.actions.imports.CSVImport;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+public class ImportStatus implements JSONAction {
+    String job;
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        CSVImport ci = (CSVImport) IDManager.get().get(job);
+        if (ci == null) {
+            throw new IllegalArgumentException("No such import : " + job);
+        }
+        JSONObject obj = new JSONObject();
+        obj.put("job", ci.getId());
+        obj.put("status", ci.getStatus());
+        obj.put("finished", ci.isFinished());
+        obj.put("progress", ci.getProgress());
+        obj.put("read", ci.getRowsRead());
+        obj.put("inserted", ci.getInserted());
+        obj.put("committed", ci.getCommitted());
+        obj.put("rejected", ci.getRejected());
+        obj.put("elapsed", ci.getElapsedTime());
+        obj.put("messages", new JSONArray(ci.getMessages()));
+        if (ci.getError() != null) {
+            obj.put("error", ci.getError());
+        }
+        return obj;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.dbtree.DBNode;
+import com.riversql.dbtree.SQLSession;
+import com.riversql.sql.MetaDataCache;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Forgets what the metadata cache of a source knows about the objects under
+ * a tree node, or about the whole source when given a session id, then
+ * returns the statistics of the cache. With <TT>statsonly</TT>, only returns
+ * the statistics.
+ */
+public class InvalidateMetadata implements JSONAction {
+    String id;
+    String statsonly;
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setStatsonly(String statsonly) {
+        this.statsonly = statsonly;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        Object obj = IDManager.get().get(id);
+        DBNode node = null;
+        if (obj instanceof SQLSession) {
+            node = ((SQLSession) obj).getDatabaseNode();
+        } else if (obj instanceof DBNode) {
+            node = (DBNode) obj;
+        }
+        if (node == null) {
+            throw new Exception("Unknown node " + id);
+        }
+        if (statsonly == null) {
+            node.invalidateMetaData();
+        }
+        MetaDataCache cache = node.getConn().getMetaDataCache();
+        JSONObject ret = new JSONObject();
+        for (Map.Entry<String, Long> e : cache.getStatistics().entrySet()) {
+            ret.put(e.getKey(), e.getValue());
+        }
+        return ret;
+    }
+
+}
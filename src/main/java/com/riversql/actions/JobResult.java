@@ -0,0 +1,56 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONStreamingAction;
+import com.riversql.utils.JSONStreamWriter;
+import com.riversql.utils.QueryJob;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the result sets of a job in the same form as <TT>ExecuteSQL</TT>,
+ * plus its status. Only the statements executed so far are included when the
+ * job is still running, and the ids of the tree nodes its DDL statements
+ * changed.
+ */
+public class JobResult implements JSONStreamingAction {
+    String job;
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+    public void execute(HttpServletRequest request,
+                        HttpServletResponse response, EntityManager em, EntityTransaction et,
+                        JSONStreamWriter out)
+            throws Exception {
+        Object obj = IDManager.get().get(job);
+        if (!(obj instanceof QueryJob)) {
+            throw new IllegalArgumentException("No such job : " + job);
+        }
+        QueryJob qj = (QueryJob) obj;
+        String status = qj.getStatus();
+        qj.invalidate();
+        out.object();
+        out.key("resultSets").array();
+        for (String result : qj.getResults()) {
+            out.rawValue(result);
+        }
+        out.endArray();
+        out.key("info").array().value(qj.getElapsedTime()).endArray();
+        out.key("changedNodes").array();
+        for (String node : qj.getChangedNodes()) {
+            out.value(node);
+        }
+        out.endArray();
+        out.key("status").value(status);
+        if (qj.getError() != null) {
+            out.key("error").value(qj.getError());
+        }
+        out.endObject();
+    }
+
+}
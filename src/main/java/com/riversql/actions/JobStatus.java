@@ -0,0 +1,47 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.utils.QueryJob;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+public class JobStatus implements JSONAction {
+    String job;
+
+    public void setJob(String job) {
+        this.job = job;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        Object o = IDManager.get().get(job);
+        if (!(o instanceof QueryJob)) {
+            throw new IllegalArgumentException("No such job : " + job);
+        }
+        QueryJob qj = (QueryJob) o;
+        // the tree reloads what the job changed while it is polled
+        qj.invalidate();
+        JSONObject obj = new JSONObject();
+        obj.put("job", qj.getId());
+        obj.put("status", qj.getStatus());
+        obj.put("finished", qj.isFinished());
+        obj.put("statements", qj.getStatementCount());
+        obj.put("completed", qj.getTimings().size());
+        obj.put("queued", qj.getQueuedTime());
+        obj.put("elapsed", qj.getElapsedTime());
+        obj.put("timings", new JSONArray(qj.getTimings()));
+        if (qj.getError() != null) {
+            obj.put("error", qj.getError());
+        }
+        return obj;
+    }
+
+}
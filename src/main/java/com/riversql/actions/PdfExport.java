@@ -22,6 +22,14 @@ public class PdfExport extends ExportPage {
         //JSONArray info2=new JSONArray(info_);
         PDFTableExporter tableExporter = new PDFTableExporter(meta.length(), meta);
 
+        response.setHeader("Pragma", "public");
+        response.setHeader("Expires", "0"); // set expiration time
+        response.setHeader("Cache-Control", "must-revalidate, post-check=0, pre-check=0");
+        response.setContentType(tableExporter.getMimeType());
+        response.setHeader("Content-Disposition", "attachment;filename=export.pdf");
+        ServletOutputStream os = response.getOutputStream();
+        tableExporter.open(os);
+
         for (int i = 0; i < data.length(); i++) {
             JSONArray row = data.getJSONArray(i);
             tableExporter.newLine();
@@ -30,16 +38,7 @@ public class PdfExport extends ExportPage {
             }
         }
         tableExporter.finish();
-
-        response.setHeader("Pragma", "public");
-        response.setHeader("Expires", "0"); // set expiration time
-        response.setHeader("Cache-Control", "must-revalidate, post-check=0, pre-check=0");
-        response.setContentType(tableExporter.getMimeType());
-        response.setHeader("Content-Disposition", "attachment;filename=export.pdf");
-        response.setContentLength(tableExporter.getContentSize());
-        ServletOutputStream os = response.getOutputStream();
-        tableExporter.copyTo(os);
-        os.flush();
+        tableExporter.flush();
     }
 
 }
@@ -1,44 +1,32 @@
 package com.riversql.actions;
 
 import com.riversql.IDManager;
-import com.riversql.JSONAction;
+import com.riversql.JSONStreamingAction;
+import com.riversql.utils.JSONStreamWriter;
 import com.riversql.utils.SQLExecutor;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-public class RedoQuery implements JSONAction {
+public class RedoQuery implements JSONStreamingAction {
     String queryID = null;
 
     public void setQueryID(String queryID) {
         this.queryID = queryID;
     }
 
-    public JSONObject execute(HttpServletRequest request,
-                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+    public void execute(HttpServletRequest request,
+                        HttpServletResponse response, EntityManager em, EntityTransaction et,
+                        JSONStreamWriter out)
             throws Exception {
-        SQLExecutor executor = (SQLExecutor) IDManager.get().get(queryID);
-        JSONObject resultSet = new JSONObject();
-        JSONArray meta = new JSONArray();
-        JSONArray data = new JSONArray();
-        JSONArray info2 = new JSONArray();
-
-
-        try {
-            executor.redoQuery(data, meta, info2);
-            info2.put(true);
-        } catch (Exception e) {
-            info2.put(false);
-            info2.put(e.getMessage());
+        Object obj = IDManager.get().get(queryID);
+        if (!(obj instanceof SQLExecutor)) {
+            throw new IllegalArgumentException("The query has expired, run it again");
         }
-        resultSet.put("meta", meta);
-        resultSet.put("data", data);
-        resultSet.put("info", info2);
-        return resultSet;
+        SQLExecutor executor = (SQLExecutor) obj;
+        executor.redoQuery(out);
     }
 
 }
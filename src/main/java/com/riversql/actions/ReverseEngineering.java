@@ -0,0 +1,197 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.dbtree.TableNode;
+import com.riversql.dbtree.TablesNode;
+import com.riversql.sql.ForeignKeyGraph;
+import com.riversql.sql.ForeignKeyInfo;
+import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataRows;
+import com.riversql.sql.SQLConnection;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Returns the tables of a tables node, or the tables whose ids are in
+ * <TT>tables</TT>, with their columns and the foreign keys between them,
+ * for the diagram view.
+ *
+ * <P>The columns and keys of each schema are read with one call each
+ * through the metadata cache, before the tables are walked, so that a
+ * schema of thousands of tables costs a few calls. The nodes of the tables
+ * of a tables node are created one by one rather than by loading the node.
+ *
+ * <P>The tables also come in insertion order, in <TT>order</TT>, and the
+ * groups of tables referencing each other in <TT>cycles</TT>, with the keys
+ * to disable before inserting into them; those keys are the connections
+ * flagged <TT>cycle</TT>.
+ */
+public class ReverseEngineering implements JSONAction {
+
+    private static final int COLUMN_WIDTH = 230;
+    private static final int ROW_HEIGHT = 60;
+    private static final int MARGIN = 20;
+
+    String id;
+    String tables;
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @param tables ids of table nodes, separated by commas.
+     */
+    public void setTables(String tables) {
+        this.tables = tables;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        List<TableNode> nodes = getTableNodes();
+        Set<TablesNode> parents = new LinkedHashSet<TablesNode>();
+        for (TableNode node : nodes) {
+            parents.add(node.getParent());
+        }
+        for (TablesNode parent : parents) {
+            parent.prefetchColumns();
+            parent.prefetchKeys();
+        }
+
+        // the qualified names by catalog, schema and name
+        Map<String, String> names = new HashMap<String, String>();
+        List<ITableInfo> infos = new ArrayList<ITableInfo>(nodes.size());
+        for (TableNode node : nodes) {
+            ITableInfo info = node.getITableInfo();
+            names.put(key(info.getCatalogName(), info.getSchemaName(), info.getSimpleName()),
+                    node.getQualifiedName());
+            infos.add(info);
+        }
+        JSONArray order = new JSONArray();
+        JSONArray cycles = new JSONArray();
+        Set<String> keysToBreak = new HashSet<String>();
+        if (!nodes.isEmpty()) {
+            // the keys prefetched above
+            SQLConnection conn = nodes.get(0).getConn();
+            ForeignKeyGraph graph = ForeignKeyGraph.load(conn.getMetaDataCache(), conn.getSQLMetaData(), infos,
+                    null);
+            for (ITableInfo info : graph.getInsertionOrder()) {
+                order.put(names.get(key(info.getCatalogName(), info.getSchemaName(), info.getSimpleName())));
+            }
+            for (ForeignKeyGraph.Cycle cycle : graph.getCycles()) {
+                JSONArray cycleTables = new JSONArray();
+                for (ITableInfo info : cycle.getTables()) {
+                    cycleTables.put(names.get(key(info.getCatalogName(), info.getSchemaName(),
+                            info.getSimpleName())));
+                }
+                JSONArray cycleKeys = new JSONArray();
+                for (ForeignKeyInfo fk : cycle.getKeysToBreak()) {
+                    String source = names.get(key(fk.getForeignKeyCatalogName(), fk.getForeignKeySchemaName(),
+                            fk.getForeignKeyTableName()));
+                    keysToBreak.add(fk.getForeignKeyName() + "\n" + source);
+                    JSONObject broken = new JSONObject();
+                    broken.put("source", source);
+                    broken.put("target", names.get(key(fk.getPrimaryKeyCatalogName(), fk.getPrimaryKeySchemaName(),
+                            fk.getPrimaryKeyTableName())));
+                    broken.put("name", fk.getForeignKeyName());
+                    cycleKeys.put(broken);
+                }
+                JSONObject obj = new JSONObject();
+                obj.put("tables", cycleTables);
+                obj.put("keys", cycleKeys);
+                cycles.put(obj);
+            }
+        }
+        int perRow = Math.max(1, (int) Math.ceil(Math.sqrt(nodes.size())));
+        JSONArray arr = new JSONArray();
+        JSONArray connections = new JSONArray();
+        for (int i = 0; i < nodes.size(); i++) {
+            TableNode node = nodes.get(i);
+            JSONObject table = new JSONObject();
+            table.put("name", node.getQualifiedName());
+            table.put("id", node.getId());
+            table.put("x", MARGIN + (i % perRow) * COLUMN_WIDTH);
+            table.put("y", MARGIN + (i / perRow) * ROW_HEIGHT);
+            List<String> pkCols = node.getPrimaryKeyColumns();
+            JSONArray columns = new JSONArray();
+            for (String[] col : node.getColumnNamesAndTypes()) {
+                JSONObject obj = new JSONObject();
+                obj.put("cname", col[0]);
+                obj.put("type", col[1]);
+                obj.put("key", pkCols.indexOf(col[0]) > -1 ? "1" : "0");
+                columns.put(obj);
+            }
+            table.put("columns", columns);
+            arr.put(table);
+
+            // one row per column of a key
+            Set<String> seen = new HashSet<String>();
+            MetaDataRows.Cursor rs = node.getFK().cursor();
+            while (rs.next()) {
+                String target = names.get(key(rs.getString("PKTABLE_CAT"), rs.getString("PKTABLE_SCHEM"),
+                        rs.getString("PKTABLE_NAME")));
+                String fkName = rs.getString("FK_NAME");
+                if (target == null || !seen.add(fkName + "\n" + target)) {
+                    continue;
+                }
+                JSONObject conn = new JSONObject();
+                conn.put("source", node.getQualifiedName());
+                conn.put("target", target);
+                conn.put("name", fkName);
+                conn.put("cycle", keysToBreak.contains(fkName + "\n" + node.getQualifiedName()));
+                connections.put(conn);
+            }
+        }
+        JSONObject ret = new JSONObject();
+        ret.put("tables", arr);
+        ret.put("connections", connections);
+        ret.put("order", order);
+        ret.put("cycles", cycles);
+        return ret;
+    }
+
+    private List<TableNode> getTableNodes() throws Exception {
+        List<TableNode> nodes = new ArrayList<TableNode>();
+        if (tables != null && tables.length() > 0) {
+            for (String tableId : tables.split(",")) {
+                Object obj = IDManager.get().get(tableId.trim());
+                if (obj instanceof TableNode) {
+                    nodes.add((TableNode) obj);
+                }
+            }
+            return nodes;
+        }
+        Object obj = IDManager.get().get(id);
+        if (obj instanceof TableNode) {
+            nodes.add((TableNode) obj);
+        } else if (obj instanceof TablesNode) {
+            TablesNode tablesNode = (TablesNode) obj;
+            // the children are only created for the tables of the diagram
+            for (ITableInfo info : tablesNode.getTableInfos()) {
+                nodes.add(tablesNode.getTableNode(info));
+            }
+        } else {
+            throw new IllegalArgumentException("Not a table or tables node : " + id);
+        }
+        return nodes;
+    }
+
+    private static String key(String catalog, String schema, String table) {
+        return (catalog == null ? "" : catalog) + '\u0000' + (schema == null ? "" : schema) + '\u0000' + table;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.riversql.actions;
+
+import com.riversql.IDManager;
+import com.riversql.JSONAction;
+import com.riversql.WebSQLSession;
+import com.riversql.dbtree.SQLSession;
+import com.riversql.sql.QueryTokenizer;
+import com.riversql.sql.SQLConnection;
+import com.riversql.utils.QueryJob;
+import com.riversql.utils.QueryJobs;
+import org.json.JSONObject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous counterpart of <TT>ExecuteSQL</TT> : queues the script and
+ * returns the id of the job at once. Use <TT>jobStatus</TT> and
+ * <TT>jobResult</TT> to follow it. The job runs on a connection of its own,
+ * see <TT>QueryJob</TT>.
+ */
+public class SubmitQuery implements JSONAction {
+    String sql, sessionid, limitrows;
+
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    public void setSessionid(String sessionid) {
+        this.sessionid = sessionid;
+    }
+
+    /**
+     * "1" or "0" to force or prevent the rewriting of the queries to only
+     * fetch the rows shown, otherwise the default of the session applies.
+     */
+    public void setLimitrows(String limitrows) {
+        this.limitrows = limitrows;
+    }
+
+    public JSONObject execute(HttpServletRequest request,
+                              HttpServletResponse response, EntityManager em, EntityTransaction et)
+            throws Exception {
+        SQLConnection conn = null;
+        boolean limitRows = "1".equals(limitrows);
+        if (sessionid != null) {
+            SQLSession sqlsession = (SQLSession) IDManager.get().get(sessionid);
+            if (sqlsession != null && limitrows == null)
+                limitRows = sqlsession.isLimitRows();
+            if (sqlsession != null)
+                conn = sqlsession.getConn();
+        }
+
+        QueryTokenizer qt = new QueryTokenizer(";", "--", false);
+        qt.setScriptToTokenize(sql);
+        List<String> queries = new ArrayList<String>();
+        while (qt.hasQuery()) {
+            queries.add(qt.nextQuery());
+        }
+        int limit = 10;
+        int maxLimit = 5000;
+        WebSQLSession sessions = (WebSQLSession) request.getSession(true).getAttribute("sessions");
+
+        QueryJob job = new QueryJob(sessions, conn, sessionid, queries, limit, maxLimit);
+        job.setLimitRows(limitRows);
+        try {
+            // the jobs of a session run in the order submitted
+            if (conn != null) {
+                QueryJobs.submit(conn, job);
+            } else {
+                QueryJobs.submit(job);
+            }
+        } catch (RejectedExecutionException e) {
+            IDManager.get().release(job.getId());
+            throw new IllegalStateException("Too many queries are queued, try again later");
+        }
+
+        JSONObject obj = new JSONObject();
+        obj.put("job", job.getId());
+        obj.put("statements", queries.size());
+        return obj;
+    }
+
+}
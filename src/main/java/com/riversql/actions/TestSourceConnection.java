@@ -5,14 +5,14 @@ import com.riversql.dao.DriversDAO;
 import com.riversql.dao.SourcesDAO;
 import com.riversql.entities.Driver;
 import com.riversql.entities.Source;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ConnectionPools;
 import org.json.JSONObject;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.sql.Connection;
-import java.sql.DriverManager;
 
 public class TestSourceConnection implements JSONAction {
 
@@ -37,18 +37,9 @@ public class TestSourceConnection implements JSONAction {
         String jdbcUrl = s.getJdbcUrl();
         String username = s.getUserName();
         //Driver drv=null;
-        Connection conn = null;
-        try {
-            Class.forName(driver.getDriverClassName());
-            conn = DriverManager.getConnection(jdbcUrl, username, password);
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (Exception e) {
-                }
-            }
-        }
+        // the connection is kept in the pool for the connect which usually follows
+        ConnectionPool pool = ConnectionPools.getPool(id, driver.getDriverClassName(), jdbcUrl, username, password);
+        pool.giveBack(pool.borrow());
 
         return new JSONObject();
     }
@@ -0,0 +1,26 @@
+package com.riversql.actions.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An exporter which can write the rows to the output as they are added,
+ * instead of keeping the whole export until <TT>copyTo()</TT>. Once
+ * <TT>open()</TT> has been called, <TT>getContentSize()</TT> is unknown and
+ * <TT>copyTo()</TT> writes nothing.
+ */
+public interface IStreamingTableExporter extends ITableExporter {
+
+    /**
+     * Writes everything added from now on to <TT>os</TT>. Must be called
+     * before <TT>configure()</TT>.
+     */
+    void open(OutputStream os) throws IOException;
+
+    /**
+     * Flushes what was written so far, and throws the first error the
+     * output raised since, which <TT>newCell()</TT> and <TT>newLine()</TT>
+     * cannot, so that an export whose client went away can be stopped.
+     */
+    void flush() throws IOException;
+}
@@ -2,15 +2,19 @@ package com.riversql.actions.export.impl;
 
 import com.itextpdf.text.Element;
 import com.riversql.actions.export.IColumnFormatter;
-import com.riversql.actions.export.ITableExporter;
+import com.riversql.actions.export.IStreamingTableExporter;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSetMetaData;
 import java.sql.Types;
 import java.text.DateFormat;
@@ -18,7 +22,17 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Locale;
 
-public class CSVTableExporter implements ITableExporter {
+/**
+ * Exports rows as comma separated values, kept until <TT>copyTo()</TT>, or
+ * written to the output as they are added once <TT>open()</TT> is called;
+ * either way in UTF-8.
+ */
+public class CSVTableExporter implements IStreamingTableExporter {
+
+    /**
+     * Size of the buffer between the rows and the output when streaming.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private final String qualifiedName;
     ByteArrayOutputStream baos = new ByteArrayOutputStream(1024 * 1024);
@@ -28,6 +42,15 @@ public class CSVTableExporter implements ITableExporter {
     private int columnCount = 0;
     private StringBuffer sb = null;
     private char separator = ',';
+    /**
+     * Where the rows are written when streaming, <TT>null</TT> otherwise.
+     */
+    private Writer writer;
+    /**
+     * The first error writing to <TT>writer</TT>, after which nothing more
+     * is written.
+     */
+    private IOException error;
 
     public CSVTableExporter(String qualifiedName) {
         this.qualifiedName = qualifiedName;
@@ -70,6 +93,11 @@ public class CSVTableExporter implements ITableExporter {
         }
     }
 
+    public void open(OutputStream os) {
+        // the same encoding as the bytes of copyTo()
+        writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
     public void configure(ResultSetMetaData rsmd) {
         try {
             columnCount = rsmd.getColumnCount();
@@ -185,11 +213,11 @@ public class CSVTableExporter implements ITableExporter {
                         break;
                 }
 
-                sb.append(rsmd.getColumnLabel(i + 1));
+                append(rsmd.getColumnLabel(i + 1));
                 if (i == columnCount - 1) {
-                    sb.append("\n");
+                    append("\n");
                 } else {
-                    sb.append(separator);
+                    append(separator);
                 }
             }
 
@@ -202,17 +230,17 @@ public class CSVTableExporter implements ITableExporter {
         column++;
         if (obj != null) {
             IColumnFormatter iformatter = formatters[column - 1];
-            sb.append(obj.toString());
+            append(obj.toString());
         } else
-            sb.append("null");
+            append("null");
         if (column != columnCount) {
-            sb.append(separator);
+            append(separator);
         }
     }
 
     public void newLine() {
         if (row != 1) {
-            sb.append("\n");
+            append("\n");
         }
         column = 0;
         row++;
@@ -236,12 +264,58 @@ public class CSVTableExporter implements ITableExporter {
     }
 
     public void finish() {
+        if (writer != null) {
+            try {
+                if (error == null)
+                    writer.flush();
+            } catch (IOException ex) {
+                error = ex;
+            }
+            return;
+        }
         try {
-            baos.write(sb.toString().getBytes());
+            baos.write(sb.toString().getBytes(StandardCharsets.UTF_8));
         } catch (IOException ex) {
             //Logger.getLogger(CSVTableExporter.class.getName()).log(Level.SEVERE, null, ex);
         }
         sb = null;
     }
 
+    public void flush() throws IOException {
+        if (error == null && writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void append(String s) {
+        if (writer == null) {
+            sb.append(s);
+        } else if (error == null) {
+            try {
+                writer.write(s);
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+    }
+
+    private void append(char c) {
+        if (writer == null) {
+            sb.append(c);
+        } else if (error == null) {
+            try {
+                writer.write(c);
+            } catch (IOException ex) {
+                error = ex;
+            }
+        }
+    }
+
 }
@@ -4,7 +4,7 @@ import com.itextpdf.text.*;
 import com.itextpdf.text.Font.FontFamily;
 import com.itextpdf.text.pdf.*;
 import com.riversql.actions.export.IColumnFormatter;
-import com.riversql.actions.export.ITableExporter;
+import com.riversql.actions.export.IStreamingTableExporter;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -22,12 +22,40 @@ import java.text.DecimalFormatSymbols;
 import java.util.Date;
 import java.util.Locale;
 
-public class PDFTableExporter implements ITableExporter {
+/**
+ * Exports rows as a PDF table, which is added to the document every
+ * <TT>ROWS_PER_ADD</TT> rows as an incomplete table, so that only the rows
+ * of the page being laid out are kept; the pages are kept until
+ * <TT>copyTo()</TT>, or written to the output as they are done once
+ * <TT>open()</TT> is called.
+ *
+ * <P>Beyond <TT>getMaxRows()</TT> rows, configured by the
+ * <TT>pdfExportMaxRows</TT> parameter, the rows are left out and the
+ * document ends with a note telling so.
+ */
+public class PDFTableExporter implements IStreamingTableExporter {
+
+    public static final int DEFAULT_MAX_ROWS = 100000;
+
+    /**
+     * How many rows of a line each fit on a page, measured with the fonts
+     * and margins below.
+     */
+    static final int ROWS_PER_PAGE = 22;
+
+    private static final int ROWS_PER_ADD = 100;
+
+    private static volatile int maxRows = DEFAULT_MAX_ROWS;
+
     private final BaseColor grayBorderColor = new BaseColor(150, 150, 150);
     private final BaseColor grayBackgroundColor = new BaseColor(180, 180, 180);
     private final String tableName;
     IColumnFormatter formatters[];
     ByteArrayOutputStream baos = new ByteArrayOutputStream(1024 * 16);
+    /**
+     * What the writer writes to: <TT>baos</TT>, until <TT>open()</TT>.
+     */
+    private final Output output = new Output(baos);
     Document doc = new Document(PageSize.A4.rotate(), 25, 25, 80, 25);
     PdfWriter writer = null;
     PdfPTable table = null;
@@ -37,6 +65,10 @@ public class PDFTableExporter implements ITableExporter {
     private int columnCount = -1;
     private Font headerFont;
     private int rowIndex;
+    private int rowCount;
+    private boolean truncated;
+    private IOException error;
+
     public PDFTableExporter(int columnCount, JSONArray meta) throws DocumentException {
         this("");
         table = new PdfPTable(columnCount);
@@ -67,6 +99,7 @@ public class PDFTableExporter implements ITableExporter {
             }
         }
         table.setHeaderRows(1);
+        table.setComplete(false);
     }
 
     public PDFTableExporter(String tableName) throws DocumentException {
@@ -76,7 +109,7 @@ public class PDFTableExporter implements ITableExporter {
         headerFont.setColor(BaseColor.WHITE);
         defaultFont = new Font(FontFamily.TIMES_ROMAN, Font.DEFAULTSIZE - 1);
         emptyCell = new PdfPCell(emptyPhrase);
-        writer = PdfWriter.getInstance(doc, baos);
+        writer = PdfWriter.getInstance(doc, output);
         writer.setPageEvent(new PageHeaderFooterHandler());
         doc.addAuthor("RiverSQL");
         doc.addCreationDate();
@@ -85,6 +118,36 @@ public class PDFTableExporter implements ITableExporter {
 
     }
 
+    /**
+     * Sets the number of rows exported at most.
+     */
+    public static void configure(int maxRows) {
+        PDFTableExporter.maxRows = maxRows;
+    }
+
+    public static int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Roughly how many pages the export of <TT>rows</TT> rows takes, when
+     * their values each fit on a line.
+     */
+    public static long estimatePages(long rows) {
+        return Math.max(1, (Math.min(rows, maxRows) + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE);
+    }
+
+    /**
+     * Writes what is already done, the beginning of the document, to
+     * <TT>os</TT>, then every page as soon as it is laid out.
+     */
+    public void open(OutputStream os) throws IOException {
+        writer.flush();
+        baos.writeTo(os);
+        baos.reset();
+        output.target = os;
+    }
+
     public void configure(ResultSetMetaData rsmd) {
         try {
             columnCount = rsmd.getColumnCount();
@@ -211,6 +274,7 @@ public class PDFTableExporter implements ITableExporter {
                 table.addCell(createHeaderCell(rsmd.getColumnLabel(i + 1)));
             }
             table.setHeaderRows(1);
+            table.setComplete(false);
         } catch (SQLException e) {
         }
 
@@ -238,6 +302,9 @@ public class PDFTableExporter implements ITableExporter {
     }
 
     public void newCell(Object obj) {
+        if (truncated) {
+            return;
+        }
         if (obj != null) {
             IColumnFormatter iformatter = formatters[rowIndex];
             if (iformatter == null) {
@@ -253,17 +320,59 @@ public class PDFTableExporter implements ITableExporter {
 
     public void newLine() {
         rowIndex = 0;
-
+        if (rowCount == maxRows) {
+            truncated = true;
+            return;
+        }
+        if (rowCount > 0 && rowCount % ROWS_PER_ADD == 0) {
+            // lays out the rows added so far, which the table then forgets
+            add(table);
+        }
+        rowCount++;
     }
 
     public void copyTo(OutputStream os) throws IOException {
-        baos.writeTo(os);
-
+        if (output.target == baos) {
+            baos.writeTo(os);
+        }
     }
 
     public int getContentSize() {
+        return output.target == baos ? baos.size() : -1;
+    }
+
+    public void flush() throws IOException {
+        if (error == null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return the number of pages laid out so far.
+     */
+    public int getPageCount() {
+        return writer.getPageNumber();
+    }
 
-        return baos.size();
+    private void add(Element element) {
+        if (error != null) {
+            return;
+        }
+        try {
+            doc.add(element);
+        } catch (DocumentException e) {
+            error = new IOException(e);
+        } catch (ExceptionConverter e) {
+            // how iText reports the errors of the output
+            error = e.getException() instanceof IOException ? (IOException) e.getException() : new IOException(e);
+        }
     }
 
     public String getMimeType() {
@@ -272,18 +381,49 @@ public class PDFTableExporter implements ITableExporter {
 
     public void finish() {
 
-        try {
-            if (table.getRows().size() < 2) {
-                doc.add(new Paragraph("Table is empty", defaultFont));
-            } else {
-                doc.add(table);
-            }
-        } catch (DocumentException e) {
+        table.setComplete(true);
+        if (rowCount == 0) {
+            add(new Paragraph("Table is empty", defaultFont));
+        } else {
+            add(table);
+        }
+        if (truncated) {
+            add(new Paragraph("Only the first " + maxRows + " rows are exported.", defaultFont));
+        }
+        if (error != null) {
+            // the output is gone, the document cannot be ended
+            return;
         }
         doc.close();
         writer.close();
     }
 
+    /**
+     * Lets the output be switched once the document is begun.
+     */
+    private static final class Output extends OutputStream {
+        OutputStream target;
+
+        Output(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+
     class PageHeaderFooterHandler extends PdfPageEventHelper {
         PdfTemplate tpl;
         PdfPTable headerTable;
@@ -0,0 +1,378 @@
+package com.riversql.actions.export.impl;
+
+import com.riversql.actions.export.IStreamingTableExporter;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports rows as an Office Open XML workbook (.xlsx), whose sheets hold up
+ * to 1,048,576 rows each; a new sheet, with the header again, is started
+ * when one is full.
+ *
+ * <P>Each row is written to the compressed sheet as it is added, strings
+ * being inlined rather than shared, so that nothing but the current row is
+ * kept in memory: this is what POI's SXSSF writer does, without the window
+ * of rows and the temporary file it needs to let rows be changed once
+ * added, which an export never does. The parts describing the workbook are
+ * written last, once the number of sheets is known.
+ */
+public class XLSXTableExporter implements IStreamingTableExporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XLSXTableExporter.class);
+
+    /**
+     * The rows of a sheet of Excel 2007 and later, the header included.
+     */
+    static final int MAX_ROWS = 1048576;
+    private static final int MAX_TEXT = 32767;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // indexes of the cellXfs of styles.xml
+    private static final int DATE_STYLE = 1;
+    private static final int DATE_TIME_STYLE = 2;
+    private static final int TIME_STYLE = 3;
+    private static final int HEADER_STYLE = 4;
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    /**
+     * The built-in formats 14, 22 and 21 are the <TT>m/d/yy</TT>,
+     * <TT>m/d/yy h:mm</TT> and <TT>h:mm:ss</TT> of <TT>ExcelTableExporter</TT>.
+     */
+    private static final String STYLES = XML_HEADER
+            + "<styleSheet xmlns=\"" + MAIN_NS + "\">"
+            + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+            + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"5\">"
+            + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"14\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+            + "<xf numFmtId=\"22\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+            + "<xf numFmtId=\"21\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+            + "</cellXfs>"
+            + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+            + "</styleSheet>";
+
+    private final String qualifiedName;
+    private ByteArrayOutputStream baos;
+    private ZipOutputStream zip;
+    private Writer writer;
+    private IOException error;
+    private final List<String> header = new ArrayList<String>();
+    private int maxRows = MAX_ROWS;
+    private int sheets = 0;
+    private int row = 0;
+    private boolean rowOpen;
+    private final Calendar calendar = Calendar.getInstance();
+
+    public XLSXTableExporter(String qualifiedName) {
+        this.qualifiedName = qualifiedName;
+    }
+
+    /**
+     * For the rows of a result grid, whose columns are described by
+     * <TT>{"l":label}</TT> objects.
+     */
+    public XLSXTableExporter(JSONArray meta) {
+        this("");
+        for (int i = 0; i < meta.length(); i++) {
+            try {
+                header.add(meta.getJSONObject(i).getString("l"));
+            } catch (JSONException e) {
+                header.add("");
+            }
+        }
+    }
+
+    /**
+     * Lowers the rows of a sheet, the header included, to test the new
+     * sheets without a million rows.
+     */
+    void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    public void open(OutputStream os) {
+        zip = new ZipOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+        writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public void configure(ResultSetMetaData rsmd) {
+        try {
+            for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+                header.add(rsmd.getColumnLabel(i));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("configure", e);
+        }
+    }
+
+    public void newLine() {
+        openIfNotStreaming();
+        if (error != null) {
+            return;
+        }
+        try {
+            if (sheets == 0 || row == maxRows) {
+                newSheet();
+            } else if (rowOpen) {
+                writer.write("</row>");
+            }
+            row++;
+            writer.write("<row r=\"");
+            writer.write(Integer.toString(row));
+            writer.write("\">");
+            rowOpen = true;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    public void newCell(Object obj) {
+        if (error != null) {
+            return;
+        }
+        try {
+            if (obj == null) {
+                // keeps the place of the cell, which has no reference
+                writer.write("<c/>");
+            } else if (obj instanceof Number && isFinite((Number) obj)) {
+                writer.write("<c><v>");
+                writer.write(obj instanceof BigDecimal ? ((BigDecimal) obj).toPlainString() : obj.toString());
+                writer.write("</v></c>");
+            } else if (obj instanceof Boolean) {
+                writer.write(((Boolean) obj).booleanValue() ? "<c t=\"b\"><v>1</v></c>" : "<c t=\"b\"><v>0</v></c>");
+            } else if (obj instanceof Date) {
+                int style = obj instanceof Timestamp ? DATE_TIME_STYLE
+                        : obj instanceof Time ? TIME_STYLE : DATE_STYLE;
+                writer.write("<c s=\"");
+                writer.write(Integer.toString(style));
+                writer.write("\"><v>");
+                writer.write(Double.toString(toSerial((Date) obj, style == TIME_STYLE)));
+                writer.write("</v></c>");
+            } else {
+                writeText(obj.toString(), 0);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    public void finish() {
+        openIfNotStreaming();
+        if (error != null) {
+            return;
+        }
+        try {
+            if (sheets == 0) {
+                // no row: the header alone
+                newSheet();
+            }
+            endSheet();
+            writeEntry("[Content_Types].xml", contentTypes());
+            writeEntry("_rels/.rels", XML_HEADER
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"" + REL_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                    + "</Relationships>");
+            writeEntry("xl/workbook.xml", workbook());
+            writeEntry("xl/_rels/workbook.xml.rels", workbookRelationships());
+            writeEntry("xl/styles.xml", STYLES);
+            writer.flush();
+            zip.finish();
+            zip.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    public void flush() throws IOException {
+        if (error == null && writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public void copyTo(OutputStream os) throws IOException {
+        if (baos != null) {
+            baos.writeTo(os);
+        }
+    }
+
+    public int getContentSize() {
+        return baos != null ? baos.size() : -1;
+    }
+
+    public String getMimeType() {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    /**
+     * When not streaming, the workbook is kept until <TT>copyTo()</TT>.
+     */
+    private void openIfNotStreaming() {
+        if (writer == null) {
+            baos = new ByteArrayOutputStream(1024 * 1024);
+            open(baos);
+        }
+    }
+
+    /**
+     * Ends the current sheet, if any, and starts the next one with the
+     * header.
+     */
+    private void newSheet() throws IOException {
+        endSheet();
+        sheets++;
+        writer.flush();
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheets + ".xml"));
+        writer.write(XML_HEADER);
+        writer.write("<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+        row = 1;
+        writer.write("<row r=\"1\">");
+        for (String label : header) {
+            writeText(label, HEADER_STYLE);
+        }
+        writer.write("</row>");
+        rowOpen = false;
+    }
+
+    private void endSheet() throws IOException {
+        if (sheets == 0) {
+            return;
+        }
+        if (rowOpen) {
+            writer.write("</row>");
+            rowOpen = false;
+        }
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private void writeText(String text, int style) throws IOException {
+        if (text.length() > MAX_TEXT) {
+            text = text.substring(0, MAX_TEXT);
+        }
+        writer.write(style == 0 ? "<c t=\"inlineStr\"><is><t" : "<c t=\"inlineStr\" s=\"" + style + "\"><is><t");
+        if (text.length() > 0 && (Character.isWhitespace(text.charAt(0))
+                || Character.isWhitespace(text.charAt(text.length() - 1)))) {
+            writer.write(" xml:space=\"preserve\"");
+        }
+        writer.write('>');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                default:
+                    // characters XML 1.0 does not allow are dropped
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write("</t></is></c>");
+    }
+
+    /**
+     * The number of days since 1899-12-30 in the local time zone, as Excel
+     * stores dates, or the fraction of a day of a time.
+     */
+    private double toSerial(Date date, boolean timeOnly) {
+        calendar.setTime(date);
+        long millis = date.getTime() + calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+        double days = millis / 86400000.0 + 25569;
+        return timeOnly ? days - Math.floor(days) : days;
+    }
+
+    private static boolean isFinite(Number n) {
+        if (n instanceof Double || n instanceof Float) {
+            double d = n.doubleValue();
+            return !Double.isNaN(d) && !Double.isInfinite(d);
+        }
+        return true;
+    }
+
+    private String contentTypes() {
+        StringBuilder sb = new StringBuilder(XML_HEADER);
+        sb.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        sb.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        sb.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        sb.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        sb.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return sb.append("</Types>").toString();
+    }
+
+    private String workbook() {
+        StringBuilder sb = new StringBuilder(XML_HEADER);
+        sb.append("<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + REL_NS + "\"><sheets>");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<sheet name=\"export").append(i == 1 ? "" : " " + i).append("\" sheetId=\"").append(i)
+                    .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return sb.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRelationships() {
+        StringBuilder sb = new StringBuilder(XML_HEADER);
+        sb.append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<Relationship Id=\"rId").append(i).append("\" Type=\"" + REL_NS + "/worksheet\" Target=\"worksheets/sheet")
+                    .append(i).append(".xml\"/>");
+        }
+        sb.append("<Relationship Id=\"rId").append(sheets + 1).append("\" Type=\"" + REL_NS + "/styles\" Target=\"styles.xml\"/>");
+        return sb.append("</Relationships>").toString();
+    }
+}
@@ -0,0 +1,669 @@
+package com.riversql.actions.imports;
+
+import com.riversql.IDManager;
+import com.riversql.dbtree.TableNode;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ConnectionPools;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriverPropertyCollection;
+import com.riversql.sql.TableColumnInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Loads a CSV file into a table, in the background like a
+ * <TT>QueryJob</TT>. The file is read a record at a time and the rows are
+ * inserted through a batched <TT>PreparedStatement</TT>, committed every
+ * <TT>commitInterval</TT> rows, so that the memory used does not depend on
+ * the size of the file.
+ *
+ * <P>The fields are mapped onto the columns given, or else onto the ones the
+ * header names, or else onto all the columns of the table in order, and
+ * converted to the types of the columns. The records which cannot be
+ * converted or inserted are written as they were read to the rejected file,
+ * after the header if any, so that they can be fixed and loaded again.
+ *
+ * <P>The rows are inserted through a connection of their own, borrowed from
+ * the pool of the session or else opened like the session's, so that the
+ * commits of the import never commit the work of the session.
+ *
+ * <P>The uploaded file is deleted once the import ends, and the rejected
+ * file once it is downloaded or the import is released or expires.
+ */
+public class CSVImport implements Runnable, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CSVImport.class);
+
+    public static final String PENDING = "pending";
+    public static final String RUNNING = "running";
+    public static final String DONE = "done";
+    public static final String CANCELLED = "cancelled";
+    public static final String FAILED = "failed";
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_COMMIT_INTERVAL = 10000;
+
+    /**
+     * The reasons of rejection kept for the client, the first ones only.
+     */
+    private static final int MAX_MESSAGES = 100;
+
+    private static volatile int defaultBatchSize = DEFAULT_BATCH_SIZE;
+    private static volatile int defaultCommitInterval = DEFAULT_COMMIT_INTERVAL;
+
+    private final String id;
+    private final IDManager idmanager;
+    private final SQLConnection conn;
+    private final TableNode table;
+    private final File file;
+    private final File rejectedFile;
+    private final Charset charset;
+    private final char separator;
+    private final boolean header;
+    private final List<String> columns;
+    private int batchSize = defaultBatchSize;
+    private int commitInterval = defaultCommitInterval;
+
+    private final List<String> messages = new CopyOnWriteArrayList<String>();
+    private volatile String status = PENDING;
+    private volatile String error;
+    private volatile boolean cancelled;
+    private volatile boolean closed;
+    private volatile PreparedStatement running;
+    private volatile long bytesRead;
+    private volatile long rowsRead;
+    private volatile long inserted;
+    private volatile long committed;
+    private volatile long rejected;
+    private volatile long started;
+    private volatile long ended;
+
+    private Connection connection;
+    private boolean savepoints;
+    private CSVReader reader;
+    private String[] headerRecord;
+    private Writer rejectedWriter;
+    private final List<String[]> batchRecords = new ArrayList<String[]>();
+    private final List<Object[]> batchValues = new ArrayList<Object[]>();
+    private final List<Long> batchLines = new ArrayList<Long>();
+    private int[] types;
+
+    /**
+     * @param columns the columns the fields of each record go to, in order;
+     *                when empty, the ones named by the header or all the
+     *                columns of the table.
+     */
+    public CSVImport(SQLConnection conn, TableNode table, File file, File rejectedFile, Charset charset,
+                     char separator, boolean header, List<String> columns) {
+        this.conn = conn;
+        this.table = table;
+        this.file = file;
+        this.rejectedFile = rejectedFile;
+        this.charset = charset;
+        this.separator = separator;
+        this.header = header;
+        this.columns = new ArrayList<String>(columns);
+        this.idmanager = IDManager.get();
+        this.id = idmanager.nextID();
+        // not dropped while it runs, only once its status is left unread
+        idmanager.putPinned(id, this);
+    }
+
+    public static void configure(int batchSize, int commitInterval) {
+        defaultBatchSize = batchSize;
+        defaultCommitInterval = commitInterval;
+    }
+
+    public static int getDefaultBatchSize() {
+        return defaultBatchSize;
+    }
+
+    public static int getDefaultCommitInterval() {
+        return defaultCommitInterval;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param commitInterval the rows inserted between two commits, rounded
+     *                       up to a whole batch; 0 to commit once at the end.
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = Math.max(0, commitInterval);
+    }
+
+    public void run() {
+        if (cancelled) {
+            delete(file);
+            idmanager.unpin(id);
+            return;
+        }
+        status = RUNNING;
+        started = System.currentTimeMillis();
+        ConnectionPool pool = conn.getPool();
+        PreparedStatement ps = null;
+        boolean autoCommit = true;
+        try {
+            connection = open(pool);
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            savepoints = connection.getMetaData().supportsSavepoints();
+            reader = new CSVReader(new InputStreamReader(new CountingInputStream(new FileInputStream(file)),
+                    charset), separator);
+            if (header) {
+                headerRecord = reader.readRecord();
+            }
+            int[] fieldColumns = mapFields();
+            ps = connection.prepareStatement(insertStatement(fieldColumns));
+            running = ps;
+            load(ps, fieldColumns);
+            status = cancelled ? CANCELLED : DONE;
+        } catch (Exception e) {
+            LOGGER.error("While importing " + file + " into " + table.getQualifiedName(), e);
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+            status = cancelled ? CANCELLED : FAILED;
+        } finally {
+            running = null;
+            if (connection != null) {
+                if (status != DONE) {
+                    try {
+                        connection.rollback();
+                    } catch (SQLException e) {
+                    }
+                    inserted = committed;
+                }
+                if (ps != null) {
+                    try {
+                        ps.close();
+                    } catch (SQLException e) {
+                    }
+                }
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException e) {
+                }
+                if (pool != null) {
+                    pool.giveBack(connection);
+                } else {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                    }
+                }
+            }
+            close(reader);
+            close(rejectedWriter);
+            delete(file);
+            if (closed) {
+                delete(rejectedFile);
+            }
+            ended = System.currentTimeMillis();
+            idmanager.unpin(id);
+        }
+    }
+
+    /**
+     * Opens the connection the rows are inserted through. Without a pool the
+     * password of the session is not known any more, so only the sources
+     * reached without one, or through the connection properties, can be
+     * imported into.
+     */
+    private Connection open(ConnectionPool pool) throws SQLException {
+        if (pool != null) {
+            return pool.borrow();
+        }
+        DatabaseMetaData md = conn.getSQLMetaData().getJDBCMetaData();
+        Properties info = new Properties();
+        SQLDriverPropertyCollection props = conn.getConnectionProperties();
+        if (props != null) {
+            props.applyTo(info);
+        }
+        if (md.getUserName() != null && info.getProperty("user") == null) {
+            info.setProperty("user", md.getUserName());
+        }
+        Connection c = ConnectionPools.getDriver(conn.getSQLDriver().getDriverClassName()).connect(md.getURL(), info);
+        if (c == null) {
+            throw new SQLException("The driver does not accept " + md.getURL());
+        }
+        return c;
+    }
+
+    /**
+     * Returns, for each field of a record, the index of its column in the
+     * table, or -1 if it is not loaded.
+     */
+    private int[] mapFields() throws SQLException {
+        List<String[]> tableColumns = table.getColumnNamesAndTypes();
+        TableColumnInfo[] infos = table.getColumnInfo();
+        types = new int[infos.length];
+        for (int i = 0; i < infos.length; i++) {
+            types[i] = infos[i].getDataType();
+        }
+        List<String> names;
+        boolean strict = true;
+        if (!columns.isEmpty()) {
+            names = columns;
+        } else if (headerRecord != null) {
+            names = new ArrayList<String>();
+            for (String name : headerRecord) {
+                names.add(name == null ? "" : name.trim());
+            }
+            strict = false;
+        } else {
+            names = new ArrayList<String>();
+            for (String[] column : tableColumns) {
+                names.add(column[0]);
+            }
+        }
+        int[] fieldColumns = new int[names.size()];
+        boolean any = false;
+        for (int i = 0; i < fieldColumns.length; i++) {
+            fieldColumns[i] = indexOf(tableColumns, names.get(i));
+            if (fieldColumns[i] >= 0) {
+                any = true;
+            } else if (strict) {
+                throw new IllegalArgumentException("No column " + names.get(i) + " in " + table.getQualifiedName());
+            } else {
+                message("Column " + names.get(i) + " of the header is not in the table and is skipped");
+            }
+        }
+        if (!any) {
+            throw new IllegalArgumentException("No column of the file is in " + table.getQualifiedName());
+        }
+        return fieldColumns;
+    }
+
+    private static int indexOf(List<String[]> tableColumns, String name) {
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i)[0].equals(name)) {
+                return i;
+            }
+        }
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i)[0].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String insertStatement(int[] fieldColumns) throws SQLException {
+        List<String[]> tableColumns = table.getColumnNamesAndTypes();
+        String quote = conn.getSQLMetaData().getIdentifierQuoteString();
+        if (quote == null || quote.trim().length() == 0) {
+            quote = "";
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table.getQualifiedName()).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int column : fieldColumns) {
+            if (column < 0) {
+                continue;
+            }
+            if (values.length() > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(quote).append(tableColumns.get(column)[0]).append(quote);
+            values.append('?');
+        }
+        return sql.append(") VALUES (").append(values).append(')').toString();
+    }
+
+    private void load(PreparedStatement ps, int[] fieldColumns) throws SQLException, IOException {
+        String[] record;
+        int uncommitted = 0;
+        while (!cancelled && (record = reader.readRecord()) != null) {
+            rowsRead++;
+            long line = reader.getRecordLine();
+            if (record.length != fieldColumns.length) {
+                reject(record, line, "expected " + fieldColumns.length + " fields, found " + record.length);
+                continue;
+            }
+            Object[] values;
+            try {
+                values = convert(record, fieldColumns);
+            } catch (IllegalArgumentException e) {
+                reject(record, line, e.getMessage());
+                continue;
+            }
+            bind(ps, values, fieldColumns);
+            ps.addBatch();
+            batchRecords.add(record);
+            batchValues.add(values);
+            batchLines.add(line);
+            if (batchRecords.size() >= batchSize) {
+                uncommitted += executeBatch(ps, fieldColumns);
+                if (commitInterval > 0 && uncommitted >= commitInterval) {
+                    commit();
+                    uncommitted = 0;
+                }
+            }
+        }
+        if (!cancelled) {
+            executeBatch(ps, fieldColumns);
+            commit();
+        }
+        if (rejectedWriter != null) {
+            rejectedWriter.flush();
+        }
+    }
+
+    private Object[] convert(String[] record, int[] fieldColumns) {
+        Object[] values = new Object[record.length];
+        for (int i = 0; i < record.length; i++) {
+            int column = fieldColumns[i];
+            if (column >= 0) {
+                try {
+                    values[i] = ValueConverter.convert(record[i], types[column]);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("field " + (i + 1) + ": " + e.getMessage());
+                }
+            }
+        }
+        return values;
+    }
+
+    private void bind(PreparedStatement ps, Object[] values, int[] fieldColumns) throws SQLException {
+        int index = 1;
+        for (int i = 0; i < values.length; i++) {
+            int column = fieldColumns[i];
+            if (column >= 0) {
+                ValueConverter.bind(ps, index++, values[i], types[column]);
+            }
+        }
+    }
+
+    /**
+     * Inserts the rows of the batch. When the batch fails, the rows the
+     * driver did not insert are inserted one at a time, so that only the
+     * faulty ones are rejected. Without savepoints this needs the driver to
+     * tell what became of each row: when it does not, the whole batch is
+     * rejected, as inserting again rows it may have inserted would duplicate
+     * them.
+     *
+     * @return the number of rows of the batch.
+     */
+    private int executeBatch(PreparedStatement ps, int[] fieldColumns) throws SQLException, IOException {
+        int size = batchRecords.size();
+        if (size == 0) {
+            return 0;
+        }
+        Savepoint savepoint = savepoints ? connection.setSavepoint() : null;
+        try {
+            ps.executeBatch();
+            inserted += size;
+        } catch (BatchUpdateException e) {
+            ps.clearBatch();
+            int[] counts = e.getUpdateCounts();
+            if (savepoint != null) {
+                // some databases refuse any statement after an error until rolled back
+                connection.rollback(savepoint);
+                counts = null;
+            } else if (counts == null || counts.length < size) {
+                for (int i = 0; i < size; i++) {
+                    reject(batchRecords.get(i), batchLines.get(i),
+                            "in a batch which failed without telling which rows were inserted: " + e.getMessage());
+                }
+                return size;
+            }
+            // the rows which failed are inserted again to learn why, all of
+            // them once rolled back to the savepoint
+            for (int i = 0; i < size; i++) {
+                if (counts != null && i < counts.length && counts[i] != Statement.EXECUTE_FAILED) {
+                    inserted++;
+                } else {
+                    insert(ps, i, fieldColumns);
+                }
+            }
+        } finally {
+            release(savepoint);
+            batchRecords.clear();
+            batchValues.clear();
+            batchLines.clear();
+        }
+        return size;
+    }
+
+    private void insert(PreparedStatement ps, int i, int[] fieldColumns) throws SQLException, IOException {
+        Savepoint savepoint = savepoints ? connection.setSavepoint() : null;
+        try {
+            bind(ps, batchValues.get(i), fieldColumns);
+            ps.executeUpdate();
+            inserted++;
+        } catch (SQLException e) {
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+            if (cancelled || connection.isClosed()) {
+                throw e;
+            }
+            reject(batchRecords.get(i), batchLines.get(i), e.getMessage());
+        } finally {
+            release(savepoint);
+        }
+    }
+
+    private void release(Savepoint savepoint) {
+        if (savepoint != null) {
+            try {
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                // not supported by every driver, the savepoint then lasts until the commit
+            }
+        }
+    }
+
+    private void commit() throws SQLException {
+        connection.commit();
+        committed = inserted;
+    }
+
+    private void reject(String[] record, long line, String reason) throws IOException {
+        rejected++;
+        message("Line " + line + ": " + reason);
+        if (rejectedWriter == null) {
+            rejectedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rejectedFile), charset),
+                    64 * 1024);
+            if (headerRecord != null) {
+                writeRecord(headerRecord);
+            }
+        }
+        writeRecord(record);
+    }
+
+    private void writeRecord(String[] record) throws IOException {
+        for (int i = 0; i < record.length; i++) {
+            if (i > 0) {
+                rejectedWriter.write(separator);
+            }
+            String field = record[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.length() == 0 || field.indexOf(separator) >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                rejectedWriter.write('"');
+                rejectedWriter.write(field.replace("\"", "\"\""));
+                rejectedWriter.write('"');
+            } else {
+                rejectedWriter.write(field);
+            }
+        }
+        rejectedWriter.write("\r\n");
+    }
+
+    private void message(String message) {
+        LOGGER.debug("{}: {}", file.getName(), message);
+        if (messages.size() < MAX_MESSAGES) {
+            messages.add(message);
+        }
+    }
+
+    private static void delete(File f) {
+        if (f.exists() && !f.delete()) {
+            LOGGER.warn("Cannot delete " + f);
+        }
+    }
+
+    private static void close(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Stops the import: it is not started if still queued, otherwise the
+     * running batch is cancelled and the rows not committed yet are rolled
+     * back.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (status == PENDING) {
+            status = CANCELLED;
+            ended = System.currentTimeMillis();
+        } else {
+            PreparedStatement ps = running;
+            if (ps != null) {
+                try {
+                    ps.cancel();
+                } catch (SQLException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when the import is released or expires: stops it, and deletes
+     * the files it leaves behind, now if it is finished or else once it is.
+     */
+    public void close() {
+        closed = true;
+        cancel();
+        if (isFinished()) {
+            delete(file);
+            delete(rejectedFile);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        String s = status;
+        return s == DONE || s == CANCELLED || s == FAILED;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the part of the file read so far, from 0 to 1.
+     */
+    public double getProgress() {
+        long length = file.length();
+        return length == 0 ? 1 : Math.min(1, (double) bytesRead / length);
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public File getRejectedFile() {
+        return rejectedFile;
+    }
+
+    /**
+     * @return why the first rejected records were, and the columns of the
+     * header which were skipped.
+     */
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the time spent running, in milliseconds.
+     */
+    public long getElapsedTime() {
+        long s = started;
+        if (s == 0) {
+            return 0;
+        }
+        long e = ended;
+        return (e == 0 ? System.currentTimeMillis() : e) - s;
+    }
+
+    /**
+     * Counts the bytes read, for the progress of the import.
+     */
+    private final class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytesRead += n;
+            }
+            return n;
+        }
+    }
+}
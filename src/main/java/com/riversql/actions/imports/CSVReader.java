@@ -0,0 +1,131 @@
+package com.riversql.actions.imports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a CSV file one at a time, so that files of any size
+ * can be read. Fields may be quoted with <TT>"</TT>, a quote inside being
+ * doubled, and may then hold separators and line breaks. Blank lines are
+ * skipped.
+ *
+ * <P>An empty field which is not quoted is read as <TT>null</TT>, a quoted
+ * one as the empty string.
+ */
+public class CSVReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char separator;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos, len;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<String>();
+    private long line = 1;
+    private long recordLine;
+    private boolean started;
+
+    public CSVReader(Reader in, char separator) {
+        this.in = in;
+        this.separator = separator;
+    }
+
+    /**
+     * @return the fields of the next record, <TT>null</TT> at the end of
+     * the file.
+     */
+    public String[] readRecord() throws IOException {
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = read();
+            }
+        }
+        while (c == '\r' || c == '\n') {
+            endOfLine(c);
+            c = read();
+        }
+        if (c < 0) {
+            return null;
+        }
+        recordLine = line;
+        fields.clear();
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            break;
+                        }
+                    } else if (c < 0) {
+                        break;
+                    } else if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                // whatever follows the closing quote is kept
+                while (c >= 0 && c != separator && c != '\r' && c != '\n') {
+                    field.append((char) c);
+                    c = read();
+                }
+                fields.add(field.toString());
+            } else {
+                while (c >= 0 && c != separator && c != '\r' && c != '\n') {
+                    field.append((char) c);
+                    c = read();
+                }
+                fields.add(field.length() == 0 ? null : field.toString());
+            }
+            if (c != separator) {
+                break;
+            }
+            c = read();
+        }
+        if (c >= 0) {
+            endOfLine(c);
+        }
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * @return the line of the file the last record read starts on, from 1.
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Consumes the rest of the line break starting with <TT>c</TT>.
+     */
+    private void endOfLine(int c) throws IOException {
+        line++;
+        if (c == '\r' && read() != '\n' && len > 0) {
+            pos--;
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == len) {
+            len = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+}
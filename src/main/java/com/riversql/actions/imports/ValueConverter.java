@@ -0,0 +1,130 @@
+package com.riversql.actions.imports;
+
+import com.riversql.sql.JDBCTypeMapper;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Converts the text of a CSV field to the value of a column of a given
+ * <TT>java.sql.Types</TT> type. Dates and times are read in the JDBC escape
+ * formats, <TT>yyyy-mm-dd</TT>, <TT>hh:mm:ss</TT> and
+ * <TT>yyyy-mm-dd hh:mm:ss[.f]</TT>, binary values as hexadecimal.
+ */
+final class ValueConverter {
+
+    private ValueConverter() {
+    }
+
+    /**
+     * @return the value, <TT>null</TT> for an empty field unless the column
+     * holds characters.
+     * @throws IllegalArgumentException if <TT>text</TT> is not a value of
+     *                                  the type.
+     */
+    static Object convert(String text, int type) {
+        if (text == null) {
+            return null;
+        }
+        switch (type) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return text;
+        }
+        String value = text.trim();
+        if (value.length() == 0) {
+            return null;
+        }
+        try {
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return Integer.valueOf(value);
+                case Types.BIGINT:
+                    return Long.valueOf(value);
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return new BigDecimal(value);
+                case Types.REAL:
+                    return Float.valueOf(value);
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return Double.valueOf(value);
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    return toBoolean(value);
+                case Types.DATE:
+                    return Date.valueOf(value.length() > 10 ? value.substring(0, 10) : value);
+                case Types.TIME:
+                    return Time.valueOf(value.length() == 5 ? value + ":00" : value);
+                case Types.TIMESTAMP:
+                    value = value.replace('T', ' ');
+                    return Timestamp.valueOf(value.length() == 10 ? value + " 00:00:00" : value);
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                case Types.BLOB:
+                    return toBytes(value);
+            }
+        } catch (IllegalArgumentException e) {
+            String typeName = JDBCTypeMapper.getJdbcTypeName(type);
+            throw new IllegalArgumentException("'" + text + "' is not a valid "
+                    + (typeName.length() > 0 ? typeName : "value"));
+        }
+        return text;
+    }
+
+    /**
+     * Sets a parameter to a value returned by <TT>convert()</TT>.
+     */
+    static void bind(PreparedStatement ps, int index, Object value, int type) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, type);
+        } else if (type == Types.OTHER) {
+            // lets the database convert the text, as for uuid or json columns
+            ps.setObject(index, value, type);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    private static Boolean toBoolean(String value) {
+        String v = value.toLowerCase();
+        if (v.equals("true") || v.equals("t") || v.equals("yes") || v.equals("y") || v.equals("1")) {
+            return Boolean.TRUE;
+        }
+        if (v.equals("false") || v.equals("f") || v.equals("no") || v.equals("n") || v.equals("0")) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException(value);
+    }
+
+    private static byte[] toBytes(String value) {
+        int start = value.startsWith("0x") || value.startsWith("\\x") ? 2 : 0;
+        if ((value.length() - start) % 2 != 0) {
+            throw new IllegalArgumentException(value);
+        }
+        byte[] bytes = new byte[(value.length() - start) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int hi = Character.digit(value.charAt(start + 2 * i), 16);
+            int lo = Character.digit(value.charAt(start + 2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException(value);
+            }
+            bytes[i] = (byte) (hi << 4 | lo);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,232 @@
+package com.riversql.databases;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the catalog with queries on the dictionary of the database instead
+ * of the <TT>DatabaseMetaData</TT> of the driver, which is much slower on some
+ * databases. The queries of a connection are given by
+ * <TT>DialectFactory.getCatalogQueries()</TT>.
+ *
+ * <P>Each method returns a result set with the columns, in the same order,
+ * of the <TT>DatabaseMetaData</TT> method of the same name, or <TT>null</TT>
+ * when it cannot answer, in which case the driver is used. Closing the
+ * result set closes its statement.
+ *
+ * <P>When a failed statement aborts the transaction it ran in, see
+ * <TT>abortsTransactionOnError()</TT>, each query outside of autocommit
+ * runs in a savepoint it is rolled back to on failure, so that neither
+ * the transaction of the user nor the fallback on the driver is lost.
+ */
+public abstract class CatalogQueries {
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * Whether the catalog queries are used at all, <TT>true</TT> by default.
+     */
+    public static void setEnabled(boolean enabled) {
+        CatalogQueries.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether an error aborts the current transaction of the database, so
+     * that every statement after it fails until a rollback, as with
+     * PostgreSQL.
+     */
+    protected boolean abortsTransactionOnError() {
+        return false;
+    }
+
+    public ResultSet getTables(Connection conn, String catalog, String schemaPattern,
+                               String tableNamePattern, String[] types) throws SQLException {
+        return null;
+    }
+
+    public ResultSet getColumns(Connection conn, String catalog, String schemaPattern,
+                                String tableNamePattern) throws SQLException {
+        return null;
+    }
+
+    public ResultSet getPrimaryKeys(Connection conn, String catalog, String schema,
+                                    String table) throws SQLException {
+        return null;
+    }
+
+    public ResultSet getImportedKeys(Connection conn, String catalog, String schema,
+                                     String table) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Returns the rows of <TT>getIndexInfo()</TT> for all the indexes of a
+     * table, approximate statistics allowed.
+     */
+    public ResultSet getIndexInfo(Connection conn, String catalog, String schema,
+                                  String table) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Returns the objects other than tables shown under the schemas by the
+     * plugin of the database, like packages and procedures, with the columns
+     * <TT>OBJECT_CAT</TT>, <TT>OBJECT_SCHEM</TT>, <TT>OBJECT_NAME</TT> and
+     * <TT>OBJECT_TYPE</TT>, the type being the name of the plugin node
+     * listing them. A <TT>null</TT> catalog or schema stands for all of them.
+     */
+    public ResultSet getObjects(Connection conn, String catalog, String schema) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Returns a value that changes whenever tables, columns, keys, indexes
+     * or remarks of <TT>schemas</TT> change, read without walking the
+     * catalog, or <TT>null</TT> if there is none. The schemas are the
+     * catalogs of the databases without schemas, like MySQL; <TT>null</TT>
+     * or none stands for all of them.
+     */
+    public String getChangeMarker(Connection conn, String[] schemas) throws SQLException {
+        return null;
+    }
+
+    /**
+     * @return the first column of the first row of <TT>query</TT>.
+     */
+    protected String getString(Connection conn, Query query) throws SQLException {
+        ResultSet rs = query.execute(conn);
+        try {
+            return rs.next() ? rs.getString(1) : null;
+        } finally {
+            Statement st = rs.getStatement();
+            rs.close();
+            if (st != null)
+                st.close();
+        }
+    }
+
+    /**
+     * @return <TT>true</TT> if <TT>types</TT> is given and only contains
+     * types from <TT>known</TT>.
+     */
+    protected static boolean knowsTypes(String[] types, String... known) {
+        if (types == null || types.length == 0) {
+            return false;
+        }
+        Set<String> set = new HashSet<String>(Arrays.asList(known));
+        for (String type : types) {
+            if (!set.contains(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds a query from conditions which are only added when their value
+     * is not <TT>null</TT>.
+     */
+    protected class Query {
+        private final StringBuilder sql;
+        private final List<Object> params = new ArrayList<Object>();
+
+        public Query(String select) {
+            this.sql = new StringBuilder(select);
+        }
+
+        public Query append(String s) {
+            sql.append(s);
+            return this;
+        }
+
+        /**
+         * Appends <TT>" AND " + condition</TT>, its single parameter being
+         * <TT>value</TT>, unless <TT>value</TT> is <TT>null</TT>.
+         */
+        public Query and(String condition, Object value) {
+            if (value != null) {
+                sql.append(" AND ").append(condition);
+                params.add(value);
+            }
+            return this;
+        }
+
+        /**
+         * Appends <TT>" AND " + column + " IN (...)"</TT>, unless
+         * <TT>values</TT> is <TT>null</TT> or empty.
+         */
+        public Query in(String column, String[] values) {
+            if (values == null || values.length == 0) {
+                return this;
+            }
+            sql.append(" AND ").append(column).append(" IN (");
+            for (int i = 0; i < values.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                params.add(values[i]);
+            }
+            sql.append(')');
+            return this;
+        }
+
+        public ResultSet execute(Connection conn) throws SQLException {
+            Savepoint savepoint = abortsTransactionOnError() && !conn.getAutoCommit()
+                    ? conn.setSavepoint() : null;
+            PreparedStatement ps = null;
+            try {
+                ps = conn.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                ps.setFetchSize(500);
+                try {
+                    ps.closeOnCompletion();
+                } catch (Throwable e) {
+                    // pre JDBC 4.1 driver, the statement goes with the connection
+                }
+                ResultSet rs = ps.executeQuery();
+                if (savepoint != null) {
+                    conn.releaseSavepoint(savepoint);
+                }
+                return rs;
+            } catch (SQLException e) {
+                abort(conn, ps, savepoint, e);
+                throw e;
+            } catch (RuntimeException e) {
+                abort(conn, ps, savepoint, e);
+                throw e;
+            }
+        }
+
+        private void abort(Connection conn, PreparedStatement ps, Savepoint savepoint, Exception e) {
+            try {
+                if (ps != null) {
+                    ps.close();
+                }
+                if (savepoint != null) {
+                    conn.rollback(savepoint);
+                }
+            } catch (SQLException e2) {
+                e.addSuppressed(e2);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return sql.toString();
+        }
+    }
+}
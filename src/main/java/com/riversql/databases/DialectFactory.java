@@ -25,6 +25,32 @@ public class DialectFactory {
 
     private static final SQLServerDialect sqlserverDialect = new SQLServerDialect();
 
+    private static final FetchProfile defaultFetchProfile = new FetchProfile(0);
+
+    private static final FetchProfile oracleFetchProfile = new FetchProfile(100);
+
+    private static final FetchProfile postgreSQLFetchProfile = new PostgreSQLFetchProfile(100);
+
+    private static final FetchProfile mysqlStreamingFetchProfile = new MySQLFetchProfile(false);
+
+    private static final FetchProfile mysqlCursorFetchProfile = new MySQLFetchProfile(true);
+
+    private static final RowLimiter limitOffsetRowLimiter = new LimitOffsetRowLimiter();
+
+    private static final RowLimiter offsetFetchRowLimiter = new FetchFirstRowLimiter(true);
+
+    private static final RowLimiter fetchFirstRowLimiter = new FetchFirstRowLimiter(false);
+
+    private static final RowLimiter rownumRowLimiter = new RownumRowLimiter();
+
+    private static final RowLimiter topRowLimiter = new TopRowLimiter();
+
+    private static final CatalogQueries postgreSQLCatalogQueries = new PostgreSQLCatalogQueries();
+
+    private static final CatalogQueries mysqlCatalogQueries = new MySQLCatalogQueries();
+
+    private static final CatalogQueries oracleCatalogQueries = new OracleCatalogQueries();
+
 
     public static boolean isPostgreSQL(SQLConnection conn) {
         return dialectSupportsProduct(conn, postgreSQLDialect);
@@ -80,6 +106,77 @@ public class DialectFactory {
         return dialectSupportsProduct(_conn, sybaseDialect);
     }
 
+    /**
+     * Returns how queries must be run on <TT>conn</TT> so that their rows are
+     * streamed from the database rather than loaded at once.
+     */
+    public static FetchProfile getFetchProfile(SQLConnection conn) {
+        if (isMySQL(conn)) {
+            String url = null;
+            try {
+                url = conn.getSQLMetaData().getURL();
+            } catch (Exception e) {
+            }
+            return MySQLFetchProfile.usesCursorFetch(url) ? mysqlCursorFetchProfile : mysqlStreamingFetchProfile;
+        }
+        if (isPostgreSQL(conn)) {
+            return postgreSQLFetchProfile;
+        }
+        if (isOracle(conn)) {
+            return oracleFetchProfile;
+        }
+        // H2 and Derby honor the fetch size of a forward only cursor
+        return defaultFetchProfile;
+    }
+
+    /**
+     * Returns the row limiting syntax of the database of <TT>conn</TT>, or
+     * <TT>null</TT> if it is unknown.
+     */
+    public static RowLimiter getRowLimiter(SQLConnection conn) {
+        if (isMySQL(conn) || isPostgreSQL(conn) || isH2(conn) || isHssql(conn)) {
+            return limitOffsetRowLimiter;
+        }
+        if (isDerby(conn)) {
+            return offsetFetchRowLimiter;
+        }
+        if (isDB2(conn)) {
+            return fetchFirstRowLimiter;
+        }
+        if (isOracle(conn)) {
+            int major = 0;
+            try {
+                major = conn.getSQLMetaData().getJDBCMetaData().getDatabaseMajorVersion();
+            } catch (Throwable e) {
+            }
+            return major >= 12 ? offsetFetchRowLimiter : rownumRowLimiter;
+        }
+        if (isMSSQL(conn) || isSyBase(conn)) {
+            return topRowLimiter;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the queries reading the catalog of the database of <TT>conn</TT>
+     * from its dictionary, or <TT>null</TT> if the driver must be used.
+     */
+    public static CatalogQueries getCatalogQueries(SQLConnection conn) {
+        if (!CatalogQueries.isEnabled()) {
+            return null;
+        }
+        if (isPostgreSQL(conn)) {
+            return postgreSQLCatalogQueries;
+        }
+        if (isMySQL(conn)) {
+            return mysqlCatalogQueries;
+        }
+        if (isOracle(conn)) {
+            return oracleCatalogQueries;
+        }
+        return null;
+    }
+
     public static boolean isInformix(SQLConnection _conn) {
         // TODO Auto-generated method stub
         return false;
@@ -0,0 +1,30 @@
+package com.riversql.databases;
+
+/**
+ * The standard <TT>OFFSET m ROWS FETCH NEXT n ROWS ONLY</TT>, for Derby and
+ * Oracle 12c and later. Without offset support, as for DB2, only
+ * <TT>FETCH FIRST n ROWS ONLY</TT> is used.
+ */
+public class FetchFirstRowLimiter extends RowLimiter {
+
+    private final boolean offset;
+
+    public FetchFirstRowLimiter(boolean offset) {
+        this.offset = offset;
+    }
+
+    public boolean supportsOffset() {
+        return offset;
+    }
+
+    public String limit(String sql, int offset, int count) {
+        StringBuilder sb = new StringBuilder(trim(sql));
+        if (offset > 0) {
+            sb.append("OFFSET ").append(offset).append(" ROWS FETCH NEXT ");
+        } else {
+            sb.append("FETCH FIRST ");
+        }
+        sb.append(count).append(" ROWS ONLY");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.riversql.databases;
+
+import com.riversql.sql.SQLConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * How a query has to be prepared so that the driver really fetches its rows
+ * incrementally instead of loading the whole result in memory. The profile of
+ * a connection is given by <TT>DialectFactory.getFetchProfile()</TT>.
+ *
+ * <P>This default profile uses a forward only, read only statement with a
+ * fetch size, which is enough for Oracle, H2, Derby and most drivers.
+ */
+public class FetchProfile {
+
+    /**
+     * The fetch size, or 0 to use the size of the page being read.
+     */
+    private final int fetchSize;
+
+    public FetchProfile(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public PreparedStatement prepareStatement(SQLConnection conn, String sql) throws SQLException {
+        return conn.getConnection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * Sets the fetch size of a statement about to be executed.
+     *
+     * @param pageSize the number of rows read at once by the caller.
+     */
+    public void configure(Statement stmt, int pageSize) {
+        try {
+            stmt.setFetchSize(fetchSize != 0 ? fetchSize : pageSize);
+        } catch (Throwable e) {
+        }
+    }
+
+    /**
+     * Prepares the connection before a query is run, for instance by
+     * starting the transaction a cursor needs.
+     *
+     * @return <TT>true</TT> if <TT>endCursor()</TT> must be called once the
+     * result is closed.
+     */
+    public boolean beginCursor(SQLConnection conn, String sql) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Restores what <TT>beginCursor()</TT> changed.
+     */
+    public void endCursor(SQLConnection conn) throws SQLException {
+    }
+
+    /**
+     * @param cursorBegun what <TT>beginCursor()</TT> returned for the
+     *                    result.
+     * @return <TT>true</TT> if a result still being read prevents any other
+     * statement from running on the same connection, in which case it is
+     * recorded with <TT>SQLConnection.setOpenCursor()</TT> and closed before
+     * the connection is used again.
+     */
+    public boolean isExclusive(boolean cursorBegun) {
+        return false;
+    }
+
+    /**
+     * Called before a result which was not read to its end is closed, for
+     * drivers which would otherwise read its remaining rows.
+     */
+    public void discard(Statement stmt) {
+    }
+
+    /**
+     * Whether <TT>sql</TT> is a query, which can be run in a cursor.
+     */
+    protected static boolean isQuery(String sql) {
+        String s = sql.trim().toLowerCase();
+        return s.startsWith("select") || s.startsWith("with") || s.startsWith("values") || s.startsWith("(");
+    }
+}
@@ -0,0 +1,20 @@
+package com.riversql.databases;
+
+/**
+ * <TT>LIMIT n OFFSET m</TT>, for MySQL, PostgreSQL, H2 and HSQLDB.
+ */
+public class LimitOffsetRowLimiter extends RowLimiter {
+
+    public boolean supportsOffset() {
+        return true;
+    }
+
+    public String limit(String sql, int offset, int count) {
+        StringBuilder sb = new StringBuilder(trim(sql));
+        sb.append("LIMIT ").append(count);
+        if (offset > 0) {
+            sb.append(" OFFSET ").append(offset);
+        }
+        return sb.toString();
+    }
+}
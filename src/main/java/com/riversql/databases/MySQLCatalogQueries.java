@@ -0,0 +1,151 @@
+package com.riversql.databases;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the MySQL catalog from <TT>INFORMATION_SCHEMA</TT>, with the names
+ * and types returned by Connector/J: databases are catalogs, and a
+ * <TT>null</TT> catalog means the current database.
+ */
+public class MySQLCatalogQueries extends CatalogQueries {
+
+    private static final String TABLES = "SELECT * FROM ("
+            + "SELECT TABLE_SCHEMA AS TABLE_CAT, NULL AS TABLE_SCHEM, TABLE_NAME,"
+            + " CASE WHEN TABLE_TYPE = 'BASE TABLE' THEN"
+            + "  CASE WHEN TABLE_SCHEMA = 'mysql' OR TABLE_SCHEMA = 'performance_schema' THEN 'SYSTEM TABLE' ELSE 'TABLE' END"
+            + " WHEN TABLE_TYPE = 'TEMPORARY' THEN 'LOCAL TEMPORARY'"
+            + " ELSE TABLE_TYPE END AS TABLE_TYPE,"
+            + " TABLE_COMMENT AS REMARKS"
+            + " FROM INFORMATION_SCHEMA.TABLES"
+            + " WHERE 1 = 1";
+
+    private static final String COLUMNS = "SELECT TABLE_SCHEMA AS TABLE_CAT, NULL AS TABLE_SCHEM, TABLE_NAME, COLUMN_NAME,"
+            + " CASE DATA_TYPE WHEN 'bit' THEN -7 WHEN 'tinyint' THEN -6 WHEN 'smallint' THEN 5"
+            + "  WHEN 'mediumint' THEN 4 WHEN 'int' THEN 4 WHEN 'integer' THEN 4 WHEN 'bigint' THEN -5"
+            + "  WHEN 'float' THEN 7 WHEN 'double' THEN 8 WHEN 'real' THEN 8 WHEN 'decimal' THEN 3 WHEN 'numeric' THEN 3"
+            + "  WHEN 'date' THEN 91 WHEN 'year' THEN 91 WHEN 'time' THEN 92 WHEN 'datetime' THEN 93 WHEN 'timestamp' THEN 93"
+            + "  WHEN 'char' THEN 1 WHEN 'enum' THEN 1 WHEN 'set' THEN 1 WHEN 'varchar' THEN 12 WHEN 'tinytext' THEN 12"
+            + "  WHEN 'text' THEN -1 WHEN 'mediumtext' THEN -1 WHEN 'longtext' THEN -1 WHEN 'json' THEN -1"
+            + "  WHEN 'binary' THEN -2 WHEN 'varbinary' THEN -3 WHEN 'tinyblob' THEN -3"
+            + "  WHEN 'blob' THEN -4 WHEN 'mediumblob' THEN -4 WHEN 'longblob' THEN -4"
+            + "  ELSE -2 END AS DATA_TYPE,"
+            + " CONCAT(UPPER(DATA_TYPE), CASE WHEN COLUMN_TYPE LIKE '%unsigned%' THEN ' UNSIGNED' ELSE '' END) AS TYPE_NAME,"
+            + " CASE DATA_TYPE WHEN 'date' THEN 10 WHEN 'year' THEN 4 WHEN 'time' THEN 8"
+            + "  WHEN 'datetime' THEN 19 WHEN 'timestamp' THEN 19"
+            + "  ELSE LEAST(COALESCE(CHARACTER_MAXIMUM_LENGTH, NUMERIC_PRECISION, 0), 2147483647) END AS COLUMN_SIZE,"
+            + " 65535 AS BUFFER_LENGTH,"
+            + " COALESCE(NUMERIC_SCALE, 0) AS DECIMAL_DIGITS,"
+            + " 10 AS NUM_PREC_RADIX,"
+            + " CASE IS_NULLABLE WHEN 'YES' THEN 1 ELSE 0 END AS NULLABLE,"
+            + " COLUMN_COMMENT AS REMARKS,"
+            + " COLUMN_DEFAULT AS COLUMN_DEF,"
+            + " 0 AS SQL_DATA_TYPE, 0 AS SQL_DATETIME_SUB,"
+            + " LEAST(COALESCE(CHARACTER_OCTET_LENGTH, 0), 2147483647) AS CHAR_OCTET_LENGTH,"
+            + " ORDINAL_POSITION,"
+            + " IS_NULLABLE"
+            + " FROM INFORMATION_SCHEMA.COLUMNS"
+            + " WHERE 1 = 1";
+
+    private static final String PRIMARY_KEYS = "SELECT TABLE_SCHEMA AS TABLE_CAT, NULL AS TABLE_SCHEM, TABLE_NAME,"
+            + " COLUMN_NAME, ORDINAL_POSITION AS KEY_SEQ, CONSTRAINT_NAME AS PK_NAME"
+            + " FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE"
+            + " WHERE CONSTRAINT_NAME = 'PRIMARY'";
+
+    private static final String OBJECTS = "SELECT ROUTINE_SCHEMA AS OBJECT_CAT, NULL AS OBJECT_SCHEM,"
+            + " ROUTINE_NAME AS OBJECT_NAME, ROUTINE_TYPE AS OBJECT_TYPE"
+            + " FROM INFORMATION_SCHEMA.ROUTINES"
+            + " WHERE 1 = 1";
+
+    /**
+     * A table rebuilt by <TT>ALTER TABLE</TT> gets a new <TT>CREATE_TIME</TT>,
+     * and <TT>UPDATE_TIME</TT> moves with the changes made in place, though
+     * with writes to the rows as well, so that a busy database is read again
+     * more often. <TT>COLUMNS</TT> and <TT>KEY_COLUMN_USAGE</TT>, which
+     * open every table, are not read.
+     */
+    private static final String CHANGE_MARKER = "SELECT CONCAT(COUNT(*), '/', COALESCE(MAX(CREATE_TIME), ''),"
+            + " '/', COALESCE(MAX(UPDATE_TIME), ''))"
+            + " FROM INFORMATION_SCHEMA.TABLES"
+            + " WHERE 1 = 1";
+
+    private static final String IMPORTED_KEYS = "SELECT k.REFERENCED_TABLE_SCHEMA AS PKTABLE_CAT, NULL AS PKTABLE_SCHEM,"
+            + " k.REFERENCED_TABLE_NAME AS PKTABLE_NAME, k.REFERENCED_COLUMN_NAME AS PKCOLUMN_NAME,"
+            + " k.TABLE_SCHEMA AS FKTABLE_CAT, NULL AS FKTABLE_SCHEM, k.TABLE_NAME AS FKTABLE_NAME,"
+            + " k.COLUMN_NAME AS FKCOLUMN_NAME, k.ORDINAL_POSITION AS KEY_SEQ,"
+            + " CASE r.UPDATE_RULE WHEN 'CASCADE' THEN 0 WHEN 'RESTRICT' THEN 1 WHEN 'SET NULL' THEN 2"
+            + "  WHEN 'SET DEFAULT' THEN 4 ELSE 3 END AS UPDATE_RULE,"
+            + " CASE r.DELETE_RULE WHEN 'CASCADE' THEN 0 WHEN 'RESTRICT' THEN 1 WHEN 'SET NULL' THEN 2"
+            + "  WHEN 'SET DEFAULT' THEN 4 ELSE 3 END AS DELETE_RULE,"
+            + " k.CONSTRAINT_NAME AS FK_NAME, r.UNIQUE_CONSTRAINT_NAME AS PK_NAME, 7 AS DEFERRABILITY"
+            + " FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE k"
+            + " JOIN INFORMATION_SCHEMA.REFERENTIAL_CONSTRAINTS r ON r.CONSTRAINT_SCHEMA = k.CONSTRAINT_SCHEMA"
+            + "  AND r.CONSTRAINT_NAME = k.CONSTRAINT_NAME AND r.TABLE_NAME = k.TABLE_NAME"
+            + " WHERE k.REFERENCED_TABLE_NAME IS NOT NULL";
+
+    @Override
+    public ResultSet getTables(Connection conn, String catalog, String schemaPattern,
+                               String tableNamePattern, String[] types) throws SQLException {
+        if (!knowsTypes(types, "TABLE", "VIEW", "SYSTEM TABLE", "SYSTEM VIEW", "LOCAL TEMPORARY")) {
+            return null;
+        }
+        return currentDatabase(new Query(TABLES), "TABLE_SCHEMA", catalog)
+                .and("TABLE_NAME LIKE ?", tableNamePattern)
+                .append(") t WHERE 1 = 1")
+                .in("TABLE_TYPE", types)
+                .append(" ORDER BY TABLE_TYPE, TABLE_CAT, TABLE_NAME")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getColumns(Connection conn, String catalog, String schemaPattern,
+                                String tableNamePattern) throws SQLException {
+        return currentDatabase(new Query(COLUMNS), "TABLE_SCHEMA", catalog)
+                .and("TABLE_NAME LIKE ?", tableNamePattern)
+                .append(" ORDER BY TABLE_SCHEMA, TABLE_NAME, ORDINAL_POSITION")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getPrimaryKeys(Connection conn, String catalog, String schema,
+                                    String table) throws SQLException {
+        return currentDatabase(new Query(PRIMARY_KEYS), "TABLE_SCHEMA", catalog)
+                .and("TABLE_NAME = ?", table)
+                .append(" ORDER BY TABLE_NAME, ORDINAL_POSITION")
+                .execute(conn);
+    }
+
+    /**
+     * Unlike the other queries, a <TT>null</TT> catalog stands for all the
+     * databases, which all show in the tree.
+     */
+    @Override
+    public ResultSet getObjects(Connection conn, String catalog, String schema) throws SQLException {
+        return new Query(OBJECTS)
+                .and("ROUTINE_SCHEMA = ?", catalog)
+                .append(" ORDER BY ROUTINE_SCHEMA, ROUTINE_TYPE, ROUTINE_NAME")
+                .execute(conn);
+    }
+
+    @Override
+    public String getChangeMarker(Connection conn, String[] schemas) throws SQLException {
+        return getString(conn, new Query(CHANGE_MARKER).in("TABLE_SCHEMA", schemas));
+    }
+
+    @Override
+    public ResultSet getImportedKeys(Connection conn, String catalog, String schema,
+                                     String table) throws SQLException {
+        return currentDatabase(new Query(IMPORTED_KEYS), "k.TABLE_SCHEMA", catalog)
+                .and("k.TABLE_NAME = ?", table)
+                .append(" ORDER BY k.REFERENCED_TABLE_SCHEMA, k.REFERENCED_TABLE_NAME, k.CONSTRAINT_NAME, k.ORDINAL_POSITION")
+                .execute(conn);
+    }
+
+    private static Query currentDatabase(Query query, String column, String catalog) {
+        if (catalog == null) {
+            return query.append(" AND " + column + " = DATABASE()");
+        }
+        return query.and(column + " = ?", catalog);
+    }
+}
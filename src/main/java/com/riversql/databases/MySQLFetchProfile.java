@@ -0,0 +1,56 @@
+package com.riversql.databases;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Connector/J reads the whole result in memory unless the fetch size is
+ * <TT>Integer.MIN_VALUE</TT>, which streams rows but keeps the connection
+ * busy until the result is closed, or unless <TT>useCursorFetch=true</TT> is
+ * set in the url, in which case the fetch size is honored with a server side
+ * cursor. A streamed result is only closed once all its rows are read off the
+ * wire, so a result left before its end is cancelled first.
+ */
+public class MySQLFetchProfile extends FetchProfile {
+
+    private final boolean cursorFetch;
+
+    public MySQLFetchProfile(boolean cursorFetch) {
+        super(0);
+        this.cursorFetch = cursorFetch;
+    }
+
+    @Override
+    public void configure(Statement stmt, int pageSize) {
+        if (cursorFetch) {
+            super.configure(stmt, pageSize);
+        } else {
+            try {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            } catch (Throwable e) {
+            }
+        }
+    }
+
+    @Override
+    public void discard(Statement stmt) {
+        if (!cursorFetch) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+            }
+        }
+    }
+
+    @Override
+    public boolean isExclusive(boolean cursorBegun) {
+        return !cursorFetch;
+    }
+
+    /**
+     * @return <TT>true</TT> if the connection url enables server side cursors.
+     */
+    public static boolean usesCursorFetch(String url) {
+        return url != null && url.toLowerCase().replace(" ", "").contains("usecursorfetch=true");
+    }
+}
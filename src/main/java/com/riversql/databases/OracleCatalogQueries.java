@@ -0,0 +1,153 @@
+package com.riversql.databases;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the Oracle catalog from the <TT>ALL_</TT> dictionary views, with the
+ * names and types returned by the Oracle driver, whose search string
+ * escape is <TT>'/'</TT>. Tables and views are listed from
+ * <TT>ALL_TABLES</TT> and <TT>ALL_VIEWS</TT> rather than the much larger
+ * <TT>ALL_OBJECTS</TT>; synonyms are left to the driver.
+ */
+public class OracleCatalogQueries extends CatalogQueries {
+
+    private static final String TABLES = "SELECT NULL AS TABLE_CAT, o.owner AS TABLE_SCHEM, o.table_name AS TABLE_NAME,"
+            + " o.table_type AS TABLE_TYPE, c.comments AS REMARKS"
+            + " FROM (SELECT owner, table_name, CAST('TABLE' AS VARCHAR2(5)) AS table_type FROM all_tables"
+            + "  WHERE nested = 'NO' AND secondary = 'N' AND (iot_type IS NULL OR iot_type = 'IOT')"
+            + "  UNION ALL SELECT owner, view_name, CAST('VIEW' AS VARCHAR2(5)) FROM all_views) o"
+            + " LEFT JOIN all_tab_comments c ON c.owner = o.owner AND c.table_name = o.table_name"
+            + " WHERE 1 = 1";
+
+    private static final String COLUMNS = "SELECT NULL AS TABLE_CAT, t.owner AS TABLE_SCHEM, t.table_name AS TABLE_NAME,"
+            + " t.column_name AS COLUMN_NAME,"
+            + " CASE WHEN t.data_type = 'CHAR' THEN 1 WHEN t.data_type = 'VARCHAR2' THEN 12"
+            + "  WHEN t.data_type = 'NUMBER' THEN 3 WHEN t.data_type = 'LONG' THEN -1"
+            + "  WHEN t.data_type = 'DATE' THEN 93 WHEN t.data_type = 'RAW' THEN -3 WHEN t.data_type = 'LONG RAW' THEN -4"
+            + "  WHEN t.data_type = 'BLOB' THEN 2004 WHEN t.data_type = 'CLOB' THEN 2005 WHEN t.data_type = 'BFILE' THEN -13"
+            + "  WHEN t.data_type = 'FLOAT' THEN 6 WHEN t.data_type = 'NCHAR' THEN -15"
+            + "  WHEN t.data_type = 'NVARCHAR2' THEN -9 WHEN t.data_type = 'NCLOB' THEN 2011"
+            + "  WHEN t.data_type = 'BINARY_FLOAT' THEN 100 WHEN t.data_type = 'BINARY_DOUBLE' THEN 101"
+            + "  WHEN t.data_type LIKE 'TIMESTAMP(%) WITH LOCAL TIME ZONE' THEN -102"
+            + "  WHEN t.data_type LIKE 'TIMESTAMP(%) WITH TIME ZONE' THEN -101"
+            + "  WHEN t.data_type LIKE 'TIMESTAMP(%)' THEN 93"
+            + "  WHEN t.data_type LIKE 'INTERVAL YEAR%' THEN -103 WHEN t.data_type LIKE 'INTERVAL DAY%' THEN -104"
+            + "  WHEN t.data_type = 'XMLTYPE' THEN 2009"
+            + "  ELSE 1111 END AS DATA_TYPE,"
+            + " t.data_type AS TYPE_NAME,"
+            + " CASE WHEN t.data_type = 'NUMBER' THEN NVL(t.data_precision, 38)"
+            + "  WHEN t.data_type IN ('CHAR', 'VARCHAR2', 'NCHAR', 'NVARCHAR2') THEN t.char_length"
+            + "  ELSE t.data_length END AS COLUMN_SIZE,"
+            + " 0 AS BUFFER_LENGTH,"
+            + " NVL(t.data_scale, 0) AS DECIMAL_DIGITS,"
+            + " 10 AS NUM_PREC_RADIX,"
+            + " CASE WHEN t.nullable = 'N' THEN 0 ELSE 1 END AS NULLABLE,"
+            + " c.comments AS REMARKS,"
+            + " t.data_default AS COLUMN_DEF,"
+            + " 0 AS SQL_DATA_TYPE, 0 AS SQL_DATETIME_SUB,"
+            + " t.data_length AS CHAR_OCTET_LENGTH,"
+            + " t.column_id AS ORDINAL_POSITION,"
+            + " CASE WHEN t.nullable = 'N' THEN 'NO' ELSE 'YES' END AS IS_NULLABLE"
+            + " FROM all_tab_columns t"
+            + " LEFT JOIN all_col_comments c ON c.owner = t.owner AND c.table_name = t.table_name"
+            + "  AND c.column_name = t.column_name"
+            + " WHERE 1 = 1";
+
+    private static final String PRIMARY_KEYS = "SELECT NULL AS TABLE_CAT, c.owner AS TABLE_SCHEM, c.table_name AS TABLE_NAME,"
+            + " cc.column_name AS COLUMN_NAME, cc.position AS KEY_SEQ, c.constraint_name AS PK_NAME"
+            + " FROM all_constraints c"
+            + " JOIN all_cons_columns cc ON cc.owner = c.owner AND cc.constraint_name = c.constraint_name"
+            + "  AND cc.table_name = c.table_name"
+            + " WHERE c.constraint_type = 'P'";
+
+    private static final String OBJECTS = "SELECT NULL AS OBJECT_CAT, owner AS OBJECT_SCHEM, object_name AS OBJECT_NAME,"
+            + " object_type AS OBJECT_TYPE FROM all_objects"
+            + " WHERE object_type IN ('PACKAGE', 'PROCEDURE', 'FUNCTION', 'TRIGGER', 'SEQUENCE')";
+
+    private static final String CHANGE_MARKER = "SELECT TO_CHAR(MAX(last_ddl_time), 'YYYYMMDDHH24MISS')"
+            + " || '/' || COUNT(*) FROM all_objects WHERE object_type IN ('TABLE', 'VIEW', 'INDEX')";
+
+    /**
+     * The most values Oracle takes in an <TT>IN</TT> list.
+     */
+    private static final int MAX_IN_LIST = 1000;
+
+    private static final String IMPORTED_KEYS = "SELECT NULL AS PKTABLE_CAT, p.owner AS PKTABLE_SCHEM,"
+            + " p.table_name AS PKTABLE_NAME, pc.column_name AS PKCOLUMN_NAME,"
+            + " NULL AS FKTABLE_CAT, f.owner AS FKTABLE_SCHEM, f.table_name AS FKTABLE_NAME,"
+            + " fc.column_name AS FKCOLUMN_NAME, fc.position AS KEY_SEQ,"
+            + " 3 AS UPDATE_RULE,"
+            + " CASE f.delete_rule WHEN 'CASCADE' THEN 0 WHEN 'SET NULL' THEN 2 ELSE 3 END AS DELETE_RULE,"
+            + " f.constraint_name AS FK_NAME, p.constraint_name AS PK_NAME,"
+            + " CASE WHEN f.deferrable = 'DEFERRABLE' AND f.deferred = 'DEFERRED' THEN 5"
+            + "  WHEN f.deferrable = 'DEFERRABLE' THEN 6 ELSE 7 END AS DEFERRABILITY"
+            + " FROM all_constraints f"
+            + " JOIN all_cons_columns fc ON fc.owner = f.owner AND fc.constraint_name = f.constraint_name"
+            + "  AND fc.table_name = f.table_name"
+            + " JOIN all_constraints p ON p.owner = f.r_owner AND p.constraint_name = f.r_constraint_name"
+            + " JOIN all_cons_columns pc ON pc.owner = p.owner AND pc.constraint_name = p.constraint_name"
+            + "  AND pc.table_name = p.table_name AND pc.position = fc.position"
+            + " WHERE f.constraint_type = 'R'";
+
+    @Override
+    public ResultSet getTables(Connection conn, String catalog, String schemaPattern,
+                               String tableNamePattern, String[] types) throws SQLException {
+        if (!knowsTypes(types, "TABLE", "VIEW")) {
+            return null;
+        }
+        return new Query(TABLES)
+                .and("o.owner LIKE ? ESCAPE '/'", schemaPattern)
+                .and("o.table_name LIKE ? ESCAPE '/'", tableNamePattern)
+                .in("o.table_type", types)
+                .append(" ORDER BY TABLE_TYPE, TABLE_SCHEM, TABLE_NAME")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getColumns(Connection conn, String catalog, String schemaPattern,
+                                String tableNamePattern) throws SQLException {
+        return new Query(COLUMNS)
+                .and("t.owner LIKE ? ESCAPE '/'", schemaPattern)
+                .and("t.table_name LIKE ? ESCAPE '/'", tableNamePattern)
+                .append(" ORDER BY t.owner, t.table_name, t.column_id")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getPrimaryKeys(Connection conn, String catalog, String schema,
+                                    String table) throws SQLException {
+        return new Query(PRIMARY_KEYS)
+                .and("c.owner = ?", schema)
+                .and("c.table_name = ?", table)
+                .append(" ORDER BY c.table_name, cc.position")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getObjects(Connection conn, String catalog, String schema) throws SQLException {
+        return new Query(OBJECTS)
+                .and("owner = ?", schema)
+                .append(" ORDER BY owner, object_type, object_name")
+                .execute(conn);
+    }
+
+    @Override
+    public String getChangeMarker(Connection conn, String[] schemas) throws SQLException {
+        if (schemas != null && schemas.length > MAX_IN_LIST) {
+            schemas = null;
+        }
+        return getString(conn, new Query(CHANGE_MARKER).in("owner", schemas));
+    }
+
+    @Override
+    public ResultSet getImportedKeys(Connection conn, String catalog, String schema,
+                                     String table) throws SQLException {
+        return new Query(IMPORTED_KEYS)
+                .and("f.owner = ?", schema)
+                .and("f.table_name = ?", table)
+                .append(" ORDER BY p.owner, p.table_name, f.constraint_name, fc.position")
+                .execute(conn);
+    }
+}
@@ -0,0 +1,174 @@
+package com.riversql.databases;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the PostgreSQL catalog from <TT>pg_catalog</TT>, with the names and
+ * types returned by the PostgreSQL driver. Needs PostgreSQL 9.0 or later.
+ */
+public class PostgreSQLCatalogQueries extends CatalogQueries {
+
+    private static final String TABLES = "SELECT * FROM ("
+            + "SELECT NULL AS TABLE_CAT, n.nspname AS TABLE_SCHEM, c.relname AS TABLE_NAME,"
+            + " CASE WHEN n.nspname = 'pg_catalog' OR n.nspname = 'information_schema' THEN"
+            + "  CASE c.relkind WHEN 'r' THEN 'SYSTEM TABLE' WHEN 'v' THEN 'SYSTEM VIEW' END"
+            + " WHEN n.nspname = 'pg_toast' THEN"
+            + "  CASE c.relkind WHEN 'r' THEN 'SYSTEM TOAST TABLE' END"
+            + " WHEN n.nspname ~ '^pg_' THEN"
+            + "  CASE c.relkind WHEN 'r' THEN 'TEMPORARY TABLE' WHEN 'p' THEN 'TEMPORARY TABLE' WHEN 'v' THEN 'TEMPORARY VIEW' END"
+            + " ELSE"
+            + "  CASE c.relkind WHEN 'r' THEN 'TABLE' WHEN 'p' THEN 'PARTITIONED TABLE' WHEN 'v' THEN 'VIEW'"
+            + "   WHEN 'f' THEN 'FOREIGN TABLE' WHEN 'm' THEN 'MATERIALIZED VIEW' END"
+            + " END AS TABLE_TYPE,"
+            + " d.description AS REMARKS"
+            + " FROM pg_catalog.pg_class c"
+            + " JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace"
+            + " LEFT JOIN pg_catalog.pg_description d ON d.objoid = c.oid AND d.objsubid = 0"
+            + "  AND d.classoid = 'pg_catalog.pg_class'::pg_catalog.regclass"
+            + " WHERE c.relkind IN ('r', 'p', 'v', 'f', 'm')";
+
+    private static final String COLUMNS = "SELECT NULL AS TABLE_CAT, n.nspname AS TABLE_SCHEM, c.relname AS TABLE_NAME,"
+            + " a.attname AS COLUMN_NAME,"
+            + " CASE WHEN bt.typelem <> 0 AND bt.typlen = -1 THEN 2003"
+            + "  ELSE CASE bt.typname WHEN 'int2' THEN 5 WHEN 'int4' THEN 4 WHEN 'int8' THEN -5 WHEN 'oid' THEN -5"
+            + "   WHEN 'numeric' THEN 2 WHEN 'float4' THEN 7 WHEN 'float8' THEN 8 WHEN 'money' THEN 8"
+            + "   WHEN 'bool' THEN -7 WHEN 'bit' THEN -7 WHEN 'char' THEN 1 WHEN 'bpchar' THEN 1"
+            + "   WHEN 'varchar' THEN 12 WHEN 'text' THEN 12 WHEN 'name' THEN 12 WHEN 'bytea' THEN -2"
+            + "   WHEN 'date' THEN 91 WHEN 'time' THEN 92 WHEN 'timetz' THEN 92"
+            + "   WHEN 'timestamp' THEN 93 WHEN 'timestamptz' THEN 93 WHEN 'xml' THEN 2009"
+            + "   ELSE 1111 END"
+            + " END AS DATA_TYPE,"
+            + " CASE WHEN t.typname = 'int4' AND pg_catalog.pg_get_expr(def.adbin, def.adrelid) LIKE 'nextval(%' THEN 'serial'"
+            + "  WHEN t.typname = 'int8' AND pg_catalog.pg_get_expr(def.adbin, def.adrelid) LIKE 'nextval(%' THEN 'bigserial'"
+            + "  ELSE t.typname END AS TYPE_NAME,"
+            + " CASE WHEN bt.typname IN ('varchar', 'bpchar') AND a.atttypmod > 4 THEN a.atttypmod - 4"
+            + "  WHEN bt.typname = 'numeric' AND a.atttypmod > 4 THEN ((a.atttypmod - 4) >> 16) & 65535"
+            + "  WHEN bt.typname = 'numeric' THEN 1000"
+            + "  ELSE CASE bt.typname WHEN 'int2' THEN 5 WHEN 'int4' THEN 10 WHEN 'int8' THEN 19 WHEN 'oid' THEN 10"
+            + "   WHEN 'float4' THEN 8 WHEN 'float8' THEN 17 WHEN 'money' THEN 12 WHEN 'bool' THEN 1 WHEN 'char' THEN 1"
+            + "   WHEN 'name' THEN 63 WHEN 'date' THEN 13 WHEN 'time' THEN 15 WHEN 'timetz' THEN 21"
+            + "   WHEN 'timestamp' THEN 29 WHEN 'timestamptz' THEN 35 ELSE 2147483647 END"
+            + " END AS COLUMN_SIZE,"
+            + " NULL AS BUFFER_LENGTH,"
+            + " CASE WHEN bt.typname = 'numeric' AND a.atttypmod > 4 THEN (a.atttypmod - 4) & 65535"
+            + "  WHEN bt.typname IN ('time', 'timetz', 'timestamp', 'timestamptz') THEN"
+            + "   CASE WHEN a.atttypmod = -1 THEN 6 ELSE a.atttypmod END"
+            + "  WHEN bt.typname = 'float4' THEN 8 WHEN bt.typname = 'float8' THEN 17"
+            + "  ELSE 0 END AS DECIMAL_DIGITS,"
+            + " 10 AS NUM_PREC_RADIX,"
+            + " CASE WHEN a.attnotnull OR (t.typtype = 'd' AND t.typnotnull) THEN 0 ELSE 1 END AS NULLABLE,"
+            + " dsc.description AS REMARKS,"
+            + " pg_catalog.pg_get_expr(def.adbin, def.adrelid) AS COLUMN_DEF,"
+            + " NULL AS SQL_DATA_TYPE, NULL AS SQL_DATETIME_SUB,"
+            + " CASE WHEN bt.typname IN ('varchar', 'bpchar') AND a.atttypmod > 4 THEN a.atttypmod - 4"
+            + "  ELSE 0 END AS CHAR_OCTET_LENGTH,"
+            + " a.attnum AS ORDINAL_POSITION,"
+            + " CASE WHEN a.attnotnull OR (t.typtype = 'd' AND t.typnotnull) THEN 'NO' ELSE 'YES' END AS IS_NULLABLE"
+            + " FROM pg_catalog.pg_namespace n"
+            + " JOIN pg_catalog.pg_class c ON c.relnamespace = n.oid"
+            + " JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid"
+            + " JOIN pg_catalog.pg_type t ON t.oid = a.atttypid"
+            + " JOIN pg_catalog.pg_type bt ON bt.oid = CASE WHEN t.typtype = 'd' THEN t.typbasetype ELSE t.oid END"
+            + " LEFT JOIN pg_catalog.pg_attrdef def ON def.adrelid = a.attrelid AND def.adnum = a.attnum"
+            + " LEFT JOIN pg_catalog.pg_description dsc ON dsc.objoid = c.oid AND dsc.objsubid = a.attnum"
+            + "  AND dsc.classoid = 'pg_catalog.pg_class'::pg_catalog.regclass"
+            + " WHERE c.relkind IN ('r', 'p', 'v', 'f', 'm') AND a.attnum > 0 AND NOT a.attisdropped";
+
+    private static final String PRIMARY_KEYS = "SELECT NULL AS TABLE_CAT, n.nspname AS TABLE_SCHEM,"
+            + " ct.relname AS TABLE_NAME, a.attname AS COLUMN_NAME, k.n AS KEY_SEQ, con.conname AS PK_NAME"
+            + " FROM pg_catalog.pg_constraint con"
+            + " JOIN pg_catalog.pg_class ct ON ct.oid = con.conrelid"
+            + " JOIN pg_catalog.pg_namespace n ON n.oid = ct.relnamespace"
+            + " CROSS JOIN pg_catalog.generate_series(1, 32) k(n)"
+            + " JOIN pg_catalog.pg_attribute a ON a.attrelid = ct.oid AND a.attnum = con.conkey[k.n]"
+            + " WHERE con.contype = 'p'";
+
+    /**
+     * The row of a relation in <TT>pg_class</TT> gets a new <TT>xmin</TT>
+     * whenever DDL changes it, as when columns are added or the table is
+     * rewritten, while <TT>VACUUM</TT> and <TT>ANALYZE</TT> update it in
+     * place. The much larger <TT>pg_attribute</TT>, <TT>pg_constraint</TT>
+     * and <TT>pg_description</TT> are not read: a change to keys or remarks
+     * alone shows once the cached entries expire.
+     */
+    private static final String CHANGE_MARKER = "SELECT COUNT(*) || ':' || COALESCE(SUM(c.xmin::text::bigint), 0)"
+            + " FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace"
+            + " WHERE 1 = 1";
+
+    private static final String IMPORTED_KEYS = "SELECT NULL AS PKTABLE_CAT, pkn.nspname AS PKTABLE_SCHEM,"
+            + " pkc.relname AS PKTABLE_NAME, pka.attname AS PKCOLUMN_NAME,"
+            + " NULL AS FKTABLE_CAT, fkn.nspname AS FKTABLE_SCHEM, fkc.relname AS FKTABLE_NAME,"
+            + " fka.attname AS FKCOLUMN_NAME, k.n AS KEY_SEQ,"
+            + " CASE con.confupdtype WHEN 'c' THEN 0 WHEN 'r' THEN 1 WHEN 'n' THEN 2 WHEN 'd' THEN 4 ELSE 3 END AS UPDATE_RULE,"
+            + " CASE con.confdeltype WHEN 'c' THEN 0 WHEN 'r' THEN 1 WHEN 'n' THEN 2 WHEN 'd' THEN 4 ELSE 3 END AS DELETE_RULE,"
+            + " con.conname AS FK_NAME, pki.relname AS PK_NAME,"
+            + " CASE WHEN con.condeferrable AND con.condeferred THEN 5 WHEN con.condeferrable THEN 6 ELSE 7 END AS DEFERRABILITY"
+            + " FROM pg_catalog.pg_constraint con"
+            + " JOIN pg_catalog.pg_class fkc ON fkc.oid = con.conrelid"
+            + " JOIN pg_catalog.pg_namespace fkn ON fkn.oid = fkc.relnamespace"
+            + " JOIN pg_catalog.pg_class pkc ON pkc.oid = con.confrelid"
+            + " JOIN pg_catalog.pg_namespace pkn ON pkn.oid = pkc.relnamespace"
+            + " CROSS JOIN pg_catalog.generate_series(1, 32) k(n)"
+            + " JOIN pg_catalog.pg_attribute fka ON fka.attrelid = con.conrelid AND fka.attnum = con.conkey[k.n]"
+            + " JOIN pg_catalog.pg_attribute pka ON pka.attrelid = con.confrelid AND pka.attnum = con.confkey[k.n]"
+            + " LEFT JOIN pg_catalog.pg_class pki ON pki.oid = con.conindid"
+            + " WHERE con.contype = 'f'";
+
+    @Override
+    protected boolean abortsTransactionOnError() {
+        return true;
+    }
+
+    @Override
+    public ResultSet getTables(Connection conn, String catalog, String schemaPattern,
+                               String tableNamePattern, String[] types) throws SQLException {
+        if (!knowsTypes(types, "TABLE", "PARTITIONED TABLE", "VIEW", "FOREIGN TABLE", "MATERIALIZED VIEW",
+                "SYSTEM TABLE", "SYSTEM VIEW", "SYSTEM TOAST TABLE", "TEMPORARY TABLE", "TEMPORARY VIEW")) {
+            return null;
+        }
+        return new Query(TABLES)
+                .and("n.nspname LIKE ?", schemaPattern)
+                .and("c.relname LIKE ?", tableNamePattern)
+                .append(") t WHERE 1 = 1")
+                .in("TABLE_TYPE", types)
+                .append(" ORDER BY TABLE_TYPE, TABLE_SCHEM, TABLE_NAME")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getColumns(Connection conn, String catalog, String schemaPattern,
+                                String tableNamePattern) throws SQLException {
+        return new Query(COLUMNS)
+                .and("n.nspname LIKE ?", schemaPattern)
+                .and("c.relname LIKE ?", tableNamePattern)
+                .append(" ORDER BY n.nspname, c.relname, a.attnum")
+                .execute(conn);
+    }
+
+    @Override
+    public ResultSet getPrimaryKeys(Connection conn, String catalog, String schema,
+                                    String table) throws SQLException {
+        return new Query(PRIMARY_KEYS)
+                .and("n.nspname = ?", schema)
+                .and("ct.relname = ?", table)
+                .append(" ORDER BY ct.relname, con.conname, k.n")
+                .execute(conn);
+    }
+
+    @Override
+    public String getChangeMarker(Connection conn, String[] schemas) throws SQLException {
+        return getString(conn, new Query(CHANGE_MARKER).in("n.nspname", schemas));
+    }
+
+    @Override
+    public ResultSet getImportedKeys(Connection conn, String catalog, String schema,
+                                     String table) throws SQLException {
+        return new Query(IMPORTED_KEYS)
+                .and("fkn.nspname = ?", schema)
+                .and("fkc.relname = ?", table)
+                .append(" ORDER BY pkn.nspname, pkc.relname, con.conname, k.n")
+                .execute(conn);
+    }
+}
@@ -0,0 +1,46 @@
+package com.riversql.databases;
+
+import com.riversql.sql.SQLConnection;
+
+import java.sql.SQLException;
+
+/**
+ * The PostgreSQL driver only uses a cursor, and so honors the fetch size,
+ * inside a transaction. On an autocommit connection, autocommit is switched
+ * off while a query result is open and restored when it is closed; such a
+ * result is exclusive, <TT>SQLConnection</TT> closing it before the
+ * connection is used for anything else, so that nothing else runs in that
+ * transaction. A result read in a transaction of the user is not: other
+ * statements run in the transaction alongside it.
+ */
+public class PostgreSQLFetchProfile extends FetchProfile {
+
+    public PostgreSQLFetchProfile(int fetchSize) {
+        super(fetchSize);
+    }
+
+    @Override
+    public boolean beginCursor(SQLConnection conn, String sql) throws SQLException {
+        if (isQuery(sql) && conn.getAutoCommit()) {
+            conn.setAutoCommit(false);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void endCursor(SQLConnection conn) throws SQLException {
+        try {
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public boolean isExclusive(boolean cursorBegun) {
+        return cursorBegun;
+    }
+}
@@ -0,0 +1,171 @@
+package com.riversql.databases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites a query so that the database itself only returns a page of rows,
+ * using the row limiting syntax of the dialect (LIMIT, FETCH FIRST, ROWNUM,
+ * TOP). The limiter of a connection is given by
+ * <TT>DialectFactory.getRowLimiter()</TT>.
+ *
+ * <P>Only plain top-level SELECTs are rewritten : queries that already limit
+ * their rows, lock them or select into something are left alone, see
+ * <TT>canLimit()</TT>. The next pages are read by running the query again,
+ * which only returns the rows following the ones read if the query orders
+ * them, see <TT>canPage()</TT>; the rest of the other queries is read from
+ * a single run of the query as is.
+ *
+ * <P>Even so, the rows whose <TT>ORDER BY</TT> keys are equal may come in
+ * another order each time, so that a page may repeat some of the rows of
+ * the previous one and skip others, unless the keys are unique. Reading the
+ * next page from the keys of the last row read rather than from an offset
+ * would need unique keys too, which the query alone does not tell.
+ */
+public abstract class RowLimiter {
+
+    /**
+     * Top-level words which make a query unsuitable for rewriting.
+     */
+    private static final Set<String> FORBIDDEN = new HashSet<String>(Arrays.asList(
+            "LIMIT", "OFFSET", "FETCH", "TOP", "ROWNUM", "INTO", "FOR", "LOCK", "PROCEDURE", "OPTION"));
+
+    /**
+     * @return <TT>true</TT> if <TT>sql</TT> is a query this limiter can rewrite.
+     */
+    public boolean canLimit(String sql) {
+        List<Word> words = topLevelWords(sql);
+        if (words.isEmpty() || !words.get(0).text.equals("SELECT")) {
+            return false;
+        }
+        for (Word w : words) {
+            if (FORBIDDEN.contains(w.text)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <TT>true</TT> if <TT>sql</TT> can be rewritten and has a
+     * top-level <TT>ORDER BY</TT>, so that its next pages can be read by
+     * running it again. Otherwise the database may return the rows in another
+     * order each time. See the class comment for keys which are not unique.
+     */
+    public boolean canPage(String sql) {
+        if (!canLimit(sql)) {
+            return false;
+        }
+        List<Word> words = topLevelWords(sql);
+        for (int i = 0; i + 1 < words.size(); i++) {
+            if (words.get(i).text.equals("ORDER") && words.get(i + 1).text.equals("BY")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether <TT>limit()</TT> can skip rows. If not, follow-up pages are
+     * obtained by limiting to <TT>offset + count</TT> rows and skipping the
+     * first <TT>offset</TT> ones while reading.
+     */
+    public abstract boolean supportsOffset();
+
+    /**
+     * Rewrites <TT>sql</TT>, which must satisfy <TT>canLimit()</TT>, so that it
+     * returns at most <TT>count</TT> rows after the first <TT>offset</TT> ones.
+     */
+    public abstract String limit(String sql, int offset, int count);
+
+    /**
+     * Removes trailing whitespace and semicolons, and ends the query with a
+     * line feed so that a trailing line comment does not swallow what is
+     * appended.
+     */
+    protected static String trim(String sql) {
+        int end = sql.length();
+        while (end > 0 && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) {
+            end--;
+        }
+        return sql.substring(0, end) + "\n";
+    }
+
+    /**
+     * A word found outside of any parenthesis, literal or comment.
+     */
+    protected static class Word {
+        final String text;
+        final int start;
+        final int end;
+
+        Word(String text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Splits <TT>sql</TT> into the upper cased words which are not nested in
+     * parentheses, string literals, quoted identifiers or comments.
+     */
+    protected static List<Word> topLevelWords(String sql) {
+        List<Word> words = new ArrayList<Word>();
+        int depth = 0;
+        int len = sql.length();
+        int i = 0;
+        while (i < len) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '[') {
+                int close = sql.indexOf(']', i + 1);
+                i = close < 0 ? len : close + 1;
+            } else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                int eol = sql.indexOf('\n', i);
+                i = eol < 0 ? len : eol + 1;
+            } else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int close = sql.indexOf("*/", i + 2);
+                i = close < 0 ? len : close + 2;
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+                        || sql.charAt(i) == '$' || sql.charAt(i) == '#')) {
+                    i++;
+                }
+                if (depth == 0) {
+                    words.add(new Word(sql.substring(start, i).toUpperCase(), start, i));
+                }
+            } else {
+                i++;
+            }
+        }
+        return words;
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int len = sql.length();
+        while (i < len) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < len && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return len;
+    }
+}
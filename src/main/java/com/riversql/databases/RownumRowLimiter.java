@@ -0,0 +1,18 @@
+package com.riversql.databases;
+
+/**
+ * Wraps the query in an inline view filtered on <TT>ROWNUM</TT>, for Oracle
+ * before 12c. Skipping rows would need an extra column, so offsets are left
+ * to the caller. The view fails when the query selects two columns with the
+ * same name (ORA-00918), the caller then runs the query as is.
+ */
+public class RownumRowLimiter extends RowLimiter {
+
+    public boolean supportsOffset() {
+        return false;
+    }
+
+    public String limit(String sql, int offset, int count) {
+        return "SELECT * FROM (" + trim(sql) + ") WHERE ROWNUM <= " + (offset + count);
+    }
+}
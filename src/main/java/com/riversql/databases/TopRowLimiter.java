@@ -0,0 +1,37 @@
+package com.riversql.databases;
+
+import java.util.List;
+
+/**
+ * <TT>SELECT TOP n</TT>, for SQL Server and Sybase. Offsets are left to the
+ * caller.
+ */
+public class TopRowLimiter extends RowLimiter {
+
+    @Override
+    public boolean canLimit(String sql) {
+        if (!super.canLimit(sql)) {
+            return false;
+        }
+        // TOP would only apply to the first query of a union
+        for (Word w : topLevelWords(sql)) {
+            if (w.text.equals("UNION") || w.text.equals("EXCEPT") || w.text.equals("INTERSECT")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean supportsOffset() {
+        return false;
+    }
+
+    public String limit(String sql, int offset, int count) {
+        List<Word> words = topLevelWords(sql);
+        int pos = words.get(0).end;
+        if (words.size() > 1 && (words.get(1).text.equals("DISTINCT") || words.get(1).text.equals("ALL"))) {
+            pos = words.get(1).end;
+        }
+        return sql.substring(0, pos) + " TOP " + (offset + count) + trim(sql.substring(pos));
+    }
+}
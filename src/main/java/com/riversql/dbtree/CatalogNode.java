@@ -43,6 +43,11 @@ public class CatalogNode extends DBNode implements IStructureNode {
         pm.loadCatalogChildren(this, children, conn);
     }
 
+    @Override
+    public void invalidateMetaData() {
+        conn.getMetaDataCache().invalidateSchema(dummy ? null : catalogName, null);
+    }
+
     public String getName() {
         return catalogName;
     }
@@ -10,10 +10,12 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.regex.Pattern;
 
 
-public abstract class DBNode implements IStructureNode {
+public abstract class DBNode implements IStructureNode, IDManager.Subtree {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DBNode.class);
 
@@ -21,6 +23,7 @@ public abstract class DBNode implements IStructureNode {
     protected String id;
     protected SQLConnection conn;
     private boolean loaded;
+    private volatile boolean loading;
 
     public DBNode(SQLConnection conn) {
         this.id = IDManager.get().nextID();
@@ -28,11 +31,57 @@ public abstract class DBNode implements IStructureNode {
         this.conn = conn;
     }
 
+    /**
+     * <TT>null</TT> while the children are being read, so that they are not
+     * released before they are all there.
+     */
+    public Collection<String> getChildIds() {
+        if (loading) {
+            return null;
+        }
+        List<String> ids = new ArrayList<String>(children.size());
+        for (IStructureNode child : children) {
+            ids.add(child.getId());
+        }
+        return ids;
+    }
+
     public void refresh() {
         loaded = false;
+        releaseChildren();
         children.clear();
     }
 
+    /**
+     * Forgets what the metadata cache of the connection knows about the
+     * objects under this node, everything by default.
+     */
+    public void invalidateMetaData() {
+        conn.getMetaDataCache().invalidate();
+    }
+
+    /**
+     * Forgets this node and all its descendants.
+     */
+    public void release() {
+        releaseChildren();
+        IDManager idmanager = IDManager.get();
+        if (idmanager != null)
+            idmanager.release(id);
+    }
+
+    /**
+     * Releases the ids of the children before they are dropped.
+     */
+    protected void releaseChildren() {
+        IDManager idmanager = IDManager.get();
+        for (IStructureNode child : children) {
+            child.refresh();
+            if (idmanager != null)
+                idmanager.release(child.getId());
+        }
+    }
+
     public String getId() {
         return id;
     }
@@ -42,18 +91,43 @@ public abstract class DBNode implements IStructureNode {
     }
 
     final public JSONObject getChildrenToJSon() {
+        return getChildrenToJSon(0, 0, null);
+    }
+
+    /**
+     * Returns the children whose name contains <TT>filter</TT>, where
+     * <TT>*</TT> and <TT>?</TT> are wildcards, from <TT>start</TT> and at
+     * most <TT>limit</TT> of them if it is positive, with their total count.
+     */
+    public JSONObject getChildrenToJSon(int start, int limit, String filter) {
         try {
             load();
         } catch (SQLException e1) {
             LOGGER.error("getChildrenToJSon", e1);
         }
 
+        List<IStructureNode> matching = children;
+        if (filter != null && filter.trim().length() > 0) {
+            Pattern pattern = filterToRegex(filter.trim());
+            matching = new ArrayList<IStructureNode>();
+            for (IStructureNode child : children) {
+                if (pattern.matcher(child.getName()).matches()) {
+                    matching.add(child);
+                }
+            }
+        }
+        int from = Math.min(Math.max(start, 0), matching.size());
+        int to = limit > 0 ? Math.min(from + limit, matching.size()) : matching.size();
+        return toJSON(matching.subList(from, to), matching.size());
+    }
+
+    protected static JSONObject toJSON(List<? extends IStructureNode> nodes, int total) {
         JSONObject js = new JSONObject();
         try {
             JSONArray arr = new JSONArray();
-            for (int i = 0; i < children.size(); i++) {
+            for (int i = 0; i < nodes.size(); i++) {
                 JSONObject obj = new JSONObject();
-                IStructureNode is = children.get(i);
+                IStructureNode is = nodes.get(i);
                 obj.put("text", is.getName());
                 obj.put("id", is.getId());
                 obj.put("leaf", is.isLeaf());
@@ -63,12 +137,28 @@ public abstract class DBNode implements IStructureNode {
                 arr.put(obj);
             }
             js.put("nodes", arr);
+            js.put("total", total);
         } catch (JSONException e) {
             LOGGER.error("getChildrenToJSon", e);
         }
         return js;
     }
 
+    private static Pattern filterToRegex(String filter) {
+        StringBuilder regex = new StringBuilder(".*");
+        StringBuilder literal = new StringBuilder();
+        for (char c : filter.toCharArray()) {
+            if (c == '*' || c == '?') {
+                regex.append(Pattern.quote(literal.toString())).append(c == '*' ? ".*" : ".");
+                literal.setLength(0);
+            } else {
+                literal.append(c);
+            }
+        }
+        regex.append(Pattern.quote(literal.toString())).append(".*");
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
     public String getQualifiedName() {
         return null;
     }
@@ -77,10 +167,27 @@ public abstract class DBNode implements IStructureNode {
 
     final public void load() throws SQLException {
         if (loaded) return;
-        nodeLoad();
+        loading = true;
+        try {
+            nodeLoad();
+        } finally {
+            loading = false;
+        }
         loaded = true;
     }
 
+    final protected boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Whether the children have been read since the node was created or
+     * last refreshed.
+     */
+    final public boolean isLoaded() {
+        return loaded;
+    }
+
     final public List<IStructureNode> getChildren() {
         try {
             load();
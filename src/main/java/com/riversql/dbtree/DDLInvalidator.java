@@ -0,0 +1,230 @@
+package com.riversql.dbtree;
+
+import com.riversql.plugin.BasePluginType;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Forgets what a DDL statement run on a session made stale: the entries of
+ * the metadata cache of its objects, and the nodes of the tree listing them,
+ * which are refreshed rather than the whole tree. See
+ * <TT>SQLSession.invalidate()</TT>.
+ */
+final class DDLInvalidator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DDLInvalidator.class);
+
+    /**
+     * Types of objects listed by the <TT>TablesNode</TT>s.
+     */
+    private static final Set<String> TABLE_TYPES = new HashSet<String>(Arrays.asList(
+            "TABLE", "VIEW", "SYNONYM", "ALIAS"));
+
+    private final SQLSession session;
+    private final SQLConnection conn;
+    private final MetaDataCache cache;
+    private final Set<String> changed = new LinkedHashSet<String>();
+    private String defaultCatalog, defaultSchema;
+    private boolean upper, lower, schemas;
+
+    DDLInvalidator(SQLSession session) {
+        this.session = session;
+        this.conn = session.getConn();
+        this.cache = conn.getMetaDataCache();
+    }
+
+    /**
+     * @return the ids of the nodes refreshed, or whose details changed.
+     */
+    List<String> invalidate(SQLStatement statement) throws SQLException {
+        String type = statement.getObjectType();
+        if (!statement.changesMetaData() || type == null) {
+            return new ArrayList<String>();
+        }
+        DatabaseMetaData md = conn.getSQLMetaData().getJDBCMetaData();
+        upper = md.storesUpperCaseIdentifiers();
+        lower = md.storesLowerCaseIdentifiers();
+        schemas = md.supportsSchemasInTableDefinitions();
+        defaultCatalog = conn.getCatalog();
+        try {
+            defaultSchema = conn.getConnection().getSchema();
+        } catch (Throwable e) {
+            // before JDBC 4.1, any schema may be the one meant
+            defaultSchema = null;
+        }
+
+        if (type.equals("SCHEMA") || type.equals("USER") || type.equals("DATABASE")) {
+            for (String[] name : statement.getNames()) {
+                String n = toStoredCase(name[name.length - 1]);
+                if (type.equals("DATABASE") || !schemas) {
+                    cache.invalidateSchema(n, null);
+                } else {
+                    cache.invalidateSchema(null, n);
+                }
+            }
+            DatabaseNode dn = session.getDatabaseNode();
+            if (statement.changesObjectList() && dn.isLoaded()) {
+                dn.refresh();
+                changed.add(dn.getId());
+            }
+        } else if (TABLE_TYPES.contains(type)) {
+            for (String[] name : statement.getNames()) {
+                table(resolve(name), type, statement.changesObjectList());
+            }
+        } else if (type.equals("INDEX") || type.equals("COLUMN") || type.equals("CONSTRAINT")) {
+            if (statement.getTable() != null) {
+                table(resolve(statement.getTable()), "TABLE", false);
+            } else {
+                for (String[] name : statement.getNames()) {
+                    String[] resolved = resolve(name);
+                    cache.invalidateIndexes(resolved[0], resolved[1]);
+                }
+            }
+        } else {
+            // procedures, packages, sequences and the like, listed by the plugins
+            cache.invalidateObjects();
+            for (String[] name : statement.getNames()) {
+                objects(resolve(name), type);
+            }
+            if (statement.getTable() != null) {
+                table(resolve(statement.getTable()), "TABLE", false);
+            }
+        }
+        return new ArrayList<String>(changed);
+    }
+
+    /**
+     * Forgets a table, and refreshes the lists of its type if it was created,
+     * dropped or renamed; otherwise only its own node changes.
+     */
+    private void table(String[] name, String type, boolean listChanged) {
+        cache.invalidateTable(name[0], name[1], name[2]);
+        for (DBNode container : containers(name[0], name[1])) {
+            for (IStructureNode child : container.children) {
+                if (!(child instanceof TablesNode) || !isOfType((TablesNode) child, type)) {
+                    continue;
+                }
+                TablesNode tables = (TablesNode) child;
+                if (listChanged) {
+                    tables.refresh();
+                    changed.add(tables.getId());
+                } else {
+                    TableNode node = tables.findTableNode(name[2]);
+                    if (node != null) {
+                        changed.add(node.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Refreshes the nodes of the plugins listing the objects of a type.
+     */
+    private void objects(String[] name, String type) {
+        for (DBNode container : containers(name[0], name[1])) {
+            for (IStructureNode child : container.children) {
+                if (child instanceof BasePluginType && child.getName().equalsIgnoreCase(type)
+                        && ((BasePluginType) child).isLoaded()) {
+                    child.refresh();
+                    changed.add(child.getId());
+                }
+            }
+        }
+    }
+
+    private static boolean isOfType(TablesNode node, String type) {
+        String tableType = node.getTableType().toUpperCase();
+        if (type.equals("TABLE")) {
+            return tableType.indexOf("VIEW") < 0 && tableType.indexOf("SYNONYM") < 0
+                    && tableType.indexOf("ALIAS") < 0 && tableType.indexOf("SYSTEM") < 0;
+        }
+        return tableType.indexOf(type) > -1;
+    }
+
+    /**
+     * Returns the loaded schema and catalog nodes which may hold the objects
+     * of a schema, a <TT>null</TT> catalog or schema matching any.
+     */
+    private List<DBNode> containers(String catalog, String schema) {
+        List<DBNode> containers = new ArrayList<DBNode>();
+        DatabaseNode dn = session.getDatabaseNode();
+        if (!dn.isLoaded()) {
+            return containers;
+        }
+        for (IStructureNode child : dn.children) {
+            if (child instanceof CatalogOfSchemasNode) {
+                CatalogOfSchemasNode cat = (CatalogOfSchemasNode) child;
+                if (cat.isLoaded() && (catalog == null || catalog.equalsIgnoreCase(cat.getName()))) {
+                    for (IStructureNode schemaNode : cat.children) {
+                        if (schema == null || schema.equalsIgnoreCase(schemaNode.getName())) {
+                            add(containers, (DBNode) schemaNode);
+                        }
+                    }
+                }
+            } else if (child instanceof SchemaNode) {
+                String catalogName = ((SchemaNode) child).getCatalogName();
+                if ((schema == null || schema.equalsIgnoreCase(child.getName()))
+                        && (catalog == null || catalogName == null || catalog.equalsIgnoreCase(catalogName))) {
+                    add(containers, (DBNode) child);
+                }
+            } else if (child instanceof CatalogNode) {
+                CatalogNode cat = (CatalogNode) child;
+                if (cat.isDummy() || catalog == null || catalog.equalsIgnoreCase(cat.getName())) {
+                    add(containers, cat);
+                }
+            }
+        }
+        return containers;
+    }
+
+    private static void add(List<DBNode> containers, DBNode node) {
+        if (node.isLoaded()) {
+            containers.add(node);
+        }
+    }
+
+    /**
+     * Returns the catalog, schema and name of a name as written, the ones
+     * left out being the current ones of the connection, or <TT>null</TT>
+     * when they are not known.
+     */
+    private String[] resolve(String[] name) {
+        String catalog = defaultCatalog, schema = schemas ? defaultSchema : null;
+        String object = toStoredCase(name[name.length - 1]);
+        if (name.length == 2) {
+            if (schemas) {
+                schema = toStoredCase(name[0]);
+                // the schema of another catalog may have the same name
+                catalog = null;
+            } else {
+                catalog = toStoredCase(name[0]);
+            }
+        } else if (name.length > 2) {
+            catalog = toStoredCase(name[name.length - 3]);
+            schema = toStoredCase(name[name.length - 2]);
+        }
+        if (schemas && schema == null) {
+            // which schema a name without one is in depends on the search path
+            catalog = null;
+        }
+        LOGGER.debug("Invalidating {}.{}.{}", catalog, schema, object);
+        return new String[]{catalog, schema, object};
+    }
+
+    private String toStoredCase(String identifier) {
+        return SQLStatement.toStoredCase(identifier, upper, lower);
+    }
+}
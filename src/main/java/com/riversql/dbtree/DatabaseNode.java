@@ -10,6 +10,7 @@ import org.json.JSONObject;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class DatabaseNode extends DBNode implements IStructureNode {
 
@@ -121,6 +122,46 @@ public class DatabaseNode extends DBNode implements IStructureNode {
         return sessionName;
     }
 
+    /**
+     * Returns the nodes down to the schema, or catalog, holding the tables
+     * and objects of <TT>catalog</TT> and <TT>schema</TT>, starting with this
+     * node, without listing any table.
+     *
+     * @return <TT>null</TT> if no node holds them.
+     */
+    public List<IStructureNode> getPath(String catalog, String schema) {
+        List<IStructureNode> path = new ArrayList<IStructureNode>();
+        path.add(this);
+        for (IStructureNode child : getChildren()) {
+            if (child instanceof CatalogOfSchemasNode) {
+                if (catalog != null && !catalog.equals(child.getName())) {
+                    continue;
+                }
+                for (IStructureNode schemaNode : ((CatalogOfSchemasNode) child).getChildren()) {
+                    if (schemaNode.getName().equals(schema)) {
+                        path.add(child);
+                        path.add(schemaNode);
+                        return path;
+                    }
+                }
+            } else if (child instanceof SchemaNode) {
+                String catalogName = ((SchemaNode) child).getCatalogName();
+                if (child.getName().equals(schema)
+                        && (catalog == null || catalogName == null || catalog.equals(catalogName))) {
+                    path.add(child);
+                    return path;
+                }
+            } else if (child instanceof CatalogNode) {
+                CatalogNode catalogNode = (CatalogNode) child;
+                if (catalogNode.isDummy() ? catalog == null : catalogNode.getName().equals(catalog)) {
+                    path.add(child);
+                    return path;
+                }
+            }
+        }
+        return null;
+    }
+
     public JSONObject toJSON() throws JSONException {
         JSONObject obj = new JSONObject();
         obj.put("text", getName());
@@ -0,0 +1,553 @@
+package com.riversql.dbtree;
+
+import com.riversql.IDManager;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ISQLDriver;
+import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.MetaDataSnapshots;
+import com.riversql.sql.ObjectIndex;
+import com.riversql.sql.SQLConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads in the background, right after a session connects, the tables of
+ * every schema with their columns, primary and foreign keys, so that they
+ * are in the <TT>MetaDataCache</TT> of the source when the tree is expanded.
+ *
+ * <P>The crawler walks its own tree on connections of its own, borrowed from
+ * the pool of the source, so the tables are cached under the same keys as
+ * for the tree of the sessions. The walker hands the tables to at most
+ * <TT>connections - 1</TT> workers through a bounded queue; when the queue
+ * is full, the walker reads the table itself, which keeps it from listing
+ * tables faster than they are read. The workers run on threads of their
+ * own, so that they never wait behind the crawls queued for a thread.
+ * Tables whose keys were read with those of their whole schema are not
+ * queued at all. What the crawler reads is pinned in the cache, so that on a
+ * source of many tables the first ones are neither evicted by the last ones
+ * nor expired before the crawl ends.
+ */
+public class MetaDataCrawler implements Runnable {
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+    public static final int DEFAULT_CONNECTIONS = 2;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetaDataCrawler.class);
+
+    private static final int TABLE_QUEUE_SIZE = 100;
+
+    public enum State {QUEUED, RUNNING, DONE, FAILED, CANCELLED}
+
+    private static volatile boolean enabled;
+    private static volatile int connections = DEFAULT_CONNECTIONS;
+    private static ThreadPoolExecutor executor;
+    private static ThreadPoolExecutor workers;
+    private static final Map<MetaDataCache, MetaDataCrawler> crawlers =
+            new HashMap<MetaDataCache, MetaDataCrawler>();
+
+    private final ThreadPoolExecutor threads;
+    private final ConnectionPool pool;
+    private final ISQLDriver driver;
+    private final MetaDataCache cache;
+    private final BlockingQueue<ITableInfo> tables = new ArrayBlockingQueue<ITableInfo>(TABLE_QUEUE_SIZE);
+    /**
+     * Tables queued or being read by a worker.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger schemasFound = new AtomicInteger();
+    private final AtomicInteger schemasDone = new AtomicInteger();
+    private final AtomicInteger tablesFound = new AtomicInteger();
+    private final AtomicInteger tablesDone = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private volatile State state = State.QUEUED;
+    private volatile boolean walked;
+    private volatile boolean cancelled;
+    private volatile String current;
+    private volatile long started;
+    private volatile long finished;
+
+    private MetaDataCrawler(ThreadPoolExecutor threads, ConnectionPool pool, ISQLDriver driver,
+                            MetaDataCache cache) {
+        this.threads = threads;
+        this.pool = pool;
+        this.driver = driver;
+        this.cache = cache;
+    }
+
+    /**
+     * @param enabled     whether sessions are crawled after they connect.
+     * @param threads     threads shared by all the crawls and the reads of
+     *                    <TT>readNames()</TT>, each running crawl using up
+     *                    to <TT>connections - 1</TT> more for its workers.
+     * @param queueSize   crawls and reads waiting for a thread, beyond which
+     *                    they are not started.
+     * @param connections connections used by one crawl.
+     */
+    public static synchronized void start(boolean enabled, int threads, int queueSize, int connections) {
+        MetaDataCrawler.enabled = enabled;
+        MetaDataCrawler.connections = Math.max(1, connections);
+        // started even when crawls are disabled, for the reads of names
+        if (executor != null) {
+            return;
+        }
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), threadFactory("riversql-crawler-"));
+        executor.allowCoreThreadTimeOut(true);
+        // no queue: a worker which cannot start leaves its tables to the walker
+        workers = new ThreadPoolExecutor(0, Math.max(1, threads * (MetaDataCrawler.connections - 1)),
+                60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory("riversql-crawler-worker-"));
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        };
+    }
+
+    public static synchronized void shutdown() {
+        for (MetaDataCrawler crawler : crawlers.values()) {
+            crawler.cancel();
+        }
+        crawlers.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts crawling the source of <TT>cache</TT>, unless it is already
+     * being crawled.
+     *
+     * @return the crawler of the source, or <TT>null</TT> if crawling is
+     * disabled or too many crawls are waiting.
+     */
+    public static synchronized MetaDataCrawler crawl(ConnectionPool pool, ISQLDriver driver, MetaDataCache cache) {
+        if (!enabled || executor == null) {
+            return null;
+        }
+        prune();
+        MetaDataCrawler crawler = crawlers.get(cache);
+        if (crawler != null && !crawler.isFinished()) {
+            return crawler;
+        }
+        crawler = new MetaDataCrawler(workers, pool, driver, cache);
+        try {
+            executor.execute(crawler);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Too many metadata crawls queued, not crawling");
+            return null;
+        }
+        crawlers.put(cache, crawler);
+        return crawler;
+    }
+
+    /**
+     * @return the last crawler of the source of <TT>cache</TT>, or
+     * <TT>null</TT>.
+     */
+    public static synchronized MetaDataCrawler get(MetaDataCache cache) {
+        prune();
+        return crawlers.get(cache);
+    }
+
+    /**
+     * Forgets the finished crawls of the sources whose cache is no longer
+     * used.
+     */
+    private static void prune() {
+        Set<MetaDataCache> caches = new HashSet<MetaDataCache>(MetaDataCache.getCaches());
+        for (Iterator<Map.Entry<MetaDataCache, MetaDataCrawler>> it = crawlers.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<MetaDataCache, MetaDataCrawler> entry = it.next();
+            if (entry.getValue().isFinished() && !caches.contains(entry.getKey())) {
+                it.remove();
+            }
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        tables.clear();
+    }
+
+    public void run() {
+        started = System.currentTimeMillis();
+        state = State.RUNNING;
+        IDManager previous = IDManager.get();
+        // the ids of the crawler's own tree
+        IDManager.set(new IDManager() {
+        });
+        SQLConnection conn = null;
+        // anything invalidated during the crawl may be missing from the cache
+        int generation = cache.getGeneration();
+        try {
+            conn = open();
+            for (int i = 1; i < connections; i++) {
+                try {
+                    threads.execute(new Worker());
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            walk(new DatabaseNode(conn, "crawler"), conn);
+            walked = true;
+            // help the workers, then wait for the tables they are reading
+            while (pending.get() > 0 && !cancelled) {
+                ITableInfo table = tables.poll(100, TimeUnit.MILLISECONDS);
+                if (table != null) {
+                    readTable(conn, table);
+                }
+            }
+            state = cancelled ? State.CANCELLED : State.DONE;
+            if (state == State.DONE) {
+                if (cache.markComplete(generation)) {
+                    MetaDataSnapshots.save(cache);
+                } else {
+                    LOGGER.info("The metadata of " + cache.getSource()
+                            + " was invalidated during its crawl, not saving its snapshot");
+                }
+            }
+        } catch (InterruptedException e) {
+            state = State.CANCELLED;
+        } catch (Exception e) {
+            LOGGER.warn("Metadata crawl failed", e);
+            state = State.FAILED;
+        } finally {
+            walked = true;
+            finished = System.currentTimeMillis();
+            current = null;
+            close(conn);
+            IDManager.set(previous);
+        }
+    }
+
+    /**
+     * Starts reading in the background the tables and columns of every
+     * schema of the source of <TT>conn</TT> into its cache, with one call
+     * for each per schema, for the <TT>NameIndex</TT> and
+     * <TT>ObjectIndex</TT> to know the whole source and not only the
+     * schemas opened in the tree. The read runs on a connection borrowed
+     * from the pool of <TT>conn</TT>, the indexes answering meanwhile from
+     * what is cached so far. Does it once until the cache is invalidated or
+     * a read fails, and not while a crawl reads them already; what is
+     * cached is not read again.
+     *
+     * @return the read started, or <TT>null</TT>.
+     */
+    public static Future<?> readNames(SQLConnection conn) {
+        final MetaDataCache cache = conn.getMetaDataCache();
+        final ConnectionPool pool = conn.getPool();
+        final ISQLDriver driver = conn.getSQLDriver();
+        MetaDataCrawler crawler = get(cache);
+        if (crawler != null && !crawler.isFinished()) {
+            return null;
+        }
+        if (pool == null || !isStarted() || !cache.markNamesRead()) {
+            return null;
+        }
+        Future<?> read = submit(new Runnable() {
+            public void run() {
+                readNames(pool, driver, cache);
+            }
+        });
+        if (read == null) {
+            cache.resetNamesRead();
+        }
+        return read;
+    }
+
+    /**
+     * Starts reading in the background, on a connection borrowed from the
+     * pool of <TT>conn</TT>, the objects of the plugins into the
+     * <TT>ObjectIndex</TT> of its cache, unless they are there or being
+     * read already.
+     *
+     * @return the read started, or <TT>null</TT>.
+     */
+    public static Future<?> readObjects(SQLConnection conn) {
+        final ObjectIndex index = conn.getMetaDataCache().getObjectIndex();
+        final ConnectionPool pool = conn.getPool();
+        final ISQLDriver driver = conn.getSQLDriver();
+        if (pool == null || !isStarted() || !index.markObjectsLoading()) {
+            return null;
+        }
+        Future<?> read = submit(new Runnable() {
+            public void run() {
+                SQLConnection conn = null;
+                try {
+                    conn = new SQLConnection(pool.borrow(), null, driver, pool);
+                    index.loadObjects(conn);
+                } catch (Exception e) {
+                    LOGGER.debug("Reading the objects", e);
+                } finally {
+                    // the objects are read again on the next request if this failed
+                    index.resetObjectsLoading();
+                    close(conn);
+                }
+            }
+        });
+        if (read == null) {
+            index.resetObjectsLoading();
+        }
+        return read;
+    }
+
+    private static synchronized boolean isStarted() {
+        return executor != null;
+    }
+
+    /**
+     * @return the task queued, or <TT>null</TT> if too many are waiting.
+     */
+    private static synchronized Future<?> submit(Runnable task) {
+        if (executor == null) {
+            return null;
+        }
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Too many metadata reads queued, not reading");
+            return null;
+        }
+    }
+
+    private static void readNames(ConnectionPool pool, ISQLDriver driver, MetaDataCache cache) {
+        IDManager previous = IDManager.get();
+        // the ids of a tree of its own
+        IDManager.set(new IDManager() {
+        });
+        SQLConnection conn = null;
+        boolean read = false;
+        try {
+            conn = new SQLConnection(pool.borrow(), null, driver, pool);
+            conn.setMetaDataCache(cache);
+            read = readNames(new DatabaseNode(conn, "names"));
+        } catch (Exception e) {
+            LOGGER.debug("Reading the names", e);
+        } finally {
+            if (!read) {
+                // read again on the next request
+                cache.resetNamesRead();
+            }
+            close(conn);
+            IDManager.set(previous);
+        }
+    }
+
+    /**
+     * @return <TT>false</TT> if some names could not be read.
+     */
+    private static boolean readNames(DBNode node) {
+        try {
+            node.load();
+        } catch (SQLException e) {
+            LOGGER.debug("Reading the names of " + node.getName(), e);
+            return false;
+        }
+        boolean read = true;
+        for (IStructureNode child : node.getChildren()) {
+            if (child instanceof TablesNode) {
+                try {
+                    ((TablesNode) child).prefetchColumns();
+                } catch (SQLException e) {
+                    LOGGER.debug("Reading the names of " + child.getName(), e);
+                    read = false;
+                }
+            } else if (child instanceof DatabaseNode || child instanceof CatalogOfSchemasNode
+                    || child instanceof CatalogNode || child instanceof SchemaNode) {
+                read &= readNames((DBNode) child);
+            }
+        }
+        return read;
+    }
+
+    private void walk(DBNode node, SQLConnection conn) throws SQLException, InterruptedException {
+        for (IStructureNode child : node.getChildren()) {
+            if (cancelled) {
+                return;
+            }
+            if (child instanceof TablesNode) {
+                crawlTables((TablesNode) child, conn);
+            } else if (child instanceof DatabaseNode || child instanceof CatalogOfSchemasNode
+                    || child instanceof CatalogNode || child instanceof SchemaNode) {
+                walk((DBNode) child, conn);
+            }
+        }
+    }
+
+    private void crawlTables(TablesNode node, SQLConnection conn) throws InterruptedException {
+        schemasFound.incrementAndGet();
+        current = node.schemaName != null ? node.schemaName : node.catName;
+        try {
+            ITableInfo[] infos = cache.getTables(conn.getSQLMetaData(), node.catName, node.schemaName,
+                    node.getTableType());
+            tablesFound.addAndGet(infos.length);
+            if (infos.length == 0) {
+                return;
+            }
+            cache.prefetchColumns(conn.getSQLMetaData(), node.catName, node.schemaName, infos);
+            if (cache.prefetchKeys(conn.getSQLMetaData(), node.catName, node.schemaName, infos)) {
+                tablesDone.addAndGet(infos.length);
+                return;
+            }
+            for (ITableInfo info : infos) {
+                if (cancelled) {
+                    return;
+                }
+                pending.incrementAndGet();
+                if (!tables.offer(info, 10, TimeUnit.MILLISECONDS)) {
+                    readTable(conn, info);
+                }
+            }
+        } catch (SQLException e) {
+            errors.incrementAndGet();
+            LOGGER.debug("Crawling " + current, e);
+        } finally {
+            schemasDone.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the keys of a table counted in <TT>pending</TT>.
+     */
+    private void readTable(SQLConnection conn, ITableInfo table) {
+        try {
+            cache.getPrimaryKey(conn.getSQLMetaData(), table);
+            cache.getImportedKeys(conn.getSQLMetaData(), table);
+        } catch (SQLException e) {
+            errors.incrementAndGet();
+            LOGGER.debug("Crawling " + table.getQualifiedName(), e);
+        } finally {
+            tablesDone.incrementAndGet();
+            pending.decrementAndGet();
+        }
+    }
+
+    private SQLConnection open() throws SQLException {
+        SQLConnection conn = new SQLConnection(pool.borrow(), null, driver, pool);
+        conn.setMetaDataCache(cache);
+        conn.setPinMetaData(true);
+        return conn;
+    }
+
+    private static void close(SQLConnection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        return state != State.QUEUED && state != State.RUNNING;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getSchemasFound() {
+        return schemasFound.get();
+    }
+
+    public int getSchemasDone() {
+        return schemasDone.get();
+    }
+
+    public int getTablesFound() {
+        return tablesFound.get();
+    }
+
+    public int getTablesDone() {
+        return tablesDone.get();
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return the schema, or catalog, being listed.
+     */
+    public String getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the milliseconds spent crawling so far.
+     */
+    public long getElapsed() {
+        if (started == 0) {
+            return 0;
+        }
+        return (finished == 0 ? System.currentTimeMillis() : finished) - started;
+    }
+
+    /**
+     * Reads the tables queued by the walker on a connection of its own,
+     * until the walker is done and the queue is empty.
+     */
+    private class Worker implements Runnable {
+        public void run() {
+            SQLConnection conn = null;
+            try {
+                while (!cancelled && !(walked && tables.isEmpty())) {
+                    ITableInfo table = tables.poll(100, TimeUnit.MILLISECONDS);
+                    if (table == null) {
+                        continue;
+                    }
+                    if (conn == null) {
+                        try {
+                            conn = open();
+                        } catch (SQLException e) {
+                            // leave the table and the others to the walker
+                            if (!tables.offer(table)) {
+                                errors.incrementAndGet();
+                                tablesDone.incrementAndGet();
+                                pending.decrementAndGet();
+                            }
+                            return;
+                        }
+                    }
+                    readTable(conn, table);
+                }
+            } catch (InterruptedException e) {
+            } finally {
+                close(conn);
+            }
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.riversql.dbtree;
 
 import com.riversql.IDManager;
 import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLStatement;
+
+import java.sql.SQLException;
+import java.util.List;
 
 public class SQLSession {
     DatabaseNode dn;
@@ -10,11 +14,12 @@ public class SQLSession {
     private SQLConnection conn;
     private String sessionName;
     private int sourceid;
+    private boolean limitRows;
 
     public SQLSession(int sourceid, String sessionName, SQLConnection conn) {
         this.sourceid = sourceid;
         this.id = IDManager.get().nextID();
-        IDManager.get().put(id, this);
+        IDManager.get().putPinned(id, this);
         this.conn = conn;
         this.sessionName = sessionName;
         dn = new DatabaseNode(conn, sessionName);
@@ -40,6 +45,29 @@ public class SQLSession {
         return id;
     }
 
+    /**
+     * Whether queries run on this session are rewritten by default to only
+     * return the rows of the page being read.
+     */
+    public boolean isLimitRows() {
+        return limitRows;
+    }
+
+    public void setLimitRows(boolean limitRows) {
+        this.limitRows = limitRows;
+    }
+
+    /**
+     * Forgets the cached metadata and the tree nodes a statement run
+     * successfully on this session made stale, the objects it created,
+     * altered or dropped being the only ones read again.
+     *
+     * @return the ids of the nodes the client should reload.
+     */
+    public List<String> invalidate(SQLStatement statement) throws SQLException {
+        return new DDLInvalidator(this).invalidate(statement);
+    }
+
     public String getSessionName() {
         return sessionName;
     }
@@ -36,6 +36,11 @@ public class SchemaNode extends DBNode implements IStructureNode {
 
     }
 
+    @Override
+    public void invalidateMetaData() {
+        conn.getMetaDataCache().invalidateSchema(catalogName, schemaName);
+    }
+
     public String getName() {
         return schemaName;
     }
@@ -1,12 +1,12 @@
 package com.riversql.dbtree;
 
 import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataRows;
 import com.riversql.sql.SQLConnection;
 import com.riversql.sql.TableColumnInfo;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
@@ -70,9 +70,17 @@ public class TableNode extends DBNode implements IStructureNode {
         return text;
     }
 
+    /**
+     * The columns of the table, read through the metadata cache of the
+     * connection.
+     */
+    public TableColumnInfo[] getColumnInfo() throws SQLException {
+        return conn.getMetaDataCache().getColumns(conn.getSQLMetaData(), iTableInfo);
+    }
+
     public List<String> getColumnNames() throws SQLException {
         List<String> list = new ArrayList<String>();
-        TableColumnInfo colsInfo[] = conn.getSQLMetaData().getColumnInfo(iTableInfo);
+        TableColumnInfo colsInfo[] = getColumnInfo();
 
         for (int i = 0; i < colsInfo.length; i++) {
             list.add(colsInfo[i].getColumnName());
@@ -82,7 +90,7 @@ public class TableNode extends DBNode implements IStructureNode {
 
     public List<String[]> getColumnNamesAndTypes() throws SQLException {
         List<String[]> list = new ArrayList<String[]>();
-        TableColumnInfo colsInfo[] = conn.getSQLMetaData().getColumnInfo(iTableInfo);
+        TableColumnInfo colsInfo[] = getColumnInfo();
 
         for (int i = 0; i < colsInfo.length; i++) {
             int dataType = colsInfo[i].getDataType();
@@ -94,7 +102,7 @@ public class TableNode extends DBNode implements IStructureNode {
 
     public List<ColumnModel> getColumns() throws SQLException {
         List<ColumnModel> list = new ArrayList<ColumnModel>();
-        TableColumnInfo colsInfo[] = conn.getSQLMetaData().getColumnInfo(iTableInfo);
+        TableColumnInfo colsInfo[] = getColumnInfo();
 
         for (int i = 0; i < colsInfo.length; i++) {
             ColumnModel cm = new ColumnModel(8);
@@ -123,24 +131,16 @@ public class TableNode extends DBNode implements IStructureNode {
         return remarks;
     }
 
-    public ResultSet getIndexes() throws SQLException {
-        return conn.getConnection().getMetaData().getIndexInfo(
-                iTableInfo.getCatalogName(), iTableInfo.getSchemaName(),
-                iTableInfo.getSimpleName(), false, true);
-
+    public MetaDataRows getIndexes() throws SQLException {
+        return conn.getMetaDataCache().getIndexes(conn.getSQLMetaData(), iTableInfo);
     }
 
-    public ResultSet getPK() throws Exception {
-        return conn.getConnection().getMetaData().getPrimaryKeys(
-                iTableInfo.getCatalogName(), iTableInfo.getSchemaName(),
-                iTableInfo.getSimpleName());
-
+    public MetaDataRows getPK() throws SQLException {
+        return conn.getMetaDataCache().getPrimaryKey(conn.getSQLMetaData(), iTableInfo);
     }
 
-    public ResultSet getFK() throws Exception {
-        return conn.getConnection().getMetaData().getImportedKeys(
-                iTableInfo.getCatalogName(), iTableInfo.getSchemaName(),
-                iTableInfo.getSimpleName());
+    public MetaDataRows getFK() throws SQLException {
+        return conn.getMetaDataCache().getImportedKeys(conn.getSQLMetaData(), iTableInfo);
     }
 
     public ResultSet getGrants() throws Exception {
@@ -156,59 +156,38 @@ public class TableNode extends DBNode implements IStructureNode {
     }
 
     public String getPkName() {
-        ResultSet rs = null;
         try {
-            rs = getPK();
-            String name = "";
-            if (rs != null) {
-
-                if (rs.next()) {
-                    name = rs.getString("PK_NAME");
-                }
-                return name;
+            MetaDataRows.Cursor rs = getPK().cursor();
+            if (rs.next()) {
+                return rs.getString("PK_NAME");
             }
+            return "";
         } catch (Exception e) {
-        } finally {
-            if (rs != null) {
-                try {
-                    Statement st = rs.getStatement();
-                    rs.close();
-                    if (st != null)
-                        st.close();
-                } catch (SQLException e) {
-                }
-
-            }
         }
         return null;
     }
 
     public List<String> getPrimaryKeyColumns() {
         ArrayList<String> ls = new ArrayList<String>();
-        ResultSet rs = null;
         try {
-            rs = getPK();
+            MetaDataRows.Cursor rs = getPK().cursor();
             while (rs.next()) {
                 ls.add(rs.getString("COLUMN_NAME"));
             }
         } catch (Exception e) {
 
-        } finally {
-            if (rs != null) {
-                try {
-                    Statement st = rs.getStatement();
-                    rs.close();
-                    if (st != null)
-                        st.close();
-                } catch (SQLException e) {
-                }
-            }
         }
-
-
         return ls;
     }
 
+    /**
+     * Forgets what the metadata cache knows about this table.
+     */
+    @Override
+    public void invalidateMetaData() {
+        conn.getMetaDataCache().invalidateTable(iTableInfo);
+    }
+
     @Override
     protected void nodeLoad() throws SQLException {
     }
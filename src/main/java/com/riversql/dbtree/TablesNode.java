@@ -1,16 +1,33 @@
 package com.riversql.dbtree;
 
+import com.riversql.IDManager;
 import com.riversql.sql.ITableInfo;
 import com.riversql.sql.SQLConnection;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class TablesNode extends DBNode implements IStructureNode {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TablesNode.class);
 
     String catName = null, schemaName = null;
     private String tableType;
     private IStructureNode parent;
+    /**
+     * The children created so far by their qualified name, which are only
+     * all there once the node is loaded. Until then those of the pages read
+     * are only kept here, <TT>children</TT> staying empty.
+     */
+    private final Map<String, TableNode> tableNodes = new HashMap<String, TableNode>();
 
     public TablesNode(IStructureNode parent, String tableType, SQLConnection conn) {
         super(conn);
@@ -30,16 +47,186 @@ public class TablesNode extends DBNode implements IStructureNode {
 
     @Override
     public void nodeLoad() throws SQLException {
-        children.clear();
-        ITableInfo[] tables = conn.getSQLMetaData().getTables(catName,
-                schemaName, "%", new String[]{tableType}, null);
+        ITableInfo[] tables = conn.getMetaDataCache().getTables(conn.getSQLMetaData(),
+                catName, schemaName, tableType);
 
+        List<IStructureNode> nodes = new ArrayList<IStructureNode>(tables.length);
+        Map<String, TableNode> byName = new HashMap<String, TableNode>();
         for (int i = 0; i < tables.length; i++) {
-            children.add(new
-                    TableNode(this, tables[i].getSimpleName(), tables[i].getRemarks(), tables[i], conn));
+            TableNode node = getTableNode(tables[i]);
+            nodes.add(node);
+            byName.put(tables[i].getQualifiedName(), node);
+        }
+        // tables gone since a page was read
+        IDManager idmanager = IDManager.get();
+        for (TableNode node : tableNodes.values()) {
+            if (!byName.containsKey(node.getITableInfo().getQualifiedName())) {
+                node.refresh();
+                if (idmanager != null)
+                    idmanager.release(node.getId());
+            }
+        }
+        tableNodes.keySet().retainAll(byName.keySet());
+        children.clear();
+        children.addAll(nodes);
+    }
+
+    /**
+     * Only creates the children of the page, the name filter being given to
+     * the database as the pattern of the tables to list.
+     */
+    @Override
+    public JSONObject getChildrenToJSon(int start, int limit, String filter) {
+        ITableInfo[] tables = new ITableInfo[0];
+        try {
+            tables = conn.getMetaDataCache().getTables(conn.getSQLMetaData(),
+                    catName, schemaName, tableType, toTableNamePattern(filter));
+        } catch (SQLException e) {
+            LOGGER.error("getChildrenToJSon", e);
+        }
+        int from = Math.min(Math.max(start, 0), tables.length);
+        int to = limit > 0 ? Math.min(from + limit, tables.length) : tables.length;
+        List<TableNode> page = new ArrayList<TableNode>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(getTableNode(tables[i]));
+        }
+        return toJSON(page, tables.length);
+    }
+
+    /**
+     * Returns the child of a table of this node, which is created if the
+     * page it is on has not been read, without listing the other tables.
+     */
+    public TableNode getTableNode(ITableInfo table) {
+        TableNode node = tableNodes.get(table.getQualifiedName());
+        if (node == null) {
+            node = new TableNode(this, table.getSimpleName(), table.getRemarks(), table, conn);
+            tableNodes.put(table.getQualifiedName(), node);
+            if (isLoaded()) {
+                // created since the node was loaded
+                children.add(node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the child created so far for a table of this node, regardless
+     * of the case of its name, or <TT>null</TT>.
+     */
+    TableNode findTableNode(String name) {
+        for (TableNode node : tableNodes.values()) {
+            if (node.getName().equalsIgnoreCase(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Turns a filter, where <TT>*</TT> and <TT>?</TT> are wildcards, into the
+     * pattern of the names containing it, in the case the database stores
+     * the names in.
+     */
+    private String toTableNamePattern(String filter) throws SQLException {
+        if (filter == null || filter.trim().length() == 0) {
+            return "%";
+        }
+        filter = filter.trim();
+        DatabaseMetaData md = conn.getSQLMetaData().getJDBCMetaData();
+        if (md.storesUpperCaseIdentifiers()) {
+            filter = filter.toUpperCase();
+        } else if (md.storesLowerCaseIdentifiers()) {
+            filter = filter.toLowerCase();
+        }
+        String escape = md.getSearchStringEscape();
+        StringBuilder pattern = new StringBuilder("%");
+        for (char c : filter.toCharArray()) {
+            if (c == '*') {
+                pattern.append('%');
+            } else if (c == '?') {
+                pattern.append('_');
+            } else {
+                if ((c == '%' || c == '_') && escape != null) {
+                    pattern.append(escape);
+                }
+                pattern.append(c);
+            }
+        }
+        return pattern.append('%').toString();
+    }
+
+    @Override
+    public void refresh() {
+        super.refresh();
+        tableNodes.clear();
+    }
+
+    /**
+     * Also the children of the pages read before the node was loaded.
+     */
+    @Override
+    public Collection<String> getChildIds() {
+        if (isLoading()) {
+            return null;
+        }
+        List<String> ids = new ArrayList<String>(tableNodes.size());
+        for (TableNode node : tableNodes.values()) {
+            ids.add(node.getId());
         }
+        return ids;
     }
 
+    /**
+     * Also releases the children of the pages read before the node was
+     * loaded, which are not in <TT>children</TT>.
+     */
+    @Override
+    protected void releaseChildren() {
+        IDManager idmanager = IDManager.get();
+        for (TableNode node : tableNodes.values()) {
+            node.refresh();
+            if (idmanager != null)
+                idmanager.release(node.getId());
+        }
+    }
+
+
+    /**
+     * Reads the columns of all the tables of this node at once, so that the
+     * features going through many of them do not query the database for
+     * each one. The children are not created.
+     */
+    public void prefetchColumns() throws SQLException {
+        ITableInfo[] tables = getTableInfos();
+        if (tables.length > 0) {
+            conn.getMetaDataCache().prefetchColumns(conn.getSQLMetaData(), catName, schemaName, tables);
+        }
+    }
+
+    /**
+     * Reads the primary and foreign keys of all the tables of this node at
+     * once, when the driver allows it.
+     */
+    public void prefetchKeys() throws SQLException {
+        ITableInfo[] tables = getTableInfos();
+        if (tables.length > 0) {
+            conn.getMetaDataCache().prefetchKeys(conn.getSQLMetaData(), catName, schemaName, tables);
+        }
+    }
+
+    /**
+     * @return the tables of this node, from the metadata cache, without
+     * creating the children.
+     */
+    public ITableInfo[] getTableInfos() throws SQLException {
+        return conn.getMetaDataCache().getTables(conn.getSQLMetaData(), catName, schemaName, tableType);
+    }
+
+    @Override
+    public void invalidateMetaData() {
+        conn.getMetaDataCache().invalidateSchema(catName, schemaName);
+    }
 
     public String getName() {
         return tableType;
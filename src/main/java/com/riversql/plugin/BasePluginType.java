@@ -10,10 +10,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 
-public abstract class BasePluginType implements IStructureNode {
+public abstract class BasePluginType implements IStructureNode, IDManager.Subtree {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BasePluginType.class);
 
@@ -32,6 +33,14 @@ public abstract class BasePluginType implements IStructureNode {
         this.name = name;
     }
 
+    public Collection<String> getChildIds() {
+        List<String> ids = new ArrayList<String>(list.size());
+        for (IStructureNode child : list) {
+            ids.add(child.getId());
+        }
+        return ids;
+    }
+
     public IStructureNode getParent() {
         return parentNode;
     }
@@ -74,6 +83,14 @@ public abstract class BasePluginType implements IStructureNode {
 
     public abstract void load();
 
+    /**
+     * Whether the objects have been read since the node was created or last
+     * refreshed.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
     public String getName() {
         return name;
     }
@@ -90,6 +107,12 @@ public abstract class BasePluginType implements IStructureNode {
 
     public void refresh() {
         loaded = false;
+        IDManager idmanager = IDManager.get();
+        for (IStructureNode child : list) {
+            child.refresh();
+            if (idmanager != null)
+                idmanager.release(child.getId());
+        }
         list.clear();
     }
 
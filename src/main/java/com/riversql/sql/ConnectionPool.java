@@ -0,0 +1,384 @@
+package com.riversql.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The connections opened to one source with one set of credentials. Idle
+ * connections are validated before being handed out again, and closed once
+ * they have been idle for too long. <TT>minIdle</TT> connections are opened
+ * with the pool and after each eviction, until the pool has not been used
+ * for the idle timeout and is retired. A connection given back is reset to
+ * the state connections start with: autocommit, read-only, isolation,
+ * catalog and schema, such as the <TT>CURRENT_SCHEMA</TT> of Oracle. Obtain
+ * pools through <TT>ConnectionPools</TT>.
+ */
+public class ConnectionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final Driver driver;
+    private final String url;
+    private final Properties info;
+    private final int minIdle;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final int validationTimeout;
+    private final long borrowTimeout;
+
+    /**
+     * Idle connections, the most recently returned first.
+     */
+    private final Deque<Idle> idle = new ArrayDeque<Idle>();
+    private int active;
+    /**
+     * When a connection was last borrowed or given back.
+     */
+    private long lastUsed = System.currentTimeMillis();
+    private boolean closed;
+    /**
+     * Set when the pool is no longer shared : it still hands out new
+     * connections, but closes the ones given back.
+     */
+    private boolean retired;
+    /**
+     * The state of a new connection, read from the first one opened.
+     */
+    private volatile String initialCatalog;
+    private volatile String initialSchema;
+    private volatile int initialIsolation = -1;
+    private volatile boolean initialAutoCommit = true;
+    private volatile boolean initialReadOnly;
+    private volatile boolean initialStateKnown;
+
+    ConnectionPool(Driver driver, String url, String user, String password,
+                   int minIdle, int maxSize, long idleTimeout, int validationTimeout, long borrowTimeout) {
+        this.driver = driver;
+        this.url = url;
+        this.info = new Properties();
+        if (user != null)
+            info.put("user", user);
+        if (password != null)
+            info.put("password", password);
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.validationTimeout = validationTimeout;
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Returns a valid connection, opening a new one if no idle one is
+     * available. Waits for a connection to be returned when <TT>maxSize</TT>
+     * connections are already in use.
+     */
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeout;
+        while (true) {
+            Idle candidate = null;
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                lastUsed = System.currentTimeMillis();
+                if (!idle.isEmpty()) {
+                    candidate = idle.pollFirst();
+                    active++;
+                } else if (active < maxSize) {
+                    active++;
+                } else {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new SQLException("No connection available, " + maxSize + " connections are in use");
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection");
+                    }
+                    continue;
+                }
+            }
+            if (candidate != null) {
+                if (isValid(candidate.conn)) {
+                    return candidate.conn;
+                }
+                discard(candidate.conn);
+                continue;
+            }
+            try {
+                return open();
+            } catch (SQLException e) {
+                release();
+                throw e;
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection conn = driver.connect(url, info);
+        if (conn == null) {
+            throw new SQLException("The driver does not accept the url " + url);
+        }
+        if (!initialStateKnown) {
+            readInitialState(conn);
+        }
+        return conn;
+    }
+
+    /**
+     * Opens connections until <TT>minIdle</TT> of them are idle, within
+     * <TT>maxSize</TT>. A connection which cannot be opened is only logged,
+     * it is opened again when next needed.
+     */
+    void fill() {
+        while (true) {
+            synchronized (this) {
+                if (closed || retired || idle.size() >= minIdle || active + idle.size() >= maxSize) {
+                    return;
+                }
+                // counted as in use while it is opened
+                active++;
+            }
+            Connection conn;
+            try {
+                conn = open();
+            } catch (SQLException e) {
+                LOGGER.warn("Cannot open an idle connection to " + url, e);
+                release();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot open an idle connection to " + url, e);
+                release();
+                return;
+            }
+            synchronized (this) {
+                active--;
+                if (closed || retired) {
+                    close(conn);
+                    return;
+                }
+                idle.addFirst(new Idle(conn));
+                notifyAll();
+            }
+        }
+    }
+
+    private void readInitialState(Connection conn) {
+        try {
+            initialCatalog = conn.getCatalog();
+        } catch (SQLException e) {
+            initialCatalog = null;
+        }
+        initialSchema = getSchema(conn);
+        try {
+            initialIsolation = conn.getTransactionIsolation();
+        } catch (SQLException e) {
+            initialIsolation = -1;
+        }
+        try {
+            initialAutoCommit = conn.getAutoCommit();
+        } catch (SQLException e) {
+            initialAutoCommit = true;
+        }
+        try {
+            initialReadOnly = conn.isReadOnly();
+        } catch (SQLException e) {
+            initialReadOnly = false;
+        }
+        initialStateKnown = true;
+    }
+
+    /**
+     * @return the current schema, <TT>null</TT> if the driver cannot tell.
+     */
+    private static String getSchema(Connection conn) {
+        try {
+            return conn.getSchema();
+        } catch (SQLException e) {
+            return null;
+        } catch (AbstractMethodError e) {
+            // pre JDBC 4.1 driver
+            return null;
+        }
+    }
+
+    /**
+     * Gives back a connection obtained from <TT>borrow()</TT>. Its pending
+     * work is rolled back, and its initial autocommit, read-only, isolation,
+     * catalog and schema restored; the connection is closed rather than
+     * reused if that fails.
+     */
+    public void giveBack(Connection conn) {
+        try {
+            if (conn.isClosed()) {
+                release();
+                return;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+            }
+            boolean autoCommit = !initialStateKnown || initialAutoCommit;
+            if (conn.getAutoCommit() != autoCommit) {
+                conn.setAutoCommit(autoCommit);
+            }
+            boolean readOnly = initialStateKnown && initialReadOnly;
+            if (conn.isReadOnly() != readOnly) {
+                conn.setReadOnly(readOnly);
+            }
+            if (initialStateKnown) {
+                if (initialIsolation != -1 && conn.getTransactionIsolation() != initialIsolation) {
+                    conn.setTransactionIsolation(initialIsolation);
+                }
+                if (initialCatalog != null && !initialCatalog.equals(conn.getCatalog())) {
+                    conn.setCatalog(initialCatalog);
+                }
+                if (initialSchema != null && !initialSchema.equals(getSchema(conn))) {
+                    conn.setSchema(initialSchema);
+                }
+            }
+            conn.clearWarnings();
+        } catch (SQLException e) {
+            discard(conn);
+            return;
+        }
+        synchronized (this) {
+            active--;
+            lastUsed = System.currentTimeMillis();
+            if (closed || retired) {
+                close(conn);
+            } else {
+                idle.addFirst(new Idle(conn));
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes the connections idle for more than the idle timeout, keeping at
+     * least <TT>minIdle</TT> of them.
+     */
+    void evictIdle() {
+        List<Connection> toClose = new ArrayList<Connection>();
+        long limit = System.currentTimeMillis() - idleTimeout;
+        synchronized (this) {
+            // the oldest are at the end
+            Iterator<Idle> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > minIdle) {
+                Idle i = it.next();
+                if (i.since < limit) {
+                    it.remove();
+                    toClose.add(i.conn);
+                } else {
+                    break;
+                }
+            }
+        }
+        for (Connection conn : toClose) {
+            close(conn);
+        }
+    }
+
+    /**
+     * Retires the pool if it has no connection, or if none is in use and
+     * none was borrowed or given back for the idle timeout, in which case
+     * its idle connections, the <TT>minIdle</TT> ones, are closed.
+     *
+     * @return <TT>true</TT> if the pool was retired and can be forgotten.
+     */
+    boolean retireIfUnused() {
+        List<Idle> toClose;
+        synchronized (this) {
+            if (retired || active > 0
+                    || !idle.isEmpty() && System.currentTimeMillis() - lastUsed <= idleTimeout) {
+                return retired;
+            }
+            retired = true;
+            toClose = new ArrayList<Idle>(idle);
+            idle.clear();
+        }
+        for (Idle i : toClose) {
+            close(i.conn);
+        }
+        return true;
+    }
+
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Closes the idle connections; the ones in use are closed when given
+     * back.
+     */
+    void close() {
+        List<Idle> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<Idle>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (Idle i : toClose) {
+            close(i.conn);
+        }
+    }
+
+    private boolean isValid(Connection conn) {
+        try {
+            return conn.isValid(validationTimeout);
+        } catch (Throwable e) {
+            // pre JDBC 4 driver
+            try {
+                return !conn.isClosed();
+            } catch (SQLException e1) {
+                return false;
+            }
+        }
+    }
+
+    private void discard(Connection conn) {
+        close(conn);
+        release();
+    }
+
+    private synchronized void release() {
+        active--;
+        notifyAll();
+    }
+
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            LOGGER.warn("While closing a pooled connection", e);
+        }
+    }
+
+    private static final class Idle {
+        final Connection conn;
+        final long since = System.currentTimeMillis();
+
+        Idle(Connection conn) {
+            this.conn = conn;
+        }
+    }
+}
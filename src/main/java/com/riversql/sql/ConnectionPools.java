@@ -0,0 +1,197 @@
+package com.riversql.sql;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <TT>ConnectionPool</TT>s of the application, one per source and
+ * credentials, and the JDBC drivers they use, which are only loaded once.
+ * Pools left without any connection, in use or idle, are dropped. They are
+ * found by a digest of the credentials, which are only kept by the pool.
+ *
+ * <P>Each open session keeps the connection it borrowed until it is closed,
+ * so the maximum size of a pool also bounds the sessions open at once with
+ * the same credentials, along with the connections of the crawler and of the
+ * imports: past it a login waits for a connection, then fails.
+ */
+public class ConnectionPools {
+
+    public static final int DEFAULT_MIN_IDLE = 0;
+    public static final int DEFAULT_MAX_SIZE = 10;
+    public static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 10;
+    public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final long BORROW_TIMEOUT = 30 * 1000L;
+
+    private static final Map<String, Driver> drivers = new ConcurrentHashMap<String, Driver>();
+    private static final Map<Key, ConnectionPool> pools = new ConcurrentHashMap<Key, ConnectionPool>();
+
+    private static volatile int minIdle = DEFAULT_MIN_IDLE;
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+    private static volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT_MINUTES * 60 * 1000L;
+    private static volatile int validationTimeout = DEFAULT_VALIDATION_TIMEOUT_SECONDS;
+
+    private static ScheduledExecutorService evictor;
+
+    private ConnectionPools() {
+    }
+
+    /**
+     * Sets the sizes of the pools created from now on and starts the thread
+     * closing idle connections.
+     */
+    public static synchronized void start(int minIdle, int maxSize, long idleTimeout, int validationTimeout) {
+        ConnectionPools.minIdle = minIdle;
+        ConnectionPools.maxSize = maxSize;
+        ConnectionPools.idleTimeout = idleTimeout;
+        ConnectionPools.validationTimeout = validationTimeout;
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "riversql-pool-evictor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    evictIdle();
+                }
+            }, 30, 30, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        for (ConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    /**
+     * Returns the pool of connections to <TT>sourceid</TT> for the given
+     * credentials, creating it with its <TT>minIdle</TT> connections if
+     * needed.
+     */
+    public static ConnectionPool getPool(int sourceid, String driverClassName, String url,
+                                         String user, String password) throws SQLException {
+        Key key = new Key(sourceid, driverClassName, url, user, password);
+        ConnectionPool pool = pools.get(key);
+        if (pool == null) {
+            boolean created = false;
+            synchronized (pools) {
+                pool = pools.get(key);
+                if (pool == null) {
+                    pool = new ConnectionPool(getDriver(driverClassName), url, user, password,
+                            minIdle, maxSize, idleTimeout, validationTimeout, BORROW_TIMEOUT);
+                    pools.put(key, pool);
+                    created = true;
+                }
+            }
+            if (created) {
+                // not while holding the lock of every pool
+                pool.fill();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Loads and registers a driver the first time it is asked for.
+     */
+    public static Driver getDriver(String driverClassName) throws SQLException {
+        Driver driver = drivers.get(driverClassName);
+        if (driver == null) {
+            synchronized (drivers) {
+                driver = drivers.get(driverClassName);
+                if (driver == null) {
+                    try {
+                        driver = (Driver) Class.forName(driverClassName).newInstance();
+                    } catch (Exception e) {
+                        throw new SQLException("Cannot load driver " + driverClassName, e);
+                    }
+                    // for the code still going through DriverManager
+                    DriverManager.registerDriver(driver);
+                    drivers.put(driverClassName, driver);
+                }
+            }
+        }
+        return driver;
+    }
+
+    static void evictIdle() {
+        for (Iterator<Map.Entry<Key, ConnectionPool>> it = pools.entrySet().iterator(); it.hasNext(); ) {
+            ConnectionPool pool = it.next().getValue();
+            pool.evictIdle();
+            synchronized (pools) {
+                if (pool.retireIfUnused()) {
+                    it.remove();
+                    continue;
+                }
+            }
+            pool.fill();
+        }
+    }
+
+    static int getPoolCount() {
+        return pools.size();
+    }
+
+    private static final class Key {
+        private final int sourceid;
+        private final byte[] digest;
+
+        Key(int sourceid, String driverClassName, String url, String user, String password) {
+            this.sourceid = sourceid;
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // every Java platform has SHA-256
+                throw new IllegalStateException(e);
+            }
+            for (String value : new String[]{driverClassName, url, user, password}) {
+                if (value == null) {
+                    md.update((byte) 0);
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    md.update((byte) 1);
+                    md.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                            (byte) (bytes.length >>> 8), (byte) bytes.length});
+                    md.update(bytes);
+                }
+            }
+            this.digest = md.digest();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return sourceid == other.sourceid && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sourceid + Arrays.hashCode(digest);
+        }
+    }
+}
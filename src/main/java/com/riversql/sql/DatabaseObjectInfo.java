@@ -45,6 +45,19 @@ public class DatabaseObjectInfo implements IDatabaseObjectInfo, Serializable {
         _dboType = dboType;
     }
 
+    /**
+     * Restores an object whose qualified name is known, as read back from a
+     * snapshot of the metadata.
+     */
+    DatabaseObjectInfo(String catalog, String schema, String simpleName,
+                       String qualifiedName, DatabaseObjectType dboType) {
+        _catalog = catalog;
+        _schema = schema;
+        _simpleName = simpleName;
+        _qualifiedName = qualifiedName;
+        _dboType = dboType;
+    }
+
     /**
      * Default constructor for using instances of this class to contain
      * information about new objects that will be created soon.
@@ -0,0 +1,359 @@
+package com.riversql.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The foreign keys between a set of tables, for ordering inserts and deletes.
+ *
+ * <P>The keys are those of the <TT>MetaDataCache</TT>, which reads the keys
+ * of a schema with one call when the driver answers it, and table by table
+ * otherwise. A table points to the tables it references, the edges being
+ * kept in two arrays indexed by table.
+ *
+ * <P>The tables referencing each other in a cycle are found as the strongly
+ * connected components of the graph; within one, the keys to disable, or to
+ * fill in by a later update, are those closing the cycle in a depth-first
+ * walk. The insertion order is a topological order of the graph without
+ * them.
+ */
+public class ForeignKeyGraph {
+
+    private final ITableInfo[] tables;
+    /**
+     * The keys of table <TT>i</TT> are <TT>keys[first[i]]</TT> to
+     * <TT>keys[first[i + 1] - 1]</TT>, referencing the tables in
+     * <TT>target</TT>.
+     */
+    private final int[] first;
+    private final int[] target;
+    private final ForeignKeyInfo[] keys;
+    private final int[] order;
+    private final List<Cycle> cycles = new ArrayList<Cycle>();
+
+    /**
+     * @param tables the tables to order.
+     * @param keys   the imported keys of the tables; those referencing a
+     *               table not in <TT>tables</TT> are left out.
+     */
+    public ForeignKeyGraph(List<ITableInfo> tables, ForeignKeyInfo[] keys) {
+        this.tables = tables.toArray(new ITableInfo[tables.size()]);
+        int n = this.tables.length;
+        Map<String, Integer> index = new HashMap<String, Integer>(n * 2);
+        Map<String, Integer> bySimpleName = new HashMap<String, Integer>(n * 2);
+        for (int i = 0; i < n; i++) {
+            ITableInfo t = this.tables[i];
+            index.put(key(t.getCatalogName(), t.getSchemaName(), t.getSimpleName()), i);
+            // -1 for a name found in several schemas
+            Integer previous = bySimpleName.put(t.getSimpleName(), i);
+            if (previous != null) {
+                bySimpleName.put(t.getSimpleName(), -1);
+            }
+        }
+        int[] from = new int[keys.length];
+        int[] to = new int[keys.length];
+        int count = 0;
+        first = new int[n + 1];
+        for (int k = 0; k < keys.length; k++) {
+            ForeignKeyInfo fk = keys[k];
+            int f = find(index, bySimpleName, fk.getForeignKeyCatalogName(), fk.getForeignKeySchemaName(),
+                    fk.getForeignKeyTableName());
+            int p = find(index, bySimpleName, fk.getPrimaryKeyCatalogName(), fk.getPrimaryKeySchemaName(),
+                    fk.getPrimaryKeyTableName());
+            if (f < 0 || p < 0) {
+                from[k] = -1;
+                continue;
+            }
+            from[k] = f;
+            to[k] = p;
+            first[f + 1]++;
+            count++;
+        }
+        for (int i = 0; i < n; i++) {
+            first[i + 1] += first[i];
+        }
+        target = new int[count];
+        this.keys = new ForeignKeyInfo[count];
+        int[] next = Arrays.copyOf(first, n);
+        for (int k = 0; k < keys.length; k++) {
+            if (from[k] >= 0) {
+                int e = next[from[k]]++;
+                target[e] = to[k];
+                this.keys[e] = keys[k];
+            }
+        }
+        order = sort();
+    }
+
+    /**
+     * Reads the imported keys of <TT>tables</TT> through the cache of the
+     * connection of <TT>md</TT>.
+     *
+     * @see #load(MetaDataCache, SQLDatabaseMetaData, List, ProgressCallBack)
+     */
+    public static ForeignKeyGraph load(SQLDatabaseMetaData md, List<ITableInfo> tables,
+                                       ProgressCallBack callback) throws SQLException {
+        return load(md.getMetaDataCache(), md, tables, callback);
+    }
+
+    /**
+     * Reads the imported keys of <TT>tables</TT> from <TT>cache</TT>, one
+     * schema at a time; those prefetched already, as by
+     * <TT>TablesNode.prefetchKeys()</TT>, are not read again.
+     *
+     * @param callback told of each schema, or table, being read; may be
+     *                 <TT>null</TT>.
+     */
+    public static ForeignKeyGraph load(MetaDataCache cache, SQLDatabaseMetaData md, List<ITableInfo> tables,
+                                       ProgressCallBack callback) throws SQLException {
+        Map<String, List<ITableInfo>> schemas = new LinkedHashMap<String, List<ITableInfo>>();
+        for (ITableInfo table : tables) {
+            String schema = key(table.getCatalogName(), table.getSchemaName(), "");
+            List<ITableInfo> list = schemas.get(schema);
+            if (list == null) {
+                list = new ArrayList<ITableInfo>();
+                schemas.put(schema, list);
+            }
+            list.add(table);
+        }
+        List<ForeignKeyInfo> keys = new ArrayList<ForeignKeyInfo>();
+        for (List<ITableInfo> list : schemas.values()) {
+            ITableInfo any = list.get(0);
+            if (callback != null) {
+                callback.currentlyLoading(any.getSchemaName() != null ? any.getSchemaName() : any.getCatalogName());
+            }
+            // a single table is read alone
+            boolean cached = list.size() > 1 && cache.prefetchKeys(md, any.getCatalogName(), any.getSchemaName(),
+                    list.toArray(new ITableInfo[list.size()]));
+            for (ITableInfo table : list) {
+                if (!cached && callback != null) {
+                    callback.currentlyLoading(table.getSimpleName());
+                }
+                ForeignKeyInfo[] found = md.getForeignKeyInfo(cache.getImportedKeys(md, table));
+                if (table.getImportedKeys() == null) {
+                    // saves reading them again for SQLUtilities.getImportedKeys()
+                    table.setImportedKeys(found);
+                }
+                keys.addAll(Arrays.asList(found));
+            }
+        }
+        return new ForeignKeyGraph(tables, keys.toArray(new ForeignKeyInfo[keys.size()]));
+    }
+
+    private static String key(String catalog, String schema, String table) {
+        return (catalog == null ? "" : catalog) + '\u0000' + (schema == null ? "" : schema) + '\u0000' + table;
+    }
+
+    private static int find(Map<String, Integer> index, Map<String, Integer> bySimpleName,
+                            String catalog, String schema, String table) {
+        Integer i = index.get(key(catalog, schema, table));
+        if (i == null) {
+            // drivers leaving out the catalog or schema of the other table
+            i = bySimpleName.get(table);
+        }
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Finds the strongly connected components with Tarjan's algorithm, walked
+     * without recursion for schemas of long chains. A component is complete
+     * once the tables it references are, so the components come out in
+     * insertion order.
+     */
+    private int[] sort() {
+        int n = tables.length;
+        int[] result = new int[n];
+        int done = 0;
+        int[] index = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int sp = 0;
+        int[] path = new int[n];
+        int[] edge = new int[n];
+        int[] component = new int[n];
+        int[] state = new int[n];
+        int counter = 0;
+        int components = 0;
+        for (int s = 0; s < n; s++) {
+            if (index[s] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            index[s] = low[s] = counter++;
+            stack[sp++] = s;
+            onStack[s] = true;
+            path[0] = s;
+            edge[0] = first[s];
+            depth++;
+            while (depth > 0) {
+                int v = path[depth - 1];
+                if (edge[depth - 1] < first[v + 1]) {
+                    int w = target[edge[depth - 1]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                        path[depth] = w;
+                        edge[depth] = first[w];
+                        depth++;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int u = path[depth - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+                if (low[v] != index[v]) {
+                    continue;
+                }
+                int start = sp;
+                do {
+                    start--;
+                    onStack[stack[start]] = false;
+                    component[stack[start]] = components;
+                } while (stack[start] != v);
+                int size = sp - start;
+                if (size == 1 && !referencesItself(v)) {
+                    result[done++] = v;
+                } else {
+                    done = breakCycle(Arrays.copyOfRange(stack, start, sp), components, component, state, result, done);
+                }
+                sp = start;
+                components++;
+            }
+        }
+        return result;
+    }
+
+    private boolean referencesItself(int v) {
+        for (int e = first[v]; e < first[v + 1]; e++) {
+            if (target[e] == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks a component depth first from its first table: the keys pointing
+     * back to a table of the current path close a cycle, the others are
+     * satisfied by the order in which the walk leaves the tables.
+     */
+    private int breakCycle(int[] members, int c, int[] component, int[] state, int[] result, int done) {
+        Arrays.sort(members);
+        List<ForeignKeyInfo> broken = new ArrayList<ForeignKeyInfo>();
+        List<ITableInfo> cycleTables = new ArrayList<ITableInfo>();
+        int[] path = new int[members.length];
+        int[] edge = new int[members.length];
+        int depth = 0;
+        path[depth] = members[0];
+        edge[depth] = first[members[0]];
+        depth++;
+        state[members[0]] = 1;
+        while (depth > 0) {
+            int v = path[depth - 1];
+            if (edge[depth - 1] < first[v + 1]) {
+                int e = edge[depth - 1]++;
+                int w = target[e];
+                if (component[w] != c) {
+                    continue;
+                }
+                if (state[w] == 0) {
+                    state[w] = 1;
+                    path[depth] = w;
+                    edge[depth] = first[w];
+                    depth++;
+                } else if (state[w] == 1) {
+                    broken.add(keys[e]);
+                }
+                continue;
+            }
+            depth--;
+            state[v] = 2;
+            result[done++] = v;
+            cycleTables.add(tables[v]);
+        }
+        cycles.add(new Cycle(cycleTables, broken));
+        return done;
+    }
+
+    public int size() {
+        return tables.length;
+    }
+
+    /**
+     * @return the keys between the tables of the graph.
+     */
+    public List<ForeignKeyInfo> getForeignKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * @return the tables, each after those it references, but for the keys
+     * of <TT>getCycles()</TT>.
+     */
+    public List<ITableInfo> getInsertionOrder() {
+        List<ITableInfo> result = new ArrayList<ITableInfo>(order.length);
+        for (int i : order) {
+            result.add(tables[i]);
+        }
+        return result;
+    }
+
+    public List<ITableInfo> getDeletionOrder() {
+        List<ITableInfo> result = getInsertionOrder();
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return the groups of tables referencing each other, a table
+     * referencing itself being a group of its own.
+     */
+    public List<Cycle> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    public boolean hasCycles() {
+        return !cycles.isEmpty();
+    }
+
+    /**
+     * Tables referencing each other, directly or not.
+     */
+    public static class Cycle {
+        private final List<ITableInfo> tables;
+        private final List<ForeignKeyInfo> keysToBreak;
+
+        Cycle(List<ITableInfo> tables, List<ForeignKeyInfo> keysToBreak) {
+            this.tables = Collections.unmodifiableList(tables);
+            this.keysToBreak = Collections.unmodifiableList(keysToBreak);
+        }
+
+        /**
+         * @return the tables of the cycle, in insertion order.
+         */
+        public List<ITableInfo> getTables() {
+            return tables;
+        }
+
+        /**
+         * @return the keys which, once disabled or deferred, leave the tables
+         * of the cycle in insertion order.
+         */
+        public List<ForeignKeyInfo> getKeysToBreak() {
+            return keysToBreak;
+        }
+    }
+}
@@ -0,0 +1,851 @@
+package com.riversql.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The tables, columns, keys and indexes read from a source, shared by all the
+ * sessions connected to it with the same user so that browsing the same
+ * schema twice does not query the database twice.
+ *
+ * <P>Entries are reloaded once they are older than <TT>ttl</TT>
+ * milliseconds, and the least recently used ones are dropped when the cache
+ * holds more than <TT>maxEntries</TT> of them. Entries read through a
+ * connection pinning its metadata, like those of the
+ * <TT>MetaDataCrawler</TT>, are neither reloaded nor dropped nor counted in
+ * <TT>maxEntries</TT>, so that the crawl of a large source is not undone
+ * by its own reads; they are only replaced once invalidated. Entries can be
+ * invalidated for the whole source, a schema or a table. The arrays and rows handed out
+ * are shared and must not be modified. An entry asked for by several threads
+ * at once is only loaded once.
+ *
+ * <P>A shared cache is forgotten once no connection has used it for longer
+ * than <TT>ttl</TT>, all its entries having expired by then.
+ *
+ * <P>A <TT>Listener</TT> is told of the tables and columns stored, and of
+ * what is invalidated; the <TT>NameIndex</TT> and <TT>ObjectIndex</TT> of
+ * the cache are kept up to date that way.
+ */
+public class MetaDataCache {
+
+    public static final int DEFAULT_TTL_MINUTES = 10;
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static final String TABLES = "tables";
+    private static final String COLUMNS = "columns";
+    private static final String PRIMARY_KEY = "pk";
+    private static final String IMPORTED_KEYS = "fk";
+    private static final String INDEXES = "indexes";
+
+    private static volatile long ttl = DEFAULT_TTL_MINUTES * 60 * 1000L;
+    private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private static final Map<String, MetaDataCache> caches = new ConcurrentHashMap<String, MetaDataCache>();
+
+    /**
+     * Entries in access order, guarded by the cache's monitor. Loading is
+     * done outside of it.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+    /**
+     * The number of pinned entries, guarded by the cache's monitor.
+     */
+    private int pinned;
+    /**
+     * Incremented on each invalidation so that what was being loaded at that
+     * time is not stored.
+     */
+    private int generation;
+    /**
+     * The generation in which the whole source was last pinned, by a crawl
+     * or a snapshot, <TT>-1</TT> if never.
+     */
+    private int complete = -1;
+    /**
+     * The loads in progress, guarded by the cache's monitor.
+     */
+    private final Map<Key, FutureTask<Object>> loads = new HashMap<Key, FutureTask<Object>>();
+    /**
+     * The number of connections using a shared cache, and the time the last
+     * one stopped, guarded by <TT>caches</TT>.
+     */
+    private int connections;
+    private long releasedAt = System.currentTimeMillis();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+
+    /**
+     * The source and user of a shared cache, <TT>null</TT> otherwise.
+     */
+    private final String source;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private NameIndex nameIndex;
+    private ObjectIndex objectIndex;
+    /**
+     * Whether the tables and columns of the whole source were read for the
+     * indexes since everything was last invalidated.
+     */
+    private boolean namesRead;
+    /**
+     * Whether the driver answers the imported keys of a whole schema,
+     * <TT>null</TT> until one such call has returned rows or failed.
+     */
+    private volatile Boolean schemaKeys;
+
+    public MetaDataCache() {
+        this(null);
+    }
+
+    private MetaDataCache(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Sets the limits of every cache.
+     *
+     * @param ttl        time in milliseconds after which an entry is reloaded.
+     * @param maxEntries maximum number of entries per cache.
+     */
+    public static void configure(long ttl, int maxEntries) {
+        MetaDataCache.ttl = ttl;
+        MetaDataCache.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cache shared by the connections to <TT>sourceid</TT> as
+     * <TT>user</TT>, creating it if needed.
+     */
+    public static MetaDataCache getCache(int sourceid, String user) {
+        String key = sourceid + "/" + (user == null ? "" : user);
+        synchronized (caches) {
+            prune(System.currentTimeMillis());
+            MetaDataCache cache = caches.get(key);
+            if (cache == null) {
+                cache = new MetaDataCache(key);
+                caches.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Forgets the shared caches no connection has used for longer than
+     * <TT>ttl</TT>. Called with <TT>caches</TT> locked.
+     */
+    private static void prune(long now) {
+        Iterator<MetaDataCache> it = caches.values().iterator();
+        while (it.hasNext()) {
+            MetaDataCache cache = it.next();
+            if (cache.connections == 0 && now - cache.releasedAt > ttl) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Counts a connection using this cache, see <TT>SQLConnection</TT>.
+     */
+    void acquire() {
+        synchronized (caches) {
+            connections++;
+        }
+    }
+
+    /**
+     * Counts a connection no longer using this cache.
+     */
+    void release() {
+        synchronized (caches) {
+            if (connections > 0 && --connections == 0) {
+                releasedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * @return the caches shared by the connections to a source.
+     */
+    public static Collection<MetaDataCache> getCaches() {
+        return new ArrayList<MetaDataCache>(caches.values());
+    }
+
+    /**
+     * Forgets every cache.
+     */
+    public static void clearAll() {
+        caches.clear();
+    }
+
+    public ITableInfo[] getTables(SQLDatabaseMetaData md, String catalog, String schema,
+                                  String tableType) throws SQLException {
+        return getTables(md, catalog, schema, tableType, "%");
+    }
+
+    /**
+     * Returns the tables of a type whose name matches
+     * <TT>tableNamePattern</TT>, each pattern being cached on its own.
+     */
+    public ITableInfo[] getTables(final SQLDatabaseMetaData md, final String catalog, final String schema,
+                                  final String tableType, final String tableNamePattern) throws SQLException {
+        String name = "%".equals(tableNamePattern) ? tableType : tableType + '\n' + tableNamePattern;
+        return get(md, new Key(TABLES, catalog, schema, name), new Loader<ITableInfo[]>() {
+            public ITableInfo[] load() throws SQLException {
+                return md.getTables(catalog, schema, tableNamePattern, new String[]{tableType}, null);
+            }
+        });
+    }
+
+    public TableColumnInfo[] getColumns(final SQLDatabaseMetaData md, final ITableInfo table) throws SQLException {
+        return get(md, key(COLUMNS, table), new Loader<TableColumnInfo[]>() {
+            public TableColumnInfo[] load() throws SQLException {
+                return md.getColumnInfo(table);
+            }
+        });
+    }
+
+    /**
+     * Reads the columns of all the tables of a schema with a single
+     * <TT>getColumns()</TT> call and caches those of <TT>tables</TT>, instead
+     * of querying the database once per table. Does nothing if the columns
+     * of all of them are cached already.
+     */
+    public void prefetchColumns(SQLDatabaseMetaData md, String catalog, String schema,
+                                ITableInfo[] tables) throws SQLException {
+        int loading;
+        synchronized (this) {
+            loading = generation;
+            if (isCached(COLUMNS, tables, md.isPinMetaData())) {
+                hits.incrementAndGet();
+                return;
+            }
+        }
+        misses.incrementAndGet();
+        long now = System.currentTimeMillis();
+        TableColumnInfo[] all = md.getColumnInfo(catalog, schema, "%");
+        Map<String, List<TableColumnInfo>> byTable = new HashMap<String, List<TableColumnInfo>>();
+        for (TableColumnInfo column : all) {
+            String name = column.getSchemaName() + "." + column.getTableName();
+            List<TableColumnInfo> columns = byTable.get(name);
+            if (columns == null) {
+                columns = new ArrayList<TableColumnInfo>();
+                byTable.put(name, columns);
+            }
+            columns.add(column);
+        }
+        synchronized (this) {
+            if (loading != generation) {
+                return;
+            }
+            for (ITableInfo table : tables) {
+                List<TableColumnInfo> columns = byTable.get(table.getSchemaName() + "." + table.getSimpleName());
+                if (columns != null) {
+                    put(key(COLUMNS, table), new Entry(columns.toArray(new TableColumnInfo[columns.size()]), now,
+                            md.isPinMetaData()));
+                }
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Reads the primary and imported keys of all the tables of a schema with
+     * one call each, and caches those of <TT>tables</TT>. A call failing or
+     * answered with no rows at all is not trusted, since some drivers want a
+     * table name: the keys of the tables are then left to be read one by
+     * one. No imported keys are trusted once the driver has answered the
+     * call with rows for a schema, and the call is not made again once it
+     * failed.
+     *
+     * @return <TT>true</TT> if the primary and imported keys of all the
+     * tables are cached.
+     */
+    public boolean prefetchKeys(SQLDatabaseMetaData md, String catalog, String schema,
+                                ITableInfo[] tables) throws SQLException {
+        int loading;
+        boolean primaryKeys;
+        boolean importedKeys;
+        synchronized (this) {
+            loading = generation;
+            primaryKeys = !isCached(PRIMARY_KEY, tables, md.isPinMetaData());
+            importedKeys = !isCached(IMPORTED_KEYS, tables, md.isPinMetaData());
+            if (!primaryKeys && !importedKeys) {
+                hits.incrementAndGet();
+                return true;
+            }
+        }
+        misses.incrementAndGet();
+        long now = System.currentTimeMillis();
+        MetaDataRows pks = null;
+        MetaDataRows fks = null;
+        try {
+            if (primaryKeys) {
+                pks = md.getPrimaryKeyRows(catalog, schema, null);
+            }
+        } catch (SQLException e) {
+            // the driver wants a table name
+        }
+        if (importedKeys && schemaKeys != Boolean.FALSE) {
+            try {
+                fks = md.getImportedKeyRows(catalog, schema, null);
+                if (fks.size() > 0) {
+                    schemaKeys = Boolean.TRUE;
+                }
+            } catch (SQLException e) {
+                schemaKeys = Boolean.FALSE;
+            }
+        }
+        Map<String, MetaDataRows> pksByTable = pks != null && pks.size() > 0
+                ? pks.groupBy("TABLE_SCHEM", "TABLE_NAME") : null;
+        // no rows: no keys in the schema, or a driver ignoring the null table
+        Map<String, MetaDataRows> fksByTable = fks != null && (fks.size() > 0 || schemaKeys == Boolean.TRUE)
+                ? fks.groupBy("FKTABLE_SCHEM", "FKTABLE_NAME") : null;
+        synchronized (this) {
+            if (loading != generation) {
+                return false;
+            }
+            for (ITableInfo table : tables) {
+                String name = table.getSchemaName() + "." + table.getSimpleName();
+                if (pksByTable != null) {
+                    MetaDataRows rows = pksByTable.get(name);
+                    put(key(PRIMARY_KEY, table), new Entry(rows != null ? rows : pks.empty(), now,
+                            md.isPinMetaData()));
+                }
+                if (fksByTable != null) {
+                    MetaDataRows rows = fksByTable.get(name);
+                    put(key(IMPORTED_KEYS, table), new Entry(rows != null ? rows : fks.empty(), now,
+                            md.isPinMetaData()));
+                }
+            }
+            evict();
+        }
+        return (!primaryKeys || pksByTable != null) && (!importedKeys || fksByTable != null);
+    }
+
+    public MetaDataRows getPrimaryKey(final SQLDatabaseMetaData md, final ITableInfo table) throws SQLException {
+        return get(md, key(PRIMARY_KEY, table), new Loader<MetaDataRows>() {
+            public MetaDataRows load() throws SQLException {
+                return md.getPrimaryKeyRows(
+                        table.getCatalogName(), table.getSchemaName(), table.getSimpleName());
+            }
+        });
+    }
+
+    public MetaDataRows getImportedKeys(final SQLDatabaseMetaData md, final ITableInfo table) throws SQLException {
+        return get(md, key(IMPORTED_KEYS, table), new Loader<MetaDataRows>() {
+            public MetaDataRows load() throws SQLException {
+                return md.getImportedKeyRows(
+                        table.getCatalogName(), table.getSchemaName(), table.getSimpleName());
+            }
+        });
+    }
+
+    public MetaDataRows getIndexes(final SQLDatabaseMetaData md, final ITableInfo table) throws SQLException {
+        return get(md, key(INDEXES, table), new Loader<MetaDataRows>() {
+            public MetaDataRows load() throws SQLException {
+                return md.getIndexRows(
+                        table.getCatalogName(), table.getSchemaName(), table.getSimpleName());
+            }
+        });
+    }
+
+    /**
+     * Forgets everything read from the source.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        loads.clear();
+        invalidated.addAndGet(entries.size());
+        entries.clear();
+        pinned = 0;
+        namesRead = false;
+        for (Listener listener : listeners) {
+            listener.invalidated(null, null, null);
+        }
+    }
+
+    /**
+     * Forgets what was read from a schema. A <TT>null</TT> catalog or schema
+     * matches any.
+     */
+    public synchronized void invalidateSchema(String catalog, String schema) {
+        generation++;
+        loads.clear();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            Key key = e.getKey();
+            if (matches(catalog, key.catalog) && matches(schema, key.schema)) {
+                remove(it, e.getValue());
+                invalidated.incrementAndGet();
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.invalidated(catalog, schema, null);
+        }
+    }
+
+    /**
+     * Forgets what was read about a table, and the table lists of its schema.
+     */
+    public void invalidateTable(ITableInfo table) {
+        invalidateTable(table.getCatalogName(), table.getSchemaName(), table.getSimpleName());
+    }
+
+    /**
+     * Forgets what was read about a table given by its name, and the table
+     * lists of its schema. A <TT>null</TT> catalog or schema matches any.
+     */
+    public synchronized void invalidateTable(String catalog, String schema, String table) {
+        generation++;
+        loads.clear();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            Key key = e.getKey();
+            // lists of tables may have been read without a catalog
+            if ((key.catalog == null || matches(catalog, key.catalog))
+                    && matches(schema, key.schema)
+                    && (TABLES.equals(key.kind) || eq(table, key.name))) {
+                remove(it, e.getValue());
+                invalidated.incrementAndGet();
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.invalidated(catalog, schema, table);
+        }
+    }
+
+    /**
+     * Forgets the indexes read from a schema, for an index dropped without
+     * its table being known. A <TT>null</TT> catalog or schema matches any.
+     */
+    public synchronized void invalidateIndexes(String catalog, String schema) {
+        generation++;
+        loads.clear();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            Key key = e.getKey();
+            if (INDEXES.equals(key.kind) && matches(catalog, key.catalog) && matches(schema, key.schema)) {
+                remove(it, e.getValue());
+                invalidated.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Forgets the objects of the plugins, procedures, packages and the like,
+     * which the <TT>ObjectIndex</TT> reads again when next searched.
+     */
+    public synchronized void invalidateObjects() {
+        if (objectIndex != null) {
+            objectIndex.invalidateObjects();
+        }
+    }
+
+    /**
+     * @return the source and user of a cache from <TT>getCache()</TT>, as
+     * <TT>sourceid/user</TT>, or <TT>null</TT>.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Copies the pinned entries, each as
+     * <TT>{kind, catalog, schema, name, value}</TT>.
+     */
+    public synchronized List<Object[]> getPinnedEntries() {
+        List<Object[]> list = new ArrayList<Object[]>(pinned);
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (!e.getValue().pinned) {
+                continue;
+            }
+            Key key = e.getKey();
+            list.add(new Object[]{key.kind, key.catalog, key.schema, key.name, e.getValue().value});
+        }
+        return list;
+    }
+
+    /**
+     * Adds, pinned, an entry copied by <TT>getPinnedEntries()</TT>, unless
+     * the cache already has a value for it.
+     */
+    public synchronized void putEntry(String kind, String catalog, String schema, String name, Object value) {
+        Key key = new Key(kind, catalog, schema, name);
+        if (!entries.containsKey(key)) {
+            put(key, new Entry(value, System.currentTimeMillis(), true));
+        }
+    }
+
+    /**
+     * @return a number changed by each invalidation, to be given to
+     * <TT>markComplete()</TT>.
+     */
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Marks the pinned entries as holding the whole source, if nothing was
+     * invalidated since <TT>getGeneration()</TT> returned
+     * <TT>generation</TT>, until something is.
+     *
+     * @return <TT>false</TT> if something was invalidated meanwhile, and
+     * some of what was read may not have been kept.
+     */
+    public synchronized boolean markComplete(int generation) {
+        if (generation != this.generation) {
+            return false;
+        }
+        complete = generation;
+        return true;
+    }
+
+    /**
+     * @return whether the pinned entries hold the whole source, see
+     * <TT>markComplete()</TT>.
+     */
+    public synchronized boolean isComplete() {
+        return complete == generation;
+    }
+
+    /**
+     * Tells <TT>listener</TT> of the tables and columns already cached, then
+     * of those stored later.
+     */
+    public synchronized void addListener(Listener listener) {
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            fire(listener, e.getKey(), e.getValue().value);
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the index of the names of this cache, built on first use.
+     */
+    public synchronized NameIndex getNameIndex() {
+        if (nameIndex == null) {
+            nameIndex = new NameIndex();
+            addListener(nameIndex);
+        }
+        return nameIndex;
+    }
+
+    /**
+     * @return the index for searching the objects of the source by name,
+     * built on first use.
+     */
+    public synchronized ObjectIndex getObjectIndex() {
+        if (objectIndex == null) {
+            objectIndex = new ObjectIndex();
+            addListener(objectIndex);
+        }
+        return objectIndex;
+    }
+
+    /**
+     * Marks the tables and columns of the whole source as read for the
+     * indexes, until everything is invalidated or
+     * <TT>resetNamesRead()</TT> is called.
+     *
+     * @return <TT>false</TT> if they were already.
+     */
+    public synchronized boolean markNamesRead() {
+        if (namesRead) {
+            return false;
+        }
+        namesRead = true;
+        return true;
+    }
+
+    /**
+     * Lets the names be read again, after a read which failed.
+     */
+    public synchronized void resetNamesRead() {
+        namesRead = false;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of entries, how many of them are pinned, and the
+     * number of hits, misses, expired, evicted and invalidated entries so
+     * far.
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> stats = new TreeMap<String, Long>();
+        synchronized (this) {
+            stats.put("entries", (long) entries.size());
+            stats.put("pinned", (long) pinned);
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("expired", expired.get());
+        stats.put("evicted", evicted.get());
+        stats.put("invalidated", invalidated.get());
+        return stats;
+    }
+
+    /**
+     * Returns the entry of <TT>key</TT>, loading it if needed. A thread
+     * asking for an entry being loaded waits for that load instead of
+     * querying the database again; loads started before an invalidation are
+     * not waited for.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T get(SQLDatabaseMetaData md, Key key, final Loader<T> loader) throws SQLException {
+        long now = System.currentTimeMillis();
+        int loading;
+        FutureTask<Object> task;
+        boolean owner = false;
+        synchronized (this) {
+            loading = generation;
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.pinned || now - entry.loaded <= ttl) {
+                    if (!entry.pinned && md.isPinMetaData()) {
+                        // read by a session before the crawl
+                        pin(key, entry);
+                    }
+                    hits.incrementAndGet();
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+                expired.incrementAndGet();
+            }
+            task = loads.get(key);
+            if (task == null) {
+                task = new FutureTask<Object>(new Callable<Object>() {
+                    public Object call() throws SQLException {
+                        return loader.load();
+                    }
+                });
+                loads.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            misses.incrementAndGet();
+            task.run();
+            synchronized (this) {
+                loads.remove(key, task);
+                if (loading == generation) {
+                    try {
+                        put(key, new Entry(task.get(), now, md.isPinMetaData()));
+                        evict();
+                    } catch (Exception e) {
+                        // the load failed, thrown below
+                    }
+                }
+            }
+        } else {
+            hits.incrementAndGet();
+        }
+        try {
+            return (T) task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reading the " + key.kind + " of " + key.name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Stores an entry and tells the listeners. Called with the cache's
+     * monitor held.
+     */
+    private void put(Key key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null && old.pinned) {
+            pinned--;
+        }
+        if (entry.pinned) {
+            pinned++;
+        }
+        for (Listener listener : listeners) {
+            fire(listener, key, entry.value);
+        }
+    }
+
+    /**
+     * Pins an entry already stored, which the listeners know of. Called
+     * with the cache's monitor held.
+     */
+    private void pin(Key key, Entry entry) {
+        entries.put(key, new Entry(entry.value, entry.loaded, true));
+        pinned++;
+    }
+
+    private static void fire(Listener listener, Key key, Object value) {
+        if (TABLES.equals(key.kind)) {
+            int nl = key.name.indexOf('\n');
+            listener.tablesLoaded(key.catalog, key.schema, nl < 0 ? key.name : key.name.substring(0, nl), nl < 0,
+                    (ITableInfo[]) value);
+        } else if (COLUMNS.equals(key.kind)) {
+            listener.columnsLoaded(key.catalog, key.schema, key.name, (TableColumnInfo[]) value);
+        }
+    }
+
+    /**
+     * Removes the entry last returned by <TT>it</TT>. Called with the
+     * cache's monitor held.
+     */
+    private void remove(Iterator<?> it, Entry entry) {
+        it.remove();
+        if (entry.pinned) {
+            pinned--;
+        }
+    }
+
+    /**
+     * Drops the least recently used entries which are not pinned beyond
+     * <TT>maxEntries</TT>. Called with the cache's monitor held.
+     */
+    private void evict() {
+        int max = maxEntries;
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() - pinned > max && it.hasNext()) {
+            if (!it.next().pinned) {
+                it.remove();
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Tells whether the entries of <TT>kind</TT> of all the tables are
+     * cached, and pins them then if <TT>pin</TT> is set. Called with the
+     * cache's monitor held.
+     */
+    private boolean isCached(String kind, ITableInfo[] tables, boolean pin) {
+        long now = System.currentTimeMillis();
+        for (ITableInfo table : tables) {
+            Entry entry = entries.get(key(kind, table));
+            if (entry == null || !entry.pinned && now - entry.loaded > ttl) {
+                return false;
+            }
+        }
+        if (pin) {
+            for (ITableInfo table : tables) {
+                Key key = key(kind, table);
+                Entry entry = entries.get(key);
+                if (!entry.pinned) {
+                    pin(key, entry);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Key key(String kind, ITableInfo table) {
+        return new Key(kind, table.getCatalogName(), table.getSchemaName(), table.getSimpleName());
+    }
+
+    private static boolean matches(String pattern, String value) {
+        return pattern == null || pattern.equals(value);
+    }
+
+    private static boolean eq(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    /**
+     * Told, with the cache's monitor held, of what is stored in a cache and
+     * invalidated. Entries which expire or are evicted are not reported.
+     */
+    public interface Listener {
+
+        /**
+         * @param all <TT>false</TT> when only the tables matching a pattern
+         *            were listed.
+         */
+        void tablesLoaded(String catalog, String schema, String tableType, boolean all, ITableInfo[] tables);
+
+        void columnsLoaded(String catalog, String schema, String table, TableColumnInfo[] columns);
+
+        /**
+         * A <TT>null</TT> catalog, schema or table stands for any.
+         */
+        void invalidated(String catalog, String schema, String table);
+    }
+
+    private interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long loaded;
+        final boolean pinned;
+
+        Entry(Object value, long loaded, boolean pinned) {
+            this.value = value;
+            this.loaded = loaded;
+            this.pinned = pinned;
+        }
+    }
+
+    private static final class Key {
+        final String kind;
+        final String catalog;
+        final String schema;
+        final String name;
+
+        Key(String kind, String catalog, String schema, String name) {
+            this.kind = kind;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return kind.equals(other.kind) && eq(catalog, other.catalog)
+                    && eq(schema, other.schema) && eq(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = kind.hashCode();
+            h = 31 * h + (catalog == null ? 0 : catalog.hashCode());
+            h = 31 * h + (schema == null ? 0 : schema.hashCode());
+            return 31 * h + (name == null ? 0 : name.hashCode());
+        }
+    }
+}
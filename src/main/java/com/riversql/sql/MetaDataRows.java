@@ -0,0 +1,188 @@
+package com.riversql.sql;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only copy of a <TT>DatabaseMetaData</TT> result, such as the one of
+ * <TT>getPrimaryKeys()</TT>, which can be kept in a <TT>MetaDataCache</TT>
+ * and read by several threads, each with its own <TT>Cursor</TT>.
+ */
+public final class MetaDataRows implements Serializable {
+    static final long serialVersionUID = 1L;
+
+    private final Map<String, Integer> columns;
+    private final List<Object[]> rows;
+
+    MetaDataRows(Map<String, Integer> columns, List<Object[]> rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * @return the index of each column by its upper case label.
+     */
+    Map<String, Integer> getColumns() {
+        return columns;
+    }
+
+    List<Object[]> getRows() {
+        return rows;
+    }
+
+    /**
+     * Copies the rows of <TT>rs</TT>, then closes it with its statement.
+     */
+    public static MetaDataRows read(ResultSet rs) throws SQLException {
+        try {
+            ResultSetMetaData md = rs.getMetaData();
+            int count = md.getColumnCount();
+            Map<String, Integer> columns = new HashMap<String, Integer>();
+            for (int i = count; i >= 1; i--) {
+                // the first column wins when two have the same label
+                columns.put(md.getColumnLabel(i).toUpperCase(), i - 1);
+            }
+            List<Object[]> rows = new ArrayList<Object[]>();
+            while (rs.next()) {
+                Object[] row = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+            return new MetaDataRows(columns, Collections.unmodifiableList(rows));
+        } finally {
+            try {
+                Statement st = rs.getStatement();
+                rs.close();
+                if (st != null)
+                    st.close();
+            } catch (SQLException e) {
+            }
+        }
+    }
+
+    /**
+     * Splits the rows by the values of the columns <TT>labels</TT>, joined
+     * with dots.
+     */
+    public Map<String, MetaDataRows> groupBy(String... labels) throws SQLException {
+        int[] indexes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            Integer index = columns.get(labels[i].toUpperCase());
+            if (index == null) {
+                throw new SQLException("No column " + labels[i]);
+            }
+            indexes[i] = index;
+        }
+        Map<String, List<Object[]>> groups = new HashMap<String, List<Object[]>>();
+        StringBuilder key = new StringBuilder();
+        for (Object[] row : rows) {
+            key.setLength(0);
+            for (int i = 0; i < indexes.length; i++) {
+                if (i > 0) {
+                    key.append('.');
+                }
+                key.append(row[indexes[i]]);
+            }
+            List<Object[]> group = groups.get(key.toString());
+            if (group == null) {
+                group = new ArrayList<Object[]>();
+                groups.put(key.toString(), group);
+            }
+            group.add(row);
+        }
+        Map<String, MetaDataRows> result = new HashMap<String, MetaDataRows>();
+        for (Map.Entry<String, List<Object[]>> e : groups.entrySet()) {
+            result.put(e.getKey(), new MetaDataRows(columns, Collections.unmodifiableList(e.getValue())));
+        }
+        return result;
+    }
+
+    /**
+     * @return no rows, with the same columns.
+     */
+    public MetaDataRows empty() {
+        return new MetaDataRows(columns, Collections.<Object[]>emptyList());
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks the rows like a <TT>ResultSet</TT>, columns being found by their
+     * label regardless of the case.
+     */
+    public final class Cursor {
+        private int pos = -1;
+
+        public boolean next() {
+            if (pos < rows.size()) {
+                pos++;
+            }
+            return pos < rows.size();
+        }
+
+        public Object getObject(String label) throws SQLException {
+            Integer index = columns.get(label.toUpperCase());
+            if (index == null) {
+                throw new SQLException("No column " + label);
+            }
+            if (pos < 0 || pos >= rows.size()) {
+                throw new SQLException("No current row");
+            }
+            return rows.get(pos)[index];
+        }
+
+        public String getString(String label) throws SQLException {
+            Object value = getObject(label);
+            return value == null ? null : value.toString();
+        }
+
+        public short getShort(String label) throws SQLException {
+            Object value = getObject(label);
+            if (value instanceof Number) {
+                return ((Number) value).shortValue();
+            }
+            if (value instanceof Boolean) {
+                return (short) (((Boolean) value) ? 1 : 0);
+            }
+            if (value == null) {
+                return 0;
+            }
+            try {
+                return Short.parseShort(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new SQLException("Not a number: " + value);
+            }
+        }
+
+        public boolean getBoolean(String label) throws SQLException {
+            Object value = getObject(label);
+            if (value instanceof Boolean) {
+                return (Boolean) value;
+            }
+            if (value instanceof Number) {
+                return ((Number) value).intValue() != 0;
+            }
+            if (value == null) {
+                return false;
+            }
+            String s = value.toString().trim();
+            return s.equalsIgnoreCase("true") || s.equals("1") || s.equalsIgnoreCase("y");
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package com.riversql.sql;
+
+import com.riversql.databases.CatalogQueries;
+import com.riversql.databases.DialectFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps on disk the content of the shared <TT>MetaDataCache</TT>s, so that a
+ * source connected to again after a restart has its tree served at once.
+ *
+ * <P>A snapshot is written along with the change marker of its database,
+ * see <TT>CatalogQueries.getChangeMarker()</TT>, and only for databases
+ * which have one. The marker covers the schemas listed by the source, those
+ * the crawler reads into the snapshot, rather than the whole catalog. A
+ * snapshot is restored into a cache which is still empty; the marker is
+ * then read again in the background, and the cache invalidated if the
+ * catalog of those schemas has changed since.
+ *
+ * <P>A snapshot is only written from a cache whose pinned entries hold the
+ * whole source, those read by a crawl during which nothing was invalidated,
+ * see <TT>MetaDataCache.markComplete()</TT>, or restored from a snapshot;
+ * the entries the sessions read, which the cache may have dropped, are not
+ * written. The entries restored are pinned again.
+ *
+ * <P>A snapshot is a gzipped file starting with its format version, the
+ * source and the marker, followed by the pinned entries of the cache,
+ * since the marker tells whether they still hold. Each entry is
+ * written field by field: the tables, the columns, or the rows of metadata,
+ * whose values are written with their type, others as their text.
+ */
+public class MetaDataSnapshots {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetaDataSnapshots.class);
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final byte TABLES = 1;
+    private static final byte COLUMNS = 2;
+    private static final byte ROWS = 3;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte DOUBLE = 7;
+
+    private static volatile File dir;
+    private static ExecutorService executor;
+    /**
+     * The marker of the snapshot restored into a cache, until it is checked.
+     */
+    private static final Map<MetaDataCache, String> restored = new ConcurrentHashMap<MetaDataCache, String>();
+    /**
+     * The marker of the database a cache was last checked against.
+     */
+    private static final Map<MetaDataCache, String> markers = new ConcurrentHashMap<MetaDataCache, String>();
+
+    private MetaDataSnapshots() {
+    }
+
+    /**
+     * @param directory where the snapshots are kept, <TT>null</TT> to keep
+     *                  none.
+     */
+    public static synchronized void start(File directory) {
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warn("Cannot create " + directory + ", metadata snapshots are disabled");
+            directory = null;
+        }
+        dir = directory;
+        if (dir != null && executor == null) {
+            executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "riversql-snapshots");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Saves the caches checked against their database, then stops.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        for (MetaDataCache cache : MetaDataCache.getCaches()) {
+            save(cache);
+        }
+        restored.clear();
+        markers.clear();
+    }
+
+    public static boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Loads the snapshot of the source of <TT>cache</TT> into it, if the
+     * cache is empty.
+     *
+     * @return <TT>true</TT> if a snapshot was restored.
+     */
+    public static boolean restore(MetaDataCache cache) {
+        File file = getFile(cache);
+        if (file == null || !file.isFile() || cache.size() > 0) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(cache.getSource())) {
+                return false;
+            }
+            String marker = in.readUTF();
+            in.readLong();
+            int generation = cache.getGeneration();
+            int count = 0;
+            while (in.readBoolean()) {
+                count++;
+                String kind = in.readUTF();
+                String catalog = readString(in);
+                String schema = readString(in);
+                String name = readString(in);
+                cache.putEntry(kind, catalog, schema, name, readValue(in));
+            }
+            cache.markComplete(generation);
+            restored.put(cache, marker);
+            LOGGER.info("Restored " + count + " metadata entries of " + cache.getSource());
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read " + file, e);
+            cache.invalidate();
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads in the background the change marker of the database, on a
+     * connection of <TT>pool</TT>, and invalidates <TT>cache</TT> if it was
+     * restored from a snapshot of an older catalog. <TT>then</TT> is run
+     * afterwards in any case.
+     */
+    public static void refresh(final ConnectionPool pool, final ISQLDriver driver, final MetaDataCache cache,
+                               final Runnable then) {
+        ExecutorService e;
+        synchronized (MetaDataSnapshots.class) {
+            e = executor;
+        }
+        if (e == null || cache.getSource() == null) {
+            then.run();
+            return;
+        }
+        try {
+            e.execute(new Runnable() {
+                public void run() {
+                    try {
+                        check(pool, driver, cache);
+                    } finally {
+                        then.run();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            then.run();
+        }
+    }
+
+    private static void check(ConnectionPool pool, ISQLDriver driver, MetaDataCache cache) {
+        String marker = null;
+        SQLConnection conn = null;
+        try {
+            conn = new SQLConnection(pool.borrow(), null, driver, pool);
+            CatalogQueries queries = DialectFactory.getCatalogQueries(conn);
+            if (queries != null) {
+                marker = queries.getChangeMarker(conn.getConnection(), listSchemas(conn.getSQLMetaData()));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Cannot read the change marker of " + cache.getSource(), e);
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+        String old = restored.remove(cache);
+        if (old != null && !old.equals(marker)) {
+            LOGGER.info("The catalog of " + cache.getSource() + " has changed since its snapshot");
+            cache.invalidate();
+        }
+        if (marker != null) {
+            markers.put(cache, marker);
+        } else {
+            markers.remove(cache);
+        }
+    }
+
+    /**
+     * @return the schemas of the source, or its catalogs when it has no
+     * schemas, like MySQL.
+     */
+    private static String[] listSchemas(SQLDatabaseMetaData md) throws SQLException {
+        return md.supportsSchemas() ? md.getSchemas() : md.getCatalogs();
+    }
+
+    /**
+     * Writes the snapshot of <TT>cache</TT>, if it was checked against its
+     * database and its pinned entries hold the whole source.
+     */
+    public static void save(MetaDataCache cache) {
+        File file = getFile(cache);
+        String marker = markers.get(cache);
+        if (file == null || marker == null || restored.containsKey(cache)) {
+            return;
+        }
+        if (!cache.isComplete()) {
+            LOGGER.debug("The metadata of " + cache.getSource() + " is incomplete, not saving its snapshot");
+            return;
+        }
+        List<Object[]> entries = cache.getPinnedEntries();
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(cache.getSource());
+            out.writeUTF(marker);
+            out.writeLong(System.currentTimeMillis());
+            for (Object[] entry : entries) {
+                if (!isWritable(entry[4])) {
+                    continue;
+                }
+                out.writeBoolean(true);
+                out.writeUTF((String) entry[0]);
+                writeString(out, (String) entry[1]);
+                writeString(out, (String) entry[2]);
+                writeString(out, (String) entry[3]);
+                writeValue(out, entry[4]);
+            }
+            out.writeBoolean(false);
+            out.close();
+            out = null;
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write " + file, e);
+            tmp.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+                tmp.delete();
+            }
+        }
+    }
+
+    private static File getFile(MetaDataCache cache) {
+        File d = dir;
+        String source = cache.getSource();
+        if (d == null || source == null) {
+            return null;
+        }
+        String name = source.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + Integer.toHexString(source.hashCode());
+        return new File(d, name + ".snapshot");
+    }
+
+    private static boolean isWritable(Object value) {
+        if (value instanceof ITableInfo[]) {
+            for (ITableInfo table : (ITableInfo[]) value) {
+                if (!(table instanceof TableInfo)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return value instanceof TableColumnInfo[] || value instanceof MetaDataRows;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof ITableInfo[]) {
+            ITableInfo[] tables = (ITableInfo[]) value;
+            out.writeByte(TABLES);
+            out.writeInt(tables.length);
+            for (ITableInfo table : tables) {
+                writeString(out, table.getCatalogName());
+                writeString(out, table.getSchemaName());
+                writeString(out, table.getSimpleName());
+                writeString(out, table.getQualifiedName());
+                writeString(out, table.getType());
+                writeString(out, table.getRemarks());
+            }
+        } else if (value instanceof TableColumnInfo[]) {
+            TableColumnInfo[] columns = (TableColumnInfo[]) value;
+            out.writeByte(COLUMNS);
+            out.writeInt(columns.length);
+            for (TableColumnInfo column : columns) {
+                writeString(out, column.getCatalogName());
+                writeString(out, column.getSchemaName());
+                writeString(out, column.getQualifiedName());
+                writeString(out, column.getTableName());
+                writeString(out, column.getColumnName());
+                out.writeInt(column.getDataType());
+                writeString(out, column.getTypeName());
+                out.writeInt(column.getColumnSize());
+                out.writeInt(column.getDecimalDigits());
+                out.writeInt(column.getRadix());
+                out.writeInt(column.isNullAllowed());
+                writeString(out, column.getRemarks());
+                writeString(out, column.getDefaultValue());
+                out.writeInt(column.getOctetLength());
+                out.writeInt(column.getOrdinalPosition());
+                writeString(out, column.isNullable());
+            }
+        } else {
+            MetaDataRows rows = (MetaDataRows) value;
+            Map<String, Integer> columns = rows.getColumns();
+            List<Object[]> list = rows.getRows();
+            out.writeByte(ROWS);
+            out.writeInt(columns.size());
+            for (Map.Entry<String, Integer> column : columns.entrySet()) {
+                writeString(out, column.getKey());
+                out.writeInt(column.getValue());
+            }
+            out.writeInt(list.size());
+            for (Object[] row : list) {
+                out.writeInt(row.length);
+                for (Object o : row) {
+                    writeObject(out, o);
+                }
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == TABLES) {
+            ITableInfo[] tables = new ITableInfo[in.readInt()];
+            for (int i = 0; i < tables.length; i++) {
+                tables[i] = new TableInfo(readString(in), readString(in), readString(in),
+                        readString(in), readString(in), readString(in));
+            }
+            return tables;
+        }
+        if (type == COLUMNS) {
+            TableColumnInfo[] columns = new TableColumnInfo[in.readInt()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new TableColumnInfo(readString(in), readString(in), readString(in),
+                        readString(in), readString(in), in.readInt(), readString(in),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        readString(in), readString(in), in.readInt(), in.readInt(), readString(in));
+            }
+            return columns;
+        }
+        if (type == ROWS) {
+            int count = in.readInt();
+            Map<String, Integer> columns = new HashMap<String, Integer>();
+            for (int i = 0; i < count; i++) {
+                columns.put(readString(in), in.readInt());
+            }
+            count = in.readInt();
+            List<Object[]> rows = new ArrayList<Object[]>(count);
+            for (int i = 0; i < count; i++) {
+                Object[] row = new Object[in.readInt()];
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = readObject(in);
+                }
+                rows.add(row);
+            }
+            return new MetaDataRows(columns, Collections.unmodifiableList(rows));
+        }
+        throw new IOException("Unknown entry type " + type);
+    }
+
+    private static void writeObject(DataOutputStream out, Object o) throws IOException {
+        if (o == null) {
+            out.writeByte(NULL);
+        } else if (o instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) o);
+        } else if (o instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) o);
+        } else if (o instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) o);
+        } else if (o instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) o);
+        } else if (o instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            writeString(out, o.toString());
+        } else if (o instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) o);
+        } else {
+            // strings, and what the cursors only read as text
+            out.writeByte(STRING);
+            writeString(out, o.toString());
+        }
+    }
+
+    private static Object readObject(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case SHORT:
+                return in.readShort();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DECIMAL:
+                return new BigDecimal(readString(in));
+            case DOUBLE:
+                return in.readDouble();
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Writes a string of any length, or <TT>null</TT>.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
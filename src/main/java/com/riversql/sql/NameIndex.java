@@ -0,0 +1,381 @@
+package com.riversql.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The names of the schemas, tables and columns found in a
+ * <TT>MetaDataCache</TT>, and the SQL keywords of its source, for completing
+ * what is typed in the editor without going to the database.
+ *
+ * <P>The index listens to its cache: a list of tables or columns replaces
+ * what it knew of the same schema or table, and an invalidation removes
+ * it. Names are not forgotten when their entry expires or is evicted.
+ *
+ * <P>Each list is kept sorted regardless of the case under its owner, a
+ * schema or a table, for the names following a qualifier. The distinct
+ * names of all the lists are counted in a sorted map, for the names typed
+ * without one.
+ */
+public class NameIndex implements MetaDataCache.Listener {
+
+    public static final String KEYWORD = "keyword";
+    public static final String SCHEMA = "schema";
+    public static final String TABLE = "table";
+    public static final String COLUMN = "column";
+
+    /**
+     * The SQL-92 keywords, which <TT>getSQLKeywords()</TT> leaves out.
+     */
+    private static final String[] SQL_KEYWORDS = {
+            "ADD", "ALL", "ALTER", "AND", "ANY", "AS", "ASC", "AVG", "BEGIN", "BETWEEN", "BY", "CASCADE", "CASE",
+            "CAST", "CHECK", "COLUMN", "COMMIT", "CONSTRAINT", "COUNT", "CREATE", "CROSS", "CURRENT_DATE",
+            "CURRENT_TIME", "CURRENT_TIMESTAMP", "DEFAULT", "DELETE", "DESC", "DISTINCT", "DROP", "ELSE", "END",
+            "ESCAPE", "EXCEPT", "EXISTS", "FOREIGN", "FROM", "FULL", "GRANT", "GROUP", "HAVING", "IN", "INDEX",
+            "INNER", "INSERT", "INTERSECT", "INTO", "IS", "JOIN", "KEY", "LEFT", "LIKE", "MAX", "MIN", "NOT",
+            "NULL", "ON", "OR", "ORDER", "OUTER", "PRIMARY", "REFERENCES", "REVOKE", "RIGHT", "ROLLBACK",
+            "SELECT", "SET", "SOME", "SUM", "TABLE", "THEN", "UNION", "UNIQUE", "UPDATE", "USING", "VALUES",
+            "VIEW", "WHEN", "WHERE", "WITH"};
+
+    private volatile String[] keywords = sorted(Arrays.asList(SQL_KEYWORDS));
+    private volatile boolean sourceKeywords;
+
+    /**
+     * Lower case name to the name and the number of lists holding it.
+     */
+    private final TreeMap<String, Name> names = new TreeMap<String, Name>();
+    private final Map<String, Owner> owners = new HashMap<String, Owner>();
+    /**
+     * Lower case schema, catalog or table name to the lists completing it.
+     */
+    private final Map<String, Set<Owner>> byQualifier = new HashMap<String, Set<Owner>>();
+
+    NameIndex() {
+    }
+
+    /**
+     * Adds the keywords of the source, as returned by
+     * <TT>getSQLKeywords()</TT>, to the SQL ones.
+     */
+    public void setKeywords(String[] words) {
+        Set<String> all = new HashSet<String>(Arrays.asList(SQL_KEYWORDS));
+        for (String keyword : words) {
+            all.add(keyword.trim().toUpperCase());
+        }
+        all.remove("");
+        keywords = sorted(all);
+        sourceKeywords = true;
+    }
+
+    public boolean hasSourceKeywords() {
+        return sourceKeywords;
+    }
+
+    public synchronized void tablesLoaded(String catalog, String schema, String tableType, boolean all,
+                                          ITableInfo[] tables) {
+        String key = TABLE + '\u0000' + catalog + '\u0000' + schema + '\u0000' + tableType;
+        Owner owner = owners.get(key);
+        Set<String> list = new HashSet<String>();
+        if (owner != null && !all) {
+            list.addAll(Arrays.asList(owner.names));
+        }
+        for (ITableInfo table : tables) {
+            list.add(table.getSimpleName());
+        }
+        if (owner == null) {
+            String qualifier = schema != null ? schema : catalog;
+            owner = new Owner(key, TABLE, catalog, schema, null, qualifier);
+        }
+        replace(owner, list);
+    }
+
+    public synchronized void columnsLoaded(String catalog, String schema, String table,
+                                           TableColumnInfo[] columns) {
+        String key = COLUMN + '\u0000' + catalog + '\u0000' + schema + '\u0000' + table;
+        Owner owner = owners.get(key);
+        if (owner == null) {
+            String qualifier = schema != null ? schema : catalog;
+            owner = new Owner(key, COLUMN, catalog, schema, table, table,
+                    qualifier != null ? qualifier + "." + table : null);
+        }
+        List<String> list = new ArrayList<String>(columns.length);
+        for (TableColumnInfo column : columns) {
+            list.add(column.getColumnName());
+        }
+        replace(owner, list);
+    }
+
+    public synchronized void invalidated(String catalog, String schema, String table) {
+        List<Owner> matching = new ArrayList<Owner>();
+        for (Owner owner : owners.values()) {
+            if ((owner.catalog == null || matches(catalog, owner.catalog)) && matches(schema, owner.schema)
+                    && (table == null || owner.kind.equals(TABLE) || table.equals(owner.table))) {
+                matching.add(owner);
+            }
+        }
+        for (Owner owner : matching) {
+            if (table != null && owner.kind.equals(TABLE)) {
+                // the table alone leaves the list of its schema
+                List<String> list = new ArrayList<String>(Arrays.asList(owner.names));
+                if (list.remove(table)) {
+                    replace(owner, list);
+                }
+            } else {
+                replace(owner, null);
+            }
+        }
+    }
+
+    /**
+     * Completes <TT>prefix</TT>, regardless of the case.
+     *
+     * @param qualifier what precedes the dot before <TT>prefix</TT>: a
+     *                  schema, a table, or <TT>schema.table</TT>; <TT>null</TT>
+     *                  for none.
+     * @param tables    the tables of the statement, whose columns come first
+     *                  when there is no qualifier; may be <TT>null</TT>.
+     * @param limit     the maximum number of names returned.
+     * @return <TT>{name, kind}</TT> pairs, the kind being one of
+     * <TT>KEYWORD</TT>, <TT>SCHEMA</TT>, <TT>TABLE</TT> and
+     * <TT>COLUMN</TT>.
+     */
+    public synchronized List<String[]> complete(String qualifier, String prefix, Collection<String> tables,
+                                                int limit) {
+        Map<String, String[]> result = new LinkedHashMap<String, String[]>();
+        if (qualifier != null) {
+            addOwned(result, byQualifier.get(qualifier.toLowerCase()), prefix, limit);
+            return new ArrayList<String[]>(result.values());
+        }
+        if (tables != null) {
+            for (String table : tables) {
+                Set<Owner> set = byQualifier.get(table.toLowerCase());
+                if (set != null) {
+                    Set<Owner> columns = new HashSet<Owner>();
+                    for (Owner owner : set) {
+                        if (owner.kind.equals(COLUMN)) {
+                            columns.add(owner);
+                        }
+                    }
+                    addOwned(result, columns, prefix, limit);
+                }
+            }
+        }
+        String lower = prefix.toLowerCase();
+        String[] kw = keywords;
+        for (int i = lowerBound(kw, prefix); i < kw.length && result.size() < limit
+                && startsWith(kw[i], prefix); i++) {
+            add(result, kw[i], KEYWORD);
+        }
+        SortedMap<String, Name> tail = names.tailMap(lower);
+        for (Iterator<Name> it = tail.values().iterator(); it.hasNext() && result.size() < limit; ) {
+            Name name = it.next();
+            if (!startsWith(name.name, prefix)) {
+                break;
+            }
+            add(result, name.name, name.getKind());
+        }
+        return new ArrayList<String[]>(result.values());
+    }
+
+    /**
+     * @return the number of distinct names, keywords left out.
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    private void addOwned(Map<String, String[]> result, Set<Owner> set, String prefix, int limit) {
+        if (set == null) {
+            return;
+        }
+        Set<String> found = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        for (Owner owner : set) {
+            String kind = owner.kind;
+            for (int i = lowerBound(owner.names, prefix); i < owner.names.length
+                    && startsWith(owner.names[i], prefix); i++) {
+                found.add(owner.names[i] + '\u0000' + kind);
+            }
+        }
+        for (String s : found) {
+            if (result.size() >= limit) {
+                break;
+            }
+            int sep = s.indexOf('\u0000');
+            add(result, s.substring(0, sep), s.substring(sep + 1));
+        }
+    }
+
+    private static void add(Map<String, String[]> result, String name, String kind) {
+        String key = name.toLowerCase();
+        if (!result.containsKey(key)) {
+            result.put(key, new String[]{name, kind});
+        }
+    }
+
+    /**
+     * Replaces the names of <TT>owner</TT>, removing it if <TT>list</TT> is
+     * <TT>null</TT>.
+     */
+    private void replace(Owner owner, Collection<String> list) {
+        boolean known = owners.containsKey(owner.key);
+        if (known) {
+            for (String name : owner.names) {
+                count(name, owner.kind, -1);
+            }
+            if (owner.schemaName != null) {
+                count(owner.schemaName, SCHEMA, -1);
+            }
+        }
+        if (list == null) {
+            owners.remove(owner.key);
+            for (String qualifier : owner.qualifiers) {
+                Set<Owner> set = byQualifier.get(qualifier);
+                if (set != null) {
+                    set.remove(owner);
+                    if (set.isEmpty()) {
+                        byQualifier.remove(qualifier);
+                    }
+                }
+            }
+            return;
+        }
+        owner.names = sorted(list);
+        for (String name : owner.names) {
+            count(name, owner.kind, 1);
+        }
+        if (owner.schemaName != null) {
+            count(owner.schemaName, SCHEMA, 1);
+        }
+        if (!known) {
+            owners.put(owner.key, owner);
+            for (String qualifier : owner.qualifiers) {
+                Set<Owner> set = byQualifier.get(qualifier);
+                if (set == null) {
+                    set = new HashSet<Owner>();
+                    byQualifier.put(qualifier, set);
+                }
+                set.add(owner);
+            }
+        }
+    }
+
+    /**
+     * Adds <TT>delta</TT> to the number of lists holding a name as a kind.
+     * A schema is counted once for each list of its tables.
+     */
+    private void count(String text, String kind, int delta) {
+        String key = text.toLowerCase();
+        Name name = names.get(key);
+        if (name == null) {
+            if (delta <= 0) {
+                return;
+            }
+            name = new Name(text);
+            names.put(key, name);
+        }
+        if (kind.equals(SCHEMA)) {
+            name.schemas += delta;
+        } else if (kind.equals(TABLE)) {
+            name.tables += delta;
+        } else {
+            name.columns += delta;
+        }
+        if (name.schemas <= 0 && name.tables <= 0 && name.columns <= 0) {
+            names.remove(key);
+        }
+    }
+
+    private static boolean matches(String pattern, String value) {
+        return pattern == null || pattern.equals(value);
+    }
+
+    private static boolean startsWith(String s, String prefix) {
+        return s.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * @return the index of the first of <TT>sorted</TT> not before
+     * <TT>prefix</TT>, regardless of the case.
+     */
+    private static int lowerBound(String[] sorted, String prefix) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(sorted[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String[] sorted(Collection<String> list) {
+        String[] array = list.toArray(new String[list.size()]);
+        Arrays.sort(array, String.CASE_INSENSITIVE_ORDER);
+        return array;
+    }
+
+    private static final class Name {
+        final String name;
+        int schemas;
+        int tables;
+        int columns;
+
+        Name(String name) {
+            this.name = name;
+        }
+
+        String getKind() {
+            if (schemas > 0) {
+                return SCHEMA;
+            }
+            return tables > 0 ? TABLE : COLUMN;
+        }
+    }
+
+    /**
+     * The tables of a schema of one type, or the columns of a table.
+     */
+    private static final class Owner {
+        final String key;
+        final String kind;
+        final String catalog;
+        final String schema;
+        final String table;
+        /**
+         * The schema, or catalog, of a list of tables.
+         */
+        final String schemaName;
+        final String[] qualifiers;
+        String[] names = new String[0];
+
+        Owner(String key, String kind, String catalog, String schema, String table, String... qualifiers) {
+            this.key = key;
+            this.kind = kind;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.table = table;
+            this.schemaName = kind.equals(TABLE) ? (schema != null ? schema : catalog) : null;
+            List<String> list = new ArrayList<String>();
+            for (String qualifier : qualifiers) {
+                if (qualifier != null) {
+                    list.add(qualifier.toLowerCase());
+                }
+            }
+            this.qualifiers = list.toArray(new String[list.size()]);
+        }
+    }
+}
@@ -0,0 +1,668 @@
+package com.riversql.sql;
+
+import com.riversql.databases.CatalogQueries;
+import com.riversql.databases.DialectFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The names of the tables, views and columns found in a
+ * <TT>MetaDataCache</TT>, and of the objects shown by the plugins, for
+ * finding an object anywhere in the source from a part of its name.
+ *
+ * <P>Each name is cut into the sequences of three characters it holds,
+ * regardless of the case, and the index keeps for each sequence the names
+ * holding it. A search looks up the sequences of the text searched and
+ * ranks the names by how many of them they share, those equal to the text,
+ * starting with it or containing it coming first. A text shorter than three
+ * characters is looked for in every name. A text holding wildcards must
+ * match the whole name, the names looked at being those holding the
+ * sequences of its longest part without wildcards.
+ *
+ * <P>Like the <TT>NameIndex</TT>, the index listens to its cache. The
+ * objects of the plugins, packages, procedures and the like, are not cached:
+ * they are read by <TT>loadObjects()</TT> with a single query, and read
+ * again once their schema has been invalidated or the read failed. The names removed are only
+ * dropped from the lists of the sequences once they make half of the index.
+ */
+public class ObjectIndex implements MetaDataCache.Listener {
+
+    public static final String TABLE = "table";
+    public static final String COLUMN = "column";
+    public static final String OBJECT = "object";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectIndex.class);
+
+    private static final int MIN_COMPACTION = 1024;
+
+    /**
+     * <TT>*</TT> and <TT>%</TT> for any characters, <TT>?</TT> for one.
+     */
+    private static final Pattern WILDCARDS = Pattern.compile("[*%?]");
+
+    /**
+     * The entries by id, <TT>null</TT> once removed.
+     */
+    private Entry[] entries = new Entry[256];
+    private int used;
+    private int removed;
+    /**
+     * A sequence of three characters, in a <TT>long</TT>, to the ids of the
+     * entries holding it.
+     */
+    private final Map<Long, IntList> postings = new HashMap<Long, IntList>();
+    private final Map<String, Group> groups = new HashMap<String, Group>();
+    /**
+     * The entries of the tables by catalog, schema and name, for the tables
+     * of the columns.
+     */
+    private final Map<String, Entry> tables = new HashMap<String, Entry>();
+    private boolean objectsLoaded;
+    private boolean objectsLoading;
+    /**
+     * The sequences each entry shares with the text searched, kept between
+     * searches and cleared after each.
+     */
+    private int[] shared = new int[0];
+
+    ObjectIndex() {
+    }
+
+    public synchronized void tablesLoaded(String catalog, String schema, String tableType, boolean all,
+                                          ITableInfo[] infos) {
+        String key = TABLE + '\u0000' + catalog + '\u0000' + schema + '\u0000' + tableType;
+        Map<String, ITableInfo> byName = new LinkedHashMap<String, ITableInfo>();
+        for (ITableInfo info : infos) {
+            byName.put(info.getSimpleName(), info);
+        }
+        Group group = getGroup(key, TABLE, catalog, schema, null);
+        // the tables known already keep their ids, which saves reindexing
+        // a list read again once expired
+        for (int i = group.ids.size - 1; i >= 0; i--) {
+            Entry entry = entries[group.ids.data[i]];
+            ITableInfo info = byName.remove(entry.name);
+            if (info != null) {
+                entry.info = info;
+                tables.put(tableKey(info.getCatalogName(), info.getSchemaName(), entry.name), entry);
+            } else if (all) {
+                remove(group, i);
+            }
+        }
+        for (ITableInfo info : byName.values()) {
+            add(group, new Entry(info.getSimpleName(), TABLE, tableType, catalog, schema, null, info));
+        }
+        compactIfNeeded();
+    }
+
+    public synchronized void columnsLoaded(String catalog, String schema, String table,
+                                           TableColumnInfo[] columns) {
+        String key = COLUMN + '\u0000' + catalog + '\u0000' + schema + '\u0000' + table;
+        Group group = getGroup(key, COLUMN, catalog, schema, table);
+        Map<String, TableColumnInfo> byName = new LinkedHashMap<String, TableColumnInfo>();
+        for (TableColumnInfo column : columns) {
+            byName.put(column.getColumnName(), column);
+        }
+        for (int i = group.ids.size - 1; i >= 0; i--) {
+            Entry entry = entries[group.ids.data[i]];
+            TableColumnInfo column = byName.remove(entry.name);
+            if (column != null) {
+                entry.type = column.getTypeName();
+            } else {
+                remove(group, i);
+            }
+        }
+        for (TableColumnInfo column : byName.values()) {
+            add(group, new Entry(column.getColumnName(), COLUMN, column.getTypeName(), catalog, schema, table, null));
+        }
+        compactIfNeeded();
+    }
+
+    public synchronized void invalidated(String catalog, String schema, String table) {
+        List<Group> matching = new ArrayList<Group>();
+        for (Group group : groups.values()) {
+            if ((group.catalog == null || matches(catalog, group.catalog)) && matches(schema, group.schema)
+                    && (table == null || group.kind.equals(TABLE) || table.equals(group.table))) {
+                matching.add(group);
+            }
+        }
+        for (Group group : matching) {
+            if (table != null && group.kind.equals(TABLE)) {
+                // the table alone leaves the list of its schema
+                for (int i = group.ids.size - 1; i >= 0; i--) {
+                    if (entries[group.ids.data[i]].name.equals(table)) {
+                        remove(group, i);
+                    }
+                }
+            } else {
+                removeGroup(group);
+                if (group.kind.equals(OBJECT)) {
+                    objectsLoaded = false;
+                }
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Has the objects of the plugins read again by the next
+     * <TT>loadObjects()</TT>, one having been created or dropped.
+     */
+    public synchronized void invalidateObjects() {
+        objectsLoaded = false;
+    }
+
+    /**
+     * Whether the objects of the plugins are in the index, which they are not
+     * before <TT>loadObjects()</TT> and after their schema is invalidated.
+     */
+    public synchronized boolean hasObjects() {
+        return objectsLoaded;
+    }
+
+    /**
+     * Marks the objects of the plugins as being read, unless they are in
+     * the index or being read already.
+     *
+     * @return <TT>false</TT> if they are.
+     */
+    public synchronized boolean markObjectsLoading() {
+        if (objectsLoaded || objectsLoading) {
+            return false;
+        }
+        objectsLoading = true;
+        return true;
+    }
+
+    /**
+     * Lets the objects be read again, after a read which failed.
+     */
+    public synchronized void resetObjectsLoading() {
+        objectsLoading = false;
+    }
+
+    /**
+     * Reads the objects of the plugins from the <TT>CatalogQueries</TT> of
+     * the database of <TT>conn</TT>. A database without such a query has no
+     * objects; when the query fails, the objects are left as they were.
+     */
+    public void loadObjects(SQLConnection conn) {
+        List<String[]> objects = new ArrayList<String[]>();
+        CatalogQueries queries = DialectFactory.getCatalogQueries(conn);
+        if (queries != null) {
+            try {
+                ResultSet rs = queries.getObjects(conn.getConnection(), null, null);
+                if (rs != null) {
+                    try {
+                        while (rs.next()) {
+                            objects.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3),
+                                    rs.getString(4)});
+                        }
+                    } finally {
+                        Statement st = rs.getStatement();
+                        rs.close();
+                        if (st != null)
+                            st.close();
+                    }
+                }
+            } catch (SQLException e) {
+                LOGGER.warn("Cannot read the objects of the schemas", e);
+                resetObjectsLoading();
+                return;
+            }
+        }
+        setObjects(objects);
+    }
+
+    /**
+     * Replaces the objects of the plugins.
+     *
+     * @param objects <TT>{catalog, schema, name, type}</TT> arrays.
+     */
+    synchronized void setObjects(List<String[]> objects) {
+        for (Group group : new ArrayList<Group>(groups.values())) {
+            if (group.kind.equals(OBJECT)) {
+                removeGroup(group);
+            }
+        }
+        for (String[] object : objects) {
+            if (object[2] == null) {
+                continue;
+            }
+            String key = OBJECT + '\u0000' + object[0] + '\u0000' + object[1];
+            Group group = getGroup(key, OBJECT, object[0], object[1], null);
+            add(group, new Entry(object[2], OBJECT, object[3], object[0], object[1], null, null));
+        }
+        objectsLoaded = true;
+        objectsLoading = false;
+        compactIfNeeded();
+    }
+
+    /**
+     * Finds the names containing <TT>text</TT>, or close to it, regardless
+     * of the case, or matching it if it holds wildcards: <TT>*</TT> and
+     * <TT>%</TT> for any characters, <TT>?</TT> for one. A text like
+     * <TT>qualifier.name</TT> only finds the names whose schema, catalog or
+     * table is <TT>qualifier</TT>.
+     *
+     * @return at most <TT>limit</TT> entries, the best matches first.
+     */
+    public synchronized List<Entry> find(String text, int limit) {
+        String q = text.trim().toLowerCase();
+        String qualifier = null;
+        int dot = q.lastIndexOf('.');
+        if (dot >= 0) {
+            qualifier = q.substring(0, dot);
+            q = q.substring(dot + 1);
+        }
+        List<Match> matches = new ArrayList<Match>();
+        if (q.length() == 0 && qualifier == null) {
+            return new ArrayList<Entry>();
+        }
+        if (WILDCARDS.matcher(q).find()) {
+            Pattern pattern = wildcardPattern(q);
+            String literal = "";
+            for (String part : WILDCARDS.split(q)) {
+                if (part.length() > literal.length()) {
+                    literal = part;
+                }
+            }
+            long[] grams = trigrams(literal);
+            IntList candidates = grams.length == 0 ? null : share(grams);
+            int n = candidates == null ? used : candidates.size;
+            for (int i = 0; i < n; i++) {
+                int id = i;
+                if (candidates != null) {
+                    id = candidates.data[i];
+                    int s = shared[id];
+                    shared[id] = 0;
+                    if (s < grams.length) {
+                        continue;
+                    }
+                }
+                Entry entry = entries[id];
+                if (entry != null && qualifies(entry, qualifier) && pattern.matcher(entry.lower).matches()) {
+                    matches.add(new Match(entry, 0));
+                }
+            }
+        } else if (q.length() < 3) {
+            for (int id = 0; id < used; id++) {
+                Entry entry = entries[id];
+                if (entry != null && entry.lower.contains(q) && qualifies(entry, qualifier)) {
+                    matches.add(new Match(entry, bonus(entry, q)));
+                }
+            }
+        } else {
+            long[] grams = trigrams(q);
+            IntList touched = share(grams);
+            for (int i = 0; i < touched.size; i++) {
+                int id = touched.data[i];
+                int s = shared[id];
+                shared[id] = 0;
+                Entry entry = entries[id];
+                if (entry == null || !qualifies(entry, qualifier)) {
+                    continue;
+                }
+                int bonus = bonus(entry, q);
+                // half of the sequences at least for a name not containing the text
+                if (bonus == 0 && s * 2 < grams.length) {
+                    continue;
+                }
+                matches.add(new Match(entry, bonus + (double) s / (grams.length + entry.trigrams - s)));
+            }
+        }
+        Collections.sort(matches, new Comparator<Match>() {
+            public int compare(Match m1, Match m2) {
+                if (m1.score != m2.score) {
+                    return m1.score > m2.score ? -1 : 1;
+                }
+                if (m1.entry.rank() != m2.entry.rank()) {
+                    return m1.entry.rank() - m2.entry.rank();
+                }
+                if (m1.entry.name.length() != m2.entry.name.length()) {
+                    return m1.entry.name.length() - m2.entry.name.length();
+                }
+                return m1.entry.name.compareTo(m2.entry.name);
+            }
+        });
+        List<Entry> result = new ArrayList<Entry>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && result.size() < limit; i++) {
+            result.add(matches.get(i).entry);
+        }
+        return result;
+    }
+
+    /**
+     * Counts in <TT>shared</TT> the sequences of <TT>grams</TT> each entry
+     * holds, which the caller clears.
+     *
+     * @return the ids of the entries holding one at least.
+     */
+    private IntList share(long[] grams) {
+        if (shared.length < used) {
+            shared = new int[entries.length];
+        }
+        IntList touched = new IntList();
+        for (long gram : grams) {
+            IntList ids = postings.get(gram);
+            if (ids == null) {
+                continue;
+            }
+            for (int i = 0; i < ids.size; i++) {
+                int id = ids.data[i];
+                if (shared[id]++ == 0) {
+                    touched.add(id);
+                }
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * @return the entry of the table of a column, or <TT>null</TT> if the
+     * list of its tables has not been read.
+     */
+    public synchronized Entry getTable(Entry column) {
+        return tables.get(tableKey(column.catalog, column.schema, column.table));
+    }
+
+    /**
+     * @return the number of names in the index.
+     */
+    public synchronized int size() {
+        return used - removed;
+    }
+
+    private Group getGroup(String key, String kind, String catalog, String schema, String table) {
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(key, kind, catalog, schema, table);
+            groups.put(key, group);
+        }
+        return group;
+    }
+
+    private void add(Group group, Entry entry) {
+        if (used == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        int id = used++;
+        entries[id] = entry;
+        group.ids.add(id);
+        index(id, entry);
+        if (entry.info != null) {
+            tables.put(tableKey(entry.info.getCatalogName(), entry.info.getSchemaName(), entry.name), entry);
+        }
+    }
+
+    private void index(int id, Entry entry) {
+        long[] grams = trigrams(entry.lower);
+        entry.trigrams = grams.length;
+        for (long gram : grams) {
+            IntList ids = postings.get(gram);
+            if (ids == null) {
+                ids = new IntList();
+                postings.put(gram, ids);
+            }
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Removes the <TT>i</TT>th entry of <TT>group</TT>; its id stays in the
+     * lists of its sequences until the next compaction.
+     */
+    private void remove(Group group, int i) {
+        int id = group.ids.data[i];
+        Entry entry = entries[id];
+        entries[id] = null;
+        removed++;
+        group.ids.removeAt(i);
+        if (entry.info != null) {
+            String key = tableKey(entry.info.getCatalogName(), entry.info.getSchemaName(), entry.name);
+            if (tables.get(key) == entry) {
+                tables.remove(key);
+            }
+        }
+    }
+
+    private void removeGroup(Group group) {
+        for (int i = group.ids.size - 1; i >= 0; i--) {
+            remove(group, i);
+        }
+        groups.remove(group.key);
+    }
+
+    /**
+     * Renumbers the entries left and rebuilds the lists of the sequences,
+     * once the entries removed make half of the index.
+     */
+    private void compactIfNeeded() {
+        if (removed < MIN_COMPACTION || removed * 2 < used) {
+            return;
+        }
+        int[] newIds = new int[used];
+        Entry[] compacted = new Entry[Math.max(256, Integer.highestOneBit(Math.max(1, used - removed)) * 2)];
+        int n = 0;
+        for (int id = 0; id < used; id++) {
+            if (entries[id] != null) {
+                newIds[id] = n;
+                compacted[n++] = entries[id];
+            }
+        }
+        for (Group group : groups.values()) {
+            for (int i = 0; i < group.ids.size; i++) {
+                group.ids.data[i] = newIds[group.ids.data[i]];
+            }
+        }
+        entries = compacted;
+        used = n;
+        removed = 0;
+        shared = new int[0];
+        postings.clear();
+        for (int id = 0; id < used; id++) {
+            index(id, entries[id]);
+        }
+    }
+
+    private static boolean qualifies(Entry entry, String qualifier) {
+        return qualifier == null || qualifier.equalsIgnoreCase(entry.schema)
+                || qualifier.equalsIgnoreCase(entry.catalog) || qualifier.equalsIgnoreCase(entry.table)
+                || (entry.table != null && qualifier.equalsIgnoreCase(entry.schema + "." + entry.table));
+    }
+
+    private static Pattern wildcardPattern(String q) {
+        StringBuilder regex = new StringBuilder();
+        Matcher m = WILDCARDS.matcher(q);
+        int start = 0;
+        while (m.find()) {
+            if (m.start() > start) {
+                regex.append(Pattern.quote(q.substring(start, m.start())));
+            }
+            regex.append(m.group().equals("?") ? "." : ".*");
+            start = m.end();
+        }
+        if (start < q.length()) {
+            regex.append(Pattern.quote(q.substring(start)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static int bonus(Entry entry, String q) {
+        if (entry.lower.equals(q)) {
+            return 3;
+        }
+        if (entry.lower.startsWith(q)) {
+            return 2;
+        }
+        return entry.lower.contains(q) ? 1 : 0;
+    }
+
+    /**
+     * @return the distinct sequences of three characters of <TT>s</TT>, each
+     * packed in a <TT>long</TT>.
+     */
+    private static long[] trigrams(String s) {
+        if (s.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[s.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int n = 1;
+        for (int i = 1; i < grams.length; i++) {
+            if (grams[i] != grams[n - 1]) {
+                grams[n++] = grams[i];
+            }
+        }
+        return n == grams.length ? grams : Arrays.copyOf(grams, n);
+    }
+
+    private static String tableKey(String catalog, String schema, String name) {
+        return catalog + '\u0000' + schema + '\u0000' + name;
+    }
+
+    private static boolean matches(String pattern, String value) {
+        return pattern == null || pattern.equals(value);
+    }
+
+    /**
+     * A table or view, a column, or an object of a plugin.
+     */
+    public static final class Entry {
+        final String name;
+        final String lower;
+        final String kind;
+        String type;
+        final String catalog;
+        final String schema;
+        final String table;
+        ITableInfo info;
+        int trigrams;
+
+        Entry(String name, String kind, String type, String catalog, String schema, String table,
+              ITableInfo info) {
+            this.name = name;
+            this.lower = name.toLowerCase();
+            this.kind = kind;
+            this.type = type;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.table = table;
+            this.info = info;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return one of <TT>TABLE</TT>, <TT>COLUMN</TT> and <TT>OBJECT</TT>.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the table type of a table, the type name of a column, or
+         * the type of an object, like <TT>PACKAGE</TT> or
+         * <TT>PROCEDURE</TT>.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the catalog of the tables node of a table, of the table of
+         * a column, or of an object.
+         */
+        public String getCatalogName() {
+            return catalog;
+        }
+
+        public String getSchemaName() {
+            return schema;
+        }
+
+        /**
+         * @return the table of a column, <TT>null</TT> otherwise.
+         */
+        public String getTableName() {
+            return table;
+        }
+
+        /**
+         * @return the table of a table entry, <TT>null</TT> otherwise.
+         */
+        public ITableInfo getTableInfo() {
+            return info;
+        }
+
+        int rank() {
+            return kind.equals(TABLE) ? 0 : kind.equals(OBJECT) ? 1 : 2;
+        }
+    }
+
+    private static final class Match {
+        final Entry entry;
+        final double score;
+
+        Match(Entry entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The tables of a schema of one type, the columns of a table, or the
+     * objects of a schema.
+     */
+    private static final class Group {
+        final String key;
+        final String kind;
+        final String catalog;
+        final String schema;
+        final String table;
+        final IntList ids = new IntList();
+
+        Group(String key, String kind, String catalog, String schema, String table) {
+            this.key = key;
+            this.kind = kind;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.table = table;
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        void removeAt(int i) {
+            System.arraycopy(data, i + 1, data, i, size - i - 1);
+            size--;
+        }
+    }
+}
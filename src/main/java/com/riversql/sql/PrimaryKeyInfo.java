@@ -29,7 +29,7 @@ public class PrimaryKeyInfo extends DatabaseObjectInfo {
      * provide complete information about this key.
      */
     PrimaryKeyInfo() {
-        super(null, null, null, null, null);
+        super(null, null, null, null, (SQLDatabaseMetaData) null);
     }
 
     /**
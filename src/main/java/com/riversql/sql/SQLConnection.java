@@ -45,10 +45,37 @@ public class SQLConnection {
      */
     private transient PropertyChangeReporter _propChgReporter;
     private SQLDatabaseMetaData metaData = null;
+    /**
+     * The pool <TT>_conn</TT> is returned to on close, if any.
+     */
+    private final ConnectionPool _pool;
+    /**
+     * A result that must be closed before the connection is used for
+     * anything else.
+     */
+    private volatile AutoCloseable _openCursor;
+    /**
+     * Where the tables, columns and keys read through this connection are
+     * kept, private to it unless shared with <TT>setMetaDataCache()</TT>.
+     */
+    private MetaDataCache _metaDataCache = new MetaDataCache();
+    /**
+     * Whether what is read through this connection is pinned in its cache.
+     */
+    private volatile boolean _pinMetaData;
 
     public SQLConnection(Connection conn, SQLDriverPropertyCollection connProps, ISQLDriver sqlDriver) {
+        this(conn, connProps, sqlDriver, null);
+    }
+
+    /**
+     * Wraps a connection borrowed from <TT>pool</TT>, which is given back
+     * instead of being closed.
+     */
+    public SQLConnection(Connection conn, SQLDriverPropertyCollection connProps, ISQLDriver sqlDriver, ConnectionPool pool) {
         super();
         _sqlDriver = sqlDriver;
+        _pool = pool;
         if (conn == null) {
             throw new IllegalArgumentException("SQLConnection == null");
         }
@@ -58,10 +85,39 @@ public class SQLConnection {
         metaData = new SQLDatabaseMetaData(this);
     }
 
+    public MetaDataCache getMetaDataCache() {
+        return _metaDataCache;
+    }
+
+    /**
+     * Shares the cache of the connections to the same source, until the
+     * connection is closed.
+     */
+    public void setMetaDataCache(MetaDataCache cache) {
+        _metaDataCache.release();
+        cache.acquire();
+        _metaDataCache = cache;
+    }
+
+    public boolean isPinMetaData() {
+        return _pinMetaData;
+    }
+
+    /**
+     * Keeps what the cache reads through this connection until it is
+     * invalidated, whatever its age and the size of the cache, for the
+     * connections of the crawler.
+     */
+    public void setPinMetaData(boolean pin) {
+        _pinMetaData = pin;
+    }
+
     public void close() throws SQLException {
         SQLException savedEx = null;
         if (_conn != null) {
 //			s_log.debug("Closing connection");
+            closeOpenCursor();
+            _metaDataCache.release();
             try {
                 if (!_conn.getAutoCommit()) {
                     if (_autoCommitOnClose) {
@@ -73,7 +129,11 @@ public class SQLConnection {
             } catch (SQLException ex) {
                 savedEx = ex;
             }
-            _conn.close();
+            if (_pool != null) {
+                _pool.giveBack(_conn);
+            } else {
+                _conn.close();
+            }
             _conn = null;
             _timeClosed = Calendar.getInstance().getTime();
             if (savedEx != null) {
@@ -150,6 +210,56 @@ public class SQLConnection {
         return _conn.prepareStatement(sql);
     }
 
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        validateConnection();
+        return _conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+
+    /**
+     * Records the result still being read on this connection when the driver
+     * cannot run anything else until it is closed. It is closed as soon as
+     * the connection is used through this object, be it to run a statement,
+     * to read metadata or to commit, see <TT>closeOpenCursor()</TT>.
+     */
+    public synchronized void setOpenCursor(AutoCloseable cursor) {
+        _openCursor = cursor;
+    }
+
+    /**
+     * Forgets <TT>cursor</TT> if it is the open cursor of this connection.
+     *
+     * @return <TT>false</TT> if it was not, having been closed by
+     * <TT>closeOpenCursor()</TT> for instance.
+     */
+    public synchronized boolean releaseOpenCursor(AutoCloseable cursor) {
+        if (_openCursor == cursor) {
+            _openCursor = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the result recorded by <TT>setOpenCursor()</TT>, if any, so that
+     * another statement can run.
+     */
+    public void closeOpenCursor() {
+        if (_openCursor == null) {
+            return;
+        }
+        AutoCloseable cursor;
+        synchronized (this) {
+            cursor = _openCursor;
+            _openCursor = null;
+        }
+        if (cursor != null) {
+            try {
+                cursor.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+
     /**
      * Retrieve the time that this connection was opened. Note that this time
      * is the time that this <TT>SQLConnection</TT> was created, not the time
@@ -182,6 +292,7 @@ public class SQLConnection {
     }
 
     public Connection getConnection() {
+        closeOpenCursor();
         /* This is extremely useful when trying to track down Swing UI freezing.
          * However, it currently fills the log which obscures other debug
          * messages even though UI performance is acceptable, so it is commented
@@ -199,6 +310,14 @@ public class SQLConnection {
         return _conn;
     }
 
+    /**
+     * @return the pool the connection was borrowed from, <TT>null</TT> if it
+     * was opened for this object alone.
+     */
+    public ConnectionPool getPool() {
+        return _pool;
+    }
+
     public String getCatalog() throws SQLException {
         validateConnection();
         return getConnection().getCatalog();
@@ -253,10 +372,15 @@ public class SQLConnection {
         }
     }
 
+    /**
+     * Checks that the connection is open, and closes the open cursor, if
+     * any, since the caller is about to use it.
+     */
     protected void validateConnection() throws SQLException {
         if (_conn == null) {
             throw new SQLException(s_stringMgr.getString("SQLConnection.noConn"));
         }
+        closeOpenCursor();
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.riversql.sql;
 
+import com.riversql.databases.CatalogQueries;
 import com.riversql.databases.DialectFactory;
 import com.riversql.sql.dbobj.BestRowIdentifier;
 import com.riversql.utils.ResultSetReader;
@@ -9,6 +10,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 //import com.riversql.util.log.ILogger;
 //import com.riversql.util.log.LoggerController;
 
@@ -30,15 +35,20 @@ import java.util.*;
  * <P>Additionally, it should be noted that some JDBC drivers (like Oracle) do
  * not handle multi-threaded access to methods that return ResultSets very well.
  * It is therefore highly recommended that methods in this class that return
- * a ResultSet, should not be called outside of this class where this class'
- * monitor has no jurisdiction.  Furthermore, methods that are meant to be
- * called externally that create a ResultSet should package the data in some
- * container object structure for use by the caller, and should always be
- * synchronized on this class' monitor.
+ * a ResultSet, should not be called outside of this class where
+ * <TT>_catalogLock</TT> has no jurisdiction.  Furthermore, methods that are
+ * meant to be called externally that create a ResultSet should package the
+ * data in some container object structure for use by the caller, and should
+ * always hold <TT>_catalogLock</TT>.
+ *
+ * <P>Cached properties are read without locking, so that they are not held up
+ * by a slow catalog query running on the same connection.
  *
  * @author <A HREF="mailto:colbell@users.sourceforge.net">Colin Bell</A>
  */
 public class SQLDatabaseMetaData {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SQLDatabaseMetaData.class);
+
     /**
      * Connection to database this class is supplying information for.
      */
@@ -54,13 +64,22 @@ public class SQLDatabaseMetaData {
      * likely to be changed during an open Session.
      * Meta data that is likely to be changed should be kept in SchemaInfo.
      */
-    private Map<String, Object> _cache =
-            Collections.synchronizedMap(new HashMap<String, Object>());
+    private final Map<String, Object> _cache = new ConcurrentHashMap<String, Object>();
+    /**
+     * Held while reading the catalog through a <TT>ResultSet</TT>.
+     */
+    private final Object _catalogLock = new Object();
     /**
      * If previous attempts to getSuperTables fail, then this will be set to
      * false, and prevent further attempts.
      */
-    private boolean supportsSuperTables = true;
+    private volatile boolean supportsSuperTables = true;
+    /**
+     * Dictionary queries used instead of the driver for the catalog, looked
+     * up on first use and dropped as soon as one of them fails.
+     */
+    private volatile CatalogQueries _catalogQueries;
+    private volatile boolean _catalogQueriesResolved;
 
     /**
      * ctor specifying the connection that we are retrieving metadata for.
@@ -76,6 +95,22 @@ public class SQLDatabaseMetaData {
         _conn = conn;
     }
 
+    /**
+     * @return the cache of the connection, from which the keys of the
+     * tables are read to order them.
+     */
+    MetaDataCache getMetaDataCache() {
+        return _conn.getMetaDataCache();
+    }
+
+    /**
+     * @return whether the cache keeps what is read through this connection
+     * until it is invalidated.
+     */
+    boolean isPinMetaData() {
+        return _conn.isPinMetaData();
+    }
+
     /**
      * Make a String array of the passed string. Commas separate the elements
      * in the input string. The array is sorted.
@@ -98,6 +133,16 @@ public class SQLDatabaseMetaData {
         return list.toArray(new String[list.size()]);
     }
 
+    /**
+     * Caches a property. A <TT>null</TT> value is not cached, it is read
+     * again next time.
+     */
+    private void cache(String key, Object value) {
+        if (value != null) {
+            _cache.put(key, value);
+        }
+    }
+
     private void close(ResultSet rs) {
         try {
             if (rs != null) {
@@ -108,15 +153,35 @@ public class SQLDatabaseMetaData {
         }
     }
 
+    /**
+     * @return the dictionary queries of the database, or <TT>null</TT> if
+     * the driver must be used.
+     */
+    CatalogQueries getCatalogQueries() {
+        if (!CatalogQueries.isEnabled()) {
+            return null;
+        }
+        if (!_catalogQueriesResolved) {
+            _catalogQueries = DialectFactory.getCatalogQueries(_conn);
+            _catalogQueriesResolved = true;
+        }
+        return _catalogQueries;
+    }
+
+    private void catalogQueryFailed(SQLException e) {
+        LOGGER.warn("Catalog query failed, falling back to the driver metadata", e);
+        _catalogQueries = null;
+    }
+
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getUserName()
      */
-    public synchronized String getUserName() throws SQLException {
+    public String getUserName() throws SQLException {
         final String key = "getUserName";
         String value = (String) _cache.get(key);
         if (value == null) {
             value = privateGetJDBCMetaData().getUserName();
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
@@ -124,13 +189,13 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getDatabaseProductName()
      */
-    public synchronized String getDatabaseProductName()
+    public String getDatabaseProductName()
             throws SQLException {
         final String key = "getDatabaseProductName";
         String value = (String) _cache.get(key);
         if (value == null) {
             value = privateGetJDBCMetaData().getDatabaseProductName();
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
@@ -138,24 +203,24 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getDatabaseProductVersion()
      */
-    public synchronized String getDatabaseProductVersion()
+    public String getDatabaseProductVersion()
             throws SQLException {
         final String key = "getDatabaseProductVersion";
         String value = (String) _cache.get(key);
         if (value == null) {
             value = privateGetJDBCMetaData().getDatabaseProductVersion();
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
 
-    public synchronized int getDatabaseMajorVersion()
+    public int getDatabaseMajorVersion()
             throws SQLException {
         final String key = "getDatabaseMajorVersion";
         Integer value = (Integer) _cache.get(key);
         if (value == null) {
             value = privateGetJDBCMetaData().getDatabaseMajorVersion();
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
@@ -163,12 +228,12 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getDriverName()
      */
-    public synchronized String getDriverName() throws SQLException {
+    public String getDriverName() throws SQLException {
         final String key = "getDriverName";
         String value = (String) _cache.get(key);
         if (value == null) {
             value = privateGetJDBCMetaData().getDriverName();
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
@@ -185,7 +250,7 @@ public class SQLDatabaseMetaData {
             int minor = md.getJDBCMinorVersion();
             int vers = (major * 100) + minor;
             value = Integer.valueOf(vers);
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value.intValue();
     }
@@ -193,7 +258,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getIdentifierQuoteString()
      */
-    public synchronized String getIdentifierQuoteString() throws SQLException {
+    public String getIdentifierQuoteString() throws SQLException {
         final String key = "getIdentifierQuoteString";
         String value = (String) _cache.get(key);
         if (value == null) {
@@ -201,7 +266,7 @@ public class SQLDatabaseMetaData {
             if (value == null) {
                 value = "";
             }
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
@@ -209,7 +274,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getCascadeClause()
      */
-    public synchronized String getCascadeClause() throws SQLException {
+    public String getCascadeClause() throws SQLException {
         final String key = "getCascadeClause";
         String value = (String) _cache.get(key);
         if (value == null) {
@@ -218,7 +283,7 @@ public class SQLDatabaseMetaData {
             } else {
                 value = "";
             }
-            _cache.put(key, value);
+            cache(key, value);
         }
         return value;
     }
@@ -226,50 +291,51 @@ public class SQLDatabaseMetaData {
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#getSchemas()
      */
-    public synchronized String[] getSchemas() throws SQLException {
+    public String[] getSchemas() throws SQLException {
+        synchronized (_catalogLock) {
+            boolean hasGuest = false;
+            boolean hasSysFun = false;
 
-        boolean hasGuest = false;
-        boolean hasSysFun = false;
+            final boolean isMSSQLorSYBASE = DialectFactory.isSyBase(this._conn)
+                    || DialectFactory.isMSSQL(this._conn);
 
-        final boolean isMSSQLorSYBASE = DialectFactory.isSyBase(this._conn)
-                || DialectFactory.isMSSQL(this._conn);
+            final boolean isDB2 = DialectFactory.isDB2(this._conn);
 
-        final boolean isDB2 = DialectFactory.isDB2(this._conn);
-
-        final ArrayList<String> list = new ArrayList<String>();
-        ResultSet rs = privateGetJDBCMetaData().getSchemas();
-        try {
-            if (rs != null) {
-                // DialectType dialectType = DialectFactory.getDialectType(this);
-                final ResultSetReader rdr = new ResultSetReader(rs);//, dialectType);
-                Object[] row = null;
-                while ((row = rdr.readRow()) != null) {
-                    if (isMSSQLorSYBASE && row[0].equals("guest")) {
-                        hasGuest = true;
-                    }
-                    if (isDB2 && row[0].equals("SYSFUN")) {
-                        hasSysFun = true;
+            final ArrayList<String> list = new ArrayList<String>();
+            ResultSet rs = privateGetJDBCMetaData().getSchemas();
+            try {
+                if (rs != null) {
+                    // DialectType dialectType = DialectFactory.getDialectType(this);
+                    final ResultSetReader rdr = new ResultSetReader(rs);//, dialectType);
+                    Object[] row = null;
+                    while ((row = rdr.readRow()) != null) {
+                        if (isMSSQLorSYBASE && row[0].equals("guest")) {
+                            hasGuest = true;
+                        }
+                        if (isDB2 && row[0].equals("SYSFUN")) {
+                            hasSysFun = true;
+                        }
+                        list.add((String) row[0]);
                     }
-                    list.add((String) row[0]);
                 }
+            } finally {
+                close(rs);
             }
-        } finally {
-            close(rs);
-        }
 
-        // Some drivers for both MS SQL and Sybase don't return guest as
-        // a schema name.
-        if (isMSSQLorSYBASE && !hasGuest) {
-            list.add("guest");
-        }
+            // Some drivers for both MS SQL and Sybase don't return guest as
+            // a schema name.
+            if (isMSSQLorSYBASE && !hasGuest) {
+                list.add("guest");
+            }
 
-        // Some drivers for DB2 don't return SYSFUN as a schema name. A
-        // number of system stored procs are kept in this schema.
-        if (isDB2 && !hasSysFun) {
-            list.add("SYSFUN");
-        }
+            // Some drivers for DB2 don't return SYSFUN as a schema name. A
+            // number of system stored procs are kept in this schema.
+            if (isDB2 && !hasSysFun) {
+                list.add("SYSFUN");
+            }
 
-        return list.toArray(new String[list.size()]);
+            return list.toArray(new String[list.size()]);
+        }
     }
 
     /* (non-Javadoc)
@@ -283,7 +349,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsSchemasInDataManipulation()
      */
-    public synchronized boolean supportsSchemasInDataManipulation()
+    public boolean supportsSchemasInDataManipulation()
             throws SQLException {
         final String key = "supportsSchemasInDataManipulation";
         Boolean value = (Boolean) _cache.get(key);
@@ -299,12 +365,12 @@ public class SQLDatabaseMetaData {
 
             if (isSQLServer) {
                 value = Boolean.TRUE;
-                _cache.put(key, value);
+                cache(key, value);
             }
             throw ex;
         }
 
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -312,7 +378,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsSchemasInTableDefinitions()
      */
-    public synchronized boolean supportsSchemasInTableDefinitions()
+    public boolean supportsSchemasInTableDefinitions()
             throws SQLException {
         final String key = "supportsSchemasInTableDefinitions";
         Boolean value = (Boolean) _cache.get(key);
@@ -327,12 +393,12 @@ public class SQLDatabaseMetaData {
                     DialectFactory.isSyBase(this._conn) || DialectFactory.isMSSQL(this._conn);
             if (isSQLServer) {
                 value = Boolean.TRUE;
-                _cache.put(key, value);
+                cache(key, value);
             }
             throw ex;
         }
 
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -340,7 +406,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsStoredProcedures()
      */
-    public synchronized boolean supportsStoredProcedures() throws SQLException {
+    public boolean supportsStoredProcedures() throws SQLException {
         final String key = "supportsStoredProcedures";
         Boolean value = (Boolean) _cache.get(key);
         if (value != null) {
@@ -354,7 +420,7 @@ public class SQLDatabaseMetaData {
         } else {
             value = Boolean.valueOf(privateGetJDBCMetaData().supportsStoredProcedures());
         }
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -362,7 +428,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsSavepoints()
      */
-    public synchronized boolean supportsSavepoints() throws SQLException {
+    public boolean supportsSavepoints() throws SQLException {
 
         final String key = "supportsSavepoints";
         Boolean value = (Boolean) _cache.get(key);
@@ -371,7 +437,7 @@ public class SQLDatabaseMetaData {
         }
         value = Boolean.valueOf(privateGetJDBCMetaData().supportsSavepoints());
 
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -379,7 +445,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsResultSetType(int)
      */
-    public synchronized boolean supportsResultSetType(int type)
+    public boolean supportsResultSetType(int type)
             throws SQLException {
         final String key = "supportsResultSetType";
         Boolean value = (Boolean) _cache.get(key);
@@ -388,7 +454,7 @@ public class SQLDatabaseMetaData {
         }
         value = Boolean.valueOf(privateGetJDBCMetaData().supportsResultSetType(type));
 
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -397,31 +463,33 @@ public class SQLDatabaseMetaData {
      * (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getCatalogs()
      */
-    public synchronized String[] getCatalogs() throws SQLException {
-        final ArrayList<String> list = new ArrayList<String>();
-        ResultSet rs = privateGetJDBCMetaData().getCatalogs();
-        try {
-            if (rs != null) {
-                //DialectType dialectType = DialectFactory.getDialectType(this);
-                final ResultSetReader rdr = new ResultSetReader(rs);
-                Object[] row = null;
-                while ((row = rdr.readRow()) != null) {
-                    if (row != null && row[0] != null) {
-                        list.add(row[0].toString());
+    public String[] getCatalogs() throws SQLException {
+        synchronized (_catalogLock) {
+            final ArrayList<String> list = new ArrayList<String>();
+            ResultSet rs = privateGetJDBCMetaData().getCatalogs();
+            try {
+                if (rs != null) {
+                    //DialectType dialectType = DialectFactory.getDialectType(this);
+                    final ResultSetReader rdr = new ResultSetReader(rs);
+                    Object[] row = null;
+                    while ((row = rdr.readRow()) != null) {
+                        if (row != null && row[0] != null) {
+                            list.add(row[0].toString());
+                        }
                     }
                 }
+            } finally {
+                close(rs);
             }
-        } finally {
-            close(rs);
-        }
 
-        return list.toArray(new String[list.size()]);
+            return list.toArray(new String[list.size()]);
+        }
     }
 
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getURL()
      */
-    public synchronized String getURL() throws SQLException {
+    public String getURL() throws SQLException {
         final String key = "getURL";
         String value = (String) _cache.get(key);
         if (value != null) {
@@ -429,7 +497,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = privateGetJDBCMetaData().getURL();
-        _cache.put(key, value);
+        cache(key, value);
 
         return value;
     }
@@ -437,7 +505,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getCatalogTerm()
      */
-    public synchronized String getCatalogTerm() throws SQLException {
+    public String getCatalogTerm() throws SQLException {
         final String key = "getCatalogTerm";
         String value = (String) _cache.get(key);
         if (value != null) {
@@ -445,7 +513,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = privateGetJDBCMetaData().getCatalogTerm();
-        _cache.put(key, value);
+        cache(key, value);
 
         return value;
     }
@@ -453,7 +521,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getSchemaTerm()
      */
-    public synchronized String getSchemaTerm() throws SQLException {
+    public String getSchemaTerm() throws SQLException {
         final String key = "getSchemaTerm";
         String value = (String) _cache.get(key);
         if (value != null) {
@@ -461,7 +529,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = privateGetJDBCMetaData().getSchemaTerm();
-        _cache.put(key, value);
+        cache(key, value);
 
         return value;
     }
@@ -469,7 +537,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getProcedureTerm()
      */
-    public synchronized String getProcedureTerm() throws SQLException {
+    public String getProcedureTerm() throws SQLException {
         final String key = "getProcedureTerm";
         String value = (String) _cache.get(key);
         if (value != null) {
@@ -477,7 +545,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = privateGetJDBCMetaData().getProcedureTerm();
-        _cache.put(key, value);
+        cache(key, value);
 
         return value;
     }
@@ -485,7 +553,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getCatalogSeparator()
      */
-    public synchronized String getCatalogSeparator() throws SQLException {
+    public String getCatalogSeparator() throws SQLException {
         final String key = "getCatalogSeparator";
         String value = (String) _cache.get(key);
         if (value != null) {
@@ -493,7 +561,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = privateGetJDBCMetaData().getCatalogSeparator();
-        _cache.put(key, value);
+        cache(key, value);
 
         return value;
     }
@@ -510,7 +578,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsCatalogsInTableDefinitions()
      */
-    public synchronized boolean supportsCatalogsInTableDefinitions() throws SQLException {
+    public boolean supportsCatalogsInTableDefinitions() throws SQLException {
         final String key = "supportsCatalogsInTableDefinitions";
         Boolean value = (Boolean) _cache.get(key);
         if (value != null) {
@@ -525,12 +593,12 @@ public class SQLDatabaseMetaData {
 
             if (isSQLServer) {
                 value = Boolean.TRUE;
-                _cache.put(key, value);
+                cache(key, value);
             }
             throw ex;
         }
 
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -538,7 +606,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsCatalogsInDataManipulation()
      */
-    public synchronized boolean supportsCatalogsInDataManipulation() throws SQLException {
+    public boolean supportsCatalogsInDataManipulation() throws SQLException {
         final String key = "supportsCatalogsInDataManipulation";
         Boolean value = (Boolean) _cache.get(key);
         if (value != null) {
@@ -553,11 +621,11 @@ public class SQLDatabaseMetaData {
 
             if (isSQLServer) {
                 value = Boolean.TRUE;
-                _cache.put(key, value);
+                cache(key, value);
             }
             throw ex;
         }
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -565,7 +633,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsCatalogsInProcedureCalls()
      */
-    public synchronized boolean supportsCatalogsInProcedureCalls() throws SQLException {
+    public boolean supportsCatalogsInProcedureCalls() throws SQLException {
         final String key = "supportsCatalogsInProcedureCalls";
         Boolean value = (Boolean) _cache.get(key);
         if (value != null) {
@@ -580,11 +648,11 @@ public class SQLDatabaseMetaData {
 
             if (isSQLServer) {
                 value = Boolean.TRUE;
-                _cache.put(key, value);
+                cache(key, value);
             }
             throw ex;
         }
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -592,7 +660,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getJDBCMetaData()
      */
-    public synchronized DatabaseMetaData getJDBCMetaData() throws SQLException {
+    public DatabaseMetaData getJDBCMetaData() throws SQLException {
         return privateGetJDBCMetaData();
     }
 
@@ -608,42 +676,44 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getDataTypes()
      */
-    public synchronized DataTypeInfo[] getDataTypes()
+    public DataTypeInfo[] getDataTypes()
             throws SQLException {
-        final DatabaseMetaData md = privateGetJDBCMetaData();
-        final ArrayList<DataTypeInfo> list = new ArrayList<DataTypeInfo>();
-        final ResultSet rs = md.getTypeInfo();
-        try {
-            ResultSetColumnReader rdr = new ResultSetColumnReader(rs);
-            while (rdr.next()) {
-                final String typeName = rdr.getString(1);
-                final int dataType = rdr.getLong(2).intValue();
-                final int precis = rdr.getLong(3).intValue();
-                final String literalPrefix = rdr.getString(4);
-                final String literalSuffix = rdr.getString(5);
-                final String createParams = rdr.getString(6);
-                final int nullable = rdr.getLong(7).intValue();
-                final boolean caseSens = rdr.getBoolean(8).booleanValue();
-                final int searchable = rdr.getLong(9).intValue();
-                final boolean unsigned = rdr.getBoolean(10).booleanValue();
-                final boolean canBeMoney = rdr.getBoolean(11).booleanValue();
-                final boolean canBeAutoInc = rdr.getBoolean(12).booleanValue();
-                final String localTypeName = rdr.getString(13);
-                final int min = rdr.getLong(14).intValue();
-                final int max = rdr.getLong(15).intValue();
-                final int radix = rdr.getLong(18).intValue();
-                list.add(new DataTypeInfo(typeName, dataType, precis,
-                        literalPrefix, literalSuffix,
-                        createParams, nullable, caseSens,
-                        searchable, unsigned, canBeMoney,
-                        canBeAutoInc, localTypeName,
-                        min, max, radix,
-                        this));
+        synchronized (_catalogLock) {
+            final DatabaseMetaData md = privateGetJDBCMetaData();
+            final ArrayList<DataTypeInfo> list = new ArrayList<DataTypeInfo>();
+            final ResultSet rs = md.getTypeInfo();
+            try {
+                ResultSetColumnReader rdr = new ResultSetColumnReader(rs);
+                while (rdr.next()) {
+                    final String typeName = rdr.getString(1);
+                    final int dataType = rdr.getLong(2).intValue();
+                    final int precis = rdr.getLong(3).intValue();
+                    final String literalPrefix = rdr.getString(4);
+                    final String literalSuffix = rdr.getString(5);
+                    final String createParams = rdr.getString(6);
+                    final int nullable = rdr.getLong(7).intValue();
+                    final boolean caseSens = rdr.getBoolean(8).booleanValue();
+                    final int searchable = rdr.getLong(9).intValue();
+                    final boolean unsigned = rdr.getBoolean(10).booleanValue();
+                    final boolean canBeMoney = rdr.getBoolean(11).booleanValue();
+                    final boolean canBeAutoInc = rdr.getBoolean(12).booleanValue();
+                    final String localTypeName = rdr.getString(13);
+                    final int min = rdr.getLong(14).intValue();
+                    final int max = rdr.getLong(15).intValue();
+                    final int radix = rdr.getLong(18).intValue();
+                    list.add(new DataTypeInfo(typeName, dataType, precis,
+                            literalPrefix, literalSuffix,
+                            createParams, nullable, caseSens,
+                            searchable, unsigned, canBeMoney,
+                            canBeAutoInc, localTypeName,
+                            min, max, radix,
+                            this));
+                }
+            } finally {
+                close(rs);
             }
-        } finally {
-            close(rs);
+            return list.toArray(new DataTypeInfo[list.size()]);
         }
-        return list.toArray(new DataTypeInfo[list.size()]);
     }
 
     /* (non-Javadoc)
@@ -656,92 +726,94 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getTableTypes()
      */
-    public synchronized String[] getTableTypes() throws SQLException {
+    public String[] getTableTypes() throws SQLException {
         final String key = "getTableTypes";
         String[] value = (String[]) _cache.get(key);
         if (value != null) {
             return value;
         }
 
-        final DatabaseMetaData md = privateGetJDBCMetaData();
+        synchronized (_catalogLock) {
+            final DatabaseMetaData md = privateGetJDBCMetaData();
 
-        // Use a set rather than a list as some combinations of MS SQL and the
-        // JDBC/ODBC return multiple copies of each table type.
-        final Set<String> tableTypes = new TreeSet<String>();
-        final ResultSet rs = md.getTableTypes();
-        if (rs != null) {
-            try {
-                while (rs.next()) {
-                    tableTypes.add(rs.getString(1).trim());
+            // Use a set rather than a list as some combinations of MS SQL and the
+            // JDBC/ODBC return multiple copies of each table type.
+            final Set<String> tableTypes = new TreeSet<String>();
+            final ResultSet rs = md.getTableTypes();
+            if (rs != null) {
+                try {
+                    while (rs.next()) {
+                        tableTypes.add(rs.getString(1).trim());
+                    }
+                } finally {
+                    close(rs);
                 }
-            } finally {
-                close(rs);
             }
-        }
 
-        final String dbProductName = getDatabaseProductName();
-        final int nbrTableTypes = tableTypes.size();
-
-        // InstantDB (at least version 3.13) only returns "TABLES"
-        // for getTableTypes(). If you try to use this in a call to
-        // DatabaseMetaData.getTables() no tables will be found. For the
-        // moment hard code the types for InstantDB.
-        if (nbrTableTypes == 1 && dbProductName.equals("InstantDB")) {
-            tableTypes.clear();
-            tableTypes.add("TABLE");
-            tableTypes.add("SYSTEM TABLE");
-        }
-
-        // At least one version of PostgreSQL through the JDBC/ODBC
-        // bridge returns an empty result set for the list of table
-        // types. Another version of PostgreSQL returns 6 entries
-        // of "SYSTEM TABLE" (which we have already filtered back to one).
-        else if (dbProductName.equals("PostgreSQL")) {
-            if (nbrTableTypes == 0 || nbrTableTypes == 1) {
-//                if (s_log.isDebugEnabled()) {
-//                    s_log.debug("Detected PostgreSQL and "+nbrTableTypes+
-//                                " table types - overriding to 4 table types");
-//                }
+            final String dbProductName = getDatabaseProductName();
+            final int nbrTableTypes = tableTypes.size();
+
+            // InstantDB (at least version 3.13) only returns "TABLES"
+            // for getTableTypes(). If you try to use this in a call to
+            // DatabaseMetaData.getTables() no tables will be found. For the
+            // moment hard code the types for InstantDB.
+            if (nbrTableTypes == 1 && dbProductName.equals("InstantDB")) {
                 tableTypes.clear();
                 tableTypes.add("TABLE");
                 tableTypes.add("SYSTEM TABLE");
-                tableTypes.add("VIEW");
-                tableTypes.add("SYSTEM VIEW");
-            }
-            // Treating indexes as tables interferes with the operation of the
-            // PostgreSQL plugin
-            if (tableTypes.contains("INDEX")) {
-                tableTypes.remove("INDEX");
             }
-            // Treating sequences as tables interferes with the operation of the
-            // PostgreSQL plugin
-            if (tableTypes.contains("SEQUENCE")) {
-                tableTypes.remove("SEQUENCE");
-            }
-            // There are many of these "tables", that PostgreSQL throws
-            // SQLExceptions for whenever a table-like operation is attempted.
-            if (tableTypes.contains("SYSTEM INDEX")) {
-                tableTypes.remove("SYSTEM INDEX");
+
+            // At least one version of PostgreSQL through the JDBC/ODBC
+            // bridge returns an empty result set for the list of table
+            // types. Another version of PostgreSQL returns 6 entries
+            // of "SYSTEM TABLE" (which we have already filtered back to one).
+            else if (dbProductName.equals("PostgreSQL")) {
+                if (nbrTableTypes == 0 || nbrTableTypes == 1) {
+    //                if (s_log.isDebugEnabled()) {
+    //                    s_log.debug("Detected PostgreSQL and "+nbrTableTypes+
+    //                                " table types - overriding to 4 table types");
+    //                }
+                    tableTypes.clear();
+                    tableTypes.add("TABLE");
+                    tableTypes.add("SYSTEM TABLE");
+                    tableTypes.add("VIEW");
+                    tableTypes.add("SYSTEM VIEW");
+                }
+                // Treating indexes as tables interferes with the operation of the
+                // PostgreSQL plugin
+                if (tableTypes.contains("INDEX")) {
+                    tableTypes.remove("INDEX");
+                }
+                // Treating sequences as tables interferes with the operation of the
+                // PostgreSQL plugin
+                if (tableTypes.contains("SEQUENCE")) {
+                    tableTypes.remove("SEQUENCE");
+                }
+                // There are many of these "tables", that PostgreSQL throws
+                // SQLExceptions for whenever a table-like operation is attempted.
+                if (tableTypes.contains("SYSTEM INDEX")) {
+                    tableTypes.remove("SYSTEM INDEX");
+                }
             }
-        }
 
-        // Informix: when no database is given in the connect url, then no table types are returned.  The
-        // catalog can be changed which will select a database, but by that time it is too late.
-        else if (DialectFactory.isInformix(this._conn)) {
-            if (nbrTableTypes == 0) {
-//				if (s_log.isDebugEnabled()) {
-//					s_log.debug("Detected Informix with no table types returned.  Defaulting to "
-//						+ "TABLE | SYSTEM TABLE | VIEW");
-//				}
-                tableTypes.add("TABLE");
-                tableTypes.add("SYSTEM TABLE");
-                tableTypes.add("VIEW");
+            // Informix: when no database is given in the connect url, then no table types are returned.  The
+            // catalog can be changed which will select a database, but by that time it is too late.
+            else if (DialectFactory.isInformix(this._conn)) {
+                if (nbrTableTypes == 0) {
+    //				if (s_log.isDebugEnabled()) {
+    //					s_log.debug("Detected Informix with no table types returned.  Defaulting to "
+    //						+ "TABLE | SYSTEM TABLE | VIEW");
+    //				}
+                    tableTypes.add("TABLE");
+                    tableTypes.add("SYSTEM TABLE");
+                    tableTypes.add("VIEW");
+                }
             }
-        }
 
-        value = tableTypes.toArray(new String[tableTypes.size()]);
-        _cache.put(key, value);
-        return value;
+            value = tableTypes.toArray(new String[tableTypes.size()]);
+            cache(key, value);
+            return value;
+        }
     }
 
     /* (non-Javadoc)
@@ -762,121 +834,133 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getTables(java.lang.String, java.lang.String, java.lang.String, java.lang.String[], com.riversql.sql.ProgressCallBack)
      */
-    public synchronized ITableInfo[] getTables(String catalog,
-                                               String schemaPattern,
-                                               String tableNamePattern,
-                                               String[] types,
-                                               ProgressCallBack progressCallBack)
+    public ITableInfo[] getTables(String catalog,
+                                  String schemaPattern,
+                                  String tableNamePattern,
+                                  String[] types,
+                                  ProgressCallBack progressCallBack)
             throws SQLException {
+        synchronized (_catalogLock) {
+
+            final DatabaseMetaData md = privateGetJDBCMetaData();
+            final String dbDriverName = getDriverName();
+            Set<ITableInfo> list = new TreeSet<ITableInfo>();
+
+            /* work-around for this driver, which must have "dbo" for schema.  The
+             * JConnect family of drivers appears to not be affected and can accept a
+             * null schema, which is necessary to find tables in other schemas, within
+             * the same catalog.  Similarly, jTDS 1.2.2 doesn't require this, yet it
+             * doesn't return non-dbo schema tables, unfortunately.
+             */
+            if (dbDriverName.equals(IDriverNames.FREE_TDS) && schemaPattern == null) {
+                schemaPattern = "dbo";
+            }
+            if (dbDriverName.equals(IDriverNames.AS400) && schemaPattern == null) {
+                schemaPattern = "*ALLUSR";
+            }
 
-
-        final DatabaseMetaData md = privateGetJDBCMetaData();
-        final String dbDriverName = getDriverName();
-        Set<ITableInfo> list = new TreeSet<ITableInfo>();
-
-        /* work-around for this driver, which must have "dbo" for schema.  The
-         * JConnect family of drivers appears to not be affected and can accept a
-         * null schema, which is necessary to find tables in other schemas, within
-         * the same catalog.  Similarly, jTDS 1.2.2 doesn't require this, yet it
-         * doesn't return non-dbo schema tables, unfortunately.
-         */
-        if (dbDriverName.equals(IDriverNames.FREE_TDS) && schemaPattern == null) {
-            schemaPattern = "dbo";
-        }
-        if (dbDriverName.equals(IDriverNames.AS400) && schemaPattern == null) {
-            schemaPattern = "*ALLUSR";
-        }
-
-        //Add begin
-        if (catalog == null && DriverMatch.isComHttxDriver(_conn)) {
-            String[] catalogs = getCatalogs();
-            if (catalogs != null) {
-                for (int i = 0; i < catalogs.length; i++) {
-                    ITableInfo[] tables = getTables(catalogs[i],
-                            schemaPattern,
-                            tableNamePattern,
-                            types,
-                            progressCallBack);
-                    for (int j = 0; j < tables.length; j++) {
-                        list.add(tables[j]);
+            //Add begin
+            if (catalog == null && DriverMatch.isComHttxDriver(_conn)) {
+                String[] catalogs = getCatalogs();
+                if (catalogs != null) {
+                    for (int i = 0; i < catalogs.length; i++) {
+                        ITableInfo[] tables = getTables(catalogs[i],
+                                schemaPattern,
+                                tableNamePattern,
+                                types,
+                                progressCallBack);
+                        for (int j = 0; j < tables.length; j++) {
+                            list.add(tables[j]);
+                        }
                     }
+                    return list.toArray(new ITableInfo[list.size()]);
                 }
-                return list.toArray(new ITableInfo[list.size()]);
             }
-        }
-        //Add end
+            //Add end
 
 
-        Map<String, ITableInfo> nameMap = null;
-        ResultSet superTabResult = null;
-        ResultSet tabResult = null;
-        try {
-            if (supportsSuperTables) {
-                try {
-                    superTabResult = md.getSuperTables(catalog,
-                            schemaPattern,
-                            tableNamePattern);
-                    // create a mapping of names if we have supertable info, since
-                    // we need to find the ITableInfo again for re-ordering.
-                    if (superTabResult != null && superTabResult.next()) {
-                        nameMap = new HashMap<String, ITableInfo>();
+            Map<String, ITableInfo> nameMap = null;
+            ResultSet superTabResult = null;
+            ResultSet tabResult = null;
+            try {
+                CatalogQueries queries = getCatalogQueries();
+                if (queries != null) {
+                    try {
+                        tabResult = queries.getTables(_conn.getConnection(), catalog,
+                                schemaPattern, tableNamePattern, types);
+                    } catch (SQLException e) {
+                        catalogQueryFailed(e);
                     }
-                } catch (Throwable th) {
-//                s_log.debug("DBMS/Driver doesn't support getSupertables(): "+
-//                            th.getMessage());
-                    supportsSuperTables = false;
                 }
-            }
-            // store all plain table info we have.
-            tabResult = md.getTables(catalog, schemaPattern, tableNamePattern, types);
-            int count = 0;
-            while (tabResult != null && tabResult.next()) {
-                ITableInfo tabInfo = new TableInfo(tabResult.getString(1),
-                        tabResult.getString(2), tabResult.getString(3),
-                        tabResult.getString(4), tabResult.getString(5),
-                        this);
-                if (nameMap != null) {
-                    nameMap.put(tabInfo.getSimpleName(), tabInfo);
-                }
-                list.add(tabInfo);
-
-                if (null != progressCallBack) {
-                    if (0 == count++ % 100) {
-                        progressCallBack.currentlyLoading(tabInfo.getSimpleName());
+                if (tabResult == null && supportsSuperTables) {
+                    try {
+                        superTabResult = md.getSuperTables(catalog,
+                                schemaPattern,
+                                tableNamePattern);
+                        // create a mapping of names if we have supertable info, since
+                        // we need to find the ITableInfo again for re-ordering.
+                        if (superTabResult != null && superTabResult.next()) {
+                            nameMap = new HashMap<String, ITableInfo>();
+                        }
+                    } catch (Throwable th) {
+    //                s_log.debug("DBMS/Driver doesn't support getSupertables(): "+
+    //                            th.getMessage());
+                        supportsSuperTables = false;
                     }
                 }
-            }
-
-            // re-order nodes if the tables are stored hierachically
-            if (nameMap != null) {
-                do {
-                    String tabName = superTabResult.getString(3);
-                    TableInfo tabInfo = (TableInfo) nameMap.get(tabName);
-                    if (tabInfo == null)
-                        continue;
-                    String superTabName = superTabResult.getString(4);
-                    if (superTabName == null)
-                        continue;
-                    TableInfo superInfo = (TableInfo) nameMap.get(superTabName);
-                    if (superInfo == null)
-                        continue;
-                    superInfo.addChild(tabInfo);
-                    list.remove(tabInfo); // remove from toplevel.
+                // store all plain table info we have.
+                if (tabResult == null) {
+                    tabResult = md.getTables(catalog, schemaPattern, tableNamePattern, types);
+                }
+                int count = 0;
+                while (tabResult != null && tabResult.next()) {
+                    ITableInfo tabInfo = new TableInfo(tabResult.getString(1),
+                            tabResult.getString(2), tabResult.getString(3),
+                            tabResult.getString(4), tabResult.getString(5),
+                            this);
+                    if (nameMap != null) {
+                        nameMap.put(tabInfo.getSimpleName(), tabInfo);
+                    }
+                    list.add(tabInfo);
 
                     if (null != progressCallBack) {
-                        if (0 == count++ % 20) {
+                        if (0 == count++ % 100) {
                             progressCallBack.currentlyLoading(tabInfo.getSimpleName());
                         }
                     }
                 }
-                while (superTabResult.next());
+
+                // re-order nodes if the tables are stored hierachically
+                if (nameMap != null) {
+                    do {
+                        String tabName = superTabResult.getString(3);
+                        TableInfo tabInfo = (TableInfo) nameMap.get(tabName);
+                        if (tabInfo == null)
+                            continue;
+                        String superTabName = superTabResult.getString(4);
+                        if (superTabName == null)
+                            continue;
+                        TableInfo superInfo = (TableInfo) nameMap.get(superTabName);
+                        if (superInfo == null)
+                            continue;
+                        superInfo.addChild(tabInfo);
+                        list.remove(tabInfo); // remove from toplevel.
+
+                        if (null != progressCallBack) {
+                            if (0 == count++ % 20) {
+                                progressCallBack.currentlyLoading(tabInfo.getSimpleName());
+                            }
+                        }
+                    }
+                    while (superTabResult.next());
+                }
+            } finally {
+                close(tabResult);
+                close(superTabResult);
             }
-        } finally {
-            close(tabResult);
-            close(superTabResult);
-        }
 
-        return list.toArray(new ITableInfo[list.size()]);
+            return list.toArray(new ITableInfo[list.size()]);
+        }
     }
 
     /* (non-Javadoc)
@@ -1003,7 +1087,7 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getNumericFunctions()
      */
-    public synchronized String[] getNumericFunctions() throws SQLException {
+    public String[] getNumericFunctions() throws SQLException {
         final String key = "getNumericFunctions";
         String[] value = (String[]) _cache.get(key);
         if (value != null) {
@@ -1011,14 +1095,14 @@ public class SQLDatabaseMetaData {
         }
 
         value = makeArray(privateGetJDBCMetaData().getNumericFunctions());
-        _cache.put(key, value);
+        cache(key, value);
         return value;
     }
 
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getStringFunctions()
      */
-    public synchronized String[] getStringFunctions() throws SQLException {
+    public String[] getStringFunctions() throws SQLException {
         final String key = "getStringFunctions";
         String[] value = (String[]) _cache.get(key);
         if (value != null) {
@@ -1026,14 +1110,14 @@ public class SQLDatabaseMetaData {
         }
 
         value = makeArray(privateGetJDBCMetaData().getStringFunctions());
-        _cache.put(key, value);
+        cache(key, value);
         return value;
     }
 
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getSystemFunctions()
      */
-    public synchronized String[] getSystemFunctions() throws SQLException {
+    public String[] getSystemFunctions() throws SQLException {
         final String key = "getSystemFunctions";
         String[] value = (String[]) _cache.get(key);
         if (value != null) {
@@ -1041,14 +1125,14 @@ public class SQLDatabaseMetaData {
         }
 
         value = makeArray(privateGetJDBCMetaData().getSystemFunctions());
-        _cache.put(key, value);
+        cache(key, value);
         return value;
     }
 
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getTimeDateFunctions()
      */
-    public synchronized String[] getTimeDateFunctions() throws SQLException {
+    public String[] getTimeDateFunctions() throws SQLException {
         final String key = "getTimeDateFunctions";
         String[] value = (String[]) _cache.get(key);
         if (value != null) {
@@ -1056,14 +1140,14 @@ public class SQLDatabaseMetaData {
         }
 
         value = makeArray(privateGetJDBCMetaData().getTimeDateFunctions());
-        _cache.put(key, value);
+        cache(key, value);
         return value;
     }
 
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getSQLKeywords()
      */
-    public synchronized String[] getSQLKeywords() throws SQLException {
+    public String[] getSQLKeywords() throws SQLException {
         final String key = "getSQLKeywords";
         String[] value = (String[]) _cache.get(key);
         if (value != null) {
@@ -1071,41 +1155,43 @@ public class SQLDatabaseMetaData {
         }
 
         value = makeArray(privateGetJDBCMetaData().getSQLKeywords());
-        _cache.put(key, value);
+        cache(key, value);
         return value;
     }
 
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#getBestRowIdentifier(com.riversql.sql.ITableInfo)
      */
-    public synchronized BestRowIdentifier[] getBestRowIdentifier(ITableInfo ti) throws SQLException {
-        final List<BestRowIdentifier> results = new ArrayList<BestRowIdentifier>();
-
-        ResultSet rs = null;
-        try {
-            boolean columnsCanBeNullable = true;
-            rs = privateGetJDBCMetaData().getBestRowIdentifier(
-                    ti.getCatalogName(), ti.getSchemaName(), ti.getSimpleName(), DatabaseMetaData.bestRowTransaction,
-                    columnsCanBeNullable);
-
-            final String catalog = ti.getCatalogName();
-            final String schema = ti.getSchemaName();
-            final String table = ti.getSimpleName();
+    public BestRowIdentifier[] getBestRowIdentifier(ITableInfo ti) throws SQLException {
+        synchronized (_catalogLock) {
+            final List<BestRowIdentifier> results = new ArrayList<BestRowIdentifier>();
 
-            final ResultSetColumnReader rdr = new ResultSetColumnReader(rs);
-            while (rdr.next()) {
-                final BestRowIdentifier rid = new BestRowIdentifier(
-                        catalog, schema, table, rdr.getLong(1).intValue(), rdr.getString(2),
-                        rdr.getLong(3).shortValue(), rdr.getString(4), rdr.getLong(5).intValue(),
-                        rdr.getLong(7).shortValue(), rdr.getLong(8).shortValue(), this);
-                results.add(rid);
+            ResultSet rs = null;
+            try {
+                boolean columnsCanBeNullable = true;
+                rs = privateGetJDBCMetaData().getBestRowIdentifier(
+                        ti.getCatalogName(), ti.getSchemaName(), ti.getSimpleName(), DatabaseMetaData.bestRowTransaction,
+                        columnsCanBeNullable);
+
+                final String catalog = ti.getCatalogName();
+                final String schema = ti.getSchemaName();
+                final String table = ti.getSimpleName();
+
+                final ResultSetColumnReader rdr = new ResultSetColumnReader(rs);
+                while (rdr.next()) {
+                    final BestRowIdentifier rid = new BestRowIdentifier(
+                            catalog, schema, table, rdr.getLong(1).intValue(), rdr.getString(2),
+                            rdr.getLong(3).shortValue(), rdr.getString(4), rdr.getLong(5).intValue(),
+                            rdr.getLong(7).shortValue(), rdr.getLong(8).shortValue(), this);
+                    results.add(rid);
+                }
+            } finally {
+                close(rs);
             }
-        } finally {
-            close(rs);
-        }
 
-        final BestRowIdentifier[] ar = new BestRowIdentifier[results.size()];
-        return results.toArray(ar);
+            final BestRowIdentifier[] ar = new BestRowIdentifier[results.size()];
+            return results.toArray(ar);
+        }
     }
 
     /**
@@ -1173,13 +1259,13 @@ public class SQLDatabaseMetaData {
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#getImportedKeysInfo(java.lang.String, java.lang.String, java.lang.String)
      */
-    public synchronized ForeignKeyInfo[] getImportedKeysInfo(String catalog,
-                                                             String schema,
-                                                             String tableName)
+    public ForeignKeyInfo[] getImportedKeysInfo(String catalog,
+                                                String schema,
+                                                String tableName)
             throws SQLException {
-        ResultSet rs =
-                privateGetJDBCMetaData().getImportedKeys(catalog, schema, tableName);
-        return getForeignKeyInfo(rs);
+        synchronized (_catalogLock) {
+            return getForeignKeyInfo(getImportedKeys(catalog, schema, tableName));
+        }
     }
 
     /**
@@ -1206,31 +1292,111 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getImportedKeysInfo(com.riversql.sql.ITableInfo)
      */
-    public synchronized ForeignKeyInfo[] getImportedKeysInfo(ITableInfo ti)
+    public ForeignKeyInfo[] getImportedKeysInfo(ITableInfo ti)
+            throws SQLException {
+        synchronized (_catalogLock) {
+            return getForeignKeyInfo(getImportedKeys(ti.getCatalogName(),
+                    ti.getSchemaName(), ti.getSimpleName()));
+        }
+    }
+
+    private ResultSet getImportedKeys(String catalog, String schema, String tableName)
             throws SQLException {
-        return getForeignKeyInfo(privateGetJDBCMetaData().getImportedKeys(ti.getCatalogName(),
-                ti.getSchemaName(), ti.getSimpleName()));
+        CatalogQueries queries = getCatalogQueries();
+        if (queries != null) {
+            try {
+                ResultSet rs = queries.getImportedKeys(_conn.getConnection(), catalog, schema, tableName);
+                if (rs != null) {
+                    return rs;
+                }
+            } catch (SQLException e) {
+                catalogQueryFailed(e);
+            }
+        }
+        return privateGetJDBCMetaData().getImportedKeys(catalog, schema, tableName);
+    }
+
+    /**
+     * The rows of <TT>getPrimaryKeys()</TT>, read from the catalog of the
+     * database when it is known. A <TT>null</TT> table reads those of the
+     * whole schema, which not every driver does.
+     */
+    public MetaDataRows getPrimaryKeyRows(String catalog, String schema, String table)
+            throws SQLException {
+        synchronized (_catalogLock) {
+            ResultSet rs = null;
+            CatalogQueries queries = getCatalogQueries();
+            if (queries != null) {
+                try {
+                    rs = queries.getPrimaryKeys(_conn.getConnection(), catalog, schema, table);
+                } catch (SQLException e) {
+                    catalogQueryFailed(e);
+                }
+            }
+            if (rs == null) {
+                rs = privateGetJDBCMetaData().getPrimaryKeys(catalog, schema, table);
+            }
+            return MetaDataRows.read(rs);
+        }
+    }
+
+    /**
+     * The rows of <TT>getImportedKeys()</TT>, see
+     * <TT>getPrimaryKeyRows()</TT>.
+     */
+    public MetaDataRows getImportedKeyRows(String catalog, String schema, String table)
+            throws SQLException {
+        synchronized (_catalogLock) {
+            return MetaDataRows.read(getImportedKeys(catalog, schema, table));
+        }
+    }
+
+    /**
+     * The rows of <TT>getIndexInfo()</TT> for all the indexes of a table,
+     * approximate statistics allowed.
+     */
+    public MetaDataRows getIndexRows(String catalog, String schema, String table)
+            throws SQLException {
+        synchronized (_catalogLock) {
+            ResultSet rs = null;
+            CatalogQueries queries = getCatalogQueries();
+            if (queries != null) {
+                try {
+                    rs = queries.getIndexInfo(_conn.getConnection(), catalog, schema, table);
+                } catch (SQLException e) {
+                    catalogQueryFailed(e);
+                }
+            }
+            if (rs == null) {
+                rs = privateGetJDBCMetaData().getIndexInfo(catalog, schema, table, false, true);
+            }
+            return MetaDataRows.read(rs);
+        }
     }
 
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#getExportedKeysInfo(java.lang.String,
      * java.lang.String, java.lang.String)
      */
-    public synchronized ForeignKeyInfo[] getExportedKeysInfo(String catalog,
-                                                             String schema, String tableName) throws SQLException {
-        ResultSet rs = privateGetJDBCMetaData().getExportedKeys(catalog,
-                schema,
-                tableName);
-        return getForeignKeyInfo(rs);
+    public ForeignKeyInfo[] getExportedKeysInfo(String catalog,
+                                                String schema, String tableName) throws SQLException {
+        synchronized (_catalogLock) {
+            ResultSet rs = privateGetJDBCMetaData().getExportedKeys(catalog,
+                    schema,
+                    tableName);
+            return getForeignKeyInfo(rs);
+        }
     }
 
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#getExportedKeysInfo(com.riversql.sql.ITableInfo)
      */
-    public synchronized ForeignKeyInfo[] getExportedKeysInfo(ITableInfo ti)
+    public ForeignKeyInfo[] getExportedKeysInfo(ITableInfo ti)
             throws SQLException {
-        return getForeignKeyInfo(privateGetJDBCMetaData().getExportedKeys(ti.getCatalogName(),
-                ti.getSchemaName(), ti.getSimpleName()));
+        synchronized (_catalogLock) {
+            return getForeignKeyInfo(privateGetJDBCMetaData().getExportedKeys(ti.getCatalogName(),
+                    ti.getSchemaName(), ti.getSimpleName()));
+        }
     }
 
     /**
@@ -1302,6 +1468,41 @@ public class SQLDatabaseMetaData {
         return results;
     }
 
+    /**
+     * The keys of <TT>getImportedKeys()</TT> rows copied in a
+     * <TT>MetaDataCache</TT>, a key of several columns being one
+     * <TT>ForeignKeyInfo</TT>.
+     */
+    public ForeignKeyInfo[] getForeignKeyInfo(MetaDataRows rows) throws SQLException {
+        final Map<String, ForeignKeyInfo> keys = new LinkedHashMap<String, ForeignKeyInfo>();
+        final Map<String, List<ForeignKeyColumnInfo>> columns = new HashMap<String, List<ForeignKeyColumnInfo>>();
+        MetaDataRows.Cursor rs = rows.cursor();
+        while (rs.next()) {
+            final ForeignKeyInfo fki = new ForeignKeyInfo(rs.getString("PKTABLE_CAT"),
+                    rs.getString("PKTABLE_SCHEM"), rs.getString("PKTABLE_NAME"), rs.getString("PKCOLUMN_NAME"),
+                    rs.getString("FKTABLE_CAT"), rs.getString("FKTABLE_SCHEM"), rs.getString("FKTABLE_NAME"),
+                    rs.getString("FKCOLUMN_NAME"),
+                    rs.getShort("UPDATE_RULE"), rs.getShort("DELETE_RULE"),
+                    rs.getString("FK_NAME"), rs.getString("PK_NAME"),
+                    rs.getShort("DEFERRABILITY"), null, this);
+            final String key = createForeignKeyInfoKey(fki);
+            if (!keys.containsKey(key)) {
+                keys.put(key, fki);
+                columns.put(key, new ArrayList<ForeignKeyColumnInfo>());
+            }
+            columns.get(key).add(new ForeignKeyColumnInfo(rs.getString("FKCOLUMN_NAME"),
+                    rs.getString("PKCOLUMN_NAME"), rs.getShort("KEY_SEQ")));
+        }
+        final ForeignKeyInfo[] results = new ForeignKeyInfo[keys.size()];
+        int idx = 0;
+        for (Map.Entry<String, ForeignKeyInfo> e : keys.entrySet()) {
+            final List<ForeignKeyColumnInfo> colsList = columns.get(e.getKey());
+            e.getValue().setForeignKeyColumnInfo(colsList.toArray(new ForeignKeyColumnInfo[colsList.size()]));
+            results[idx++] = e.getValue();
+        }
+        return results;
+    }
+
     /**
      * Returns a list of IndexInfos describing indexes for the specified table.
      *
@@ -1397,7 +1598,7 @@ public class SQLDatabaseMetaData {
      *
      * @see com.riversql.sql.ISQLDatabaseMetaData#getPrimaryKey(com.riversql.sql.ITableInfo)
      */
-    public synchronized PrimaryKeyInfo[] getPrimaryKey(ITableInfo ti)
+    public PrimaryKeyInfo[] getPrimaryKey(ITableInfo ti)
             throws SQLException {
         return getPrimaryKey(ti.getCatalogName(),
                 ti.getSchemaName(),
@@ -1433,31 +1634,43 @@ public class SQLDatabaseMetaData {
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getPrimaryKey(java.lang.String, java.lang.String, java.lang.String)
      */
-    public synchronized PrimaryKeyInfo[] getPrimaryKey(String catalog,
-                                                       String schema,
-                                                       String table)
+    public PrimaryKeyInfo[] getPrimaryKey(String catalog,
+                                          String schema,
+                                          String table)
             throws SQLException {
-        final List<PrimaryKeyInfo> results = new ArrayList<PrimaryKeyInfo>();
-        ResultSet rs = null;
-        try {
-            rs = privateGetJDBCMetaData().getPrimaryKeys(catalog, schema, table);
-            while (rs.next()) {
-                PrimaryKeyInfo pkInfo =
-                        new PrimaryKeyInfo(rs.getString(1),  // catalog
-                                rs.getString(2),  // schema
-                                rs.getString(3),  // tableName
-                                rs.getString(4),  // columnName
-                                rs.getShort(5),   // keySequence
-                                rs.getString(6),  // pkName
-                                this);
-                results.add(pkInfo);
+        synchronized (_catalogLock) {
+            final List<PrimaryKeyInfo> results = new ArrayList<PrimaryKeyInfo>();
+            ResultSet rs = null;
+            try {
+                CatalogQueries queries = getCatalogQueries();
+                if (queries != null) {
+                    try {
+                        rs = queries.getPrimaryKeys(_conn.getConnection(), catalog, schema, table);
+                    } catch (SQLException e) {
+                        catalogQueryFailed(e);
+                    }
+                }
+                if (rs == null) {
+                    rs = privateGetJDBCMetaData().getPrimaryKeys(catalog, schema, table);
+                }
+                while (rs.next()) {
+                    PrimaryKeyInfo pkInfo =
+                            new PrimaryKeyInfo(rs.getString(1),  // catalog
+                                    rs.getString(2),  // schema
+                                    rs.getString(3),  // tableName
+                                    rs.getString(4),  // columnName
+                                    rs.getShort(5),   // keySequence
+                                    rs.getString(6),  // pkName
+                                    this);
+                    results.add(pkInfo);
+                }
+            } finally {
+                close(rs);
             }
-        } finally {
-            close(rs);
-        }
 
-        final PrimaryKeyInfo[] ar = new PrimaryKeyInfo[results.size()];
-        return results.toArray(ar);
+            final PrimaryKeyInfo[] ar = new PrimaryKeyInfo[results.size()];
+            return results.toArray(ar);
+        }
     }
 
     /* (non-Javadoc)
@@ -1606,58 +1819,69 @@ public class SQLDatabaseMetaData {
      * @see com.riversql.sql.ISQLDatabaseMetaData#getColumnInfo(java.lang.String,
      *      java.lang.String, java.lang.String)
      */
-    public synchronized TableColumnInfo[] getColumnInfo(String catalog,
-                                                        String schema,
-                                                        String table)
+    public TableColumnInfo[] getColumnInfo(String catalog,
+                                           String schema,
+                                           String table)
             throws SQLException {
-        ResultSet rs = null;
-        try {
-            final Map<Integer, TableColumnInfo> columns =
-                    new TreeMap<Integer, TableColumnInfo>();
-            DatabaseMetaData md = privateGetJDBCMetaData();
-            rs = md.getColumns(catalog, schema, table, "%");
-            final ResultSetColumnReader rdr = new ResultSetColumnReader(rs);
-
-            int index = 0;
-            while (rdr.next()) {
-                final TableColumnInfo tci =
-                        new TableColumnInfo(rdr.getString(1),           // TABLE_CAT
-                                rdr.getString(2),           // TABLE_SCHEM
-                                rdr.getString(3),           // TABLE_NAME
-                                rdr.getString(4),           // COLUMN_NAME
-                                rdr.getLong(5).intValue(),  // DATA_TYPE
-                                rdr.getString(6),           // TYPE_NAME
-                                rdr.getLong(7).intValue(),  // COLUMN_SIZE
-                                rdr.getLong(9).intValue(),  // DECIMAL_DIGITS
-                                rdr.getLong(10).intValue(), // NUM_PREC_RADIX
-                                rdr.getLong(11).intValue(), // NULLABLE
-                                rdr.getString(12),          // REMARKS
-                                rdr.getString(13),          // COLUMN_DEF
-                                rdr.getLong(16).intValue(), // CHAR_OCTET_LENGTH
-                                rdr.getLong(17).intValue(), // ORDINAL_POSITION
-                                rdr.getString(18),          // IS_NULLABLE
-                                this);
-                ////////////////////////////////////////////////////////////////////////////////////////////
-                // The index is needed in case this method is called with schema = null, catalog = null
-                // and two tables with the same name in different schemas/catalogs.
-                // Without the index the same ordinal position could only occur once.
-                ++index;
-                //
-                ////////////////////////////////////////////////////////////////////////////////////////////
-                columns.put(Integer.valueOf(10000 * tci.getOrdinalPosition() + index), tci);
-            }
+        synchronized (_catalogLock) {
+            ResultSet rs = null;
+            try {
+                final Map<Integer, TableColumnInfo> columns =
+                        new TreeMap<Integer, TableColumnInfo>();
+                CatalogQueries queries = getCatalogQueries();
+                if (queries != null) {
+                    try {
+                        rs = queries.getColumns(_conn.getConnection(), catalog, schema, table);
+                    } catch (SQLException e) {
+                        catalogQueryFailed(e);
+                    }
+                }
+                if (rs == null) {
+                    rs = privateGetJDBCMetaData().getColumns(catalog, schema, table, "%");
+                }
+                final ResultSetColumnReader rdr = new ResultSetColumnReader(rs);
+
+                int index = 0;
+                while (rdr.next()) {
+                    final TableColumnInfo tci =
+                            new TableColumnInfo(rdr.getString(1),           // TABLE_CAT
+                                    rdr.getString(2),           // TABLE_SCHEM
+                                    rdr.getString(3),           // TABLE_NAME
+                                    rdr.getString(4),           // COLUMN_NAME
+                                    rdr.getLong(5).intValue(),  // DATA_TYPE
+                                    rdr.getString(6),           // TYPE_NAME
+                                    rdr.getLong(7).intValue(),  // COLUMN_SIZE
+                                    rdr.getLong(9).intValue(),  // DECIMAL_DIGITS
+                                    rdr.getLong(10).intValue(), // NUM_PREC_RADIX
+                                    rdr.getLong(11).intValue(), // NULLABLE
+                                    rdr.getString(12),          // REMARKS
+                                    rdr.getString(13),          // COLUMN_DEF
+                                    rdr.getLong(16).intValue(), // CHAR_OCTET_LENGTH
+                                    rdr.getLong(17).intValue(), // ORDINAL_POSITION
+                                    rdr.getString(18),          // IS_NULLABLE
+                                    this);
+                    ////////////////////////////////////////////////////////////////////////////////////////////
+                    // The index is needed in case this method is called with schema = null, catalog = null
+                    // and two tables with the same name in different schemas/catalogs.
+                    // Without the index the same ordinal position could only occur once.
+                    ++index;
+                    //
+                    ////////////////////////////////////////////////////////////////////////////////////////////
+                    columns.put(Integer.valueOf(10000 * tci.getOrdinalPosition() + index), tci);
+                }
 
-            return columns.values().toArray(new TableColumnInfo[columns.size()]);
+                return columns.values().toArray(new TableColumnInfo[columns.size()]);
 
-        } finally {
-            close(rs);
+            } finally {
+                close(rs);
+            }
         }
     }
 
     /* (non-Javadoc)
      * @see com.riversql.sql.ISQLDatabaseMetaData#getColumnInfo(com.riversql.sql.ITableInfo)
      */
-    public synchronized TableColumnInfo[] getColumnInfo(ITableInfo ti)
+    public TableColumnInfo[] getColumnInfo(ITableInfo ti)
             throws SQLException {
         return getColumnInfo(ti.getCatalogName(), ti.getSchemaName(), ti.getSimpleName());
     }
@@ -1672,7 +1896,7 @@ public class SQLDatabaseMetaData {
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#supportsMultipleResultSets()
      */
-    public synchronized boolean supportsMultipleResultSets()
+    public boolean supportsMultipleResultSets()
             throws SQLException {
         final String key = "supportsMultipleResultSets";
         Boolean value = (Boolean) _cache.get(key);
@@ -1681,7 +1905,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = Boolean.valueOf(privateGetJDBCMetaData().supportsMultipleResultSets());
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -1689,7 +1913,7 @@ public class SQLDatabaseMetaData {
     /**
      * @see com.riversql.sql.ISQLDatabaseMetaData#storesUpperCaseIdentifiers()
      */
-    public synchronized boolean storesUpperCaseIdentifiers()
+    public boolean storesUpperCaseIdentifiers()
             throws SQLException {
         final String key = "storesUpperCaseIdentifiers";
         Boolean value = (Boolean) _cache.get(key);
@@ -1698,7 +1922,7 @@ public class SQLDatabaseMetaData {
         }
 
         value = Boolean.valueOf(privateGetJDBCMetaData().storesUpperCaseIdentifiers());
-        _cache.put(key, value);
+        cache(key, value);
 
         return value.booleanValue();
     }
@@ -0,0 +1,411 @@
+package com.riversql.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What a statement of a script, as returned by the <TT>QueryTokenizer</TT>,
+ * does: whether it is a query, changes rows or changes the schema, and for
+ * the latter the type and names of the objects it creates, alters or drops.
+ *
+ * <P>Only the first words of the statement are read, comments and string
+ * literals being skipped. Names are kept as written, quoted or not, since
+ * the case in which the database stores them depends on the driver, see
+ * <TT>toStoredCase()</TT>.
+ */
+public class SQLStatement {
+
+    public enum Kind {QUERY, DML, DDL, OTHER}
+
+    /**
+     * The tokens read at most, enough for the names of any DDL statement.
+     */
+    private static final int MAX_TOKENS = 200;
+
+    private static final Set<String> QUERIES = new HashSet<String>(Arrays.asList(
+            "SELECT", "WITH", "VALUES", "SHOW", "DESCRIBE", "DESC", "EXPLAIN", "TABLE"));
+    private static final Set<String> DML = new HashSet<String>(Arrays.asList(
+            "INSERT", "UPDATE", "DELETE", "MERGE", "UPSERT", "REPLACE", "LOCK", "COPY"));
+    private static final Set<String> DDL = new HashSet<String>(Arrays.asList(
+            "CREATE", "ALTER", "DROP", "RENAME", "COMMENT", "TRUNCATE"));
+    /**
+     * Words between <TT>CREATE</TT>, <TT>ALTER</TT> or <TT>DROP</TT> and the
+     * type of the object.
+     */
+    private static final Set<String> MODIFIERS = new HashSet<String>(Arrays.asList(
+            "OR", "REPLACE", "ALTER", "GLOBAL", "LOCAL", "TEMPORARY", "TEMP", "UNLOGGED", "UNIQUE", "BITMAP",
+            "CLUSTERED", "NONCLUSTERED", "FORCE", "NOFORCE", "EDITIONABLE", "NONEDITIONABLE", "EDITIONING",
+            "PUBLIC", "MATERIALIZED", "RECURSIVE", "ONLINE", "OFFLINE", "IGNORE", "FULLTEXT", "SPATIAL"));
+    /**
+     * Words which, anywhere in a query, mean that it writes: a statement
+     * changing rows in a <TT>WITH</TT> clause or after <TT>EXPLAIN
+     * ANALYZE</TT>, or a <TT>SELECT INTO</TT> creating a table or a file.
+     */
+    private static final Set<String> WRITES = new HashSet<String>(Arrays.asList(
+            "INSERT", "UPDATE", "DELETE", "MERGE", "UPSERT", "TRUNCATE", "CREATE", "ALTER", "DROP", "GRANT",
+            "REVOKE", "INTO"));
+
+    private final Kind kind;
+    private final String verb;
+    private final String objectType;
+    private final List<String[]> names;
+    private final String[] table;
+    private final boolean renaming;
+    private final boolean readOnly;
+
+    private SQLStatement(Kind kind, String verb, String objectType, List<String[]> names, String[] table,
+                         boolean renaming) {
+        this(kind, verb, objectType, names, table, renaming, false);
+    }
+
+    private SQLStatement(Kind kind, String verb, String objectType, List<String[]> names, String[] table,
+                         boolean renaming, boolean readOnly) {
+        this.kind = kind;
+        this.verb = verb;
+        this.objectType = objectType;
+        this.names = Collections.unmodifiableList(names);
+        this.table = table;
+        this.renaming = renaming;
+        this.readOnly = readOnly;
+    }
+
+    public static SQLStatement parse(String sql) {
+        List<String> tokens = tokenize(sql);
+        int i = 0;
+        while (i < tokens.size() && tokens.get(i).equals("(")) {
+            i++;
+        }
+        String first = i < tokens.size() ? tokens.get(i).toUpperCase() : "";
+        List<String[]> names = new ArrayList<String[]>();
+        if (QUERIES.contains(first)) {
+            return new SQLStatement(Kind.QUERY, first, null, names, null, false,
+                    readsOnly(first, tokenize(sql, Integer.MAX_VALUE)));
+        }
+        if (DML.contains(first)) {
+            return new SQLStatement(Kind.DML, first, null, names, null, false);
+        }
+        if (!DDL.contains(first)) {
+            return new SQLStatement(Kind.OTHER, first, null, names, null, false);
+        }
+        return new Parser(tokens, i + 1).parse(first);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Whether the statement is a query which writes nothing, and so may be
+     * run again. The whole statement is read for that, though functions
+     * with side effects it may call cannot be told apart.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return the first word of the statement, in upper case.
+     */
+    public String getVerb() {
+        return verb;
+    }
+
+    /**
+     * @return the type of the object of a DDL statement, in upper case, like
+     * <TT>TABLE</TT>, <TT>INDEX</TT> or <TT>PACKAGE BODY</TT>; <TT>null</TT>
+     * otherwise.
+     */
+    public String getObjectType() {
+        return objectType;
+    }
+
+    /**
+     * @return the names of the objects of a DDL statement, each as the
+     * parts of a qualified name; the names a <TT>RENAME</TT> gives
+     * included.
+     */
+    public List<String[]> getNames() {
+        return names;
+    }
+
+    /**
+     * @return the table of an index, a trigger or a column, or
+     * <TT>null</TT> if it is not given.
+     */
+    public String[] getTable() {
+        return table;
+    }
+
+    /**
+     * Whether a DDL statement may change the catalog, which
+     * <TT>TRUNCATE</TT> does not.
+     */
+    public boolean changesMetaData() {
+        return kind == Kind.DDL && !verb.equals("TRUNCATE");
+    }
+
+    /**
+     * Whether the statement adds, removes or renames objects, rather than
+     * changing one in place.
+     */
+    public boolean changesObjectList() {
+        return verb.equals("CREATE") || verb.equals("DROP") || verb.equals("RENAME") || renaming;
+    }
+
+    /**
+     * Returns a name as the database stores it: a quoted name without its
+     * quotes, any other in the case the database stores the names it is
+     * given unquoted in.
+     */
+    public static String toStoredCase(String identifier, boolean upper, boolean lower) {
+        char c = identifier.charAt(0);
+        if (c == '"' || c == '`' || c == '[') {
+            String quote = c == '[' ? "]" : String.valueOf(c);
+            return identifier.substring(1, identifier.length() - 1).replace(quote + quote, quote);
+        }
+        if (upper) {
+            return identifier.toUpperCase();
+        }
+        return lower ? identifier.toLowerCase() : identifier;
+    }
+
+    private static boolean readsOnly(String first, List<String> tokens) {
+        if (first.equals("SHOW") || first.equals("DESCRIBE") || first.equals("DESC")) {
+            // SHOW CREATE TABLE and the like
+            return true;
+        }
+        for (int j = 0; j < tokens.size(); j++) {
+            String w = tokens.get(j).toUpperCase();
+            if (!WRITES.contains(w)) {
+                continue;
+            }
+            // SELECT ... FOR UPDATE or FOR NO KEY UPDATE only locks
+            if (w.equals("UPDATE") && j > 0 && (tokens.get(j - 1).equalsIgnoreCase("FOR")
+                    || tokens.get(j - 1).equalsIgnoreCase("KEY"))) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    static List<String> tokenize(String sql) {
+        return tokenize(sql, MAX_TOKENS);
+    }
+
+    /**
+     * Splits the beginning of <TT>sql</TT>, up to <TT>max</TT> tokens, into
+     * words, quoted names and single characters, leaving out comments, and
+     * string literals which are replaced by <TT>'</TT>.
+     */
+    static List<String> tokenize(String sql, int max) {
+        List<String> tokens = new ArrayList<String>();
+        int n = sql.length();
+        int i = 0;
+        while (i < n && tokens.size() < max) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if ((c == '-' && sql.startsWith("--", i)) || c == '#') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? n : end + 1;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                int end = i + 1;
+                while (end < n) {
+                    if (sql.charAt(end) == close) {
+                        if (close != ']' && end + 1 < n && sql.charAt(end + 1) == close) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end, n - 1);
+                tokens.add(c == '\'' ? "'" : sql.substring(i, end + 1));
+                i = end + 1;
+            } else if (isWordPart(c)) {
+                int end = i + 1;
+                while (end < n && isWordPart(sql.charAt(end))) {
+                    end++;
+                }
+                tokens.add(sql.substring(i, end));
+                i = end;
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    private static boolean isName(String token) {
+        char c = token.charAt(0);
+        return isWordPart(c) || c == '"' || c == '`' || c == '[';
+    }
+
+    /**
+     * Reads the object type and names following the first word of a DDL
+     * statement.
+     */
+    private static final class Parser {
+        private final List<String> tokens;
+        private int i;
+
+        Parser(List<String> tokens, int i) {
+            this.tokens = tokens;
+            this.i = i;
+        }
+
+        SQLStatement parse(String verb) {
+            List<String[]> names = new ArrayList<String[]>();
+            String[] table = null;
+            String type;
+            if (verb.equals("RENAME")) {
+                // RENAME TABLE a TO b, c TO d or RENAME a TO b
+                type = "TABLE";
+                accept("TABLE");
+                do {
+                    add(names, name());
+                    if (accept("TO")) {
+                        add(names, name());
+                    }
+                } while (accept(","));
+                return new SQLStatement(Kind.DDL, verb, type, names, null, false);
+            }
+            if (verb.equals("COMMENT")) {
+                // COMMENT ON TABLE t IS ... or COMMENT ON COLUMN t.c IS ...
+                accept("ON");
+                type = word();
+                String[] name = name();
+                if ("COLUMN".equals(type) && name != null && name.length > 1) {
+                    table = Arrays.copyOf(name, name.length - 1);
+                }
+                add(names, name);
+                return new SQLStatement(Kind.DDL, verb, type, names, table, false);
+            }
+            if (verb.equals("TRUNCATE")) {
+                accept("TABLE");
+                add(names, name());
+                return new SQLStatement(Kind.DDL, verb, "TABLE", names, null, false);
+            }
+            skipModifiers();
+            type = word();
+            if (type == null) {
+                return new SQLStatement(Kind.DDL, verb, null, names, null, false);
+            }
+            if ((type.equals("PACKAGE") || type.equals("TYPE")) && accept("BODY")) {
+                type = type + " BODY";
+            }
+            accept("CONCURRENTLY");
+            if (accept("IF")) {
+                accept("NOT");
+                accept("EXISTS");
+            }
+            accept("ONLY");
+            if (!type.equals("INDEX") || !peek("ON")) {
+                add(names, name());
+                while (verb.equals("DROP") && accept(",")) {
+                    add(names, name());
+                }
+            }
+            boolean renaming = false;
+            if (type.equals("INDEX") || type.equals("TRIGGER")) {
+                // the table follows the first ON
+                while (i < tokens.size() && !peek("ON")) {
+                    i++;
+                }
+                if (accept("ON")) {
+                    accept("ONLY");
+                    table = name();
+                }
+            } else if (verb.equals("ALTER")) {
+                for (int j = i; j < tokens.size(); j++) {
+                    if (tokens.get(j).equalsIgnoreCase("RENAME")) {
+                        renaming = true;
+                    }
+                }
+            }
+            return new SQLStatement(Kind.DDL, verb, type, names, table, renaming);
+        }
+
+        /**
+         * Skips <TT>OR REPLACE</TT>, <TT>TEMPORARY</TT> and the like, and the
+         * <TT>DEFINER = user</TT>, <TT>ALGORITHM = ...</TT> and
+         * <TT>SQL SECURITY ...</TT> clauses of MySQL.
+         */
+        private void skipModifiers() {
+            while (i < tokens.size()) {
+                String w = tokens.get(i).toUpperCase();
+                if (MODIFIERS.contains(w)) {
+                    i++;
+                } else if (w.equals("DEFINER") || w.equals("ALGORITHM")) {
+                    i++;
+                    accept("=");
+                    i++;
+                    if (accept("@")) {
+                        i++;
+                    }
+                } else if (w.equals("SQL") && peek(1, "SECURITY")) {
+                    i += 3;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private String[] name() {
+            if (i >= tokens.size() || !isName(tokens.get(i))) {
+                return null;
+            }
+            List<String> parts = new ArrayList<String>();
+            parts.add(tokens.get(i++));
+            while (peek(".") && i + 1 < tokens.size() && isName(tokens.get(i + 1))) {
+                parts.add(tokens.get(i + 1));
+                i += 2;
+            }
+            return parts.toArray(new String[parts.size()]);
+        }
+
+        private String word() {
+            if (i >= tokens.size() || !isWordPart(tokens.get(i).charAt(0))) {
+                return null;
+            }
+            return tokens.get(i++).toUpperCase();
+        }
+
+        private boolean peek(String token) {
+            return peek(0, token);
+        }
+
+        private boolean peek(int offset, String token) {
+            return i + offset < tokens.size() && tokens.get(i + offset).equalsIgnoreCase(token);
+        }
+
+        private boolean accept(String token) {
+            if (peek(token)) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        private static void add(List<String[]> names, String[] name) {
+            if (name != null) {
+                names.add(name);
+            }
+        }
+    }
+}
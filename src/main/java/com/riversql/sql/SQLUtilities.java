@@ -33,27 +33,17 @@ public class SQLUtilities {
 
     /**
      * Returns the specified list of tables in an order such that insertions into
-     * all tables will satisfy any foreign key constraints. This will not
-     * correctly handle recursive constraints.
-     * <p>
-     * This algorthim was adapted from SchemaSpy class/method:
-     * <p>
-     * net.sourceforge.schemaspy.SchemaSpy.sortTablesByRI()
-     * <p>
-     * unattached - tables that have no dependencies on other tables
-     * parents    - tables that only have children
-     * children   - tables that only have parents
-     * sandwiches - tables that have both parents and children - as in the
-     * "sandwich" generation.
+     * all tables will satisfy any foreign key constraints. Tables referencing
+     * each other are ordered as if the keys closing their cycles were not
+     * there, see <TT>ForeignKeyGraph.getCycles()</TT>.
      * <p>
      * The first SQLException encountered while attempting to get FK information
-     * on any table will cause this to bail it's effort to re-order the list and
-     * the list will be returned as it came in - there's no point in spewing
-     * exceptions to end up with a flawed result; just give up.
+     * will cause this to bail it's effort to re-order the list and the list
+     * will be returned as it came in.
      *
      * @param md
      * @param tables
-     * @param listener
+     * @param callback
      * @return
      * @throws SQLException
      */
@@ -61,74 +51,29 @@ public class SQLUtilities {
                                                      SQLDatabaseMetaData md,
                                                      ProgressCallBack callback)
             throws SQLException {
-        List<ITableInfo> result = new ArrayList<ITableInfo>();
-        // tables that are netiher children nor parents - utility tables
-        List<ITableInfo> unattached = new ArrayList<ITableInfo>();
-        // tables that have at least one parent table
-        List<ITableInfo> children = new ArrayList<ITableInfo>();
-        // tables that have at least one child table
-        List<ITableInfo> parents = new ArrayList<ITableInfo>();
-        // tables that have at least one child table and have a least one parent table
-        List<ITableInfo> sandwiches = new ArrayList<ITableInfo>();
-        ITableInfo lastTable = null;
         try {
-            for (ITableInfo table : tables) {
-                lastTable = table;
-                callback.currentlyLoading(table.getSimpleName());
-                ForeignKeyInfo[] importedKeys = getImportedKeys(table, md);
-                ForeignKeyInfo[] exportedKeys = getExportedKeys(table, md);
-
-                if (importedKeys != null && importedKeys.length == 0 && exportedKeys.length == 0) {
-                    unattached.add(table);
-                    continue;
-                }
-                if (exportedKeys != null && exportedKeys.length > 0) {
-                    if (importedKeys != null && importedKeys.length > 0) {
-                        sandwiches.add(table);
-                    } else {
-                        parents.add(table);
-                    }
-                    continue;
-                }
-                if (importedKeys != null && importedKeys.length > 0) {
-                    children.add(table);
-                }
-            }
-            reorderTables(sandwiches);
-
-            for (ITableInfo info : unattached) {
-                result.add(info);
-            }
-            for (ITableInfo info : parents) {
-                result.add(info);
-            }
-            for (ITableInfo info : sandwiches) {
-                result.add(info);
-            }
-            for (ITableInfo info : children) {
-                result.add(info);
-            }
-            if (result.size() != tables.size()) {
-//                s_log.error(
-//                    "getInsertionOrder(): failed to obtain a result table list " +
-//                    "("+result.size()+") that is the same size as the input table " +
-//                    "list ("+tables.size()+") - returning the original unordered " +
-//                    "list");
-                result = tables;
-            }
-        } catch (Exception e) {
-            if (lastTable != null) {
-                String tablename = lastTable.getSimpleName();
-//                s_log.error(
-//                    "Unexpected exception while getting foreign key info for " +
-//                    "table "+tablename, e);
-            } else {
-//                s_log.error(
-//                    "Unexpected exception while getting foreign key info ", e);                
-            }
-            result = tables;
+            return getForeignKeyGraph(tables, md, callback).getInsertionOrder();
+        } catch (SQLException e) {
+            return new ArrayList<ITableInfo>(tables);
         }
-        return result;
+    }
+
+    /**
+     * Reads the foreign keys between the specified tables, which give both
+     * their insertion order and the cycles in which they reference each
+     * other, with the keys to disable to insert into them.
+     *
+     * @param tables
+     * @param md
+     * @param callback
+     * @return
+     * @throws SQLException
+     */
+    public static ForeignKeyGraph getForeignKeyGraph(List<ITableInfo> tables,
+                                                     SQLDatabaseMetaData md,
+                                                     ProgressCallBack callback)
+            throws SQLException {
+        return ForeignKeyGraph.load(md, tables, callback);
     }
 
     public static ForeignKeyInfo[] getImportedKeys(ITableInfo ti,
@@ -155,10 +100,6 @@ public class SQLUtilities {
         return result;
     }
 
-    private static void reorderTables(List<ITableInfo> sandwiches) {
-        Collections.sort(sandwiches, new TableComparator());
-    }
-
     /**
      * Returns a list of table names that have Primary Keys that are referenced by
      * foreign key constraints on columns in the specified list of tables, that
@@ -225,36 +166,6 @@ public class SQLUtilities {
         return result;
     }
 
-    private static class TableComparator implements Comparator<ITableInfo> {
-
-
-        public int compare(ITableInfo t1, ITableInfo t2) {
-            ForeignKeyInfo[] t1ImportedKeys = t1.getImportedKeys();
-            for (int i = 0; i < t1ImportedKeys.length; i++) {
-                ForeignKeyInfo info = t1ImportedKeys[i];
-                if (info.getPrimaryKeyTableName().equals(t2.getSimpleName())) {
-                    // t1 depends on t2
-                    return 1;
-                }
-            }
-            ForeignKeyInfo[] t2ImportedKeys = t2.getImportedKeys();
-            for (int i = 0; i < t2ImportedKeys.length; i++) {
-                ForeignKeyInfo info = t2ImportedKeys[i];
-                if (info.getPrimaryKeyTableName().equals(t1.getSimpleName())) {
-                    // t2 depends on t1
-                    return -1;
-                }
-            }
-            if (t1.getImportedKeys().length > t2ImportedKeys.length) {
-                return 1;
-            }
-            if (t1.getImportedKeys().length < t2ImportedKeys.length) {
-                return -1;
-            }
-            return 0;
-        }
-
-    }
     /*
     private static class TableDependInfo extends TableInfo {
         
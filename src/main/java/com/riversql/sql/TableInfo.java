@@ -28,6 +28,16 @@ public class TableInfo extends DatabaseObjectInfo implements ITableInfo {
         _tableType = tableType;
     }
 
+    /**
+     * Restores a table read back from a snapshot of the metadata.
+     */
+    TableInfo(String catalog, String schema, String simpleName, String qualifiedName,
+              String tableType, String remarks) {
+        super(catalog, schema, simpleName, qualifiedName, getTableType(tableType));
+        _remarks = remarks;
+        _tableType = tableType;
+    }
+
     private static DatabaseObjectType getTableType(String tableType) {
         if (null == tableType) {
             return DatabaseObjectType.TABLE;
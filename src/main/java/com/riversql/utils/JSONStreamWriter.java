@@ -0,0 +1,208 @@
+package com.riversql.utils;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Minimal JSON encoder writing directly to a <TT>Writer</TT>, so that large
+ * results do not have to be materialized as an org.json tree first.
+ *
+ * <P>Values are encoded the same way <TT>JSONArray.toString()</TT> does, so
+ * the output can be consumed by the existing javascript code unchanged.
+ * An instance can be re-targeted with <TT>reset(Writer)</TT>.
+ */
+public class JSONStreamWriter {
+
+    private static final int MAX_DEPTH = 64;
+
+    private Writer writer;
+
+    /**
+     * For each open level, <TT>true</TT> if it is an object.
+     */
+    private final boolean[] objects = new boolean[MAX_DEPTH];
+
+    /**
+     * For each open level, <TT>true</TT> if a value has already been written.
+     */
+    private final boolean[] comma = new boolean[MAX_DEPTH];
+
+    private int depth;
+
+    /**
+     * <TT>true</TT> when a key has been written and its value is expected.
+     */
+    private boolean pendingKey;
+
+    public JSONStreamWriter(Writer writer) {
+        reset(writer);
+    }
+
+    public void reset(Writer writer) {
+        this.writer = writer;
+        this.depth = 0;
+        this.pendingKey = false;
+    }
+
+    public Writer getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return the number of currently opened objects and arrays.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    public JSONStreamWriter object() throws IOException {
+        open(true, '{');
+        return this;
+    }
+
+    public JSONStreamWriter endObject() throws IOException {
+        close(true, '}');
+        return this;
+    }
+
+    public JSONStreamWriter array() throws IOException {
+        open(false, '[');
+        return this;
+    }
+
+    public JSONStreamWriter endArray() throws IOException {
+        close(false, ']');
+        return this;
+    }
+
+    public JSONStreamWriter key(String key) throws IOException {
+        if (depth == 0 || !objects[depth - 1] || pendingKey) {
+            throw new IllegalStateException("Misplaced key : " + key);
+        }
+        separator();
+        JSONObject.quote(key, writer);
+        writer.write(':');
+        pendingKey = true;
+        return this;
+    }
+
+    public JSONStreamWriter value(boolean b) throws IOException {
+        beforeValue();
+        writer.write(b ? "true" : "false");
+        return this;
+    }
+
+    public JSONStreamWriter value(long l) throws IOException {
+        beforeValue();
+        writer.write(Long.toString(l));
+        return this;
+    }
+
+    /**
+     * Writes any value the way org.json would : numbers and booleans as is,
+     * <TT>null</TT> as null and everything else as a quoted string.
+     */
+    public JSONStreamWriter value(Object obj) throws IOException {
+        beforeValue();
+        if (obj == null || obj == JSONObject.NULL) {
+            writer.write("null");
+        } else if (obj instanceof String) {
+            JSONObject.quote((String) obj, writer);
+        } else if (obj instanceof Boolean) {
+            writer.write(obj.toString());
+        } else if (obj instanceof Number) {
+            writeNumber((Number) obj);
+        } else {
+            JSONObject.quote(obj.toString(), writer);
+        }
+        return this;
+    }
+
+    /**
+     * Writes an already encoded JSON value, such as a result produced earlier
+     * by another <TT>JSONStreamWriter</TT>.
+     */
+    public JSONStreamWriter rawValue(String json) throws IOException {
+        beforeValue();
+        writer.write(json);
+        return this;
+    }
+
+    /**
+     * Closes every object and array opened above <TT>targetDepth</TT>, so that
+     * the output stays well-formed after an error occured in the middle of
+     * a value. A dangling key is given a null value.
+     */
+    public void unwind(int targetDepth) throws IOException {
+        while (depth > targetDepth) {
+            if (pendingKey) {
+                value((Object) null);
+            }
+            close(objects[depth - 1], objects[depth - 1] ? '}' : ']');
+        }
+        if (pendingKey && depth == targetDepth) {
+            value((Object) null);
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeNumber(Number n) throws IOException {
+        if ((n instanceof Double && (((Double) n).isInfinite() || ((Double) n).isNaN()))
+                || (n instanceof Float && (((Float) n).isInfinite() || ((Float) n).isNaN()))) {
+            JSONObject.quote(n.toString(), writer);
+            return;
+        }
+        String str = JSONObject.numberToString(n);
+        try {
+            new BigDecimal(str);
+            writer.write(str);
+        } catch (NumberFormatException e) {
+            JSONObject.quote(str, writer);
+        }
+    }
+
+    private void open(boolean object, char c) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        beforeValue();
+        writer.write(c);
+        objects[depth] = object;
+        comma[depth] = false;
+        depth++;
+    }
+
+    private void close(boolean object, char c) throws IOException {
+        if (depth == 0 || objects[depth - 1] != object || pendingKey) {
+            throw new IllegalStateException("Misplaced " + c);
+        }
+        depth--;
+        writer.write(c);
+    }
+
+    private void beforeValue() throws IOException {
+        if (depth > 0 && objects[depth - 1]) {
+            if (!pendingKey) {
+                throw new IllegalStateException("Value without a key");
+            }
+            pendingKey = false;
+        } else {
+            separator();
+        }
+    }
+
+    private void separator() throws IOException {
+        if (depth > 0) {
+            if (comma[depth - 1]) {
+                writer.write(',');
+            }
+            comma[depth - 1] = true;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.riversql.utils;
+
+import com.riversql.IDManager;
+import com.riversql.WebSQLSession;
+import com.riversql.dbtree.SQLSession;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLStatement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A script executed in the background by <TT>QueryJobs</TT>. Every statement
+ * is run through its own <TT>SQLExecutor</TT>, registered in the session's
+ * <TT>IDManager</TT> like the synchronous ones, and the first page of each
+ * result set is kept, already encoded, until the client asks for it.
+ *
+ * <P>A JDBC connection cannot be used by two threads at once, so the script
+ * runs on a connection of its own, borrowed from the pool of the session
+ * with the catalog and schema the session had when the job was submitted.
+ * It runs in autocommit, and does not see what the session did not commit.
+ * The connection is given back when the job ends, or, if some of its results
+ * still have rows to read, once the job is released or expires, which
+ * releases those results too. Without a pool, the script runs on the
+ * connection of the session.
+ *
+ * <P>The DDL statements which succeed have the metadata of the objects they
+ * change forgotten by <TT>invalidate()</TT>, on the thread of a request since
+ * the tree nodes read the connection of the session, and the ids of the tree
+ * nodes refreshed are kept for the client to reload them.
+ */
+public class QueryJob implements Runnable, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryJob.class);
+
+    public static final String PENDING = "pending";
+    public static final String RUNNING = "running";
+    public static final String DONE = "done";
+    public static final String CANCELLED = "cancelled";
+
+    private final String id;
+    private final WebSQLSession sessions;
+    private final IDManager idmanager;
+    private final SQLConnection conn;
+    /**
+     * The catalog and schema of the session when the job was submitted.
+     */
+    private final String catalog;
+    private final String schema;
+    /**
+     * The connection the statements run on, <TT>null</TT> once given back.
+     */
+    private SQLConnection jobConn;
+    /**
+     * Set once the job is released, its connection is then given back as
+     * soon as it ends.
+     */
+    private boolean dropped;
+    private final String sessionid;
+    private final List<String> queries;
+    private final int limit;
+    private final int maxLimit;
+    private boolean limitRows;
+
+    /**
+     * The encoded first page of each statement executed so far.
+     */
+    private final List<String> results = new CopyOnWriteArrayList<String>();
+
+    /**
+     * Execution time of each statement executed so far, in milliseconds.
+     */
+    private final List<Long> timings = new CopyOnWriteArrayList<Long>();
+
+    /**
+     * Ids of the tree nodes the DDL statements executed so far changed.
+     */
+    private final List<String> changedNodes = new CopyOnWriteArrayList<String>();
+
+    /**
+     * The DDL statements executed whose metadata is not forgotten yet.
+     */
+    private final List<SQLStatement> changes = new CopyOnWriteArrayList<SQLStatement>();
+
+    /**
+     * The executors of the statements executed so far.
+     */
+    private final List<SQLExecutor> executors = new CopyOnWriteArrayList<SQLExecutor>();
+
+    /**
+     * Why the job could not run, <TT>null</TT> if it could.
+     */
+    private volatile String error;
+
+    private volatile String status = PENDING;
+    private volatile boolean cancelled;
+    /**
+     * The executor of the statement running, <TT>null</TT> between two.
+     */
+    private volatile SQLExecutor current;
+    private final long submitted;
+    private volatile long started;
+    private volatile long ended;
+
+    public QueryJob(WebSQLSession sessions, SQLConnection conn, String sessionid,
+                    List<String> queries, int limit, int maxLimit) {
+        this.sessions = sessions;
+        this.idmanager = sessions.getIDManager();
+        this.conn = conn;
+        if (conn != null && conn.getPool() != null) {
+            this.catalog = getCatalog(conn);
+            this.schema = getSchema(conn);
+        } else {
+            this.catalog = null;
+            this.schema = null;
+        }
+        this.sessionid = sessionid;
+        this.queries = new ArrayList<String>(queries);
+        this.limit = limit;
+        this.maxLimit = maxLimit;
+        this.submitted = System.currentTimeMillis();
+        this.id = idmanager.nextID();
+        // not dropped while it runs, only once its result is left unread
+        idmanager.putPinned(id, this);
+    }
+
+    public void setLimitRows(boolean limitRows) {
+        this.limitRows = limitRows;
+    }
+
+    public void run() {
+        if (cancelled) {
+            idmanager.unpin(id);
+            return;
+        }
+        IDManager.set(idmanager);
+        status = RUNNING;
+        started = System.currentTimeMillis();
+        try {
+            SQLConnection runConn = open();
+            for (String query : queries) {
+                if (cancelled) {
+                    break;
+                }
+                long init = System.nanoTime();
+                SQLExecutor he = new SQLExecutor(runConn, limit, maxLimit, query,
+                        sessions.getRunningStatements(), sessionid);
+                he.setLimitRows(limitRows);
+                executors.add(he);
+                current = he;
+                if (cancelled) {
+                    break;
+                }
+                StringWriter sw = new StringWriter();
+                boolean executed;
+                try {
+                    executed = he.executeQuery(new JSONStreamWriter(sw));
+                } finally {
+                    current = null;
+                }
+                results.add(sw.toString());
+                timings.add((System.nanoTime() - init) / 1000000);
+                if (he.isCancelled()) {
+                    // by cancelQuery on the session
+                    cancelled = true;
+                }
+                if (executed) {
+                    SQLStatement statement = SQLStatement.parse(query);
+                    if (statement.changesMetaData()) {
+                        changes.add(statement);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Cannot open a connection for job " + id, e);
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        } catch (IOException e) {
+            // cannot happen with a StringWriter
+            LOGGER.error("While running job " + id, e);
+        } finally {
+            ended = System.currentTimeMillis();
+            status = cancelled ? CANCELLED : DONE;
+            ended();
+            idmanager.unpin(id);
+            IDManager.set(null);
+        }
+    }
+
+    /**
+     * Borrows the connection of the job from the pool of the session.
+     */
+    private SQLConnection open() throws SQLException {
+        if (conn == null || conn.getPool() == null) {
+            return conn;
+        }
+        ConnectionPool pool = conn.getPool();
+        SQLConnection c = new SQLConnection(pool.borrow(), conn.getConnectionProperties(),
+                conn.getSQLDriver(), pool);
+        synchronized (this) {
+            jobConn = c;
+        }
+        c.setMetaDataCache(conn.getMetaDataCache());
+        c.setAutoCommit(true);
+        if (catalog != null) {
+            c.setCatalog(catalog);
+        }
+        if (schema != null) {
+            c.getConnection().setSchema(schema);
+        }
+        return c;
+    }
+
+    /**
+     * Gives the connection back if the job was released, or if no result
+     * needs it any more.
+     */
+    private synchronized void ended() {
+        if (!dropped) {
+            for (SQLExecutor he : executors) {
+                if (!he.isClosed()) {
+                    return;
+                }
+            }
+        }
+        giveBack();
+    }
+
+    private synchronized void giveBack() {
+        if (jobConn != null) {
+            try {
+                jobConn.close();
+            } catch (SQLException e) {
+                LOGGER.warn("While giving back the connection of job " + id, e);
+            }
+            jobConn = null;
+        }
+    }
+
+    /**
+     * Forgets the metadata changed by the DDL statements executed since the
+     * last call, and adds the tree nodes refreshed to the changed ones.
+     * Called by the requests following the job, not by the job itself.
+     */
+    public void invalidate() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Object session = idmanager.get(sessionid);
+        for (SQLStatement statement : changes) {
+            changes.remove(statement);
+            if (session instanceof SQLSession) {
+                try {
+                    for (String node : ((SQLSession) session).invalidate(statement)) {
+                        if (!changedNodes.contains(node)) {
+                            changedNodes.add(node);
+                        }
+                    }
+                } catch (SQLException e) {
+                    LOGGER.warn("Cannot invalidate the metadata changed by " + statement, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the job if it has not ended, and releases its results, whose
+     * connection is given back.
+     */
+    public void close() {
+        cancel();
+        for (SQLExecutor he : executors) {
+            idmanager.release(he.getId());
+        }
+        synchronized (this) {
+            dropped = true;
+            if (status != RUNNING) {
+                giveBack();
+            }
+        }
+    }
+
+    private static String getCatalog(SQLConnection conn) {
+        try {
+            return conn.getCatalog();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static String getSchema(SQLConnection conn) {
+        try {
+            return conn.getConnection().getSchema();
+        } catch (SQLException e) {
+            return null;
+        } catch (AbstractMethodError e) {
+            // pre JDBC 4.1 driver
+            return null;
+        }
+    }
+
+    /**
+     * Stops the job : it is not started if still queued, otherwise its
+     * running statement is cancelled and the remaining ones are skipped.
+     * The other statements of the session are left alone.
+     */
+    public void cancel() {
+        cancelled = true;
+        if (status == PENDING) {
+            status = CANCELLED;
+            ended = System.currentTimeMillis();
+        } else if (status == RUNNING) {
+            SQLExecutor he = current;
+            if (he != null) {
+                he.cancel();
+            }
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        String s = status;
+        return s == DONE || s == CANCELLED;
+    }
+
+    public int getStatementCount() {
+        return queries.size();
+    }
+
+    public List<String> getResults() {
+        return results;
+    }
+
+    public List<Long> getTimings() {
+        return timings;
+    }
+
+    public List<String> getChangedNodes() {
+        return changedNodes;
+    }
+
+    /**
+     * @return why the job could not run, <TT>null</TT> if it could.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the time spent waiting in the queue, in milliseconds.
+     */
+    public long getQueuedTime() {
+        long s = started;
+        return (s == 0 ? System.currentTimeMillis() : s) - submitted;
+    }
+
+    /**
+     * @return the time spent running, in milliseconds.
+     */
+    public long getElapsedTime() {
+        long s = started;
+        if (s == 0) {
+            return 0;
+        }
+        long e = ended;
+        return (e == 0 ? System.currentTimeMillis() : e) - s;
+    }
+}
@@ -0,0 +1,143 @@
+package com.riversql.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded pool running the <TT>QueryJob</TT>s, and the other long
+ * tasks of the sessions like the CSV imports. When all the threads are
+ * busy and the queue is full, submitting a job fails instead of piling up
+ * work.
+ *
+ * <P>The jobs submitted with the same key, such as the jobs of one
+ * connection, are run one after the other, in the order submitted.
+ */
+public class QueryJobs {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryJobs.class);
+
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private static ThreadPoolExecutor executor;
+    private static int maxQueued = DEFAULT_QUEUE_SIZE;
+
+    /**
+     * The jobs waiting for the one running with the same key.
+     */
+    private static final Map<Object, SerialQueue> serialQueues = new HashMap<Object, SerialQueue>();
+
+    private QueryJobs() {
+    }
+
+    public static synchronized void start(int threads, int queueSize) {
+        if (executor != null) {
+            return;
+        }
+        maxQueued = queueSize;
+        final AtomicInteger count = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "riversql-query-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        synchronized (serialQueues) {
+            serialQueues.clear();
+        }
+    }
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException if too many
+     *                                                         jobs are already queued.
+     */
+    public static void submit(Runnable job) {
+        getExecutor().execute(job);
+    }
+
+    /**
+     * Runs <TT>job</TT> once the jobs submitted before with the same key are
+     * over.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if too many
+     *                                                         jobs are already queued.
+     */
+    public static void submit(Object key, Runnable job) {
+        ThreadPoolExecutor e = getExecutor();
+        synchronized (serialQueues) {
+            SerialQueue queue = serialQueues.get(key);
+            if (queue != null) {
+                if (queue.jobs.size() >= maxQueued) {
+                    throw new RejectedExecutionException("Too many jobs queued");
+                }
+                queue.jobs.add(job);
+                return;
+            }
+            queue = new SerialQueue(key);
+            queue.jobs.add(job);
+            e.execute(queue);
+            serialQueues.put(key, queue);
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            start(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+        }
+        return executor;
+    }
+
+    /**
+     * Runs the jobs of a key on the thread of the first one, so that the
+     * following ones cannot be rejected.
+     */
+    private static final class SerialQueue implements Runnable {
+        final Object key;
+        final ArrayDeque<Runnable> jobs = new ArrayDeque<Runnable>();
+
+        SerialQueue(Object key) {
+            this.key = key;
+        }
+
+        public void run() {
+            Runnable job;
+            while ((job = next()) != null) {
+                try {
+                    job.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("While running " + job, e);
+                }
+            }
+        }
+
+        private Runnable next() {
+            synchronized (serialQueues) {
+                Runnable job = jobs.poll();
+                if (job == null) {
+                    serialQueues.remove(key);
+                }
+                return job;
+            }
+        }
+    }
+}
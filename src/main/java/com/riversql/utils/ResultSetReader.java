@@ -1,6 +1,5 @@
 package com.riversql.utils;
 
-import java.math.BigDecimal;
 import java.sql.*;
 
 /**
@@ -16,16 +15,17 @@ public class ResultSetReader {
     /**
      * The indices into the <TT>ResultSet that we want to read, starting from
      * 1 (not 0). If this contains {1, 5, 6} then only columns 1, 5, and 6 will
-     * be read. If <TT>null or empty then all columns are read.
+     * be read.
      */
-    private final int[] _columnIndices;
+    private final int[] _indices;
     /**
-     * Metadata for the <TT>ResultSet</TT>.
+     * The reader used for each column in <TT>_indices</TT>, chosen from the
+     * metadata when the reader is created.
      */
-    private final ResultSetMetaData _rsmd;
+    private final ColumnReader[] _readers;
     /**
      * The number of columns to read. This may or may not be the same as the
-     * number of columns in the <TT>ResultSet</TT>. @see _columnIndices.
+     * number of columns in the <TT>ResultSet</TT>, see <TT>_indices</TT>.
      */
     private int _columnCount;
     /**
@@ -48,18 +48,33 @@ public class ResultSetReader {
 
         _rs = rs;
         try {
-            _rs.setFetchSize(500);
+            // never lower the fetch size, nor override a driver specific one
+            // such as MySQL's Integer.MIN_VALUE
+            int fetchSize = _rs.getFetchSize();
+            if (fetchSize >= 0 && fetchSize < 500) {
+                _rs.setFetchSize(500);
+            }
         } catch (Exception e) {
         }
 
         if (columnIndices != null && columnIndices.length == 0) {
             columnIndices = null;
         }
-        _columnIndices = columnIndices;
 
-        _rsmd = rs.getMetaData();
+        final ResultSetMetaData rsmd = rs.getMetaData();
 
-        _columnCount = columnIndices != null ? columnIndices.length : _rsmd.getColumnCount();
+        _columnCount = columnIndices != null ? columnIndices.length : rsmd.getColumnCount();
+        _indices = new int[_columnCount];
+        _readers = new ColumnReader[_columnCount];
+        for (int i = 0; i < _columnCount; ++i) {
+            int idx = columnIndices != null ? columnIndices[i] : i + 1;
+            _indices[i] = idx;
+            try {
+                _readers[i] = getColumnReader(rsmd.getColumnType(idx));
+            } catch (Throwable th) {
+                _readers[i] = NULL_READER;
+            }
+        }
     }
 
     /**
@@ -127,228 +142,190 @@ public class ResultSetReader {
     /**
      * Method used to read data for all Tabs except the ContentsTab, where
      * the data is used only for reading.
-     * The only data read in the non-ContentsTab tabs is Meta-data about the DB,
-     * which means that there should be no BLOBs, CLOBs, or unknown fields.
+     * The readers have been chosen once for all in the constructor, so
+     * nothing here depends on the metadata.
      */
     private Object[] doRead() {
         final Object[] row = new Object[_columnCount];
         for (int i = 0; i < _columnCount; ++i) {
-            int idx = _columnIndices != null ? _columnIndices[i] : i + 1;
             try {
-                final int columnType = _rsmd.getColumnType(idx);
-                //final String columnClassName = _rsmd.getColumnClassName(idx);
-                switch (columnType) {
-                    case Types.NULL:
-                        row[i] = null;
-                        break;
-
-                    case Types.BIT:
-                    case Types.BOOLEAN:
-                        row[i] = _rs.getObject(idx);
-                        if (row[i] != null
-                                && !(row[i] instanceof Boolean)) {
-                            if (row[i] instanceof Number) {
-                                if (((Number) row[i]).intValue() == 0) {
-                                    row[i] = Boolean.FALSE;
-                                } else {
-                                    row[i] = Boolean.TRUE;
-                                }
-                            } else {
-                                row[i] = Boolean.valueOf(row[i].toString());
-                            }
-                        }
-                        break;
-
-                    case Types.TIME:
-                        row[i] = _rs.getTime(idx);
-                        break;
-
-                    case Types.DATE:
-                        //if (DataTypeDate.getReadDateAsTimestamp()) {
-                        row[i] = _rs.getDate(idx);
-                        //} else {
-                        //  row[i] = DataTypeDate.staticReadResultSet(_rs, idx, false);
-                        //}
-                        break;
-
-                    case Types.TIMESTAMP:
-                    case -101: // Oracle's 'TIMESTAMP WITH TIME ZONE' == -101
-                    case -102: // Oracle's 'TIMESTAMP WITH LOCAL TIME ZONE' == -102
-                        row[i] = _rs.getTimestamp(idx);
-                        break;
-
-                    case Types.BIGINT:
-                        row[i] = _rs.getObject(idx);
-                        if (row[i] != null
-                                && !(row[i] instanceof Long)) {
-                            if (row[i] instanceof Number) {
-                                row[i] = new Long(((Number) row[i]).longValue());
-                            } else {
-                                row[i] = new Long(row[i].toString());
-                            }
-                        }
-                        break;
-
-                    case Types.DOUBLE:
-                    case Types.FLOAT:
-                    case Types.REAL:
-                        row[i] = _rs.getObject(idx);
-                        if (row[i] != null
-                                && !(row[i] instanceof Double)) {
-                            if (row[i] instanceof Number) {
-                                Number nbr = (Number) row[i];
-                                row[i] = new Double(nbr.doubleValue());
-                            } else {
-                                row[i] = new Double(row[i].toString());
-                            }
-                        }
-                        break;
-
-                    case Types.DECIMAL:
-                    case Types.NUMERIC:
-                        row[i] = _rs.getObject(idx);
-                        if (row[i] != null
-                                && !(row[i] instanceof BigDecimal)) {
-                            if (row[i] instanceof Number) {
-                                Number nbr = (Number) row[i];
-                                row[i] = new BigDecimal(nbr.doubleValue());
-                            } else {
-                                row[i] = new BigDecimal(row[i].toString());
-                            }
-                        }
-                        break;
-
-                    case Types.INTEGER:
-                    case Types.SMALLINT:
-                    case Types.TINYINT:
-                        row[i] = _rs.getObject(idx);
-//						if (_rs.wasNull())
-//						{
-//							row[i] = null;
-//						}
-                        if (row[i] != null
-                                && !(row[i] instanceof Integer)) {
-                            if (row[i] instanceof Number) {
-                                row[i] = new Integer(((Number) row[i]).intValue());
-                            } else {
-                                row[i] = new Integer(row[i].toString());
-                            }
-                        }
-                        break;
-
-                    // TODO: Hard coded -. JDBC/ODBC bridge JDK1.4
-                    // brings back -9 for nvarchar columns in
-                    // MS SQL Server tables.
-                    // -8 is ROWID in Oracle.
-                    case Types.CHAR:
-                    case Types.VARCHAR:
-                    case Types.LONGVARCHAR:
-                    case -9:
-                    case -8:
-                        row[i] = _rs.getString(idx);
-                        try {
-                            if (_rs.wasNull()) {
-                                row[i] = null;
-                            }
-                        } catch (Throwable t) {
-                        }
-                        break;
-
-                    case Types.BINARY:
-                    case Types.VARBINARY:
-                    case Types.LONGVARBINARY:
-                        row[i] = _rs.getString(idx);
-                        break;
-
-                    case Types.BLOB:
-                        Blob blob = _rs.getBlob(idx);
-                        try {
-                            if (_rs.wasNull()) row[i] = null;
-                            break;
-                        } catch (Error e) {
-                        }
-                        if (blob != null) {
-
-                            byte[] b = blob.getBytes(1, (int) blob.length());
-                            row[i] = new String(b);
-                        }
-
-                        break;
-
-                    case Types.CLOB:
-                        Clob clob = _rs.getClob(idx);
-                        try {
-                            if (_rs.wasNull()) row[i] = null;
-                            break;
-                        } catch (Error e) {
-                        }
-                        if (clob != null) {
-
-                            row[i] = clob.getSubString(1, (int) clob.length());
-                        }
-
-                        break;
-
-                    //Add begin
-                    case Types.JAVA_OBJECT:
-                        row[i] = _rs.getObject(idx);
-                        try {
-                            if (_rs.wasNull()) {
-                                row[i] = null;
-                            }
-                        } catch (Throwable t) {
-                        }
-                        break;
-                    //Add end
-
-
-                    case Types.OTHER:
-                        // Since we are reading Meta-data, there really should never be
-                        // a field with SQL type Other (1111).
-                        // If there is, we REALLY do not know how to handle it,
-                        // so do not attempt to read.
-//					    ??						if (_largeObjInfo.getReadSQLOther())
-//					    ??						{
-//					    ??							// Running getObject on a java class attempts
-//					    ??							// to load the class in memory which we don't want.
-//					    ??							// getString() just gets the value without loading
-//					    ??							// the class (at least under PostgreSQL).
-//					    ??							//row[i] = _rs.getObject(idx);
-//					    ??							row[i] = _rs.getString(idx);
-//					    ??						}
-//					    ??						else
-//					    ??						{
-                        row[i] = "Other";
-//					    ??						}
-                        break;
-
-                    default:
-                        // Since we are reading Meta-data, there should never be a
-                        // field with an unknown data type.
-                        // If there is, then we REALLY do not know how to handle it,
-                        // so do not attempt to read.
-//??						if (_largeObjInfo.getReadAllOther())
-//??						{
-//??							row[i] = _rs.getObject(idx);
-//??						}
-//??						else
-//??						{
-                        row[i] = "Unknown";
-                        //??					}
-                }
+                row[i] = _readers[i].read(_rs, _indices[i]);
             } catch (Throwable th) {
                 // Don't bother the user with details about where the result fetch
                 // failed if they cancelled the query.
-//                if (!_stopExecution) {
-//                    _errorOccured = true;
-//                    row[i] = "Error";
-//                    StringBuffer msg = new StringBuffer("Error reading column data");
-//                    msg.append(", column index = ").append(idx);
-//                   // s_log.error(msg.toString(), th);
-//                }
             }
         }
 
         return row;
     }
+
+    /**
+     * Chooses the reader used for a column of the given <TT>java.sql.Types</TT>
+     * type.
+     */
+    private static ColumnReader getColumnReader(int columnType) {
+        switch (columnType) {
+            case Types.NULL:
+                return NULL_READER;
+
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN_READER;
+
+            case Types.TIME:
+                return TIME_READER;
+
+            case Types.DATE:
+                return DATE_READER;
+
+            case Types.TIMESTAMP:
+            case -101: // Oracle's 'TIMESTAMP WITH TIME ZONE' == -101
+            case -102: // Oracle's 'TIMESTAMP WITH LOCAL TIME ZONE' == -102
+                return TIMESTAMP_READER;
+
+            case Types.BIGINT:
+                return LONG_READER;
+
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                return DOUBLE_READER;
+
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return BIGDECIMAL_READER;
+
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return INTEGER_READER;
+
+            // TODO: Hard coded -. JDBC/ODBC bridge JDK1.4
+            // brings back -9 for nvarchar columns in
+            // MS SQL Server tables.
+            // -8 is ROWID in Oracle.
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case -9:
+            case -8:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return STRING_READER;
+
+            // large objects are not read, they may be of any size
+            case Types.BLOB:
+            case Types.CLOB:
+                return NULL_READER;
+
+            case Types.JAVA_OBJECT:
+                return OBJECT_READER;
+
+            case Types.OTHER:
+                // Since we are reading Meta-data, there really should never be
+                // a field with SQL type Other (1111).
+                // If there is, we REALLY do not know how to handle it,
+                // so do not attempt to read.
+                return new ConstantReader("Other");
+
+            default:
+                // Since we are reading Meta-data, there should never be a
+                // field with an unknown data type.
+                // If there is, then we REALLY do not know how to handle it,
+                // so do not attempt to read.
+                return new ConstantReader("Unknown");
+        }
+    }
+
+    /**
+     * Reads one column of the current row.
+     */
+    private interface ColumnReader {
+        Object read(ResultSet rs, int idx) throws SQLException;
+    }
+
+    private static final class ConstantReader implements ColumnReader {
+        private final Object value;
+
+        ConstantReader(Object value) {
+            this.value = value;
+        }
+
+        public Object read(ResultSet rs, int idx) {
+            return value;
+        }
+    }
+
+    private static final ColumnReader NULL_READER = new ConstantReader(null);
+
+    private static final ColumnReader BOOLEAN_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            Object o = rs.getObject(idx);
+            if (o == null || o instanceof Boolean) {
+                return o;
+            }
+            if (o instanceof Number) {
+                return ((Number) o).intValue() == 0 ? Boolean.FALSE : Boolean.TRUE;
+            }
+            return Boolean.valueOf(o.toString());
+        }
+    };
+
+    private static final ColumnReader TIME_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            return rs.getTime(idx);
+        }
+    };
+
+    private static final ColumnReader DATE_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            return rs.getDate(idx);
+        }
+    };
+
+    private static final ColumnReader TIMESTAMP_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            return rs.getTimestamp(idx);
+        }
+    };
+
+    private static final ColumnReader LONG_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            long l = rs.getLong(idx);
+            return rs.wasNull() ? null : Long.valueOf(l);
+        }
+    };
+
+    private static final ColumnReader DOUBLE_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            double d = rs.getDouble(idx);
+            return rs.wasNull() ? null : Double.valueOf(d);
+        }
+    };
+
+    private static final ColumnReader BIGDECIMAL_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            return rs.getBigDecimal(idx);
+        }
+    };
+
+    private static final ColumnReader INTEGER_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            int n = rs.getInt(idx);
+            return rs.wasNull() ? null : Integer.valueOf(n);
+        }
+    };
+
+    private static final ColumnReader STRING_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            return rs.getString(idx);
+        }
+    };
+
+    private static final ColumnReader OBJECT_READER = new ColumnReader() {
+        public Object read(ResultSet rs, int idx) throws SQLException {
+            return rs.getObject(idx);
+        }
+    };
 }
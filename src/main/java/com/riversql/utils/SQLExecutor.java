@@ -1,27 +1,84 @@
 package com.riversql.utils;
 
 import com.riversql.IDManager;
+import com.riversql.databases.DialectFactory;
+import com.riversql.databases.FetchProfile;
+import com.riversql.databases.RowLimiter;
 import com.riversql.sql.SQLConnection;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
 import java.sql.*;
 
-public class SQLExecutor {
+public class SQLExecutor implements AutoCloseable {
 
     private final int maxLimit;
     boolean closed;
     private String query;
     private SQLConnection sqlconn;
     private int limit;
-    private PreparedStatement ps;
+    private volatile PreparedStatement ps;
     private ResultSet rs;
     private int columncount;
     private String id;
     private ResultSetReader reader;
+    private StatementRegistry registry;
+    private String sessionid;
+    private FetchProfile profile;
+    /**
+     * Whether queries may be rewritten so that the database only returns the
+     * rows of a page. See <TT>RowLimiter</TT>.
+     */
+    private boolean limitRows;
+    /**
+     * The limiter used for the current query, <TT>null</TT> if it is run as is.
+     */
+    private RowLimiter limiter;
+    /**
+     * Number of rows already read when the query is limited.
+     */
+    private int offset;
+    /**
+     * <TT>true</TT> if the limiter could not rewrite the query, whose pages
+     * are then limited with <TT>setMaxRows()</TT> instead.
+     */
+    private boolean maxRowsOnly;
+    /**
+     * <TT>true</TT> while the profile's <TT>endCursor()</TT> has to be called.
+     */
+    private boolean cursorBegun;
+    /**
+     * <TT>true</TT> while the result is recorded as the open cursor of the
+     * connection.
+     */
+    private boolean cursorOpen;
+    /**
+     * <TT>true</TT> once the last row of the result was read.
+     */
+    private boolean exhausted;
+    /**
+     * <TT>true</TT> if the open cursor was closed by another use of the
+     * connection before all its rows were read.
+     */
+    private boolean interrupted;
+    /**
+     * Set by <TT>cancel()</TT>, so that a statement not yet prepared when it
+     * is called is not run, and the rest of a script is skipped.
+     */
+    private volatile boolean cancelled;
+
     public SQLExecutor(SQLConnection sqlconn, int limit, int maxLimit, String query) {
+        this(sqlconn, limit, maxLimit, query, null, null);
+    }
+
+    /**
+     * @param registry  where the executor is registered while it runs, so that
+     *                  it can be cancelled. May be <TT>null</TT>.
+     * @param sessionid id of the <TT>SQLSession</TT> the query runs on.
+     */
+    public SQLExecutor(SQLConnection sqlconn, int limit, int maxLimit, String query,
+                       StatementRegistry registry, String sessionid) {
         this.sqlconn = sqlconn;
+        this.registry = registry;
+        this.sessionid = sessionid;
         this.maxLimit = maxLimit;
         this.id = IDManager.get().nextID();
         IDManager.get().put(id, this);
@@ -29,131 +86,414 @@ public class SQLExecutor {
         this.query = query;
     }
 
-    public void executeQuery(JSONArray data, JSONArray meta, JSONArray info) throws SQLException, JSONException {
+    public SQLConnection getSQLConnection() {
+        return sqlconn;
+    }
 
+    public String getId() {
+        return id;
+    }
 
-        info.put(id);
-        info.put(query);
+    /**
+     * @return <TT>true</TT> once the result has no more rows to read.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
 
-        ps = sqlconn.prepareStatement(query);
+    /**
+     * @return the query as given, before any row limit is added to it.
+     */
+    public String getQuery() {
+        return query;
+    }
 
-        try {
-            ps.setFetchSize(limit);
-        } catch (Throwable e) {
-        }
-        boolean bHasResultSet = ps.execute();
+    public void setLimitRows(boolean limitRows) {
+        this.limitRows = limitRows;
+    }
 
-        if (bHasResultSet) {
-            rs = ps.getResultSet();
-            if (rs != null) {
-
-                ResultSetMetaData metadata = rs.getMetaData();
-                columncount = metadata.getColumnCount();
-
-                for (int i = 1; i <= columncount; i++) {
-                    int type = metadata.getColumnType(i);
-                    String align = "left";
-                    switch (type) {
-                        case Types.BIGINT:
-                        case Types.DOUBLE:
-                        case Types.FLOAT:
-                        case Types.REAL:
-                        case Types.DECIMAL:
-                        case Types.NUMERIC:
-                        case Types.INTEGER:
-                        case Types.SMALLINT:
-                        case Types.TINYINT:
-                            align = "right";
-                    }
-                    String label = metadata.getColumnLabel(i);
-                    JSONObject headInfo = new JSONObject();
-                    headInfo.put("l", label);
-                    headInfo.put("al", align);
-                    meta.put(headInfo);
+    /**
+     * Executes the query and streams the resulting
+     * <TT>{"meta":[...],"data":[...],"info":[id,query,executed,error]}</TT>
+     * object to <TT>out</TT>. Errors are reported in the "info" part.
+     *
+     * @return whether the query was executed without error.
+     */
+    public boolean executeQuery(JSONStreamWriter out) throws IOException {
+        out.object();
+        int depth = out.depth();
+        boolean metaWritten = false;
+        boolean dataWritten = false;
+        String error = null;
+        // until the first page is read, from before the statement is prepared
+        register();
+        try {
+            offset = 0;
+            limiter = null;
+            maxRowsOnly = false;
+            interrupted = false;
+            if (limitRows) {
+                limiter = DialectFactory.getRowLimiter(sqlconn);
+                if (limiter != null && !limiter.canLimit(query)) {
+                    limiter = null;
                 }
-                reader = new ResultSetReader(rs);
-                int loaded = 0;
-                Object[] row;
-                while ((row = reader.readRow()) != null) {
-                    loaded++;
-                    JSONArray record = new JSONArray();
-                    for (int i = 0; i < columncount; i++) {
-                        Object obj = row[i];
-                        record.put(obj);
+            }
+            // one more row than the page tells whether there is a next page
+            boolean bHasResultSet;
+            if (limiter != null) {
+                Savepoint savepoint = setSavepoint();
+                try {
+                    bHasResultSet = open(limiter.limit(query, 0, limit + 1), 0);
+                    releaseSavepoint(savepoint);
+                } catch (SQLException e) {
+                    // some queries cannot be rewritten, such as a ROWNUM view
+                    // over two columns of the same name : run it as is
+                    closeStatement();
+                    if (savepoint != null) {
+                        // some databases refuse any statement after an error until rolled back
+                        sqlconn.getConnection().rollback(savepoint);
                     }
-                    data.put(record);
-                    if (loaded == limit)
-                        break;
+                    maxRowsOnly = true;
+                    bHasResultSet = open(query, limit + 1);
                 }
-                if (loaded < limit) {
-                    closed = true;
-                    rs.close();
-                    ps.close();
+            } else {
+                bHasResultSet = open(query, 0);
+            }
+
+            if (bHasResultSet) {
+                rs = ps.getResultSet();
+                if (rs != null) {
+
+                    ResultSetMetaData metadata = rs.getMetaData();
+                    columncount = metadata.getColumnCount();
+
+                    metaWritten = true;
+                    out.key("meta").array();
+                    for (int i = 1; i <= columncount; i++) {
+                        int type = metadata.getColumnType(i);
+                        String align = "left";
+                        switch (type) {
+                            case Types.BIGINT:
+                            case Types.DOUBLE:
+                            case Types.FLOAT:
+                            case Types.REAL:
+                            case Types.DECIMAL:
+                            case Types.NUMERIC:
+                            case Types.INTEGER:
+                            case Types.SMALLINT:
+                            case Types.TINYINT:
+                                align = "right";
+                        }
+                        String label = metadata.getColumnLabel(i);
+                        out.object().key("l").value(label).key("al").value(align).endObject();
+                    }
+                    out.endArray();
+                    reader = new ResultSetReader(rs);
+                    dataWritten = true;
+                    out.key("data").array();
+                    boolean more = false;
+                    // rows are fetched while read, the statement can be
+                    // cancelled until the page is complete
+                    int loaded = writeRows(out, limit);
+                    if (loaded == limit && limiter != null) {
+                        more = reader.readRow() != null;
+                    }
+                    out.endArray();
+                    if (loaded < limit) {
+                        close();
+                    } else if (limiter != null) {
+                        offset = loaded;
+                        closeStatement();
+                        closed = !more;
+                    } else if (profile.isExclusive(cursorBegun)) {
+                        cursorOpen = true;
+                        sqlconn.setOpenCursor(this);
+                    }
+                } else {
+                    close();
                 }
             } else {
-                closed = true;
-                ps.close();
+                int updateCount = ps.getUpdateCount();
+                close();
+                metaWritten = true;
+                out.key("meta").array().value("Update Count").endArray();
+                dataWritten = true;
+                out.key("data").array().array().value(updateCount).endArray().endArray();
             }
+        } catch (SQLException e) {
+            out.unwind(depth);
+            error = e.getMessage();
+            close();
+        } catch (RuntimeException e) {
+            out.unwind(depth);
+            error = e.getMessage();
+            close();
+        } finally {
+            unregister();
+        }
+        if (!metaWritten) {
+            out.key("meta").array().endArray();
+        }
+        if (!dataWritten) {
+            out.key("data").array().endArray();
+        }
+        out.key("info").array().value(id).value(query);
+        if (error == null) {
+            out.value(true);
         } else {
-            int updateCount = ps.getUpdateCount();
-            closed = true;
-            ps.close();
-            meta.put("Update Count");
-            JSONArray record = new JSONArray();
-            record.put(updateCount);
-            data.put(record);
+            out.value(false).value(error);
         }
+        out.endArray();
+        out.endObject();
+        return error == null;
+    }
 
+    /**
+     * Streams the next page (or, if <TT>all</TT>, up to <TT>maxLimit</TT>
+     * rows) as a JSON array of rows.
+     */
+    public void next(JSONStreamWriter out, boolean all) throws SQLException, IOException {
+        if (interrupted) {
+            throw new SQLException("The result was closed by another statement on the connection, run the query again");
+        }
+        // only the page being read can be cancelled
+        cancelled = false;
+        out.array();
+        register();
+        try {
+            if (closed == false && limiter != null) {
+                nextLimited(out, all ? maxLimit : limit);
+                if (all == true) {
+                    close();
+                }
+            } else if (closed == false) {
+                int loaded = writeRows(out, all ? maxLimit : limit);
+                if (loaded < limit || all == true) {
+                    close();
+                }
+            }
+        } finally {
+            unregister();
+        }
+        out.endArray();
+    }
 
+    /**
+     * Reads a follow-up page by running the query again, limited to the
+     * rows after the ones already read.
+     */
+    private void nextLimited(JSONStreamWriter out, int count) throws SQLException, IOException {
+        if (!limiter.canPage(query)) {
+            readRest(out, count);
+            return;
+        }
+        int skip = 0;
+        int maxRows = 0;
+        String sql;
+        if (maxRowsOnly) {
+            sql = query;
+            maxRows = offset + count + 1;
+            skip = offset;
+        } else if (limiter.supportsOffset()) {
+            sql = limiter.limit(query, offset, count + 1);
+        } else {
+            sql = limiter.limit(query, 0, offset + count + 1);
+            skip = offset;
+        }
+        try {
+            open(sql, maxRows);
+            rs = ps.getResultSet();
+            reader = new ResultSetReader(rs);
+            while (skip > 0 && reader.readRow() != null) {
+                skip--;
+            }
+            int loaded = writeRows(out, count);
+            offset += loaded;
+            closed = loaded < count || reader.readRow() == null;
+        } finally {
+            closeStatement();
+        }
     }
 
-    public void next(JSONArray data, boolean all) throws Exception {
+    /**
+     * Reads a follow-up page of a query without <TT>ORDER BY</TT>, whose rows
+     * may come in another order each time it runs : the query is run once
+     * more as is, the rows already read are skipped, and the result is kept
+     * open for the next pages like the one of a query which is not limited.
+     */
+    private void readRest(JSONStreamWriter out, int count) throws SQLException, IOException {
+        limiter = null;
+        maxRowsOnly = false;
+        try {
+            open(query, 0);
+            rs = ps.getResultSet();
+            reader = new ResultSetReader(rs);
+            int skip = offset;
+            while (skip > 0 && reader.readRow() != null) {
+                skip--;
+            }
+            if (writeRows(out, count) < count) {
+                close();
+            } else if (profile.isExclusive(cursorBegun)) {
+                cursorOpen = true;
+                sqlconn.setOpenCursor(this);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Prepares and executes <TT>sql</TT> according to the fetch profile of
+     * the connection.
+     *
+     * @param maxRows the maximum number of rows returned, 0 for all.
+     * @return the result of <TT>PreparedStatement.execute()</TT>.
+     */
+    private boolean open(String sql, int maxRows) throws SQLException {
+        profile = DialectFactory.getFetchProfile(sqlconn);
+        // a result left open is exclusive, and restores the connection once closed
+        sqlconn.closeOpenCursor();
+        exhausted = false;
+        cursorBegun = profile.beginCursor(sqlconn, sql);
+        ps = profile.prepareStatement(sqlconn, sql);
+        checkCancelled();
+        profile.configure(ps, limit);
+        if (maxRows > 0) {
+            ps.setMaxRows(maxRows);
+        }
+        // cancel() may have found no statement to cancel
+        checkCancelled();
+        return ps.execute();
+    }
+
+    private void checkCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("The query was cancelled");
+        }
+    }
+
+    /**
+     * @return a savepoint in the transaction of the user, for a statement
+     * which may fail, or <TT>null</TT> in autocommit, where the profile's
+     * <TT>endCursor()</TT> rolls back what the statement did.
+     */
+    private Savepoint setSavepoint() throws SQLException {
+        if (sqlconn.getAutoCommit() || !sqlconn.getSQLMetaData().supportsSavepoints()) {
+            return null;
+        }
+        return sqlconn.getConnection().setSavepoint();
+    }
+
+    private void releaseSavepoint(Savepoint savepoint) {
+        if (savepoint != null) {
+            try {
+                sqlconn.getConnection().releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                // not every driver releases them, the transaction does
+            }
+        }
+    }
+
+    private void register() {
+        if (registry != null) {
+            registry.register(sessionid, this);
+        }
+    }
+
+    private void unregister() {
+        if (registry != null) {
+            registry.unregister(sessionid, this);
+        }
+    }
+
+    private int writeRows(JSONStreamWriter out, int max) throws SQLException, IOException {
         int loaded = 0;
         Object[] row;
-        if (closed == false) {
-            while ((row = reader.readRow()) != null) {
-                loaded++;
-                JSONArray record = new JSONArray();
-                for (int i = 0; i < columncount; i++) {
-                    Object obj = row[i];
-                    record.put(obj);
-                }
-                data.put(record);
-                if (loaded == limit && all == false)
-                    break;
-                else if (all == true && loaded == maxLimit)
-                    break;
+        while (loaded < max) {
+            row = reader.readRow();
+            if (row == null) {
+                exhausted = true;
+                break;
             }
-            if (loaded < limit && all == false) {
-                closed = true;
-                rs.close();
-                ps.close();
+            loaded++;
+            out.array();
+            for (int i = 0; i < columncount; i++) {
+                out.value(row[i]);
             }
-            if (all == true) {
-                rs.close();
-                ps.close();
+            out.endArray();
+        }
+        return loaded;
+    }
+
+    /**
+     * Cancels the statement of the executor if it is running, from another
+     * thread, or keeps it from running if it is about to.
+     */
+    public void cancel() {
+        cancelled = true;
+        PreparedStatement statement = ps;
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
             }
         }
     }
 
+    /**
+     * @return <TT>true</TT> if the statement or the page last run was
+     * cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     public void close() {
         closed = true;
+        closeStatement();
+    }
+
+    /**
+     * Releases the statement of the current page, without marking the
+     * executor as closed.
+     */
+    private void closeStatement() {
+        // first, so that ending the cursor below does not close it again
+        if (sqlconn != null && !sqlconn.releaseOpenCursor(this) && cursorOpen) {
+            // closed by closeOpenCursor()
+            interrupted = true;
+        }
+        cursorOpen = false;
+        if (rs != null && ps != null && !exhausted && limiter == null) {
+            // only the rows of the pages are limited otherwise
+            profile.discard(ps);
+        }
         try {
             if (rs != null)
                 rs.close();
         } catch (SQLException e) {
         }
+        rs = null;
         try {
             if (ps != null)
                 ps.close();
         } catch (SQLException e) {
         }
-
+        if (cursorBegun) {
+            cursorBegun = false;
+            try {
+                profile.endCursor(sqlconn);
+            } catch (SQLException e) {
+            }
+        }
     }
 
-    public void redoQuery(JSONArray data, JSONArray meta, JSONArray info2) throws SQLException, JSONException {
+    public void redoQuery(JSONStreamWriter out) throws IOException {
         close();
         closed = false;
-        executeQuery(data, meta, info2);
+        cancelled = false;
+        executeQuery(out);
     }
 }
@@ -0,0 +1,88 @@
+package com.riversql.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the statements currently running on behalf of a web session,
+ * grouped by the id of the <TT>SQLSession</TT> they run on, so that another
+ * request can cancel them. The executors are registered rather than their
+ * JDBC statements, from before the statement is prepared until its page is
+ * read, so that cancelling also reaches a statement about to run, and the
+ * scripts stop at the statement cancelled.
+ */
+public class StatementRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementRegistry.class);
+
+    private final Map<String, Set<SQLExecutor>> running = new ConcurrentHashMap<String, Set<SQLExecutor>>();
+
+    public void register(String sessionid, SQLExecutor executor) {
+        Set<SQLExecutor> statements = running.get(sessionid);
+        if (statements == null) {
+            synchronized (running) {
+                statements = running.get(sessionid);
+                if (statements == null) {
+                    statements = ConcurrentHashMap.newKeySet();
+                    running.put(sessionid, statements);
+                }
+            }
+        }
+        statements.add(executor);
+    }
+
+    public void unregister(String sessionid, SQLExecutor executor) {
+        Set<SQLExecutor> statements = running.get(sessionid);
+        if (statements != null) {
+            statements.remove(executor);
+        }
+    }
+
+    /**
+     * Cancels every statement currently running on the given session.
+     *
+     * @return the number of statements that were cancelled.
+     */
+    public int cancel(String sessionid) {
+        Set<SQLExecutor> statements = running.get(sessionid);
+        if (statements == null) {
+            return 0;
+        }
+        return cancel(new ArrayList<SQLExecutor>(statements));
+    }
+
+    /**
+     * Cancels every running statement, whatever its session.
+     */
+    public int cancelAll() {
+        List<SQLExecutor> all = new ArrayList<SQLExecutor>();
+        for (Set<SQLExecutor> statements : running.values()) {
+            all.addAll(statements);
+        }
+        return cancel(all);
+    }
+
+    public int getRunningCount(String sessionid) {
+        Set<SQLExecutor> statements = running.get(sessionid);
+        return statements == null ? 0 : statements.size();
+    }
+
+    private int cancel(List<SQLExecutor> statements) {
+        int cancelled = 0;
+        for (SQLExecutor executor : statements) {
+            try {
+                executor.cancel();
+                cancelled++;
+            } catch (Exception e) {
+                LOGGER.warn("Could not cancel statement", e);
+            }
+        }
+        return cancelled;
+    }
+}
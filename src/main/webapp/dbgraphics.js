@@ -305,6 +305,10 @@ TableWorkflow.prototype.loadConnections=function(connections){
 		var tc=new TableConnection("A");
 		tc.setSource(sourceTable.portTop);
 		tc.setTarget(targetTable.portBottom);
+		if(connections[j].cycle){
+			// a key to disable before inserting into its tables
+			tc.setColor(new draw2d.Color(204,0,0));
+		}
 		
 		this.addFigure(tc);
 	}
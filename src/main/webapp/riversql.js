@@ -84,9 +84,32 @@ Ext.extend(TreeStoreLoader, Ext.tree.TreeLoader, {
             }
         }
         params[this.nodeParamName] = node.id;
+        if (this.pageSize) {
+            params.start = 0;
+            params.limit = this.pageSize;
+        }
+        if (node.attributes.filter) {
+            params.filter = node.attributes.filter;
+        }
         return params;
     },
 
+    // replaces the "more" node at the end of a paged node with the next page
+    loadMore : function(moreNode) {
+        var parent = moreNode.parentNode;
+        var start = moreNode.attributes.start;
+        var params = this.getParams(parent);
+        params.start = start;
+        this.store.purgeListeners();
+        this.store.on('load', function() {
+            parent.removeChild(moreNode);
+            this.addChildren(parent, start);
+        }, this);
+        this.store.load({
+            params : params
+        });
+    },
+
     processResponse : function(node, callback) {
         try {
             this.addChildren(node);
@@ -111,10 +134,21 @@ Ext.extend(TreeStoreLoader, Ext.tree.TreeLoader, {
         }
     },
 
-    addChildren : function(parent) {
+    addChildren : function(parent, start) {
         this.store.each(function(rec) {
             parent.appendChild(this.createChild(rec));
         }, this);
+        var loaded = (start || 0) + this.store.getCount();
+        var total = this.store.getTotalCount();
+        if (loaded < total) {
+            parent.appendChild(this.createNode({
+                id : Ext.id(),
+                text : (total - loaded) + ' more...',
+                leaf : true,
+                more : true,
+                start : loaded
+            }));
+        }
         if (parent.attributes.expanded === true) {
             parent.expand();
         }
@@ -140,7 +174,7 @@ var httpDatabasesProxy = new Ext.data.HttpProxy( {
 var databasesReader = new Ext.data.JsonReader( {
 	root :'result.databases',
 	id :'id'
-}, [ 'id', 'iconurl','name','hasCatalogs','catalogs','catalog','autocommit' ]);
+}, [ 'id', 'iconurl','name','hasCatalogs','catalogs','catalog','autocommit','limitrows' ]);
 
 var databasesDataStore = new Ext.data.Store( {
 	proxy :httpDatabasesProxy,
@@ -161,6 +195,7 @@ var httpTreeProxy = new Ext.data.HttpProxy( {
 
 var treeReader = new Ext.data.JsonReader( {
 	root :'result.nodes',
+	totalProperty :'result.total',
 	id :'id'
 }, [ 'id', 'text', 'leaf', 'type', 'cls', 'qname' ]);
 
@@ -268,6 +303,16 @@ function commitConnectionImpl(sessionid) {
 	});
 }// end commitConnectionImpl
 
+function cancelQueryImpl(sessionid) {
+	new Ext.data.Connection().request( {
+		url :'do?action=cancelQuery&sessionid=' + sessionid,
+		method :'post',
+		scope :this,
+		params :this.baseParams,
+		failure :requestFailed
+	});
+}// end cancelQueryImpl
+
 function rollbackConnection(titem) {
 
 	var selectedConnection = databasesDataStore.getAt(connection_menu.rowid);
@@ -1465,6 +1510,13 @@ function createSQLToolbar(codepressEditor, sqlresultpanel) {
 		selectFirst();
 	});
 
+	var limitBtn = new Ext.Toolbar.Button({
+		cls :'x-btn-icon',
+		icon :'icons/page_white.png',
+		tooltip :'<b>Limit rows</b><br/>Let the database return only the rows shown',
+		enableToggle :true,
+		pressed :false
+	});
 	var commitBtn = new Ext.Toolbar.Button( {
 		cls :'x-btn-icon',
 		tooltip :'<b>Commit</b>',
@@ -1495,6 +1547,7 @@ function createSQLToolbar(codepressEditor, sqlresultpanel) {
 					commitBtn.disable();
 					rollbackBtn.disable();
 				}
+				limitBtn.toggle(selectedConnection.get('limitrows') == true);
 				var hasCatalogs = selectedConnection.get('hasCatalogs');
 				if (hasCatalogs) {
 					var catalogs = selectedConnection.get('catalogs');
@@ -1566,16 +1619,22 @@ function createSQLToolbar(codepressEditor, sqlresultpanel) {
 //			code = codepressEditor.code || "";
 		sqlresultpanel.logPanel.info2('Starting to execute', code);
 		new Ext.data.Connection().request( {
-			url :'do?action=execute',
+			url :'do?action=submitQuery',
 			method :'post',
-			timeout :'3600000',
 			params : {
 				sql :code,
-				sessionid :combo.getValue()
+				sessionid :combo.getValue(),
+				limitrows :limitBtn.pressed ? '1' : '0'
 			},
 			failure :requestFailed,
-			success :sqlSuccessful,
-			sqlresultpanel :sqlresultpanel
+			success :function(response, options) {
+				var object = Ext.util.JSON.decode(response.responseText);
+				if (object.success) {
+					pollQueryJob(object.result.job, sqlresultpanel);
+				} else {
+					sqlresultpanel.logPanel.error(object.error);
+				}
+			}
 		});
 	}
 	var runBtn = new Ext.Toolbar.Button({
@@ -1586,6 +1645,14 @@ function createSQLToolbar(codepressEditor, sqlresultpanel) {
 		 	executeSQL();
 		}
 	});
+	var cancelBtn = new Ext.Toolbar.Button({
+		cls :'x-btn-icon',
+		icon :'icons/cancel.png',
+		tooltip :'<b>Cancel</b><br/>Cancel the queries running on this connection',
+		handler : function() {
+			cancelQueryImpl(combo.getValue());
+		}
+	});
 //	
 	var syntaxBtn = new Ext.Toolbar.Button({
 		cls :'x-btn-icon',
@@ -1616,6 +1683,8 @@ function createSQLToolbar(codepressEditor, sqlresultpanel) {
 				this.add(catalogCombo);
 				this.addSeparator();
 				this.addButton(runBtn);
+				this.addButton(cancelBtn);
+				this.addButton(limitBtn);
 				this.addSeparator();
 				this.addButton(commitBtn);
 				this.addButton(rollbackBtn);
@@ -1633,6 +1702,37 @@ function createSQLToolbar(codepressEditor, sqlresultpanel) {
 	return centerToolbar;
 }// end createSQLToolbar
 
+// waits for an asynchronous query job to end, then displays its results
+function pollQueryJob(job, sqlresultpanel) {
+	new Ext.data.Connection().request( {
+		url :'do?action=jobStatus',
+		method :'post',
+		params : {
+			job :job
+		},
+		failure :requestFailed,
+		success :function(response, options) {
+			var object = Ext.util.JSON.decode(response.responseText);
+			if (!object.success) {
+				sqlresultpanel.logPanel.error(object.error);
+			} else if (object.result.finished) {
+				new Ext.data.Connection().request( {
+					url :'do?action=jobResult',
+					method :'post',
+					params : {
+						job :job
+					},
+					failure :requestFailed,
+					success :sqlSuccessful,
+					sqlresultpanel :sqlresultpanel
+				});
+			} else {
+				pollQueryJob.defer(500, this, [job, sqlresultpanel]);
+			}
+		}
+	});
+}// end pollQueryJob
+
 function sqlSuccessful(response, options) {
 	sqlresultpanel = options.sqlresultpanel;
 	sqlresultpanel.logPanel.info('SQL Executed. Getting Response...');
@@ -1642,6 +1742,7 @@ function sqlSuccessful(response, options) {
 		info = object.result.info;
 		sqlresultpanel.logPanel.info('SQL Executed. Execution time: ' + info[0]
 				+ ' milliseconds. Executed statements: ' + resultSets.length);
+		reloadChangedNodes(object.result.changedNodes);
 		for (ii = 0; ii < resultSets.length; ii++) {
 			var meta = object.result.resultSets[ii].meta;
 			var myData = object.result.resultSets[ii].data;
@@ -1792,44 +1893,16 @@ function sqlSuccessful(response, options) {
 					icon :'icons/database_table.png',
 					tooltip :'<b>Export</b><br/>Export to CSV',
 					handler : function() {
-						if (!Ext.fly('frmCsvDummy')) {
-                                                    var frm = document.createElement('form');
-                                                    frm.id = 'frmCsvDummy';
-                                                    frm.name = id;
-                                                    frm.className = 'x-hidden';
-                                                    frm.target='_blank';
-                                                    document.body.appendChild(frm);
-                                                }
-                                                Ext.Ajax.request({
-                                                    url: 'do?action=csvExport',
-                                                    method : 'POST',
-                                                    form: Ext.fly('frmCsvDummy'),
-                                                    isUpload:true,
-                                                    params: {action:'csvExport',meta:Ext.util.JSON.encode(meta),data:Ext.util.JSON.encode(myData),info:Ext.util.JSON.encode(info2)}
-                                                });
+						exportQueryResult(queryID, 'csv');
 					}
 				});
 
-                                var exportPDFButton=new Ext.Toolbar.Button({
+				var exportPDFButton=new Ext.Toolbar.Button({
 					cls :'x-btn-icon',
 					icon :'icons/page_white_acrobat.png',
 					tooltip :'<b>Export</b><br/>Export to PDF',
 					handler : function() {
-						if (!Ext.fly('frmPdfDummy')) {
-                                                    var frm = document.createElement('form');
-                                                    frm.id = 'frmPdfDummy';
-                                                    frm.name = id;
-                                                    frm.className = 'x-hidden';
-                                                    frm.target='_blank';
-                                                    document.body.appendChild(frm);
-                                                }
-                                                Ext.Ajax.request({
-                                                    url: 'do?action=pdfExport',
-                                                    method : 'POST',
-                                                    form: Ext.fly('frmPdfDummy'),
-                                                    isUpload:true,
-                                                    params: {action:'pdfExport',meta:Ext.util.JSON.encode(meta),data:Ext.util.JSON.encode(myData),info:Ext.util.JSON.encode(info2)}
-                                                });
+						exportQueryResult(queryID, 'pdf');
 					}
 				});
 
@@ -1837,29 +1910,8 @@ function sqlSuccessful(response, options) {
 					cls :'x-btn-icon',
 					icon :'icons/page_white_excel.png',
 					tooltip :'<b>Export</b><br/>Export to Excel',
-					handler : function() {				
-						var exportContent=resultGrid.getExcelXml(true);
-						if (Ext.isGecko3) {
-                                                    document.location='data:application/vnd.ms-excel;Content-Disposition:attachment;filename=export_filename.xls;name=export.xls;base64,' + Base64.encode(exportContent);
-                                                }
-						else{
-							if (!Ext.fly('frmDummy')) {
-                                                            var frm = document.createElement('form');
-                                                            frm.id = 'frmDummy';
-                                                            frm.name = id;
-                                                            frm.className = 'x-hidden';
-                                                            frm.target='_blank';
-                                                            document.body.appendChild(frm);
-                                                        }
-                                                    Ext.Ajax.request({
-                                                        url: 'do?action=excelExport',
-                                                        method : 'POST',
-                                                        form: Ext.fly('frmDummy'),
-                                                        isUpload:true,
-                                                        params: {action:'excelExport',ex: resultGrid.getExcelXml(true)}
-                                                    });
-						}
-                    
+					handler : function() {
+						exportQueryResult(queryID, 'xlsx');
 					}
 				});
 				var clPanel = new Ext.Panel( {
@@ -1906,6 +1958,34 @@ function sqlSuccessful(response, options) {
 	}
 }// end sqlSuccessful
 
+// reloads the tree nodes listing the objects created, altered or dropped
+// by the statements, and the details of the selected one
+function reloadChangedNodes(ids) {
+	if (!ids || typeof treeselectionModel == 'undefined' || !treeselectionModel.tree)
+		return;
+	var tree = treeselectionModel.tree;
+	var selected = treeselectionModel.getSelectedNode();
+	for ( var i = 0; i < ids.length; i++) {
+		var node = tree.getNodeById(ids[i]);
+		if (!node)
+			continue;
+		if (node.isLeaf()) {
+			if (node == selected)
+				nodeSelection(treeselectionModel, node, null);
+		} else if (node.loaded) {
+			if (node.isExpanded()) {
+				node.reload();
+			} else {
+				while (node.firstChild) {
+					node.removeChild(node.firstChild);
+				}
+				node.childrenRendered = false;
+				node.loaded = false;
+			}
+		}
+	}
+}// end reloadChangedNodes
+
 function sqlRefreshSuccessful(response, options){
 	sqlresultpanel = options.sqlresultpanel;
 	sqlresultpanel.logPanel.info('SQL Executed. Getting Response...');
@@ -2148,7 +2228,8 @@ function createTree() {
 
 	var treeLoader = new TreeStoreLoader( {
 		store :treeStore,
-		nodeParamName :"node"
+		nodeParamName :"node",
+		pageSize :500
 	});
 
 	rootOptions = Ext.applyIf(rootOptions || {}, {
@@ -2175,10 +2256,51 @@ function createTree() {
 	});
 	
 	
+	var filterBtn = new Ext.Toolbar.Button(	{
+		tooltip :'<b>Filter</b><br/>Only show the objects of the selected node whose name contains a text (* and ? are wildcards)',
+		icon :'icons/magnifier.png',
+		cls :'x-btn-icon',
+		handler : function() {
+			var node = tree.getSelectionModel().getSelectedNode();
+			if (!node || node.isLeaf())
+				return;
+			Ext.Msg.prompt('Filter', 'Names containing:', function(btn, text) {
+				if (btn != 'ok')
+					return;
+				if (!node.attributes.unfilteredText)
+					node.attributes.unfilteredText = node.text;
+				node.attributes.filter = text;
+				node.setText(text ? node.attributes.unfilteredText + ' [' + Ext.util.Format.htmlEncode(text) + ']'
+						: node.attributes.unfilteredText);
+				node.collapse(false, false);
+				while (node.firstChild) {
+					node.removeChild(node.firstChild);
+				}
+				node.childrenRendered = false;
+				node.loaded = false;
+				node.expand(false, false);
+			}, this, false, node.attributes.filter || '');
+		}
+	});
+	
+	var findBtn = new Ext.Toolbar.Button( {
+		tooltip :'<b>Find</b><br/>Find the tables, views, columns and other objects of the connection by name',
+		text :'Find',
+		handler : function() {
+			var sessionid = treecombo.getValue();
+			if (!sessionid)
+				return;
+			Ext.Msg.prompt('Find', 'Name:', function(btn, text) {
+				if (btn == 'ok' && text)
+					findObjects(tree, sessionid, text);
+			});
+		}
+	});
+	
 	var root = new Ext.tree.AsyncTreeNode(rootOptions);
 	var tree = new Ext.tree.TreePanel( {
 		border :false,
-		tbar : [synchro,{xtype: 'tbseparator'}, treecombo,{xtype: 'tbseparator'},newEditorBtn,newRelantionshipsBtn],
+		tbar : [synchro,{xtype: 'tbseparator'}, treecombo,{xtype: 'tbseparator'},newEditorBtn,newRelantionshipsBtn,filterBtn,findBtn],
 		title:"",//<img src='icons/database.png' style='vertical-align:bottom;height:16px;width:16px' />&nbsp;Database View",
 		animate :true,
 		enableDD :false,
@@ -2201,8 +2323,15 @@ function createTree() {
 		myTreeLoader.baseParams.dbid = treecombo.getValue();
 	}, this);
 
+	tree.on('click', function(node) {
+		if (node.attributes.more)
+			myTreeLoader.loadMore(node);
+	});
+
 	var menuTreeC = new Ext.menu.Menu();//Ext.id());
 	tree.on('contextmenu', function(node, e) {
+		if (node.attributes.more)
+			return;
 		menuTreeC.removeAll();
 		var tabKey = node.attributes.type + '-' + treecombo.getValue();
 		dynMenuArray
@@ -2232,6 +2361,83 @@ function createTree() {
 	return tree;
 } // end createTree
 
+function findObjects(tree, sessionid, text) {
+	new Ext.data.Connection().request( {
+		url :'do?action=findObjects',
+		method :'post',
+		params : {
+			sessionid :sessionid,
+			q :text
+		},
+		callback : function(options, bSuccess, response) {
+			var object = bSuccess ? Ext.decode(response.responseText) : null;
+			if (object == null || !object.success) {
+				Ext.MessageBox.show( {
+					title :'Error',
+					msg :object != null ? object.error : 'Search failed',
+					buttons :Ext.MessageBox.OK,
+					icon :Ext.MessageBox.ERROR
+				});
+				return;
+			}
+			var store = new Ext.data.JsonStore( {
+				data :object.result.items,
+				fields : [ 'name', 'kind', 'type', 'schema', 'table', 'id', 'path' ]
+			});
+			var grid = new Ext.grid.GridPanel( {
+				store :store,
+				border :false,
+				columns : [ {header :'Name', dataIndex :'name', width :180, renderer :defaultRenderer},
+						{header :'Type', dataIndex :'type', width :90, renderer :defaultRenderer},
+						{header :'Schema', dataIndex :'schema', width :110, renderer :defaultRenderer},
+						{header :'Table', dataIndex :'table', width :130, renderer :defaultRenderer} ]
+			});
+			var win = new Ext.Window( {
+				title :'Find: ' + Ext.util.Format.htmlEncode(text),
+				width :540,
+				height :320,
+				layout :'fit',
+				items :grid
+			});
+			grid.on('rowdblclick', function(g, rowIndex) {
+				var rec = store.getAt(rowIndex);
+				if (rec.get('path')) {
+					win.close();
+					selectTreePath(tree, rec.get('path'), rec.get('table') || rec.get('name'));
+				}
+			});
+			win.show();
+		}
+	});
+} // end findObjects
+
+// expands the tree down to the last node of path; a node not on the first
+// page of its parent is looked for again with the parent filtered on name
+function selectTreePath(tree, path, name) {
+	var i = 0;
+	var step = function(node) {
+		var child = node.findChild('id', path[i]);
+		if (child) {
+			i++;
+			if (i < path.length) {
+				child.expand(false, false, step);
+			} else {
+				child.ensureVisible();
+				child.select();
+			}
+			return;
+		}
+		if (node != tree.getRootNode() && node.attributes.filter != name) {
+			if (!node.attributes.unfilteredText)
+				node.attributes.unfilteredText = node.text;
+			node.attributes.filter = name;
+			node.setText(node.attributes.unfilteredText + ' [' + Ext.util.Format.htmlEncode(name) + ']');
+			node.reload(step);
+		}
+	};
+	tree.getRootNode().expand(false, false, step);
+} // end selectTreePath
+
 function refreshNode(node){
 	node.collapse(false, false);
 	while (node.firstChild) {
@@ -2542,6 +2748,7 @@ function createCustomizeImport(){
         var filename = '';
         var csvseparator = '';
         var fileencoding = '';
+        var csvheader = false;
 
         var importpage = new Ext.Panel({
             autoScroll :true,
@@ -2612,6 +2819,13 @@ function createCustomizeImport(){
                     })
 
                 },
+                {
+                    xtype:          'checkbox',
+                    name:           'csvheader',
+                    id:             'csvheader',
+                    fieldLabel:     'First Line Is A Header',
+                    checked:        true
+                },
                 uploadstep1],
             buttons: [{
                 text: 'Next...',
@@ -2625,6 +2839,7 @@ function createCustomizeImport(){
                                     filename = jsonobject.result.filename;
                                     csvseparator = Ext.getCmp("separator").getValue();
                                     fileencoding = Ext.getCmp("fileencoding").getValue();
+                                    csvheader = Ext.getCmp("csvheader").getValue();
 
                                     fileUploadPanel1.hide();
                                     fileUploadPanel2.show();
@@ -2804,17 +3019,57 @@ function createCustomizeImport(){
             title: 'Import Step 2',
             bodyStyle: 'padding: 10px 10px 0 10px;',
             labelWidth: 150,
-            items: [connectionCombo,databaseCombo,tableCombo,columnSelector],
+            items: [connectionCombo,databaseCombo,tableCombo,columnSelector,
+                {
+                    xtype:          'numberfield',
+                    id:             'importBatchSize',
+                    fieldLabel:     'Rows Per Batch',
+                    emptyText:      'Server default',
+                    allowDecimals:  false,
+                    allowNegative:  false
+                },
+                {
+                    xtype:          'numberfield',
+                    id:             'importCommitInterval',
+                    fieldLabel:     'Rows Per Commit',
+                    emptyText:      'Server default',
+                    allowDecimals:  false,
+                    allowNegative:  false
+                }],
             buttons: [{
                 text: 'Finish',
                 handler: function(){
                     if(fileUploadPanel2.getForm().isValid()){
-                            fileUploadPanel2.getForm().submit({
-                                url: 'do?action=import',
-                                waitMsg: 'Importing...',
-                                success: function(result, request){
-                                   
-                                    alert("Success"+csvseparator+fileencoding);
+                            var params = {
+                                id: connectionCombo.getValue(),
+                                catalogName: databaseCombo.getValue(),
+                                tableName: tableCombo.getValue(),
+                                columns: Ext.getCmp("columnSelector").getValue(),
+                                filename: filename,
+                                separator: csvseparator,
+                                fileencoding: fileencoding,
+                                header: csvheader
+                            };
+                            var batchSize = Ext.getCmp("importBatchSize").getValue();
+                            if (batchSize !== '') {
+                                params.batchSize = batchSize;
+                            }
+                            var commitInterval = Ext.getCmp("importCommitInterval").getValue();
+                            if (commitInterval !== '') {
+                                params.commitInterval = commitInterval;
+                            }
+                            Ext.Ajax.request({
+                                url: 'do?action=importCSV',
+                                method: 'POST',
+                                params: params,
+                                failure: requestFailed,
+                                success: function(response, options){
+                                    var object = Ext.util.JSON.decode(response.responseText);
+                                    if (!object.success) {
+                                        Ext.MessageBox.alert('Import', object.error);
+                                    } else {
+                                        pollImport(object.result.job);
+                                    }
                                 }
                             });
                     }
@@ -2833,6 +3088,70 @@ function createCustomizeImport(){
 	tabFolder.setActiveTab(importpage);
 }
 
+// follows a CSV import until it ends, showing the part of the file read
+function pollImport(job) {
+	Ext.MessageBox.show( {
+		title :'Import',
+		msg :'Importing...',
+		progress :true,
+		width :400,
+		buttons :Ext.MessageBox.CANCEL,
+		fn :function(btn) {
+			if (btn == 'cancel') {
+				new Ext.data.Connection().request( {
+					url :'do?action=cancelQuery',
+					method :'post',
+					params : {
+						job :job
+					}
+				});
+			}
+		}
+	});
+	updateImportStatus(job);
+}
+
+function updateImportStatus(job) {
+	new Ext.data.Connection().request( {
+		url :'do?action=importStatus',
+		method :'post',
+		params : {
+			job :job
+		},
+		failure :requestFailed,
+		success :function(response, options) {
+			var object = Ext.util.JSON.decode(response.responseText);
+			if (!object.success) {
+				Ext.MessageBox.alert('Import', object.error);
+				return;
+			}
+			var r = object.result;
+			if (!r.finished) {
+				Ext.MessageBox.updateProgress(r.progress, Math.round(r.progress * 100) + '%',
+						r.read + ' rows read, ' + r.inserted + ' inserted, ' + r.rejected + ' rejected');
+				updateImportStatus.defer(1000, this, [job]);
+				return;
+			}
+			var msg = 'Import ' + r.status + ': ' + r.committed + ' rows committed, ' + r.rejected + ' rejected.';
+			if (r.error) {
+				msg += '<br/>' + Ext.util.Format.htmlEncode(r.error);
+			}
+			for (var i = 0; i < r.messages.length && i < 10; i++) {
+				msg += '<br/>' + Ext.util.Format.htmlEncode(r.messages[i]);
+			}
+			if (r.rejected > 0) {
+				msg += '<br/><a href="do?action=importRejects&job=' + job + '" target="_blank">Download the rejected rows</a>';
+			}
+			Ext.MessageBox.show( {
+				title :'Import',
+				msg :msg,
+				width :500,
+				buttons :Ext.MessageBox.OK
+			});
+		}
+	});
+}
+
 function createExportTablePage(node){
 	createTabPage("do?action=exportTablePage&id="+node.id,"icons/cd_edit.png","Export Table "+node.attributes.qname);
 }
@@ -2858,6 +3177,24 @@ function createTabPage(_url,_icon,_title){
 	tabFolder.setActiveTab(page);
 	page.load({showLoadIndicator:false,nocache:true, url: _url+"&pageid="+page.id, scripts:true});
 }
+// runs the query of a result again on the server and downloads all its rows
+function exportQueryResult(queryID, format) {
+	if (!Ext.fly('frmExportDummy')) {
+		var frm = document.createElement('form');
+		frm.id = 'frmExportDummy';
+		frm.className = 'x-hidden';
+		frm.target = '_blank';
+		document.body.appendChild(frm);
+	}
+	Ext.Ajax.request( {
+		// the parameters of an upload are not read by page actions
+		url :'do?action=exportQuery&queryID=' + encodeURIComponent(queryID) + '&format=' + format,
+		method :'POST',
+		form :Ext.fly('frmExportDummy'),
+		isUpload :true
+	});
+}
+
 function createTableGrid(queryID, meta, myData) {
 	rta = [];
 	rta.push(new Ext.grid.RowNumberer());
@@ -3201,66 +3538,45 @@ function RelViewer() {
 
 					return true;
 				}
-				//else if (data.node.attributes["type"]=="tbs"){
-//					reverseTables(this.relViewer,data.node.attributes["id"],workflow);
-//					this.relViewer.getEl().mask("Reverse Engineering. Please, wait...", 'x-mask-loading');
-//	                
-//					new Ext.data.Connection().request( {
-//						url :'do?action=reverseEngineering&id=' + data.node.attributes["id"],
-//						method :'post',
-//						scope :this,
-//						callback : function(options, bSuccess,
-//								response) {
-//							var object = Ext
-//									.decode(response.responseText);
-//							this.relViewer.getEl().unmask();
-//							var arr = object.result.tables;
-//							for ( var i = 0; i < arr.length; i++) {
-//								var tableFigure = new TableFigure(
-//										arr[i].name);
-//								workflow.addFigure(tableFigure, arr[i].x, arr[i].y);
-//								tableFigure.addColumns(arr[i].columns)
-//								tableFigure.collapse();
-//							}
-//							var connections=object.result.connections;
-//							workflow.loadConnections(connections);
-//							
-//						}
-//					//});
-					//return true;
-				//}
+				else if (data.node.attributes["type"] == 'tbs') {
+					reverseTables(this.relViewer, data.node.attributes["id"], this._workflow);
+					return true;
+				}
 				return false;
 			}
 		}
 	);
-//	function reverseTables(relViewer,nodeid,workflow){
-//		relViewer.getEl().mask("Reverse Engineering. Please, wait...", 'x-mask-loading');
-//        
-//		new Ext.data.Connection().request( {
-//			url :'do?action=reverseEngineering&id=' + nodeid,
-//			method :'post',
-//			//scope :this,
-//			relViewer:relViewer,
-//			workflow:workflow,
-//			callback : function(options, bSuccess,
-//					response) {
-//				var object = Ext
-//						.decode(response.responseText);
-//				relViewer.getEl().unmask();
-//				var arr = object.result.tables;
-//				for ( var i = 0; i < arr.length; i++) {
-//					var tableFigure = new TableFigure(
-//							arr[i].name);
-//					workflow.addFigure(tableFigure, arr[i].x, arr[i].y);
-//					tableFigure.addColumns(arr[i].columns)
-//					tableFigure.collapse();
-//				}
-//				var connections=object.result.connections;
-//				workflow.loadConnections(connections);
-//				
-//			}
-//		});
-//	}
+	function reverseTables(relViewer, nodeid, workflow) {
+		relViewer.getEl().mask("Reverse Engineering. Please, wait...", 'x-mask-loading');
+
+		new Ext.data.Connection().request( {
+			url :'do?action=reverseEngineering&id=' + nodeid,
+			method :'post',
+			callback : function(options, bSuccess,
+					response) {
+				relViewer.getEl().unmask();
+				var object = bSuccess ? Ext.decode(response.responseText) : null;
+				if (object == null || !object.success) {
+					Ext.MessageBox.show( {
+						title :'Error',
+						msg :object != null ? object.error : 'Reverse engineering failed',
+						buttons :Ext.MessageBox.OK,
+						icon :Ext.MessageBox.ERROR
+					});
+					return;
+				}
+				var arr = object.result.tables;
+				for ( var i = 0; i < arr.length; i++) {
+					var tableFigure = new TableFigure(
+							arr[i].name);
+					workflow.addFigure(tableFigure, arr[i].x, arr[i].y);
+					tableFigure.addColumns(arr[i].columns);
+					tableFigure.collapse();
+				}
+				workflow.loadConnections(object.result.connections);
+			}
+		});
+	}
 	//workflow.scrollArea = document.getElementById(relViewer.id).parentNode;
 //	relViewer.reverseTables=function(nodeid){
 //		reverseTables(this,nodeid,this.workflow);
@@ -3362,6 +3678,11 @@ function openConnectionDialog(alias) {
 		name :'autocommit',
 		checked :false,
 		value :'1'
+	}), new Ext.form.Checkbox( {
+		fieldLabel :'Limit rows in SQL',
+		name :'limitrows',
+		checked :false,
+		value :'1'
 	}));
 
 	dialogConnection.show();
@@ -3370,6 +3691,8 @@ function openConnectionDialog(alias) {
 
 function nodeSelection(a, newnode, c) {
 
+	if (newnode.attributes.more)
+		return false;
 	if (synchro.pressed == false)
 		return;
 	if (newnode == c)
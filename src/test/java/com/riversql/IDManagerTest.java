@@ -0,0 +1,84 @@
+package com.riversql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IDManagerTest {
+
+    private IDManager idmanager;
+
+    @Before
+    public void setUp() {
+        IDManager.configure(100, IDManager.DEFAULT_IDLE_TIMEOUT);
+        idmanager = new IDManager();
+    }
+
+    @After
+    public void tearDown() {
+        IDManager.configure(IDManager.DEFAULT_MAX_SIZE, IDManager.DEFAULT_IDLE_TIMEOUT);
+    }
+
+    @Test
+    public void leastRecentlyUsedObjectsAreEvicted() {
+        for (int i = 0; i < 100; i++) {
+            idmanager.put("o" + i, new Object());
+        }
+        idmanager.get("o0");
+        idmanager.put("o100", new Object());
+        assertEquals(90, idmanager.size());
+        assertNotNull(idmanager.get("o0"));
+        assertNull(idmanager.get("o1"));
+        assertNotNull(idmanager.get("o100"));
+    }
+
+    @Test
+    public void pinnedObjectsAreNeitherEvictedNorCounted() {
+        for (int i = 0; i < 500; i++) {
+            idmanager.putPinned("node" + i, new Object());
+        }
+        for (int i = 0; i < 100; i++) {
+            idmanager.put("o" + i, new Object());
+        }
+        assertEquals(600, idmanager.size());
+        idmanager.put("o100", new Object());
+        assertEquals(590, idmanager.size());
+        for (int i = 0; i < 500; i++) {
+            assertNotNull(idmanager.get("node" + i));
+        }
+    }
+
+    @Test
+    public void unpinnedObjectsCanBeEvicted() {
+        Closeable job = new Closeable();
+        idmanager.putPinned("job", job);
+        idmanager.unpin("job");
+        for (int i = 0; i < 100; i++) {
+            idmanager.put("o" + i, new Object());
+        }
+        assertNull(idmanager.get("job"));
+        assertTrue(job.closed);
+    }
+
+    @Test
+    public void unpinDoesNotBringBackAReleasedObject() {
+        idmanager.putPinned("job", new Object());
+        idmanager.release("job");
+        idmanager.unpin("job");
+        assertNull(idmanager.get("job"));
+        assertEquals(Long.valueOf(0), idmanager.getStatistics().get("_pinned"));
+    }
+
+    private static final class Closeable implements AutoCloseable {
+        boolean closed;
+
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.riversql.actions;
+
+import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.NameIndex;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AutocompleteTest {
+
+    private SQLConnection conn;
+    private NameIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        Statement st = conn.createStatement();
+        st.execute("CREATE SCHEMA SALES");
+        st.execute("CREATE TABLE SALES.ORDERS (ORDER_ID INT, CUSTOMER_ID INT)");
+        st.execute("CREATE TABLE SALES.CUSTOMERS (CUSTOMER_ID INT, NAME VARCHAR(20))");
+        st.close();
+        MetaDataCache cache = new MetaDataCache();
+        conn.setMetaDataCache(cache);
+        index = cache.getNameIndex();
+        ITableInfo[] tables = cache.getTables(conn.getSQLMetaData(), null, "SALES", "TABLE");
+        cache.prefetchColumns(conn.getSQLMetaData(), null, "SALES", tables);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void aliasStandsForItsTable() {
+        String sql = "SELECT FROM SALES.ORDERS o JOIN \"CUSTOMERS\" AS c ON c.CUSTOMER_ID = o.";
+        assertEquals(Arrays.asList("ORDER_ID column"), complete(sql, "o", "ord"));
+        assertEquals(Arrays.asList("CUSTOMER_ID column", "NAME column"), complete(sql, "C", ""));
+        assertEquals(Arrays.asList("CUSTOMER_ID column", "NAME column"), complete(sql, "\"c\"", ""));
+        // not an alias
+        assertEquals(Arrays.asList("CUSTOMER_ID column", "ORDER_ID column"), complete(sql, "orders", ""));
+    }
+
+    @Test
+    public void wordsAfterATableAreNotAliases() {
+        String sql = "SELECT * FROM ORDERS WHERE ";
+        assertEquals(Arrays.asList(), complete(sql, "where", ""));
+        assertEquals("ORDER_ID column", complete(sql, null, "o").get(0));
+    }
+
+    @Test
+    public void columnsOfTheStatementComeFirst() {
+        List<String> names = complete("SELECT  FROM CUSTOMERS, ORDERS", null, "n");
+        assertEquals("NAME column", names.get(0));
+        assertEquals("NOT keyword", names.get(1));
+        assertEquals(Arrays.asList("NAME column"), complete(null, "", "na"));
+    }
+
+    private List<String> complete(String sql, String qualifier, String prefix) {
+        List<String> names = new ArrayList<String>();
+        for (String[] name : Autocomplete.complete(index, sql, qualifier, prefix, 50)) {
+            names.add(name[0] + " " + name[1]);
+        }
+        return names;
+    }
+}
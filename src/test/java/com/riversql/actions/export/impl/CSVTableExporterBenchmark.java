@@ -0,0 +1,119 @@
+package com.riversql.actions.export.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports rows of mixed types as CSV, once streamed to the output as
+ * <TT>DoExport</TT> does and once kept until <TT>copyTo()</TT>, to an output
+ * discarding what it is given. The score is in rows per second; run with
+ * the GC profiler, as <TT>main()</TT> does, <TT>gc.alloc.rate.norm</TT> is
+ * the bytes allocated per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSVTableExporterBenchmark {
+
+    private static final int ROWS = 100000;
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private Connection conn;
+    private ResultSet rs;
+    private ResultSetMetaData metadata;
+    private Object[][] rows;
+
+    @Setup(Level.Trial)
+    public void createRows() throws SQLException {
+        // the metadata of an open result set, for configure()
+        conn = DriverManager.getConnection("jdbc:h2:mem:csvexport");
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE MIXED (ID INT, NAME VARCHAR(64), AMOUNT DECIMAL(12,2), CREATED TIMESTAMP, "
+                + "TOTAL BIGINT)");
+        rs = st.executeQuery("SELECT * FROM MIXED");
+        metadata = rs.getMetaData();
+        rows = new Object[ROWS][];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[]{i, i % 10 == 0 ? null : "name " + i, BigDecimal.valueOf(i, 2),
+                    new Timestamp(now + i * 1000L), (long) i * i};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        rs.close();
+        conn.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void streamed() throws IOException {
+        CSVTableExporter exporter = new CSVTableExporter("MIXED");
+        exporter.open(DISCARD);
+        export(exporter);
+        exporter.flush();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void buffered() {
+        CSVTableExporter exporter = new CSVTableExporter("MIXED");
+        export(exporter);
+        exporter.copyTo(DISCARD);
+    }
+
+    private void export(CSVTableExporter exporter) {
+        exporter.configure(metadata);
+        for (Object[] row : rows) {
+            exporter.newLine();
+            for (Object value : row) {
+                exporter.newCell(value);
+            }
+        }
+        exporter.finish();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CSVTableExporterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
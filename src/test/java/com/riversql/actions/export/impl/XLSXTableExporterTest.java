@@ -0,0 +1,200 @@
+package com.riversql.actions.export.impl;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads the workbooks back with the DOM parser of the JDK, POI 3.5 having
+ * no reader of .xlsx files.
+ */
+public class XLSXTableExporterTest {
+
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    @Test
+    public void valuesAreWrittenAsCells() throws Exception {
+        XLSXTableExporter exporter = new XLSXTableExporter(new JSONArray("[{\"l\":\"ID\"},{\"l\":\"A<&\\\"B\"},"
+                + "{\"l\":\"WHEN\"},{\"l\":\"OK\"}]"));
+        exporter.newLine();
+        exporter.newCell(1);
+        exporter.newCell("x < y & \"z\"");
+        exporter.newCell(Date.valueOf("2024-01-15"));
+        exporter.newCell(Boolean.TRUE);
+        exporter.newLine();
+        exporter.newCell(new BigDecimal("1E+3"));
+        exporter.newCell("a\u0001b\u001Fc\td");
+        exporter.newCell(Timestamp.valueOf("2024-01-15 12:00:00"));
+        exporter.newCell(null);
+        exporter.newLine();
+        exporter.newCell(Double.NaN);
+        exporter.newCell(" padded ");
+        exporter.newCell(Time.valueOf("06:00:00"));
+        exporter.newCell(Boolean.FALSE);
+        Map<String, byte[]> parts = export(exporter);
+
+        assertEquals(1, sheets(parts));
+        List<List<String>> rows = rows(parts, 1);
+        assertEquals(Arrays.asList("ID", "A<&\"B", "WHEN", "OK"), rows.get(0));
+        assertEquals(Arrays.asList("1", "x < y & \"z\"", "45306.0", "1"), rows.get(1));
+        // the control characters XML does not allow are dropped
+        assertEquals(Arrays.asList("1000", "abc\td", "45306.5", null), rows.get(2));
+        assertEquals(Arrays.asList("NaN", " padded ", "0.25", "0"), rows.get(3));
+
+        List<Element> cells = cells(parts, 1);
+        assertEquals("4", cells.get(0).getAttribute("s"));
+        assertEquals("inlineStr", cells.get(5).getAttribute("t"));
+        assertEquals("1", cells.get(6).getAttribute("s"));
+        assertEquals("b", cells.get(7).getAttribute("t"));
+        assertEquals("2", cells.get(10).getAttribute("s"));
+        assertEquals("3", cells.get(14).getAttribute("s"));
+        assertEquals("inlineStr", cells.get(12).getAttribute("t"));
+    }
+
+    @Test
+    public void fullSheetIsFollowedByAnotherWithTheHeader() throws Exception {
+        XLSXTableExporter exporter = new XLSXTableExporter(new JSONArray("[{\"l\":\"N\"}]"));
+        exporter.setMaxRows(3);
+        for (int i = 1; i <= 5; i++) {
+            exporter.newLine();
+            exporter.newCell(i);
+        }
+        Map<String, byte[]> parts = export(exporter);
+
+        assertEquals(3, sheets(parts));
+        assertEquals(rows("N", "1", "2"), rows(parts, 1));
+        assertEquals(rows("N", "3", "4"), rows(parts, 2));
+        assertEquals(rows("N", "5"), rows(parts, 3));
+        NodeList sheets = parse(parts, "xl/workbook.xml").getElementsByTagNameNS(MAIN_NS, "sheet");
+        assertEquals("export", ((Element) sheets.item(0)).getAttribute("name"));
+        assertEquals("export 3", ((Element) sheets.item(2)).getAttribute("name"));
+        NodeList rows = parse(parts, "xl/worksheets/sheet2.xml").getElementsByTagNameNS(MAIN_NS, "row");
+        assertEquals("3", ((Element) rows.item(2)).getAttribute("r"));
+    }
+
+    @Test
+    public void headerAloneWithoutRows() throws Exception {
+        XLSXTableExporter exporter = new XLSXTableExporter(new JSONArray("[{\"l\":\"N\"}]"));
+        Map<String, byte[]> parts = export(exporter);
+        assertEquals(1, sheets(parts));
+        assertEquals(rows("N"), rows(parts, 1));
+    }
+
+    private static Map<String, byte[]> export(XLSXTableExporter exporter) throws Exception {
+        exporter.finish();
+        exporter.flush();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.copyTo(out);
+        assertEquals(out.size(), exporter.getContentSize());
+        Map<String, byte[]> parts = new HashMap<String, byte[]>();
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            ByteArrayOutputStream part = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = zip.read(buffer)) > 0) {
+                part.write(buffer, 0, n);
+            }
+            parts.put(entry.getName(), part.toByteArray());
+        }
+        return parts;
+    }
+
+    /**
+     * @return the sheets, which the content types, the workbook and its
+     * relationships must all list.
+     */
+    private static int sheets(Map<String, byte[]> parts) throws Exception {
+        NodeList overrides = parse(parts, "[Content_Types].xml").getElementsByTagName("Override");
+        int sheets = 0;
+        for (int i = 0; i < overrides.getLength(); i++) {
+            String name = ((Element) overrides.item(i)).getAttribute("PartName");
+            assertTrue(name, parts.containsKey(name.substring(1)));
+            if (name.startsWith("/xl/worksheets/")) {
+                sheets++;
+            }
+        }
+        assertEquals(sheets, parse(parts, "xl/workbook.xml").getElementsByTagNameNS(MAIN_NS, "sheet").getLength());
+        assertEquals(sheets + 1, parse(parts, "xl/_rels/workbook.xml.rels")
+                .getElementsByTagName("Relationship").getLength());
+        parse(parts, "_rels/.rels");
+        parse(parts, "xl/styles.xml");
+        return sheets;
+    }
+
+    private static List<List<String>> rows(String... values) {
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (String value : values) {
+            rows.add(Arrays.asList(value));
+        }
+        return rows;
+    }
+
+    /**
+     * @return the values of the cells of each row, <TT>null</TT> for an
+     * empty cell.
+     */
+    private static List<List<String>> rows(Map<String, byte[]> parts, int sheet) throws Exception {
+        NodeList rows = parse(parts, "xl/worksheets/sheet" + sheet + ".xml").getElementsByTagNameNS(MAIN_NS, "row");
+        List<List<String>> values = new ArrayList<List<String>>();
+        for (int i = 0; i < rows.getLength(); i++) {
+            Element row = (Element) rows.item(i);
+            assertEquals(Integer.toString(i + 1), row.getAttribute("r"));
+            List<String> cells = new ArrayList<String>();
+            NodeList cs = row.getElementsByTagNameNS(MAIN_NS, "c");
+            for (int j = 0; j < cs.getLength(); j++) {
+                cells.add(value((Element) cs.item(j)));
+            }
+            values.add(cells);
+        }
+        return values;
+    }
+
+    private static List<Element> cells(Map<String, byte[]> parts, int sheet) throws Exception {
+        NodeList cs = parse(parts, "xl/worksheets/sheet" + sheet + ".xml").getElementsByTagNameNS(MAIN_NS, "c");
+        List<Element> cells = new ArrayList<Element>();
+        for (int i = 0; i < cs.getLength(); i++) {
+            cells.add((Element) cs.item(i));
+        }
+        return cells;
+    }
+
+    private static String value(Element cell) {
+        NodeList nodes = cell.getElementsByTagNameNS(MAIN_NS, "inlineStr".equals(cell.getAttribute("t")) ? "t" : "v");
+        if (nodes.getLength() == 0) {
+            assertNull(cell.getFirstChild());
+            return null;
+        }
+        return nodes.item(0).getTextContent();
+    }
+
+    private static Document parse(Map<String, byte[]> parts, String name) throws Exception {
+        byte[] part = parts.get(name);
+        assertTrue(name, part != null);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(part));
+    }
+}
@@ -0,0 +1,317 @@
+package com.riversql.actions.imports;
+
+import com.riversql.IDManager;
+import com.riversql.dbtree.TableNode;
+import com.riversql.dbtree.TablesNode;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ConnectionPools;
+import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CSVImportTest {
+
+    private static final String URL = "jdbc:h2:mem:csvimport;DB_CLOSE_DELAY=-1";
+    private static final String CSV = "ID,NAME,AMOUNT\r\n"
+            + "1,a,1.5\r\n"
+            + "2,b,x\r\n"
+            + "1,c,2\r\n"
+            + "3,\"d,e\",3\r\n"
+            + "4,,\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection keepAlive;
+    private SQLDriver driver;
+    private File file;
+    private File rejectedFile;
+
+    @Before
+    public void setUp() throws Exception {
+        IDManager.set(new IDManager() {
+        });
+        keepAlive = DriverManager.getConnection(URL, "sa", "");
+        Statement st = keepAlive.createStatement();
+        st.execute("CREATE TABLE T (ID INT PRIMARY KEY, NAME VARCHAR(10), AMOUNT DECIMAL(10, 2))");
+        st.close();
+        driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        file = folder.newFile("upload.csv");
+        Files.write(file.toPath(), CSV.getBytes(StandardCharsets.UTF_8));
+        rejectedFile = new File(folder.getRoot(), "upload.rejected.csv");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ConnectionPools.shutdown();
+        keepAlive.createStatement().execute("DROP ALL OBJECTS");
+        keepAlive.close();
+    }
+
+    @Test
+    public void badRecordsAreRejectedAndTheUploadDeleted() throws Exception {
+        ConnectionPool pool = ConnectionPools.getPool(1, "org.h2.Driver", URL, "sa", "");
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, pool);
+        try {
+            CSVImport job = newImport(conn);
+            job.run();
+            assertEquals(CSVImport.DONE, job.getStatus());
+            assertEquals(5, job.getRowsRead());
+            assertEquals(3, job.getInserted());
+            assertEquals(3, job.getCommitted());
+            assertEquals(2, job.getRejected());
+            assertEquals(2, job.getMessages().size());
+            assertTrue(job.getMessages().get(0).startsWith("Line 3: field 3"));
+            assertTrue(job.getMessages().get(1).startsWith("Line 4: "));
+            assertEquals(3, count("SELECT COUNT(*) FROM T"));
+            assertEquals(1, count("SELECT COUNT(*) FROM T WHERE NAME = 'd,e'"));
+            assertEquals(1, count("SELECT COUNT(*) FROM T WHERE ID = 4 AND NAME IS NULL AND AMOUNT IS NULL"));
+
+            assertFalse(file.exists());
+            assertEquals("ID,NAME,AMOUNT\r\n2,b,x\r\n1,c,2\r\n",
+                    new String(Files.readAllBytes(rejectedFile.toPath()), StandardCharsets.UTF_8));
+            job.close();
+            assertFalse(rejectedFile.exists());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void importCommitsNothingOfThePooledSession() throws Exception {
+        ConnectionPool pool = ConnectionPools.getPool(1, "org.h2.Driver", URL, "sa", "");
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, pool);
+        try {
+            assertImportLeavesTheSessionAlone(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void importCommitsNothingOfTheSessionWithoutPool() throws Exception {
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver);
+        try {
+            assertImportLeavesTheSessionAlone(conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void releasingTheImportDeletesTheRejectedRecords() throws Exception {
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver);
+        try {
+            CSVImport job = newImport(conn);
+            job.run();
+            assertTrue(rejectedFile.isFile());
+            assertEquals(job, IDManager.get().get(job.getId()));
+            IDManager.get().release(job.getId());
+            assertNull(IDManager.get().get(job.getId()));
+            assertFalse(rejectedFile.exists());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void uploadOfAnImportCancelledBeforeStartingIsDeleted() throws Exception {
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver);
+        try {
+            CSVImport job = newImport(conn);
+            job.cancel();
+            assertEquals(CSVImport.CANCELLED, job.getStatus());
+            job.run();
+            assertFalse(file.exists());
+            assertFalse(rejectedFile.exists());
+            assertEquals(0, count("SELECT COUNT(*) FROM T"));
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void batchIsRejectedWhenTheDriverDoesNotTellWhichRowsFailed() throws Exception {
+        Files.write(file.toPath(), ("ID,NAME,AMOUNT\r\n1,a,1\r\n2,b,2\r\n1,c,3\r\n4,d,4\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        ConnectionPool pool = ConnectionPools.getPool(1, NoSavepointDriver.class.getName(),
+                NoSavepointDriver.PREFIX + URL.substring("jdbc:h2:".length()), "sa", "");
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, pool);
+        try {
+            CSVImport job = newImport(conn);
+            job.run();
+            assertEquals(CSVImport.DONE, job.getStatus());
+            // the batch holding the duplicate is not inserted again row by row
+            assertEquals(2, job.getInserted());
+            assertEquals(2, job.getRejected());
+            assertTrue(job.getMessages().get(0).startsWith("Line 4: in a batch which failed"));
+            assertEquals("ID,NAME,AMOUNT\r\n1,c,3\r\n4,d,4\r\n",
+                    new String(Files.readAllBytes(rejectedFile.toPath()), StandardCharsets.UTF_8));
+            job.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Leaves a row uncommitted in the session while importing: rolling the
+     * session back afterwards must only undo that row.
+     */
+    private void assertImportLeavesTheSessionAlone(SQLConnection conn) throws Exception {
+        conn.setAutoCommit(false);
+        Statement st = conn.createStatement();
+        st.execute("INSERT INTO T (ID, NAME) VALUES (100, 'session')");
+        st.close();
+        CSVImport job = newImport(conn);
+        job.run();
+        assertEquals(CSVImport.DONE, job.getStatus());
+        assertEquals(3, job.getCommitted());
+        assertFalse(conn.getAutoCommit());
+        conn.rollback();
+        assertEquals(3, count("SELECT COUNT(*) FROM T"));
+        assertEquals(0, count("SELECT COUNT(*) FROM T WHERE ID = 100"));
+        job.close();
+    }
+
+    private CSVImport newImport(SQLConnection conn) throws Exception {
+        conn.setMetaDataCache(new MetaDataCache());
+        TablesNode tables = new TablesNode(null, "TABLE", conn);
+        ITableInfo[] infos = conn.getMetaDataCache().getTables(conn.getSQLMetaData(), null, "PUBLIC", "TABLE");
+        TableNode table = tables.getTableNode(infos[0]);
+        CSVImport job = new CSVImport(conn, table, file, rejectedFile, StandardCharsets.UTF_8, ',', true,
+                Collections.<String>emptyList());
+        job.setBatchSize(2);
+        job.setCommitInterval(2);
+        return job;
+    }
+
+    /**
+     * Opens H2 connections without savepoints, whose failed batches do not
+     * tell what became of their rows, as some drivers do.
+     */
+    public static class NoSavepointDriver implements Driver {
+
+        static final String PREFIX = "jdbc:nosavepoint:";
+
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            final Connection conn = DriverManager.getConnection("jdbc:h2:" + url.substring(PREFIX.length()), info);
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                    new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = invokeOn(conn, method, args);
+                            if (method.getName().equals("getMetaData")) {
+                                return withoutSavepoints((DatabaseMetaData) result);
+                            } else if (method.getName().equals("prepareStatement")) {
+                                return withoutUpdateCounts((PreparedStatement) result);
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        private static DatabaseMetaData withoutSavepoints(final DatabaseMetaData md) {
+            return (DatabaseMetaData) Proxy.newProxyInstance(NoSavepointDriver.class.getClassLoader(),
+                    new Class[]{DatabaseMetaData.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("supportsSavepoints")) {
+                                return false;
+                            }
+                            return invokeOn(md, method, args);
+                        }
+                    });
+        }
+
+        private static PreparedStatement withoutUpdateCounts(final PreparedStatement ps) {
+            return (PreparedStatement) Proxy.newProxyInstance(NoSavepointDriver.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            try {
+                                return invokeOn(ps, method, args);
+                            } catch (BatchUpdateException e) {
+                                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(),
+                                        new int[0], e);
+                            }
+                        }
+                    });
+        }
+
+        private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        public boolean acceptsURL(String url) {
+            return url.startsWith(PREFIX);
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+
+    private int count(String sql) throws Exception {
+        Statement st = keepAlive.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(sql);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            st.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.riversql.actions.imports;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CSVReaderTest {
+
+    @Test
+    public void quotedFieldsHoldSeparatorsQuotesAndLineBreaks() throws IOException {
+        List<String[]> records = readAll("a,\"b,c\",\"say \"\"hi\"\"\"\r\n\"two\r\nlines\",x,y\r\n", ',');
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"a", "b,c", "say \"hi\""}, records.get(0));
+        assertArrayEquals(new String[]{"two\r\nlines", "x", "y"}, records.get(1));
+    }
+
+    @Test
+    public void emptyFieldsAreNullUnlessQuoted() throws IOException {
+        List<String[]> records = readAll(";\"\";x;", ';');
+        assertEquals(1, records.size());
+        assertArrayEquals(new String[]{null, "", "x", null}, records.get(0));
+    }
+
+    @Test
+    public void byteOrderMarkAndBlankLinesAreSkipped() throws IOException {
+        List<String[]> records = readAll("\uFEFFid\tname\n\n\r\n1\tx\r\r2\ty", '\t');
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[]{"id", "name"}, records.get(0));
+        assertArrayEquals(new String[]{"1", "x"}, records.get(1));
+        assertArrayEquals(new String[]{"2", "y"}, records.get(2));
+    }
+
+    @Test
+    public void recordLinesCountTheBreaksInsideQuotes() throws IOException {
+        CSVReader reader = new CSVReader(new StringReader("a\r\n\"b\nc\nd\"\r\n\r\ne\n"), ',');
+        reader.readRecord();
+        assertEquals(1, reader.getRecordLine());
+        reader.readRecord();
+        assertEquals(2, reader.getRecordLine());
+        reader.readRecord();
+        assertEquals(6, reader.getRecordLine());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void recordsSpanTheBuffer() throws IOException {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String big = new String(chars);
+        List<String[]> records = readAll("1,\"" + big + "\"\r\n2," + big + "\r\n", ',');
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"1", big}, records.get(0));
+        assertArrayEquals(new String[]{"2", big}, records.get(1));
+    }
+
+    private static List<String[]> readAll(String csv, char separator) throws IOException {
+        CSVReader reader = new CSVReader(new StringReader(csv), separator);
+        List<String[]> records = new ArrayList<String[]>();
+        String[] record;
+        while ((record = reader.readRecord()) != null) {
+            records.add(record);
+        }
+        reader.close();
+        return records;
+    }
+}
@@ -0,0 +1,327 @@
+package com.riversql.databases;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the statements of the catalog queries shipped for databases which
+ * are not at hand: they are prepared on a connection which only records
+ * them, and checked for their syntax, their parameters, and the columns
+ * they return against the ones of <TT>DatabaseMetaData</TT>.
+ */
+public class CatalogQueriesStatementsTest {
+
+    private static final List<String> TABLES = Arrays.asList("TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME",
+            "TABLE_TYPE", "REMARKS");
+    private static final List<String> COLUMNS = Arrays.asList("TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME",
+            "COLUMN_NAME", "DATA_TYPE", "TYPE_NAME", "COLUMN_SIZE", "BUFFER_LENGTH", "DECIMAL_DIGITS",
+            "NUM_PREC_RADIX", "NULLABLE", "REMARKS", "COLUMN_DEF", "SQL_DATA_TYPE", "SQL_DATETIME_SUB",
+            "CHAR_OCTET_LENGTH", "ORDINAL_POSITION", "IS_NULLABLE");
+    private static final List<String> PRIMARY_KEYS = Arrays.asList("TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME",
+            "COLUMN_NAME", "KEY_SEQ", "PK_NAME");
+    private static final List<String> IMPORTED_KEYS = Arrays.asList("PKTABLE_CAT", "PKTABLE_SCHEM",
+            "PKTABLE_NAME", "PKCOLUMN_NAME", "FKTABLE_CAT", "FKTABLE_SCHEM", "FKTABLE_NAME", "FKCOLUMN_NAME",
+            "KEY_SEQ", "UPDATE_RULE", "DELETE_RULE", "FK_NAME", "PK_NAME", "DEFERRABILITY");
+    private static final List<String> INDEXES = Arrays.asList("TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME",
+            "NON_UNIQUE", "INDEX_QUALIFIER", "INDEX_NAME", "TYPE", "ORDINAL_POSITION", "COLUMN_NAME",
+            "ASC_OR_DESC", "CARDINALITY", "PAGES", "FILTER_CONDITION");
+    private static final List<String> OBJECTS = Arrays.asList("OBJECT_CAT", "OBJECT_SCHEM", "OBJECT_NAME",
+            "OBJECT_TYPE");
+
+    private final List<Prepared> prepared = new ArrayList<Prepared>();
+    private Connection conn;
+
+    @Before
+    public void setUp() {
+        conn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareStatement")) {
+                            Prepared ps = new Prepared((String) args[0]);
+                            prepared.add(ps);
+                            return ps.proxy();
+                        } else if (method.getName().equals("getAutoCommit")) {
+                            return true;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    @Test
+    public void postgreSQLStatements() throws Exception {
+        checkStatements(new PostgreSQLCatalogQueries());
+    }
+
+    @Test
+    public void mySQLStatements() throws Exception {
+        checkStatements(new MySQLCatalogQueries());
+    }
+
+    @Test
+    public void oracleStatements() throws Exception {
+        checkStatements(new OracleCatalogQueries());
+    }
+
+    @Test
+    public void checksFindMistakes() {
+        assertWrong("SELECT a AS TABLE_CAT, (b AS TABLE_SCHEM FROM t", TABLES.subList(0, 2));
+        assertWrong("SELECT 'a AS TABLE_CAT FROM t", TABLES.subList(0, 1));
+        assertWrong("SELECT CASE a WHEN 1 THEN 2 AS TABLE_CAT FROM t", TABLES.subList(0, 1));
+        assertWrong("SELECT a AS TABLE_SCHEM, b AS TABLE_CAT FROM t", TABLES.subList(0, 2));
+        assertWrong("SELECT a AS TABLE_CAT, b + 1 FROM t", TABLES.subList(0, 2));
+        assertWrong("SELECT a AS TABLE_CAT FROM t WHERE b = ? AND c = ?", TABLES.subList(0, 1), 1);
+        new Prepared("SELECT * FROM (SELECT t.a AS TABLE_CAT, \"b\" TABLE_SCHEM,"
+                + " CASE WHEN x::int > 0 THEN 'y' END AS TABLE_NAME FROM t WHERE c[k.n] = ?) q", 1)
+                .check(TABLES.subList(0, 3));
+    }
+
+    private void checkStatements(CatalogQueries queries) throws SQLException {
+        for (String catalog : new String[]{null, "C"}) {
+            check(queries.getTables(conn, catalog, "S%", "T%", new String[]{"TABLE", "VIEW"}), TABLES);
+            check(queries.getTables(conn, catalog, null, null, new String[]{"TABLE"}), TABLES);
+            check(queries.getColumns(conn, catalog, "S%", "T%"), COLUMNS);
+            check(queries.getColumns(conn, catalog, "S", null), COLUMNS);
+            check(queries.getPrimaryKeys(conn, catalog, "S", "T"), PRIMARY_KEYS);
+            check(queries.getImportedKeys(conn, catalog, "S", "T"), IMPORTED_KEYS);
+            check(queries.getIndexInfo(conn, catalog, "S", "T"), INDEXES);
+            check(queries.getObjects(conn, catalog, "S"), OBJECTS);
+            check(queries.getObjects(conn, catalog, null), OBJECTS);
+        }
+        prepared.clear();
+        for (String[] schemas : new String[][]{null, {}, {"S"}, {"S", "T"}}) {
+            queries.getChangeMarker(conn, schemas);
+            assertTrue(prepared.size() <= 1);
+            for (Prepared ps : prepared) {
+                ps.check(null);
+                assertEquals(ps.sql, schemas == null ? 0 : schemas.length, ps.params.size());
+            }
+            prepared.clear();
+        }
+    }
+
+    /**
+     * Checks the statement of a result set, if the queries did not leave
+     * the call to the driver.
+     */
+    private void check(ResultSet rs, List<String> columns) throws SQLException {
+        if (rs == null) {
+            prepared.clear();
+            return;
+        }
+        assertEquals(1, prepared.size());
+        prepared.get(0).check(columns);
+        prepared.clear();
+    }
+
+    private static void assertWrong(String sql, List<String> columns, Object... params) {
+        Prepared ps = new Prepared(sql, params.length);
+        try {
+            ps.check(columns);
+        } catch (AssertionError e) {
+            return;
+        }
+        fail(sql);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * A statement prepared on the recording connection, whose query returns
+     * no row.
+     */
+    private static class Prepared {
+        final String sql;
+        final List<Integer> params = new ArrayList<Integer>();
+
+        Prepared(String sql) {
+            this.sql = sql;
+        }
+
+        Prepared(String sql, int params) {
+            this(sql);
+            for (int i = 1; i <= params; i++) {
+                this.params.add(i);
+            }
+        }
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            String name = method.getName();
+                            if (name.startsWith("set") && args != null && args.length == 2
+                                    && args[0] instanceof Integer) {
+                                params.add((Integer) args[0]);
+                            } else if (name.equals("executeQuery")) {
+                                return emptyResultSet((PreparedStatement) proxy);
+                            }
+                            return defaultValue(method.getReturnType());
+                        }
+                    });
+        }
+
+        private static ResultSet emptyResultSet(final PreparedStatement ps) {
+            return (ResultSet) Proxy.newProxyInstance(Prepared.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (method.getName().equals("getStatement")) {
+                                return ps;
+                            }
+                            return defaultValue(method.getReturnType());
+                        }
+                    });
+        }
+
+        /**
+         * Checks that quotes, parentheses, brackets and <TT>CASE</TT> are
+         * closed, that the parameters bound are the markers of the
+         * statement, and that the columns selected are <TT>columns</TT>
+         * unless it is <TT>null</TT>.
+         */
+        void check(List<String> columns) {
+            List<String> tokens = tokens();
+            int markers = 0;
+            List<String> open = new ArrayList<String>();
+            for (String token : tokens) {
+                if (token.equals("?")) {
+                    markers++;
+                } else if (token.equals("(") || token.equals("[") || token.equalsIgnoreCase("CASE")) {
+                    open.add(token.toUpperCase());
+                } else if (token.equals(")") || token.equals("]") || token.equalsIgnoreCase("END")) {
+                    String expected = token.equals(")") ? "(" : token.equals("]") ? "[" : "CASE";
+                    assertTrue(sql, !open.isEmpty() && open.remove(open.size() - 1).equals(expected));
+                }
+            }
+            assertTrue(sql, open.isEmpty());
+            List<Integer> expectedParams = new ArrayList<Integer>();
+            for (int i = 1; i <= markers; i++) {
+                expectedParams.add(i);
+            }
+            assertEquals(sql, expectedParams, params);
+
+            if (columns != null) {
+                assertEquals(sql, columns, labels(tokens, 0));
+            }
+        }
+
+        /**
+         * @return the labels of the columns selected by the first
+         * <TT>SELECT</TT> from <TT>start</TT>, or by its sub-query for
+         * <TT>SELECT * FROM (...)</TT>.
+         */
+        private List<String> labels(List<String> tokens, int start) {
+            int i = start;
+            while (i < tokens.size() && !tokens.get(i).equalsIgnoreCase("SELECT")) {
+                i++;
+            }
+            assertTrue(sql, i < tokens.size());
+            List<String> labels = new ArrayList<String>();
+            List<String> item = new ArrayList<String>();
+            int depth = 0;
+            for (i++; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if (token.equals("(") || token.equalsIgnoreCase("CASE")) {
+                    depth++;
+                } else if (token.equals(")") || token.equalsIgnoreCase("END")) {
+                    depth--;
+                } else if (depth == 0 && (token.equals(",") || token.equalsIgnoreCase("FROM"))) {
+                    labels.add(label(item));
+                    item.clear();
+                    if (token.equals(",")) {
+                        continue;
+                    }
+                    if (labels.equals(Arrays.asList("*")) && tokens.get(i + 1).equals("(")) {
+                        return labels(tokens, i + 1);
+                    }
+                    return labels;
+                }
+                item.add(token);
+            }
+            labels.add(label(item));
+            return labels;
+        }
+
+        /**
+         * @return the alias of a column, or the name it is read from.
+         */
+        private String label(List<String> item) {
+            assertTrue(sql, !item.isEmpty());
+            String last = item.get(item.size() - 1);
+            if (last.equals("*")) {
+                return last;
+            }
+            if (last.startsWith("\"")) {
+                return last.substring(1, last.length() - 1).toUpperCase();
+            }
+            assertTrue(sql + ": column without a name " + item,
+                    Character.isLetter(last.charAt(0)) && !last.equalsIgnoreCase("END")
+                            && !last.equalsIgnoreCase("NULL"));
+            assertTrue(sql + ": column without a name " + item, item.size() == 1
+                    || item.get(item.size() - 2).equals(".") || item.get(item.size() - 2).equalsIgnoreCase("AS")
+                    || Character.isLetterOrDigit(item.get(item.size() - 2).charAt(0))
+                    || item.get(item.size() - 2).equals(")") || item.get(item.size() - 2).startsWith("\""));
+            return last.toUpperCase();
+        }
+
+        /**
+         * Splits the statement into words, numbers, quoted strings and
+         * identifiers, and other characters.
+         */
+        private List<String> tokens() {
+            List<String> tokens = new ArrayList<String>();
+            int i = 0;
+            while (i < sql.length()) {
+                char c = sql.charAt(i);
+                int end = i + 1;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                } else if (c == '\'' || c == '"') {
+                    while (true) {
+                        assertTrue(sql + ": quote not closed", end < sql.length());
+                        if (sql.charAt(end++) == c) {
+                            if (end < sql.length() && sql.charAt(end) == c) {
+                                end++;
+                            } else {
+                                break;
+                            }
+                        }
+                    }
+                } else if (Character.isLetterOrDigit(c) || c == '_') {
+                    while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end))
+                            || sql.charAt(end) == '_' || sql.charAt(end) == '$')) {
+                        end++;
+                    }
+                }
+                tokens.add(sql.substring(i, end));
+                i = end;
+            }
+            return tokens;
+        }
+    }
+}
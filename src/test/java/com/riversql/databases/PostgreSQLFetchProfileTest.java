@@ -0,0 +1,53 @@
+package com.riversql.databases;
+
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PostgreSQLFetchProfileTest {
+
+    private SQLConnection conn;
+    private final PostgreSQLFetchProfile profile = new PostgreSQLFetchProfile(100);
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void cursorOfItsOwnTransactionIsExclusive() throws Exception {
+        boolean begun = profile.beginCursor(conn, "SELECT 1");
+        assertTrue(begun);
+        assertFalse(conn.getAutoCommit());
+        assertTrue(profile.isExclusive(begun));
+        profile.endCursor(conn);
+        assertTrue(conn.getAutoCommit());
+    }
+
+    @Test
+    public void cursorInTheTransactionOfTheUserIsNot() throws Exception {
+        conn.setAutoCommit(false);
+        boolean begun = profile.beginCursor(conn, "SELECT 1");
+        assertFalse(begun);
+        assertFalse(profile.isExclusive(begun));
+        assertFalse(conn.getAutoCommit());
+        // nor is an update
+        conn.setAutoCommit(true);
+        assertFalse(profile.isExclusive(profile.beginCursor(conn, "UPDATE T SET A = 1")));
+        assertTrue(conn.getAutoCommit());
+    }
+}
@@ -0,0 +1,62 @@
+package com.riversql.databases;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowLimiterTest {
+
+    private final RowLimiter limitOffset = new LimitOffsetRowLimiter();
+    private final RowLimiter rownum = new RownumRowLimiter();
+    private final RowLimiter fetchFirst = new FetchFirstRowLimiter(true);
+    private final RowLimiter top = new TopRowLimiter();
+
+    @Test
+    public void onlyPlainSelectsAreLimited() {
+        assertTrue(limitOffset.canLimit("select * from t"));
+        assertFalse(limitOffset.canLimit("delete from t"));
+        assertFalse(limitOffset.canLimit("select * from t limit 10"));
+        assertFalse(limitOffset.canLimit("select * into t2 from t"));
+        assertFalse(limitOffset.canLimit("select * from t for update"));
+        assertTrue(limitOffset.canLimit("select * from t where id in (select id from u limit 3)"));
+    }
+
+    @Test
+    public void onlyOrderedQueriesArePaged() {
+        assertTrue(limitOffset.canPage("select * from t order by id"));
+        assertTrue(limitOffset.canPage("select a from t union select a from u order by 1"));
+        assertFalse(limitOffset.canPage("select * from t"));
+        assertFalse(limitOffset.canPage("select * from (select * from t order by id) x"));
+        assertFalse(limitOffset.canPage("select 'order by' from t"));
+        assertFalse(limitOffset.canPage("select * from t -- order by id"));
+        assertFalse(limitOffset.canPage("delete from t order by id"));
+    }
+
+    @Test
+    public void limitOffset() {
+        assertEquals("select * from t order by id\nLIMIT 11", limitOffset.limit("select * from t order by id;", 0, 11));
+        assertEquals("select * from t order by id\nLIMIT 11 OFFSET 10", limitOffset.limit("select * from t order by id", 10, 11));
+    }
+
+    @Test
+    public void rownumLimitsToTheEndOfThePage() {
+        assertFalse(rownum.supportsOffset());
+        assertEquals("SELECT * FROM (select * from t order by id\n) WHERE ROWNUM <= 21",
+                rownum.limit("select * from t order by id", 10, 11));
+    }
+
+    @Test
+    public void fetchFirst() {
+        assertEquals("select * from t order by id\nFETCH FIRST 11 ROWS ONLY", fetchFirst.limit("select * from t order by id", 0, 11));
+        assertEquals("select * from t order by id\nOFFSET 10 ROWS FETCH NEXT 11 ROWS ONLY",
+                fetchFirst.limit("select * from t order by id", 10, 11));
+    }
+
+    @Test
+    public void topGoesAfterDistinct() {
+        assertEquals("select distinct TOP 21 a from t order by a\n", top.limit("select distinct a from t order by a", 10, 11));
+        assertFalse(top.canLimit("select a from t union select a from u order by a"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.riversql.dbtree;
+
+import com.riversql.IDManager;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class DBNodeTest {
+
+    private static final int MAX_OBJECTS = 100;
+    private static final int SCHEMAS = 10;
+    private static final int TABLES = 30;
+
+    private IDManager idmanager;
+    private SQLConnection conn;
+    private DatabaseNode root;
+
+    @Before
+    public void setUp() throws Exception {
+        IDManager.configure(MAX_OBJECTS, IDManager.DEFAULT_IDLE_TIMEOUT);
+        idmanager = new IDManager() {
+        };
+        IDManager.set(idmanager);
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        conn.setMetaDataCache(new MetaDataCache());
+        Statement st = conn.createStatement();
+        for (int s = 0; s < SCHEMAS; s++) {
+            st.execute("CREATE SCHEMA S" + s);
+            for (int t = 0; t < TABLES; t++) {
+                st.execute("CREATE TABLE S" + s + ".T" + t + " (ID INT PRIMARY KEY)");
+            }
+        }
+        st.close();
+        root = new DatabaseNode(conn, "test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        IDManager.configure(IDManager.DEFAULT_MAX_SIZE, IDManager.DEFAULT_IDLE_TIMEOUT);
+        conn.close();
+    }
+
+    @Test
+    public void leastRecentlyUsedSubtreesAreReleasedPastTheLimit() throws Exception {
+        TablesNode[] tables = new TablesNode[SCHEMAS];
+        for (int s = 0; s < SCHEMAS; s++) {
+            tables[s] = tablesNode("S" + s);
+            assertEquals(TABLES, tables[s].getChildren().size());
+            // the limit, and the subtree being read which cannot be released
+            assertTrue(idmanager.size() + " objects", idmanager.size() <= MAX_OBJECTS + TABLES);
+        }
+        assertTrue(idmanager.getStatistics().get("_evicted") > 0);
+        assertTrue(tables[SCHEMAS - 1].isLoaded());
+        assertFalse(tables[0].isLoaded());
+
+        // read again when next used, the ids of its children are valid
+        List<IStructureNode> children = tables[0].getChildren();
+        assertEquals(TABLES, children.size());
+        assertNotNull(idmanager.get(children.get(0).getId()));
+        assertTrue(idmanager.size() <= MAX_OBJECTS + TABLES);
+    }
+
+    @Test
+    public void usingAChildKeepsItsSubtree() throws Exception {
+        TablesNode first = tablesNode("S0");
+        String id = first.getChildren().get(0).getId();
+        for (int s = 1; s < SCHEMAS; s++) {
+            tablesNode("S" + s).getChildren();
+            assertNotNull(idmanager.get(id));
+        }
+        assertTrue(first.isLoaded());
+    }
+
+    private TablesNode tablesNode(String schema) throws Exception {
+        List<IStructureNode> path = root.getPath(null, schema);
+        SchemaNode schemaNode = (SchemaNode) path.get(path.size() - 1);
+        return (TablesNode) schemaNode.getChildrenByName("TABLE");
+    }
+}
@@ -0,0 +1,140 @@
+package com.riversql.dbtree;
+
+import com.riversql.IDManager;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import com.riversql.sql.SQLStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DDLInvalidatorTest {
+
+    private SQLConnection conn;
+    private MetaDataCache cache;
+    private SQLSession session;
+    private TablesNode tables;
+
+    @Before
+    public void setUp() throws Exception {
+        IDManager.set(new IDManager() {
+        });
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        cache = new MetaDataCache();
+        conn.setMetaDataCache(cache);
+        run("CREATE TABLE T (ID INT PRIMARY KEY)");
+        run("CREATE TABLE U (ID INT PRIMARY KEY)");
+        session = new SQLSession(1, "test", conn);
+        tables = findTablesNode(session.getDatabaseNode(), "PUBLIC", "TABLE");
+        assertNotNull(tables);
+        assertEquals(2, tables.getChildren().size());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void createRefreshesTheListOfItsType() throws Exception {
+        List<String> ids = run("CREATE TABLE NEW_TABLE (ID INT)");
+        assertTrue(ids.contains(tables.getId()));
+        for (String id : ids) {
+            // the lists of tables of the schema, none of views
+            TablesNode node = (TablesNode) IDManager.get().get(id);
+            assertEquals("PUBLIC", node.schemaName);
+            assertFalse(node.getTableType().contains("VIEW"));
+        }
+        assertFalse(tables.isLoaded());
+        assertEquals(3, tables.getChildren().size());
+    }
+
+    @Test
+    public void dropRefreshesTheListOfItsType() throws Exception {
+        List<String> ids = run("DROP TABLE public.u");
+        assertTrue(ids.contains(tables.getId()));
+        assertEquals(1, tables.getChildren().size());
+        assertEquals(1, cache.getTables(conn.getSQLMetaData(), null, "PUBLIC", "TABLE").length);
+    }
+
+    @Test
+    public void alterOnlyChangesTheTable() throws Exception {
+        TableNode t = tables.findTableNode("T");
+        assertEquals(1, t.getColumnNames().size());
+        List<String> ids = run("ALTER TABLE t ADD COLUMN NAME VARCHAR(20)");
+        assertEquals(1, ids.size());
+        assertEquals(t.getId(), ids.get(0));
+        assertTrue(tables.isLoaded());
+        assertEquals(2, t.getColumnNames().size());
+    }
+
+    @Test
+    public void indexesInvalidateTheirTable() throws Exception {
+        TableNode t = tables.findTableNode("T");
+        int indexes = t.getIndexes().size();
+        List<String> ids = run("CREATE INDEX T_ID ON T (ID)");
+        assertEquals(1, ids.size());
+        assertEquals(t.getId(), ids.get(0));
+        assertEquals(indexes + 1, t.getIndexes().size());
+    }
+
+    @Test
+    public void otherStatementsChangeNothing() throws Exception {
+        long entries = cache.size();
+        assertTrue(run("INSERT INTO T VALUES (1)").isEmpty());
+        assertTrue(run("TRUNCATE TABLE T").isEmpty());
+        assertEquals(entries, cache.size());
+        assertTrue(tables.isLoaded());
+    }
+
+    @Test
+    public void viewsLeaveTheTablesAlone() throws Exception {
+        TablesNode views = findTablesNode(session.getDatabaseNode(), "PUBLIC", "VIEW");
+        assertEquals(0, views.getChildren().size());
+        List<String> ids = run("CREATE VIEW V AS SELECT * FROM T");
+        assertEquals(1, ids.size());
+        assertEquals(views.getId(), ids.get(0));
+        assertTrue(tables.isLoaded());
+        assertEquals(1, views.getChildren().size());
+        assertNull(tables.findTableNode("V"));
+    }
+
+    private List<String> run(String sql) throws Exception {
+        conn.createStatement().execute(sql);
+        if (session == null) {
+            return new ArrayList<String>();
+        }
+        return session.invalidate(SQLStatement.parse(sql));
+    }
+
+    private static TablesNode findTablesNode(DBNode node, String schema, String type) {
+        for (IStructureNode child : node.getChildren()) {
+            if (child instanceof TablesNode) {
+                TablesNode tables = (TablesNode) child;
+                if (schema.equals(tables.schemaName) && type.equals(tables.getTableType())) {
+                    return tables;
+                }
+            } else if (child instanceof CatalogOfSchemasNode || child instanceof SchemaNode
+                    || child instanceof CatalogNode) {
+                TablesNode found = findTablesNode((DBNode) child, schema, type);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,226 @@
+package com.riversql.dbtree;
+
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ConnectionPools;
+import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.ObjectIndex;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetaDataCrawlerTest {
+
+    private static final String URL = "jdbc:h2:mem:crawler;DB_CLOSE_DELAY=-1";
+    private static final int TABLES = 20;
+
+    private Connection keepAlive;
+    private ConnectionPool pool;
+    private SQLDriver driver;
+
+    @Before
+    public void setUp() throws Exception {
+        keepAlive = DriverManager.getConnection(URL, "sa", "");
+        Statement st = keepAlive.createStatement();
+        st.execute("CREATE TABLE T0 (ID INT PRIMARY KEY)");
+        for (int i = 1; i < TABLES; i++) {
+            st.execute("CREATE TABLE T" + i + " (ID INT PRIMARY KEY, T0_ID INT REFERENCES T0 (ID))");
+        }
+        st.close();
+        driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        pool = ConnectionPools.getPool(1, "org.h2.Driver", URL, "sa", "");
+        MetaDataCrawler.start(true, 1, 1, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MetaDataCrawler.shutdown();
+        ConnectionPools.shutdown();
+        MetaDataCache.configure(MetaDataCache.DEFAULT_TTL_MINUTES * 60 * 1000L, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        MetaDataCache.clearAll();
+        keepAlive.createStatement().execute("DROP ALL OBJECTS");
+        keepAlive.close();
+    }
+
+    @Test
+    public void keysReadWithTheSchemaAreNotReadAgain() throws Exception {
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        // H2 cannot list the keys of a whole schema, read them as the
+        // catalog queries of a database would
+        SQLConnection conn = new SQLConnection(pool.borrow(), null, driver, pool);
+        conn.setMetaDataCache(cache);
+        ITableInfo[] tables = cache.getTables(conn.getSQLMetaData(), null, "PUBLIC", "TABLE");
+        assertEquals(TABLES, tables.length);
+        for (ITableInfo table : tables) {
+            cache.getPrimaryKey(conn.getSQLMetaData(), table);
+            cache.getImportedKeys(conn.getSQLMetaData(), table);
+        }
+        conn.close();
+        long hits = cache.getStatistics().get("hits");
+
+        MetaDataCrawler crawler = MetaDataCrawler.crawl(pool, driver, cache);
+        waitFor(crawler);
+        assertEquals(MetaDataCrawler.State.DONE, crawler.getState());
+        assertTrue(crawler.getTablesFound() > TABLES);
+        assertEquals(crawler.getTablesFound(), crawler.getTablesDone());
+        // reading the keys table by table would have been two hits a table
+        assertTrue(cache.getStatistics().get("hits") - hits < TABLES);
+        // the keys the session read are part of the crawl, not the tables
+        // it listed without a catalog
+        assertEquals(cache.size() - 1, cache.getStatistics().get("pinned").longValue());
+        assertTrue(cache.isComplete());
+    }
+
+    @Test
+    public void crawledEntriesOutliveTheLimitsOfTheCache() throws Exception {
+        // fewer entries than the columns and keys of the tables, expiring at once
+        MetaDataCache.configure(1, TABLES);
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        MetaDataCrawler crawler = MetaDataCrawler.crawl(pool, driver, cache);
+        waitFor(crawler);
+        assertEquals(MetaDataCrawler.State.DONE, crawler.getState());
+        assertTrue(cache.size() > 3 * TABLES);
+        assertEquals(cache.size(), cache.getStatistics().get("pinned").longValue());
+        assertEquals(0L, cache.getStatistics().get("evicted").longValue());
+
+        Thread.sleep(5);
+        long misses = cache.getStatistics().get("misses");
+        SQLConnection conn = new SQLConnection(pool.borrow(), null, driver, pool);
+        conn.setMetaDataCache(cache);
+        try {
+            // listed as the tree lists them, under its catalog
+            ITableInfo[] tables = cache.getTables(conn.getSQLMetaData(), conn.getCatalog(), "PUBLIC", "TABLE");
+            assertEquals(TABLES, tables.length);
+            for (ITableInfo table : tables) {
+                cache.getColumns(conn.getSQLMetaData(), table);
+                cache.getPrimaryKey(conn.getSQLMetaData(), table);
+                cache.getImportedKeys(conn.getSQLMetaData(), table);
+            }
+            assertEquals(misses, cache.getStatistics().get("misses").longValue());
+
+            // what a session reads is still bounded
+            for (ITableInfo table : tables) {
+                cache.getIndexes(conn.getSQLMetaData(), table);
+            }
+            assertEquals(TABLES, cache.size() - cache.getStatistics().get("pinned"));
+
+            cache.invalidateTable(tables[0]);
+            cache.getColumns(conn.getSQLMetaData(), tables[0]);
+            assertEquals(misses + TABLES + 1, cache.getStatistics().get("misses").longValue());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void finishedCrawlsOfUnusedCachesAreForgotten() throws Exception {
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        MetaDataCrawler crawler = MetaDataCrawler.crawl(pool, driver, cache);
+        waitFor(crawler);
+        assertSame(crawler, MetaDataCrawler.get(cache));
+
+        MetaDataCache.configure(0, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        Thread.sleep(5);
+        MetaDataCache.getCache(2, "sa");
+        assertNull(MetaDataCrawler.get(cache));
+    }
+
+    @Test
+    public void namesOfEverySchemaAreReadOnce() throws Exception {
+        Statement st = keepAlive.createStatement();
+        st.execute("CREATE SCHEMA OTHER");
+        st.execute("CREATE TABLE OTHER.INVOICE (INVOICE_ID INT PRIMARY KEY, TOTAL DECIMAL(10, 2))");
+        st.close();
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        // the session keeps its connection, the names are read on one of the pool
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, pool);
+        conn.setMetaDataCache(cache);
+        try {
+            MetaDataCrawler.readNames(conn).get();
+            List<String[]> names = cache.getNameIndex().complete(null, "invoice", null, 10);
+            assertEquals(2, names.size());
+            assertEquals("INVOICE", cache.getObjectIndex().find("INVOICE", 10).get(0).getName());
+            assertEquals(1, cache.getObjectIndex().find("T19", 10).size());
+            long misses = cache.getStatistics().get("misses");
+            assertNull(MetaDataCrawler.readNames(conn));
+            assertEquals(misses, cache.getStatistics().get("misses").longValue());
+
+            cache.invalidate();
+            assertEquals(0, cache.getNameIndex().complete(null, "invoice", null, 10).size());
+            MetaDataCrawler.readNames(conn).get();
+            assertEquals(2, cache.getNameIndex().complete(null, "invoice", null, 10).size());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void failedReadOfNamesIsDoneAgain() throws Exception {
+        MetaDataCache cache = MetaDataCache.getCache(2, "sa");
+        ConnectionPool broken = ConnectionPools.getPool(2, "org.h2.Driver", "jdbc:h2:mem:nosuchdb;IFEXISTS=TRUE",
+                "sa", "");
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, broken);
+        conn.setMetaDataCache(cache);
+        try {
+            MetaDataCrawler.readNames(conn).get();
+            Future<?> again = MetaDataCrawler.readNames(conn);
+            assertNotNull(again);
+            again.get();
+            assertEquals(0, cache.getNameIndex().size());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void objectsAreReadInTheBackgroundUntilRead() throws Exception {
+        MetaDataCache cache = MetaDataCache.getCache(2, "sa");
+        ObjectIndex index = cache.getObjectIndex();
+        ConnectionPool broken = ConnectionPools.getPool(2, "org.h2.Driver", "jdbc:h2:mem:nosuchdb;IFEXISTS=TRUE",
+                "sa", "");
+        SQLConnection conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, broken);
+        conn.setMetaDataCache(cache);
+        try {
+            MetaDataCrawler.readObjects(conn).get();
+            assertFalse(index.hasObjects());
+        } finally {
+            conn.close();
+        }
+        conn = new SQLConnection(DriverManager.getConnection(URL, "sa", ""), null, driver, pool);
+        conn.setMetaDataCache(cache);
+        try {
+            MetaDataCrawler.readObjects(conn).get();
+            assertTrue(index.hasObjects());
+            assertNull(MetaDataCrawler.readObjects(conn));
+            index.invalidateObjects();
+            MetaDataCrawler.readObjects(conn).get();
+            assertTrue(index.hasObjects());
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static void waitFor(MetaDataCrawler crawler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!crawler.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(crawler.isFinished());
+    }
+}
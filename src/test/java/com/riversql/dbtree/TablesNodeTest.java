@@ -0,0 +1,81 @@
+package com.riversql.dbtree;
+
+import com.riversql.IDManager;
+import com.riversql.sql.ITableInfo;
+import com.riversql.sql.MetaDataCache;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TablesNodeTest {
+
+    private SQLConnection conn;
+    private TablesNode node;
+
+    @Before
+    public void setUp() throws Exception {
+        IDManager.set(new IDManager() {
+        });
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        conn.setMetaDataCache(new MetaDataCache());
+        Statement st = conn.createStatement();
+        for (char c = 'A'; c <= 'E'; c++) {
+            st.execute("CREATE TABLE " + c + " (ID INT PRIMARY KEY)");
+        }
+        st.close();
+        node = new TablesNode(null, "TABLE", conn);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void pagesAreOnlyChildrenOnceLoaded() throws Exception {
+        JSONObject page = node.getChildrenToJSon(0, 2, null);
+        assertEquals(2, page.getJSONArray("nodes").length());
+        assertFalse(node.isLoaded());
+        assertTrue(node.children.isEmpty());
+
+        ITableInfo[] tables = conn.getMetaDataCache().getTables(conn.getSQLMetaData(), null, null, "TABLE");
+        TableNode first = node.getTableNode(tables[0]);
+        assertTrue(node.children.isEmpty());
+
+        assertEquals(5, node.getChildren().size());
+        assertSame(first, node.getChildren().get(0));
+    }
+
+    @Test
+    public void prefetchingCreatesNoChildren() throws Exception {
+        node.prefetchColumns();
+        node.prefetchKeys();
+        assertFalse(node.isLoaded());
+        assertTrue(node.children.isEmpty());
+    }
+
+    @Test
+    public void refreshReleasesThePageChildren() throws Exception {
+        node.getChildrenToJSon(0, 2, null);
+        ITableInfo[] tables = conn.getMetaDataCache().getTables(conn.getSQLMetaData(), null, null, "TABLE");
+        TableNode first = node.getTableNode(tables[0]);
+        assertNotNull(IDManager.get().get(first.getId()));
+        node.refresh();
+        assertNull(IDManager.get().get(first.getId()));
+    }
+}
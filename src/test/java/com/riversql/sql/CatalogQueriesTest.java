@@ -0,0 +1,482 @@
+package com.riversql.sql;
+
+import com.riversql.databases.CatalogQueries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Reads the same catalog of H2 and of HSQLDB through catalog queries on
+ * their <TT>INFORMATION_SCHEMA</TT> and through the driver, and checks that
+ * <TT>SQLDatabaseMetaData</TT> answers the same.
+ */
+@RunWith(Parameterized.class)
+public class CatalogQueriesTest {
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> databases() {
+        return Arrays.asList(new Object[][]{
+                {"H2", "org.h2.Driver", "jdbc:h2:mem:", H2CatalogQueries.class},
+                {"HSQLDB", "org.hsqldb.jdbc.JDBCDriver", "jdbc:hsqldb:mem:catalogqueries;shutdown=true", HSQLDBCatalogQueries.class}
+        });
+    }
+
+    private final String driverClassName;
+    private final String url;
+    private final Class<? extends TestCatalogQueries> queriesClass;
+
+    private SQLConnection conn;
+    private SQLDatabaseMetaData driverMetaData;
+    private SQLDatabaseMetaData queriesMetaData;
+    private TestCatalogQueries queries;
+
+    public CatalogQueriesTest(String database, String driverClassName, String url,
+                              Class<? extends TestCatalogQueries> queriesClass) {
+        this.driverClassName = driverClassName;
+        this.url = url;
+        this.queriesClass = queriesClass;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName(driverClassName);
+        Class.forName(driverClassName);
+        conn = new SQLConnection(DriverManager.getConnection(url, "SA", ""), null, driver);
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE T (ID INT PRIMARY KEY, NAME VARCHAR(20) DEFAULT 'x' NOT NULL, PRICE DECIMAL(10, 2))");
+        st.execute("CREATE TABLE W (A INT, B INT, PRIMARY KEY (A, B))");
+        st.execute("CREATE TABLE U (ID BIGINT PRIMARY KEY, T_ID INT REFERENCES T (ID) ON DELETE CASCADE,"
+                + " WA INT, WB INT, FOREIGN KEY (WA, WB) REFERENCES W (A, B))");
+        st.execute("CREATE INDEX U_T ON U (T_ID)");
+        st.execute("CREATE VIEW V AS SELECT ID, NAME FROM T");
+        st.close();
+        queries = queriesClass.newInstance();
+        driverMetaData = new SQLDatabaseMetaData(conn);
+        queriesMetaData = new SQLDatabaseMetaData(conn) {
+            @Override
+            CatalogQueries getCatalogQueries() {
+                return queries;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void tablesAreTheSame() throws Exception {
+        for (String type : new String[]{"TABLE", "VIEW"}) {
+            ITableInfo[] expected = driverMetaData.getTables(null, "PUBLIC", "%", new String[]{type}, null);
+            ITableInfo[] actual = queriesMetaData.getTables(null, "PUBLIC", "%", new String[]{type}, null);
+            assertEquals(names(expected), names(actual));
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getCatalogName(), actual[i].getCatalogName());
+                assertEquals(expected[i].getSchemaName(), actual[i].getSchemaName());
+                assertEquals(expected[i].getType(), actual[i].getType());
+            }
+        }
+        assertTrue(queries.calls > 0);
+    }
+
+    @Test
+    public void columnsAreTheSame() throws Exception {
+        for (String table : new String[]{"T", "U", "V", "W"}) {
+            TableColumnInfo[] expected = driverMetaData.getColumnInfo(null, "PUBLIC", table);
+            TableColumnInfo[] actual = queriesMetaData.getColumnInfo(null, "PUBLIC", table);
+            assertEquals(table, expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                String column = table + "." + expected[i].getColumnName();
+                assertEquals(column, expected[i].getColumnName(), actual[i].getColumnName());
+                assertEquals(column, expected[i].getDataType(), actual[i].getDataType());
+                assertEquals(column, expected[i].getTypeName(), actual[i].getTypeName());
+                assertEquals(column, expected[i].getColumnSize(), actual[i].getColumnSize());
+                assertEquals(column, expected[i].getDecimalDigits(), actual[i].getDecimalDigits());
+                assertEquals(column, expected[i].isNullAllowed(), actual[i].isNullAllowed());
+                assertEquals(column, expected[i].getDefaultValue(), actual[i].getDefaultValue());
+                assertEquals(column, expected[i].getOrdinalPosition(), actual[i].getOrdinalPosition());
+                assertEquals(column, expected[i].isNullable(), actual[i].isNullable());
+            }
+        }
+    }
+
+    @Test
+    public void keysAndIndexesAreTheSame() throws Exception {
+        for (String table : new String[]{"T", "U", "W"}) {
+            assertRows(driverMetaData.getPrimaryKeyRows(null, "PUBLIC", table),
+                    queriesMetaData.getPrimaryKeyRows(null, "PUBLIC", table),
+                    "TABLE_NAME", "COLUMN_NAME", "KEY_SEQ", "PK_NAME");
+            assertRows(driverMetaData.getImportedKeyRows(null, "PUBLIC", table),
+                    queriesMetaData.getImportedKeyRows(null, "PUBLIC", table),
+                    "PKTABLE_NAME", "PKCOLUMN_NAME", "FKTABLE_NAME", "FKCOLUMN_NAME", "KEY_SEQ",
+                    "UPDATE_RULE", "DELETE_RULE", "FK_NAME", "PK_NAME");
+            assertRows(driverMetaData.getIndexRows(null, "PUBLIC", table),
+                    queriesMetaData.getIndexRows(null, "PUBLIC", table),
+                    "TABLE_NAME", "NON_UNIQUE", "INDEX_NAME", "TYPE", "ORDINAL_POSITION", "COLUMN_NAME");
+        }
+        assertEquals(2, queriesMetaData.getImportedKeyRows(null, "PUBLIC", "U").groupBy("FK_NAME").size());
+    }
+
+    @Test
+    public void failedQueryFallsBackOnTheDriver() throws Exception {
+        queries.failing = true;
+        assertRows(driverMetaData.getPrimaryKeyRows(null, "PUBLIC", "W"),
+                queriesMetaData.getPrimaryKeyRows(null, "PUBLIC", "W"),
+                "TABLE_NAME", "COLUMN_NAME", "KEY_SEQ");
+        assertEquals(1, queries.calls);
+    }
+
+    @Test
+    public void failedQueryRollsBackToItsSavepoint() throws Exception {
+        final List<String> calls = new ArrayList<String>();
+        final Connection real = conn.getConnection();
+        Connection recording = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("setSavepoint") || name.equals("rollback")
+                                || name.equals("releaseSavepoint")) {
+                            calls.add(name);
+                        }
+                        try {
+                            return method.invoke(real, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        queries.abortsTransactionOnError = true;
+
+        close(queries.getPrimaryKeys(recording, null, "PUBLIC", "T"));
+        assertEquals(new ArrayList<String>(), calls);
+
+        real.setAutoCommit(false);
+        real.createStatement().execute("INSERT INTO T (ID) VALUES (1)");
+        close(queries.getPrimaryKeys(recording, null, "PUBLIC", "T"));
+        assertEquals(Arrays.asList("setSavepoint", "releaseSavepoint"), calls);
+
+        calls.clear();
+        queries.failing = true;
+        try {
+            queries.getPrimaryKeys(recording, null, "PUBLIC", "T");
+            fail();
+        } catch (SQLException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("setSavepoint", "rollback"), calls);
+
+        // the work of the transaction is still there
+        ResultSet rs = real.createStatement().executeQuery("SELECT COUNT(*) FROM T");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+        real.rollback();
+    }
+
+    private static void assertRows(MetaDataRows expected, MetaDataRows actual, String... labels)
+            throws SQLException {
+        assertEquals(expected.size(), actual.size());
+        MetaDataRows.Cursor e = expected.cursor();
+        MetaDataRows.Cursor a = actual.cursor();
+        while (e.next()) {
+            a.next();
+            for (String label : labels) {
+                assertEquals(label, e.getString(label), a.getString(label));
+            }
+        }
+    }
+
+    private static List<String> names(ITableInfo[] tables) {
+        List<String> names = new ArrayList<String>();
+        for (ITableInfo table : tables) {
+            names.add(table.getSimpleName());
+        }
+        return names;
+    }
+
+    private static void close(ResultSet rs) throws SQLException {
+        Statement st = rs.getStatement();
+        rs.close();
+        if (st != null) {
+            st.close();
+        }
+    }
+
+    /**
+     * Counts its queries, and makes them fail or run in savepoints on demand.
+     */
+    abstract static class TestCatalogQueries extends CatalogQueries {
+
+        int calls;
+        boolean failing;
+        boolean abortsTransactionOnError;
+
+        @Override
+        protected boolean abortsTransactionOnError() {
+            return abortsTransactionOnError;
+        }
+
+        Query query(String sql) {
+            calls++;
+            return new Query(failing ? "SELECT * FROM NO_SUCH_TABLE WHERE 1 = 1" : sql);
+        }
+    }
+
+    /**
+     * Reads the H2 catalog from <TT>INFORMATION_SCHEMA</TT>, as the H2 driver
+     * itself does.
+     */
+    public static class H2CatalogQueries extends TestCatalogQueries {
+
+        private static final String TABLES = "SELECT TABLE_CATALOG AS TABLE_CAT, TABLE_SCHEMA AS TABLE_SCHEM,"
+                + " TABLE_NAME, TABLE_TYPE, REMARKS"
+                + " FROM INFORMATION_SCHEMA.TABLES"
+                + " WHERE 1 = 1";
+
+        private static final String COLUMNS = "SELECT TABLE_CATALOG AS TABLE_CAT, TABLE_SCHEMA AS TABLE_SCHEM,"
+                + " TABLE_NAME, COLUMN_NAME, DATA_TYPE, TYPE_NAME,"
+                + " CHARACTER_MAXIMUM_LENGTH AS COLUMN_SIZE, CHARACTER_MAXIMUM_LENGTH AS BUFFER_LENGTH,"
+                + " NUMERIC_SCALE AS DECIMAL_DIGITS, NUMERIC_PRECISION_RADIX AS NUM_PREC_RADIX,"
+                + " NULLABLE, REMARKS, COLUMN_DEFAULT AS COLUMN_DEF,"
+                + " DATA_TYPE AS SQL_DATA_TYPE, 0 AS SQL_DATETIME_SUB,"
+                + " CHARACTER_OCTET_LENGTH AS CHAR_OCTET_LENGTH, ORDINAL_POSITION, IS_NULLABLE"
+                + " FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE 1 = 1";
+
+        private static final String PRIMARY_KEYS = "SELECT TABLE_CATALOG AS TABLE_CAT, TABLE_SCHEMA AS TABLE_SCHEM,"
+                + " TABLE_NAME, COLUMN_NAME, ORDINAL_POSITION AS KEY_SEQ,"
+                + " IFNULL(CONSTRAINT_NAME, INDEX_NAME) AS PK_NAME"
+                + " FROM INFORMATION_SCHEMA.INDEXES"
+                + " WHERE PRIMARY_KEY = TRUE";
+
+        private static final String IMPORTED_KEYS = "SELECT PKTABLE_CATALOG AS PKTABLE_CAT,"
+                + " PKTABLE_SCHEMA AS PKTABLE_SCHEM, PKTABLE_NAME, PKCOLUMN_NAME,"
+                + " FKTABLE_CATALOG AS FKTABLE_CAT, FKTABLE_SCHEMA AS FKTABLE_SCHEM, FKTABLE_NAME, FKCOLUMN_NAME,"
+                + " ORDINAL_POSITION AS KEY_SEQ, UPDATE_RULE, DELETE_RULE, FK_NAME, PK_NAME, DEFERRABILITY"
+                + " FROM INFORMATION_SCHEMA.CROSS_REFERENCES"
+                + " WHERE 1 = 1";
+
+        private static final String INDEXES = "SELECT TABLE_CATALOG AS TABLE_CAT, TABLE_SCHEMA AS TABLE_SCHEM,"
+                + " TABLE_NAME, NON_UNIQUE, TABLE_CATALOG AS INDEX_QUALIFIER, INDEX_NAME, INDEX_TYPE AS TYPE,"
+                + " ORDINAL_POSITION, COLUMN_NAME, ASC_OR_DESC, CARDINALITY, PAGES, FILTER_CONDITION, SORT_TYPE"
+                + " FROM INFORMATION_SCHEMA.INDEXES"
+                + " WHERE 1 = 1";
+
+        @Override
+        public ResultSet getTables(Connection conn, String catalog, String schemaPattern,
+                                   String tableNamePattern, String[] types) throws SQLException {
+            if (!knowsTypes(types, "TABLE", "VIEW", "SYSTEM TABLE")) {
+                return null;
+            }
+            return query(TABLES)
+                    .and("TABLE_SCHEMA LIKE ?", schemaPattern)
+                    .and("TABLE_NAME LIKE ?", tableNamePattern)
+                    .in("TABLE_TYPE", types)
+                    .append(" ORDER BY TABLE_TYPE, TABLE_SCHEMA, TABLE_NAME")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getColumns(Connection conn, String catalog, String schemaPattern,
+                                    String tableNamePattern) throws SQLException {
+            return query(COLUMNS)
+                    .and("TABLE_SCHEMA LIKE ?", schemaPattern)
+                    .and("TABLE_NAME LIKE ?", tableNamePattern)
+                    .append(" ORDER BY TABLE_SCHEMA, TABLE_NAME, ORDINAL_POSITION")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getPrimaryKeys(Connection conn, String catalog, String schema,
+                                        String table) throws SQLException {
+            return query(PRIMARY_KEYS)
+                    .and("TABLE_SCHEMA = ?", schema)
+                    .and("TABLE_NAME = ?", table)
+                    .append(" ORDER BY COLUMN_NAME")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getImportedKeys(Connection conn, String catalog, String schema,
+                                         String table) throws SQLException {
+            return query(IMPORTED_KEYS)
+                    .and("FKTABLE_SCHEMA = ?", schema)
+                    .and("FKTABLE_NAME = ?", table)
+                    .append(" ORDER BY PKTABLE_CATALOG, PKTABLE_SCHEMA, PKTABLE_NAME, FK_NAME, ORDINAL_POSITION")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getIndexInfo(Connection conn, String catalog, String schema,
+                                      String table) throws SQLException {
+            return query(INDEXES)
+                    .and("TABLE_SCHEMA = ?", schema)
+                    .and("TABLE_NAME = ?", table)
+                    .append(" ORDER BY NON_UNIQUE, TYPE, TABLE_SCHEM, INDEX_NAME, ORDINAL_POSITION")
+                    .execute(conn);
+        }
+    }
+
+    /**
+     * Reads the HSQLDB catalog from the views of the SQL standard in
+     * <TT>INFORMATION_SCHEMA</TT>, with the names and types of the HSQLDB
+     * driver. The standard has no view of the indexes, they are read from
+     * the one of HSQLDB.
+     */
+    public static class HSQLDBCatalogQueries extends TestCatalogQueries {
+
+        private static final String TABLES = "SELECT * FROM ("
+                + "SELECT TABLE_CATALOG AS TABLE_CAT, TABLE_SCHEMA AS TABLE_SCHEM, TABLE_NAME,"
+                + " CASE WHEN TABLE_SCHEMA IN ('INFORMATION_SCHEMA', 'SYSTEM_LOBS') THEN 'SYSTEM TABLE'"
+                + "  WHEN TABLE_TYPE = 'BASE TABLE' THEN 'TABLE' ELSE TABLE_TYPE END AS TABLE_TYPE,"
+                + " CAST(NULL AS VARCHAR(1)) AS REMARKS"
+                + " FROM INFORMATION_SCHEMA.TABLES"
+                + " WHERE 1 = 1";
+
+        private static final String COLUMNS = "SELECT c.TABLE_CATALOG AS TABLE_CAT, c.TABLE_SCHEMA AS TABLE_SCHEM,"
+                + " c.TABLE_NAME, c.COLUMN_NAME,"
+                + " CASE c.DATA_TYPE WHEN 'CHARACTER' THEN 1 WHEN 'CHARACTER VARYING' THEN 12"
+                + "  WHEN 'NUMERIC' THEN 2 WHEN 'DECIMAL' THEN 3 WHEN 'TINYINT' THEN -6 WHEN 'SMALLINT' THEN 5"
+                + "  WHEN 'INTEGER' THEN 4 WHEN 'BIGINT' THEN -5 WHEN 'DOUBLE' THEN 8 WHEN 'BOOLEAN' THEN 16"
+                + "  WHEN 'DATE' THEN 91 WHEN 'TIME' THEN 92 WHEN 'TIMESTAMP' THEN 93"
+                + "  WHEN 'BINARY' THEN -2 WHEN 'BINARY VARYING' THEN -3"
+                + "  WHEN 'CHARACTER LARGE OBJECT' THEN 2005 WHEN 'BINARY LARGE OBJECT' THEN 2004"
+                + "  ELSE 1111 END AS DATA_TYPE,"
+                + " CASE c.DATA_TYPE WHEN 'CHARACTER' THEN 'CHAR' WHEN 'CHARACTER VARYING' THEN 'VARCHAR'"
+                + "  WHEN 'BINARY VARYING' THEN 'VARBINARY'"
+                + "  WHEN 'CHARACTER LARGE OBJECT' THEN 'CLOB' WHEN 'BINARY LARGE OBJECT' THEN 'BLOB'"
+                + "  ELSE c.DATA_TYPE END AS TYPE_NAME,"
+                + " COALESCE(c.CHARACTER_MAXIMUM_LENGTH, c.NUMERIC_PRECISION, c.DATETIME_PRECISION) AS COLUMN_SIZE,"
+                + " CAST(NULL AS INTEGER) AS BUFFER_LENGTH,"
+                + " c.NUMERIC_SCALE AS DECIMAL_DIGITS, c.NUMERIC_PRECISION_RADIX AS NUM_PREC_RADIX,"
+                // the driver takes the columns of a primary key for not null
+                + " CASE WHEN c.IS_NULLABLE = 'NO' OR EXISTS (SELECT 1"
+                + "  FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS p"
+                + "  JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE k ON k.CONSTRAINT_CATALOG = p.CONSTRAINT_CATALOG"
+                + "   AND k.CONSTRAINT_SCHEMA = p.CONSTRAINT_SCHEMA AND k.CONSTRAINT_NAME = p.CONSTRAINT_NAME"
+                + "  WHERE p.CONSTRAINT_TYPE = 'PRIMARY KEY' AND k.TABLE_CATALOG = c.TABLE_CATALOG"
+                + "   AND k.TABLE_SCHEMA = c.TABLE_SCHEMA AND k.TABLE_NAME = c.TABLE_NAME"
+                + "   AND k.COLUMN_NAME = c.COLUMN_NAME) THEN 0 ELSE 1 END AS NULLABLE,"
+                + " CAST(NULL AS VARCHAR(1)) AS REMARKS, c.COLUMN_DEFAULT AS COLUMN_DEF,"
+                + " CAST(NULL AS INTEGER) AS SQL_DATA_TYPE, CAST(NULL AS INTEGER) AS SQL_DATETIME_SUB,"
+                + " c.CHARACTER_OCTET_LENGTH AS CHAR_OCTET_LENGTH, c.ORDINAL_POSITION, c.IS_NULLABLE"
+                + " FROM INFORMATION_SCHEMA.COLUMNS c"
+                + " WHERE 1 = 1";
+
+        private static final String PRIMARY_KEYS = "SELECT k.TABLE_CATALOG AS TABLE_CAT,"
+                + " k.TABLE_SCHEMA AS TABLE_SCHEM, k.TABLE_NAME, k.COLUMN_NAME,"
+                + " k.ORDINAL_POSITION AS KEY_SEQ, k.CONSTRAINT_NAME AS PK_NAME"
+                + " FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS p"
+                + " JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE k ON k.CONSTRAINT_CATALOG = p.CONSTRAINT_CATALOG"
+                + "  AND k.CONSTRAINT_SCHEMA = p.CONSTRAINT_SCHEMA AND k.CONSTRAINT_NAME = p.CONSTRAINT_NAME"
+                + " WHERE p.CONSTRAINT_TYPE = 'PRIMARY KEY'";
+
+        private static final String IMPORTED_KEYS = "SELECT p.TABLE_CATALOG AS PKTABLE_CAT,"
+                + " p.TABLE_SCHEMA AS PKTABLE_SCHEM, p.TABLE_NAME AS PKTABLE_NAME, p.COLUMN_NAME AS PKCOLUMN_NAME,"
+                + " f.TABLE_CATALOG AS FKTABLE_CAT, f.TABLE_SCHEMA AS FKTABLE_SCHEM, f.TABLE_NAME AS FKTABLE_NAME,"
+                + " f.COLUMN_NAME AS FKCOLUMN_NAME, f.ORDINAL_POSITION AS KEY_SEQ,"
+                + " CASE r.UPDATE_RULE WHEN 'CASCADE' THEN 0 WHEN 'RESTRICT' THEN 1 WHEN 'SET NULL' THEN 2"
+                + "  WHEN 'SET DEFAULT' THEN 4 ELSE 3 END AS UPDATE_RULE,"
+                + " CASE r.DELETE_RULE WHEN 'CASCADE' THEN 0 WHEN 'RESTRICT' THEN 1 WHEN 'SET NULL' THEN 2"
+                + "  WHEN 'SET DEFAULT' THEN 4 ELSE 3 END AS DELETE_RULE,"
+                + " r.CONSTRAINT_NAME AS FK_NAME, r.UNIQUE_CONSTRAINT_NAME AS PK_NAME, 7 AS DEFERRABILITY"
+                + " FROM INFORMATION_SCHEMA.REFERENTIAL_CONSTRAINTS r"
+                + " JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE f ON f.CONSTRAINT_CATALOG = r.CONSTRAINT_CATALOG"
+                + "  AND f.CONSTRAINT_SCHEMA = r.CONSTRAINT_SCHEMA AND f.CONSTRAINT_NAME = r.CONSTRAINT_NAME"
+                + " JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE p ON p.CONSTRAINT_CATALOG = r.UNIQUE_CONSTRAINT_CATALOG"
+                + "  AND p.CONSTRAINT_SCHEMA = r.UNIQUE_CONSTRAINT_SCHEMA"
+                + "  AND p.CONSTRAINT_NAME = r.UNIQUE_CONSTRAINT_NAME"
+                + "  AND p.ORDINAL_POSITION = f.POSITION_IN_UNIQUE_CONSTRAINT"
+                + " WHERE 1 = 1";
+
+        private static final String INDEXES = "SELECT TABLE_CAT, TABLE_SCHEM, TABLE_NAME, NON_UNIQUE,"
+                + " INDEX_QUALIFIER, INDEX_NAME, TYPE, ORDINAL_POSITION, COLUMN_NAME, ASC_OR_DESC,"
+                + " CARDINALITY, PAGES, FILTER_CONDITION"
+                + " FROM INFORMATION_SCHEMA.SYSTEM_INDEXINFO"
+                + " WHERE 1 = 1";
+
+        @Override
+        public ResultSet getTables(Connection conn, String catalog, String schemaPattern,
+                                   String tableNamePattern, String[] types) throws SQLException {
+            if (!knowsTypes(types, "TABLE", "VIEW", "SYSTEM TABLE", "GLOBAL TEMPORARY")) {
+                return null;
+            }
+            return query(TABLES)
+                    .and("TABLE_CATALOG = ?", catalog)
+                    .and("TABLE_SCHEMA LIKE ?", schemaPattern)
+                    .and("TABLE_NAME LIKE ?", tableNamePattern)
+                    .append(") t WHERE 1 = 1")
+                    .in("TABLE_TYPE", types)
+                    .append(" ORDER BY TABLE_TYPE, TABLE_CAT, TABLE_SCHEM, TABLE_NAME")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getColumns(Connection conn, String catalog, String schemaPattern,
+                                    String tableNamePattern) throws SQLException {
+            return query(COLUMNS)
+                    .and("c.TABLE_CATALOG = ?", catalog)
+                    .and("c.TABLE_SCHEMA LIKE ?", schemaPattern)
+                    .and("c.TABLE_NAME LIKE ?", tableNamePattern)
+                    .append(" ORDER BY c.TABLE_CATALOG, c.TABLE_SCHEMA, c.TABLE_NAME, c.ORDINAL_POSITION")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getPrimaryKeys(Connection conn, String catalog, String schema,
+                                        String table) throws SQLException {
+            return query(PRIMARY_KEYS)
+                    .and("k.TABLE_CATALOG = ?", catalog)
+                    .and("k.TABLE_SCHEMA = ?", schema)
+                    .and("k.TABLE_NAME = ?", table)
+                    .append(" ORDER BY k.COLUMN_NAME")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getImportedKeys(Connection conn, String catalog, String schema,
+                                         String table) throws SQLException {
+            return query(IMPORTED_KEYS)
+                    .and("f.TABLE_CATALOG = ?", catalog)
+                    .and("f.TABLE_SCHEMA = ?", schema)
+                    .and("f.TABLE_NAME = ?", table)
+                    .append(" ORDER BY p.TABLE_CATALOG, p.TABLE_SCHEMA, p.TABLE_NAME, r.CONSTRAINT_NAME,"
+                            + " f.ORDINAL_POSITION")
+                    .execute(conn);
+        }
+
+        @Override
+        public ResultSet getIndexInfo(Connection conn, String catalog, String schema,
+                                      String table) throws SQLException {
+            return query(INDEXES)
+                    .and("TABLE_CAT = ?", catalog)
+                    .and("TABLE_SCHEM = ?", schema)
+                    .and("TABLE_NAME = ?", table)
+                    .append(" ORDER BY NON_UNIQUE, TYPE, INDEX_NAME, ORDINAL_POSITION")
+                    .execute(conn);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.riversql.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the columns of every table of a synthetic H2 schema, once table by
+ * table as the tree nodes did, and once with
+ * <TT>MetaDataCache.prefetchColumns()</TT> before going through the
+ * tables. H2 runs in process, so this only measures the work per call;
+ * over a network each call also costs a round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ColumnPrefetchBenchmark {
+
+    @Param({"5000"})
+    int tables;
+
+    private SQLConnection conn;
+    private ITableInfo[] tableInfos;
+
+    @Setup(Level.Trial)
+    public void createSchema() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:prefetch"), null, driver);
+        Statement st = conn.createStatement();
+        for (int i = 0; i < tables; i++) {
+            st.execute("CREATE TABLE T" + i + " (ID INT PRIMARY KEY, NAME VARCHAR(64), AMOUNT DECIMAL(12,2), "
+                    + "CREATED TIMESTAMP, PARENT_ID INT)");
+        }
+        st.close();
+        tableInfos = conn.getSQLMetaData().getTables(null, "PUBLIC", "%", new String[]{"TABLE"}, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void dropSchema() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public void perTable(Blackhole bh) throws SQLException {
+        SQLDatabaseMetaData md = conn.getSQLMetaData();
+        MetaDataCache cache = new MetaDataCache();
+        for (ITableInfo table : tableInfos) {
+            bh.consume(cache.getColumns(md, table));
+        }
+    }
+
+    @Benchmark
+    public void prefetched(Blackhole bh) throws SQLException {
+        SQLDatabaseMetaData md = conn.getSQLMetaData();
+        MetaDataCache cache = new MetaDataCache();
+        cache.prefetchColumns(md, null, "PUBLIC", tableInfos);
+        for (ITableInfo table : tableInfos) {
+            bh.consume(cache.getColumns(md, table));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ColumnPrefetchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
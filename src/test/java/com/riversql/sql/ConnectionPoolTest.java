@@ -0,0 +1,231 @@
+package com.riversql.sql;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPoolTest {
+
+    @After
+    public void tearDown() {
+        ConnectionPools.shutdown();
+    }
+
+    @Test
+    public void givenBackConnectionGetsItsInitialCatalogBack() throws Exception {
+        ConnectionPool pool = newPool();
+        Connection conn = pool.borrow();
+        conn.setCatalog("other");
+        pool.giveBack(conn);
+        Connection again = pool.borrow();
+        assertSame(conn, again);
+        assertEquals("main", again.getCatalog());
+    }
+
+    @Test
+    public void givenBackConnectionGetsItsInitialSessionStateBack() throws Exception {
+        ConnectionPool pool = newPool();
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        conn.setSchema("OTHER");
+        pool.giveBack(conn);
+        Connection again = pool.borrow();
+        assertSame(conn, again);
+        assertTrue(again.getAutoCommit());
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED, again.getTransactionIsolation());
+        assertEquals("PUBLIC", again.getSchema());
+    }
+
+    @Test
+    public void givenBackConnectionIsNoLongerReadOnly() throws Exception {
+        ConnectionPool pool = newPool();
+        Connection conn = pool.borrow();
+        conn.setReadOnly(true);
+        pool.giveBack(conn);
+        Connection again = pool.borrow();
+        assertSame(conn, again);
+        assertFalse(again.isReadOnly());
+    }
+
+    @Test
+    public void connectionWhichCannotBeResetIsNotReused() throws Exception {
+        ConnectionPool pool = newPool();
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.setCatalog(FakeDriver.FAILING);
+        pool.giveBack(conn);
+        assertTrue(conn.isClosed());
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+        assertNotSame(conn, pool.borrow());
+    }
+
+    @Test
+    public void minIdleConnectionsAreOpenedWithThePoolAndAfterEviction() throws Exception {
+        ConnectionPools.start(2, 4, 60000, 1);
+        try {
+            ConnectionPool pool = getPool("secret");
+            assertEquals(2, pool.getIdleCount());
+            assertEquals(0, pool.getActiveCount());
+
+            // the server closed one of them
+            Connection conn = pool.borrow();
+            conn.close();
+            pool.giveBack(conn);
+            assertEquals(1, pool.getIdleCount());
+            ConnectionPools.evictIdle();
+            assertEquals(2, pool.getIdleCount());
+            assertSame(pool, getPool("secret"));
+        } finally {
+            ConnectionPools.start(ConnectionPools.DEFAULT_MIN_IDLE, ConnectionPools.DEFAULT_MAX_SIZE,
+                    ConnectionPools.DEFAULT_IDLE_TIMEOUT_MINUTES * 60 * 1000L,
+                    ConnectionPools.DEFAULT_VALIDATION_TIMEOUT_SECONDS);
+        }
+    }
+
+    @Test
+    public void poolUnusedForTheIdleTimeoutIsRetiredWithItsIdleConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool(new FakeDriver(), "fake:db", "user", "secret", 1, 2, 0, 1, 1000);
+        pool.fill();
+        assertEquals(1, pool.getIdleCount());
+        Thread.sleep(5);
+        assertTrue(pool.retireIfUnused());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void poolsAreSharedByCredentials() throws Exception {
+        ConnectionPool pool = getPool("secret");
+        assertSame(pool, getPool("secret"));
+        assertNotSame(pool, getPool("other"));
+    }
+
+    @Test
+    public void poolsWithoutConnectionsAreDropped() throws Exception {
+        ConnectionPool unused = getPool("secret");
+        ConnectionPool used = getPool("other");
+        Connection conn = used.borrow();
+        ConnectionPools.evictIdle();
+        assertEquals(1, ConnectionPools.getPoolCount());
+        assertNotSame(unused, getPool("secret"));
+        assertSame(used, getPool("other"));
+        used.giveBack(conn);
+        assertEquals(1, used.getIdleCount());
+    }
+
+    @Test
+    public void retiredPoolClosesTheConnectionsGivenBack() throws Exception {
+        ConnectionPool pool = newPool();
+        assertTrue(pool.retireIfUnused());
+        Connection conn = pool.borrow();
+        pool.giveBack(conn);
+        assertTrue(conn.isClosed());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    private static ConnectionPool getPool(String password) throws SQLException {
+        return ConnectionPools.getPool(1, FakeDriver.class.getName(), "fake:db", "user", password);
+    }
+
+    private static ConnectionPool newPool() {
+        return new ConnectionPool(new FakeDriver(), "fake:db", "user", "secret", 0, 2, 60000, 1, 1000);
+    }
+
+    /**
+     * Opens connections which only keep their catalog, schema, isolation,
+     * autocommit, read-only and closed state. Rolling back fails while the
+     * catalog is <TT>FAILING</TT>.
+     */
+    public static class FakeDriver implements Driver {
+
+        static final String FAILING = "failing";
+
+        public Connection connect(String url, Properties info) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{Connection.class}, new InvocationHandler() {
+                        String catalog = "main";
+                        String schema = "PUBLIC";
+                        int isolation = Connection.TRANSACTION_READ_COMMITTED;
+                        boolean autoCommit = true;
+                        boolean readOnly;
+                        boolean closed;
+
+                        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                            String name = method.getName();
+                            if (name.equals("getCatalog")) {
+                                return catalog;
+                            } else if (name.equals("setCatalog")) {
+                                catalog = (String) args[0];
+                            } else if (name.equals("getSchema")) {
+                                return schema;
+                            } else if (name.equals("setSchema")) {
+                                schema = (String) args[0];
+                            } else if (name.equals("getTransactionIsolation")) {
+                                return isolation;
+                            } else if (name.equals("setTransactionIsolation")) {
+                                isolation = (Integer) args[0];
+                            } else if (name.equals("getAutoCommit")) {
+                                return autoCommit;
+                            } else if (name.equals("setAutoCommit")) {
+                                autoCommit = (Boolean) args[0];
+                            } else if (name.equals("isReadOnly")) {
+                                return readOnly;
+                            } else if (name.equals("setReadOnly")) {
+                                readOnly = (Boolean) args[0];
+                            } else if (name.equals("rollback") && FAILING.equals(catalog)) {
+                                throw new SQLException("connection reset");
+                            } else if (name.equals("close")) {
+                                closed = true;
+                            } else if (name.equals("isClosed")) {
+                                return closed;
+                            } else if (name.equals("isValid")) {
+                                return !closed;
+                            } else if (method.getReturnType() == boolean.class) {
+                                return false;
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+        public boolean acceptsURL(String url) {
+            return url.startsWith("fake:");
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.riversql.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders a synthetic schema of thousands of tables, each referencing
+ * <TT>keysPerTable</TT> tables created before it, and one table in fifty
+ * also a table created after it, which makes cycles of many tables. The
+ * keys are built in memory, so this measures the graph alone and not the
+ * reading of the keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ForeignKeyGraphBenchmark {
+
+    @Param({"1000", "10000"})
+    int tables;
+
+    @Param({"3"})
+    int keysPerTable;
+
+    private SQLConnection conn;
+    private List<ITableInfo> tableInfos;
+    private ForeignKeyInfo[] keys;
+
+    @Setup(Level.Trial)
+    public void createSchema() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        SQLDatabaseMetaData md = conn.getSQLMetaData();
+        tableInfos = new ArrayList<ITableInfo>(tables);
+        for (int i = 0; i < tables; i++) {
+            tableInfos.add(new TableInfo(null, "PUBLIC", "T" + i, "PUBLIC.T" + i, "TABLE", (String) null));
+        }
+        Random random = new Random(42);
+        List<ForeignKeyInfo> list = new ArrayList<ForeignKeyInfo>();
+        for (int i = 1; i < tables; i++) {
+            for (int k = 0; k < keysPerTable; k++) {
+                list.add(key(md, i, random.nextInt(i), list.size()));
+            }
+            if (i % 50 == 0 && i + 1 < tables) {
+                list.add(key(md, i, i + 1 + random.nextInt(Math.min(100, tables - i - 1)), list.size()));
+            }
+        }
+        keys = list.toArray(new ForeignKeyInfo[list.size()]);
+    }
+
+    private static ForeignKeyInfo key(SQLDatabaseMetaData md, int from, int to, int n) {
+        return new ForeignKeyInfo(null, "PUBLIC", "T" + to, "ID", null, "PUBLIC", "T" + from, "T" + to + "_ID",
+                0, 0, "FK" + n, "PK_T" + to, 0, null, md);
+    }
+
+    @TearDown(Level.Trial)
+    public void dropSchema() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public List<ITableInfo> insertionOrder() {
+        return new ForeignKeyGraph(tableInfos, keys).getInsertionOrder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ForeignKeyGraphBenchmark.class.getSimpleName()).build()).run();
+    }
+}
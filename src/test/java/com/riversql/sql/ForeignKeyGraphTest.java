@@ -0,0 +1,158 @@
+package com.riversql.sql;
+
+import com.riversql.databases.CatalogQueries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForeignKeyGraphTest {
+
+    private SQLConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE E (ID INT PRIMARY KEY, PARENT_ID INT REFERENCES E (ID))");
+        st.execute("CREATE TABLE D (ID INT PRIMARY KEY, C_ID INT)");
+        st.execute("CREATE TABLE C (ID INT PRIMARY KEY, D_ID INT REFERENCES D (ID))");
+        st.execute("ALTER TABLE D ADD CONSTRAINT D_C FOREIGN KEY (C_ID) REFERENCES C (ID)");
+        st.execute("CREATE TABLE B (ID INT PRIMARY KEY, C_ID INT REFERENCES C (ID))");
+        st.execute("CREATE TABLE A (ID INT PRIMARY KEY, B_ID INT REFERENCES B (ID))");
+        st.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void tablesComeAfterThoseTheyReference() throws Exception {
+        List<ITableInfo> tables = getTables();
+        ForeignKeyGraph graph = SQLUtilities.getForeignKeyGraph(tables, conn.getSQLMetaData(), null);
+        assertEquals(5, graph.size());
+        assertEquals(5, graph.getForeignKeys().size());
+        List<String> order = names(graph.getInsertionOrder());
+        assertTrue(order.indexOf("A") > order.indexOf("B"));
+        assertTrue(order.indexOf("B") > order.indexOf("C"));
+        assertTrue(order.indexOf("B") > order.indexOf("D"));
+
+        List<String> reversed = names(graph.getDeletionOrder());
+        assertTrue(reversed.indexOf("A") < reversed.indexOf("B"));
+        assertEquals(order, names(SQLUtilities.getInsertionOrder(tables, conn.getSQLMetaData(), null)));
+    }
+
+    @Test
+    public void cyclesTellWhichKeysToBreak() throws Exception {
+        ForeignKeyGraph graph = SQLUtilities.getForeignKeyGraph(getTables(), conn.getSQLMetaData(), null);
+        assertTrue(graph.hasCycles());
+        assertEquals(2, graph.getCycles().size());
+        for (ForeignKeyGraph.Cycle cycle : graph.getCycles()) {
+            List<String> tables = names(cycle.getTables());
+            assertEquals(1, cycle.getKeysToBreak().size());
+            ForeignKeyInfo fk = cycle.getKeysToBreak().get(0);
+            if (tables.size() == 1) {
+                assertEquals(Arrays.asList("E"), tables);
+                assertEquals("E", fk.getPrimaryKeyTableName());
+            } else {
+                assertEquals(2, tables.size());
+                assertTrue(tables.containsAll(Arrays.asList("C", "D")));
+                // the broken key points to the table inserted last
+                assertEquals(tables.get(0), fk.getForeignKeyTableName());
+                assertEquals(tables.get(1), fk.getPrimaryKeyTableName());
+            }
+        }
+    }
+
+    @Test
+    public void tablesWithoutKeysHaveNoCycles() throws Exception {
+        List<ITableInfo> tables = new ArrayList<ITableInfo>();
+        for (ITableInfo table : getTables()) {
+            if (table.getSimpleName().equals("A") || table.getSimpleName().equals("C")) {
+                tables.add(table);
+            }
+        }
+        ForeignKeyGraph graph = SQLUtilities.getForeignKeyGraph(tables, conn.getSQLMetaData(), null);
+        assertFalse(graph.hasCycles());
+        assertEquals(0, graph.getForeignKeys().size());
+    }
+
+    @Test
+    public void keysPrefetchedForTheSchemaAreNotReadAgain() throws Exception {
+        CatalogQueriesTest.H2CatalogQueries queries = new CatalogQueriesTest.H2CatalogQueries();
+        SQLDatabaseMetaData md = withQueries(queries);
+        MetaDataCache cache = new MetaDataCache();
+        List<ITableInfo> tables = getTables();
+        assertTrue(cache.prefetchKeys(md, null, "PUBLIC", tables.toArray(new ITableInfo[tables.size()])));
+        int calls = queries.calls;
+        long misses = cache.getStatistics().get("misses");
+
+        ForeignKeyGraph graph = ForeignKeyGraph.load(cache, md, tables, null);
+        assertEquals(5, graph.getForeignKeys().size());
+        assertEquals(2, graph.getCycles().size());
+        assertEquals(calls, queries.calls);
+        assertEquals(misses, cache.getStatistics().get("misses").longValue());
+    }
+
+    @Test
+    public void schemaWithoutKeysIsOnlyTrustedOnceTheDriverListedSome() throws Exception {
+        Statement st = conn.createStatement();
+        st.execute("CREATE SCHEMA FLAT");
+        st.execute("CREATE TABLE FLAT.X (ID INT PRIMARY KEY)");
+        st.execute("CREATE TABLE FLAT.Y (ID INT PRIMARY KEY)");
+        st.close();
+        ITableInfo[] flat = conn.getSQLMetaData().getTables(null, "FLAT", "%", new String[]{"TABLE"}, null);
+        assertEquals(2, flat.length);
+
+        // the H2 driver answers a null table with no rows
+        MetaDataCache cache = new MetaDataCache();
+        assertFalse(cache.prefetchKeys(conn.getSQLMetaData(), null, "PUBLIC",
+                getTables().toArray(new ITableInfo[0])));
+        assertFalse(cache.prefetchKeys(conn.getSQLMetaData(), null, "FLAT", flat));
+
+        SQLDatabaseMetaData md = withQueries(new CatalogQueriesTest.H2CatalogQueries());
+        cache = new MetaDataCache();
+        assertFalse(cache.prefetchKeys(md, null, "FLAT", flat));
+        assertTrue(cache.prefetchKeys(md, null, "PUBLIC", getTables().toArray(new ITableInfo[0])));
+        cache.invalidate();
+        assertTrue(cache.prefetchKeys(md, null, "FLAT", flat));
+        long misses = cache.getStatistics().get("misses");
+        assertEquals(0, ForeignKeyGraph.load(cache, md, Arrays.asList(flat), null).getForeignKeys().size());
+        assertEquals(misses, cache.getStatistics().get("misses").longValue());
+    }
+
+    private SQLDatabaseMetaData withQueries(final CatalogQueries queries) {
+        return new SQLDatabaseMetaData(conn) {
+            @Override
+            CatalogQueries getCatalogQueries() {
+                return queries;
+            }
+        };
+    }
+
+    private List<ITableInfo> getTables() throws Exception {
+        return new ArrayList<ITableInfo>(Arrays.asList(
+                conn.getSQLMetaData().getTables(null, "PUBLIC", "%", new String[]{"TABLE"}, null)));
+    }
+
+    private static List<String> names(List<ITableInfo> tables) {
+        List<String> names = new ArrayList<String>();
+        for (ITableInfo table : tables) {
+            names.add(table.getSimpleName());
+        }
+        return names;
+    }
+}
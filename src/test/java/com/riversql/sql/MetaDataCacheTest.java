@@ -0,0 +1,225 @@
+package com.riversql.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetaDataCacheTest {
+
+    private SQLConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        conn.createStatement().execute("CREATE TABLE T (ID INT PRIMARY KEY)");
+        conn.createStatement().execute("CREATE TABLE U (ID INT PRIMARY KEY, T_ID INT REFERENCES T(ID))");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MetaDataCache.configure(MetaDataCache.DEFAULT_TTL_MINUTES * 60 * 1000L, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        MetaDataCache.clearAll();
+        conn.close();
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final SQLDatabaseMetaData md = new SQLDatabaseMetaData(conn) {
+            @Override
+            public ITableInfo[] getTables(String catalog, String schemaPattern, String tableNamePattern,
+                                          String[] types, ProgressCallBack progressCallBack) throws SQLException {
+                loads.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return super.getTables(catalog, schemaPattern, tableNamePattern, types, progressCallBack);
+            }
+        };
+        final MetaDataCache cache = new MetaDataCache();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ITableInfo[]>> results = new ArrayList<Future<ITableInfo[]>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(new Callable<ITableInfo[]>() {
+                    public ITableInfo[] call() throws SQLException {
+                        return cache.getTables(md, null, "PUBLIC", "TABLE");
+                    }
+                }));
+                if (i == 0) {
+                    started.await(5, TimeUnit.SECONDS);
+                }
+            }
+            ITableInfo[] first = results.get(0).get();
+            assertEquals(2, first.length);
+            for (Future<ITableInfo[]> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        SQLDatabaseMetaData md = new SQLDatabaseMetaData(conn) {
+            @Override
+            public ITableInfo[] getTables(String catalog, String schemaPattern, String tableNamePattern,
+                                          String[] types, ProgressCallBack progressCallBack) throws SQLException {
+                if (loads.incrementAndGet() == 1) {
+                    throw new SQLException("first load fails");
+                }
+                return super.getTables(catalog, schemaPattern, tableNamePattern, types, progressCallBack);
+            }
+        };
+        MetaDataCache cache = new MetaDataCache();
+        try {
+            cache.getTables(md, null, "PUBLIC", "TABLE");
+        } catch (SQLException e) {
+            assertEquals("first load fails", e.getMessage());
+        }
+        assertEquals(2, cache.getTables(md, null, "PUBLIC", "TABLE").length);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void cachedReadsDoNotWaitForTheCatalog() throws Exception {
+        final CountDownLatch inside = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        // the connection of the test, whose driver takes its time to list the
+        // views; closed with it
+        SQLConnection slow = new SQLConnection(viewsListedOn(conn.getConnection(), inside, release), null,
+                conn.getSQLDriver());
+        final SQLDatabaseMetaData md = slow.getSQLMetaData();
+        final MetaDataCache cache = new MetaDataCache();
+        ITableInfo[] tables = cache.getTables(md, null, "PUBLIC", "TABLE");
+        final ITableInfo t = tables[0].getSimpleName().equals("T") ? tables[0] : tables[1];
+        final ITableInfo u = t == tables[0] ? tables[1] : tables[0];
+        cache.getColumns(md, t);
+        cache.getPrimaryKey(md, t);
+        cache.getImportedKeys(md, t);
+        cache.getIndexes(md, t);
+        final String product = md.getDatabaseProductName();
+        final boolean upperCase = md.storesUpperCaseIdentifiers();
+        final int keywords = md.getSQLKeywords().length;
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<ITableInfo[]> views = pool.submit(new Callable<ITableInfo[]>() {
+                public ITableInfo[] call() throws SQLException {
+                    return cache.getTables(md, null, "PUBLIC", "VIEW");
+                }
+            });
+            assertTrue(inside.await(5, TimeUnit.SECONDS));
+            Future<Integer> cached = pool.submit(new Callable<Integer>() {
+                public Integer call() throws SQLException {
+                    assertEquals(product, md.getDatabaseProductName());
+                    assertEquals(upperCase, md.storesUpperCaseIdentifiers());
+                    assertEquals(keywords, md.getSQLKeywords().length);
+                    return cache.getColumns(md, t).length + cache.getPrimaryKey(md, t).size()
+                            + cache.getImportedKeys(md, t).size() + cache.getIndexes(md, t).size();
+                }
+            });
+            assertEquals(Integer.valueOf(3), cached.get(2, TimeUnit.SECONDS));
+
+            // a miss reads the catalog, so waits for the views
+            Future<MetaDataRows> missed = pool.submit(new Callable<MetaDataRows>() {
+                public MetaDataRows call() throws SQLException {
+                    return cache.getImportedKeys(md, u);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(missed.isDone());
+            release.countDown();
+            assertEquals(1, missed.get(5, TimeUnit.SECONDS).size());
+            assertEquals(0, views.get(5, TimeUnit.SECONDS).length);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sharedCacheIsForgottenOnceUnused() throws Exception {
+        MetaDataCache.configure(0, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        conn.setMetaDataCache(cache);
+        Thread.sleep(5);
+        assertSame(cache, MetaDataCache.getCache(1, "sa"));
+        conn.close();
+        Thread.sleep(5);
+        assertNotSame(cache, MetaDataCache.getCache(1, "sa"));
+        assertEquals(1, MetaDataCache.getCaches().size());
+    }
+
+    /**
+     * @return <TT>conn</TT>, whose <TT>DatabaseMetaData.getTables()</TT>
+     * for views blocks until <TT>release</TT>, once <TT>inside</TT> is
+     * counted down.
+     */
+    private static Connection viewsListedOn(final Connection conn, final CountDownLatch inside,
+                                            final CountDownLatch release) {
+        return (Connection) Proxy.newProxyInstance(MetaDataCacheTest.class.getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        final Object result = invokeOn(conn, method, args);
+                        if (!method.getName().equals("getMetaData")) {
+                            return result;
+                        }
+                        return Proxy.newProxyInstance(MetaDataCacheTest.class.getClassLoader(),
+                                new Class[]{DatabaseMetaData.class}, new InvocationHandler() {
+                                    public Object invoke(Object proxy, Method method, Object[] args)
+                                            throws Throwable {
+                                        if (method.getName().equals("getTables") && args[3] != null
+                                                && Arrays.asList((String[]) args[3]).contains("VIEW")) {
+                                            inside.countDown();
+                                            release.await(10, TimeUnit.SECONDS);
+                                        }
+                                        return invokeOn(result, method, args);
+                                    }
+                                });
+                    }
+                });
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.riversql.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Field;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetaDataSnapshotsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SQLConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE T (ID INT PRIMARY KEY, NAME VARCHAR(20) DEFAULT 'x', PRICE DECIMAL(10, 2))");
+        st.execute("COMMENT ON TABLE T IS 'prices'");
+        st.execute("CREATE TABLE U (ID BIGINT PRIMARY KEY, T_ID INT REFERENCES T (ID) ON DELETE CASCADE)");
+        st.close();
+        MetaDataSnapshots.start(folder.getRoot());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MetaDataSnapshots.shutdown();
+        MetaDataSnapshots.start(null);
+        MetaDataCache.configure(MetaDataCache.DEFAULT_TTL_MINUTES * 60 * 1000L, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        MetaDataCache.clearAll();
+        conn.close();
+    }
+
+    @Test
+    public void allEntriesAreRestored() throws Exception {
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        SQLDatabaseMetaData md = conn.getSQLMetaData();
+        ITableInfo[] tables = read(cache);
+        // pinned entries are saved however old, the marker tells if they still hold
+        MetaDataCache.configure(1, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        Thread.sleep(5);
+        setMarker(cache, "1");
+        MetaDataSnapshots.save(cache);
+
+        MetaDataCache.configure(MetaDataCache.DEFAULT_TTL_MINUTES * 60 * 1000L, MetaDataCache.DEFAULT_MAX_ENTRIES);
+        MetaDataCache.clearAll();
+        MetaDataCache restored = MetaDataCache.getCache(1, "sa");
+        assertNotSame(cache, restored);
+        assertTrue(MetaDataSnapshots.restore(restored));
+
+        List<Object[]> expected = cache.getPinnedEntries();
+        assertEquals(1 + 4 * tables.length, expected.size());
+        assertEquals(expected.size(), restored.size());
+
+        ITableInfo[] restoredTables = restored.getTables(md, null, "PUBLIC", "TABLE");
+        assertEquals(tables.length, restoredTables.length);
+        for (int i = 0; i < tables.length; i++) {
+            ITableInfo table = tables[i];
+            ITableInfo copy = restoredTables[i];
+            assertEquals(table.getCatalogName(), copy.getCatalogName());
+            assertEquals(table.getSchemaName(), copy.getSchemaName());
+            assertEquals(table.getSimpleName(), copy.getSimpleName());
+            assertEquals(table.getQualifiedName(), copy.getQualifiedName());
+            assertEquals(table.getType(), copy.getType());
+            assertEquals(table.getRemarks(), copy.getRemarks());
+            assertEquals(table.getDatabaseObjectType(), copy.getDatabaseObjectType());
+
+            TableColumnInfo[] columns = cache.getColumns(md, table);
+            TableColumnInfo[] restoredColumns = restored.getColumns(md, copy);
+            assertEquals(columns.length, restoredColumns.length);
+            for (int j = 0; j < columns.length; j++) {
+                TableColumnInfo column = columns[j];
+                TableColumnInfo c = restoredColumns[j];
+                assertEquals(column.getQualifiedName(), c.getQualifiedName());
+                assertEquals(column.getSimpleName(), c.getSimpleName());
+                assertEquals(column.getTableName(), c.getTableName());
+                assertEquals(column.getColumnName(), c.getColumnName());
+                assertEquals(column.getDataType(), c.getDataType());
+                assertEquals(column.getTypeName(), c.getTypeName());
+                assertEquals(column.getColumnSize(), c.getColumnSize());
+                assertEquals(column.getDecimalDigits(), c.getDecimalDigits());
+                assertEquals(column.isNullAllowed(), c.isNullAllowed());
+                assertEquals(column.getDefaultValue(), c.getDefaultValue());
+                assertEquals(column.getOrdinalPosition(), c.getOrdinalPosition());
+                assertEquals(column.isNullable(), c.isNullable());
+            }
+
+            assertRows(cache.getPrimaryKey(md, table), restored.getPrimaryKey(md, copy));
+            assertRows(cache.getImportedKeys(md, table), restored.getImportedKeys(md, copy));
+            assertRows(cache.getIndexes(md, table), restored.getIndexes(md, copy));
+        }
+        assertEquals(0L, restored.getStatistics().get("misses").longValue());
+        assertTrue(restored.isComplete());
+    }
+
+    @Test
+    public void incompleteCachesAreNotSaved() throws Exception {
+        MetaDataCache cache = MetaDataCache.getCache(1, "sa");
+        setMarker(cache, "1");
+        // read by a session only
+        cache.getTables(conn.getSQLMetaData(), null, "PUBLIC", "TABLE");
+        MetaDataSnapshots.save(cache);
+        assertEquals(0, folder.getRoot().list().length);
+
+        // invalidated during the crawl
+        int generation = cache.getGeneration();
+        conn.setPinMetaData(true);
+        ITableInfo[] tables = cache.getTables(conn.getSQLMetaData(), null, "PUBLIC", "TABLE");
+        cache.invalidateTable(tables[0]);
+        assertFalse(cache.markComplete(generation));
+        MetaDataSnapshots.save(cache);
+        assertEquals(0, folder.getRoot().list().length);
+
+        read(cache);
+        cache.invalidateTable(tables[0]);
+        MetaDataSnapshots.save(cache);
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    /**
+     * Reads the tables of the schema as a crawl does.
+     */
+    private ITableInfo[] read(MetaDataCache cache) throws Exception {
+        SQLDatabaseMetaData md = conn.getSQLMetaData();
+        int generation = cache.getGeneration();
+        conn.setPinMetaData(true);
+        ITableInfo[] tables = cache.getTables(md, null, "PUBLIC", "TABLE");
+        for (ITableInfo table : tables) {
+            cache.getColumns(md, table);
+            cache.getPrimaryKey(md, table);
+            cache.getImportedKeys(md, table);
+            cache.getIndexes(md, table);
+        }
+        conn.setPinMetaData(false);
+        assertTrue(cache.markComplete(generation));
+        return tables;
+    }
+
+    private static void assertRows(MetaDataRows expected, MetaDataRows actual) {
+        assertEquals(expected.getColumns(), actual.getColumns());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Object[] row = expected.getRows().get(i);
+            Object[] copy = actual.getRows().get(i);
+            assertEquals(row.length, copy.length);
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] instanceof Number || row[j] instanceof Boolean || row[j] == null) {
+                    assertEquals(row[j], copy[j]);
+                } else {
+                    assertEquals(row[j].toString(), copy[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stands for the change marker read by the catalog queries, which H2
+     * has none of.
+     */
+    @SuppressWarnings("unchecked")
+    private static void setMarker(MetaDataCache cache, String marker) throws Exception {
+        Field field = MetaDataSnapshots.class.getDeclaredField("markers");
+        field.setAccessible(true);
+        ((Map<MetaDataCache, String>) field.get(null)).put(cache, marker);
+    }
+}
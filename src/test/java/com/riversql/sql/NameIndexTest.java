@@ -0,0 +1,127 @@
+package com.riversql.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NameIndexTest {
+
+    private NameIndex index;
+
+    @Before
+    public void setUp() {
+        index = new NameIndex();
+        index.tablesLoaded(null, "SALES", "TABLE", true, tables("SALES", "Orders", "ORDER_LINES", "Customers"));
+        index.tablesLoaded(null, "HR", "TABLE", true, tables("HR", "EMPLOYEES"));
+        index.columnsLoaded(null, "SALES", "Orders", columns("SALES", "Orders", "ORDER_ID", "CUSTOMER_ID",
+                "ORDERED_ON"));
+        index.columnsLoaded(null, "SALES", "Customers", columns("SALES", "Customers", "CUSTOMER_ID", "NAME"));
+        index.columnsLoaded(null, "HR", "EMPLOYEES", columns("HR", "EMPLOYEES", "EMPLOYEE_ID", "NAME"));
+    }
+
+    @Test
+    public void prefixIsCompletedRegardlessOfTheCase() {
+        List<String> expected = Arrays.asList("ORDER keyword", "ORDER_ID column", "ORDER_LINES table",
+                "ORDERED_ON column", "Orders table");
+        assertEquals(expected, complete(null, "ord", null, 50));
+        assertEquals(expected, complete(null, "ORD", null, 50));
+        assertEquals(expected.subList(0, 2), complete(null, "oRd", null, 2));
+        assertEquals(Arrays.asList("SALES schema"), complete(null, "sal", null, 50));
+        assertEquals(Collections.<String>emptyList(), complete(null, "zz", null, 50));
+    }
+
+    @Test
+    public void qualifierRestrictsToItsNames() {
+        assertEquals(Arrays.asList("Customers table", "ORDER_LINES table", "Orders table"),
+                complete("sales", "", null, 50));
+        assertEquals(Arrays.asList("CUSTOMER_ID column"), complete("ORDERS", "c", null, 50));
+        assertEquals(Arrays.asList("ORDER_ID column", "ORDERED_ON column"),
+                complete("Sales.Orders", "order", null, 50));
+        // the same table name in another schema
+        assertEquals(Arrays.asList("EMPLOYEE_ID column", "NAME column"), complete("hr.employees", "", null, 50));
+        assertEquals(Collections.<String>emptyList(), complete("HR.ORDERS", "", null, 50));
+    }
+
+    @Test
+    public void columnsOfTheTablesOfTheStatementComeFirst() {
+        List<String> names = complete(null, "n", Arrays.asList("Customers"), 50);
+        assertEquals("NAME column", names.get(0));
+        assertEquals("NOT keyword", names.get(1));
+        assertFalse(names.subList(1, names.size()).contains("NAME column"));
+
+        assertEquals("CUSTOMER_ID column", complete(null, "c", Arrays.asList("SALES.ORDERS"), 50).get(0));
+        assertEquals("CASCADE keyword", complete(null, "c", Arrays.asList("NO_SUCH_TABLE"), 50).get(0));
+    }
+
+    @Test
+    public void keywordsOfTheSourceAreAdded() {
+        assertFalse(index.hasSourceKeywords());
+        assertEquals(Collections.<String>emptyList(), complete(null, "lim", null, 50));
+        index.setKeywords(new String[]{" limit", "ilike", ""});
+        assertTrue(index.hasSourceKeywords());
+        assertEquals(Arrays.asList("LIMIT keyword"), complete(null, "lim", null, 50));
+        assertEquals(Arrays.asList("ILIKE keyword", "IN keyword", "INDEX keyword", "INNER keyword",
+                "INSERT keyword", "INTERSECT keyword", "INTO keyword", "IS keyword"), complete(null, "i", null, 50));
+    }
+
+    @Test
+    public void invalidatedNamesAreRemoved() {
+        index.invalidated(null, "SALES", "Orders");
+        assertEquals(Arrays.asList("Customers table", "ORDER_LINES table"), complete("SALES", "", null, 50));
+        assertEquals(Collections.<String>emptyList(), complete("Orders", "", null, 50));
+        assertEquals(Arrays.asList("ORDER keyword", "ORDER_LINES table"), complete(null, "ord", null, 50));
+        assertEquals(Arrays.asList("CUSTOMER_ID column", "Customers table"), complete(null, "cust", null, 50));
+
+        index.invalidated(null, "SALES", null);
+        assertEquals(Collections.<String>emptyList(), complete(null, "cust", null, 50));
+        assertEquals(Collections.<String>emptyList(), complete(null, "sal", null, 50));
+        // a name still held by another schema
+        assertEquals(Arrays.asList("NAME column"), complete(null, "name", null, 50));
+        assertEquals(Arrays.asList("EMPLOYEE_ID column", "EMPLOYEES table"), complete(null, "emp", null, 50));
+
+        index.invalidated(null, null, null);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void reloadedListReplacesTheOldOne() {
+        index.tablesLoaded(null, "HR", "TABLE", true, tables("HR", "STAFF"));
+        assertEquals(Arrays.asList("STAFF table"), complete("HR", "", null, 50));
+        index.tablesLoaded(null, "HR", "TABLE", false, tables("HR", "JOBS"));
+        assertEquals(Arrays.asList("JOBS table", "STAFF table"), complete("HR", "", null, 50));
+    }
+
+    private List<String> complete(String qualifier, String prefix, List<String> tables, int limit) {
+        List<String> names = new ArrayList<String>();
+        for (String[] name : index.complete(qualifier, prefix, tables, limit)) {
+            names.add(name[0] + " " + name[1]);
+        }
+        return names;
+    }
+
+    private static ITableInfo[] tables(String schema, String... names) {
+        ITableInfo[] tables = new ITableInfo[names.length];
+        for (int i = 0; i < names.length; i++) {
+            tables[i] = new TableInfo(null, schema, names[i], schema + "." + names[i], "TABLE", (String) null);
+        }
+        return tables;
+    }
+
+    private static TableColumnInfo[] columns(String schema, String table, String... names) {
+        TableColumnInfo[] columns = new TableColumnInfo[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = new TableColumnInfo(null, schema, table, names[i], Types.INTEGER, "INTEGER",
+                    10, 0, 10, 1, null, null, 0, i + 1, "YES");
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,140 @@
+package com.riversql.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectIndexTest {
+
+    private ObjectIndex index;
+
+    @Before
+    public void setUp() {
+        index = new ObjectIndex();
+        index.tablesLoaded(null, "SALES", "TABLE", true, tables("SALES", "ORDERS", "ORDER_LINES", "CUSTOMERS"));
+        index.tablesLoaded(null, "HR", "TABLE", true, tables("HR", "EMPLOYEES"));
+        index.columnsLoaded(null, "SALES", "ORDERS", columns("SALES", "ORDERS", "ORDER_ID", "CUSTOMER_ID",
+                "ORDERED_ON"));
+        index.columnsLoaded(null, "HR", "EMPLOYEES", columns("HR", "EMPLOYEES", "EMPLOYEE_ID", "NAME"));
+        index.setObjects(Arrays.asList(new String[]{null, "SALES", "ORDERS_PKG", "PACKAGE"},
+                new String[]{null, "SALES", "CUSTOMERS", "SYNONYM"},
+                new String[]{null, "HR", "HIRE", "PROCEDURE"}));
+    }
+
+    @Test
+    public void equalThenPrefixThenContainingThenClose() {
+        assertEquals(Arrays.asList("ORDERS table", "ORDERS_PKG object", "ORDER_ID column", "ORDERED_ON column",
+                "ORDER_LINES table"), find("orders", 10));
+        assertEquals(Arrays.asList("ORDER_LINES table"), find("LINES", 10));
+        // one sequence of three in common is not enough
+        assertEquals(Collections.<String>emptyList(), find("ordxyz", 10));
+        assertEquals(Arrays.asList("ORDERS table", "ORDERS_PKG object"), find("orders", 2));
+    }
+
+    @Test
+    public void tablesComeBeforeObjectsAndColumns() {
+        assertEquals(Arrays.asList("CUSTOMERS table", "CUSTOMERS object", "CUSTOMER_ID column"),
+                find("customer", 10));
+        // shorter texts are looked for in every name
+        assertEquals(Arrays.asList("HIRE object"), find("hi", 10));
+        assertEquals(Arrays.asList("CUSTOMERS table", "CUSTOMERS object", "CUSTOMER_ID column"),
+                find("cu", 10));
+    }
+
+    @Test
+    public void qualifierRestrictsToItsSchemaOrTable() {
+        assertEquals(Arrays.asList("NAME column"), find("hr.name", 10));
+        assertEquals(Collections.<String>emptyList(), find("sales.name", 10));
+        assertEquals(Arrays.asList("ORDER_ID column", "ORDERED_ON column", "CUSTOMER_ID column"),
+                find("orders.order_id", 10));
+        assertEquals(Arrays.asList("EMPLOYEES table", "HIRE object", "NAME column", "EMPLOYEE_ID column"),
+                find("HR.", 10));
+        assertEquals(Collections.<String>emptyList(), find("  ", 10));
+    }
+
+    @Test
+    public void wildcardsMatchTheWholeName() {
+        assertEquals(Arrays.asList("ORDERS table", "ORDER_LINES table", "ORDERS_PKG object", "ORDER_ID column",
+                "ORDERED_ON column"), find("ord*", 10));
+        assertEquals(Arrays.asList("ORDERS table", "ORDER_LINES table"), find("ord%s", 10));
+        assertEquals(Arrays.asList("ORDER_LINES table"), find("*lines", 10));
+        assertEquals(Collections.<String>emptyList(), find("lines*", 10));
+        assertEquals(Arrays.asList("ORDER_ID column", "CUSTOMER_ID column", "EMPLOYEE_ID column"),
+                find("*_i?", 10));
+        assertEquals(Arrays.asList("HIRE object"), find("h?r?", 10));
+        assertEquals(Arrays.asList("ORDERS table", "CUSTOMERS table", "EMPLOYEES table"), find("%", 3));
+        assertEquals(Arrays.asList("ORDER_ID column", "CUSTOMER_ID column"), find("sales.*id", 10));
+        // the other characters are not patterns
+        assertEquals(Collections.<String>emptyList(), find("ord[e]*", 10));
+    }
+
+    @Test
+    public void invalidatedSchemaLeavesTheIndex() {
+        assertTrue(index.hasObjects());
+        index.invalidated(null, "SALES", "ORDERS");
+        assertEquals(Arrays.asList("ORDERS_PKG object", "ORDER_LINES table"), find("orders", 10));
+        assertTrue(index.hasObjects());
+
+        index.invalidated(null, "SALES", null);
+        assertEquals(Collections.<String>emptyList(), find("ord", 10));
+        assertEquals(Collections.<String>emptyList(), find("sales.%", 10));
+        assertFalse(index.hasObjects());
+        // the other schemas are kept
+        assertEquals(Arrays.asList("EMPLOYEES table", "HIRE object", "NAME column", "EMPLOYEE_ID column"),
+                find("%", 10));
+        assertEquals(Arrays.asList("EMPLOYEE_ID column", "EMPLOYEES table"), find("employee_id", 10));
+
+        index.invalidated(null, null, null);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void objectsAreReadOnceAtATime() {
+        ObjectIndex index = new ObjectIndex();
+        assertFalse(index.hasObjects());
+        assertTrue(index.markObjectsLoading());
+        assertFalse(index.markObjectsLoading());
+        // the read failed
+        index.resetObjectsLoading();
+        assertTrue(index.markObjectsLoading());
+        index.setObjects(Collections.<String[]>emptyList());
+        assertTrue(index.hasObjects());
+        assertFalse(index.markObjectsLoading());
+        index.invalidateObjects();
+        assertTrue(index.markObjectsLoading());
+    }
+
+    private List<String> find(String text, int limit) {
+        List<String> names = new ArrayList<String>();
+        for (ObjectIndex.Entry entry : index.find(text, limit)) {
+            names.add(entry.getName() + " " + entry.getKind());
+        }
+        return names;
+    }
+
+    private static ITableInfo[] tables(String schema, String... names) {
+        ITableInfo[] tables = new ITableInfo[names.length];
+        for (int i = 0; i < names.length; i++) {
+            tables[i] = new TableInfo(null, schema, names[i], schema + "." + names[i], "TABLE", (String) null);
+        }
+        return tables;
+    }
+
+    private static TableColumnInfo[] columns(String schema, String table, String... names) {
+        TableColumnInfo[] columns = new TableColumnInfo[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = new TableColumnInfo(null, schema, table, names[i], Types.INTEGER, "INTEGER",
+                    10, 0, 10, 1, null, null, 0, i + 1, "YES");
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,87 @@
+package com.riversql.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+
+public class SQLConnectionTest {
+
+    private SQLConnection conn;
+    private Cursor cursor;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(DriverManager.getConnection("jdbc:h2:mem:"), null, driver);
+        cursor = new Cursor();
+        conn.setOpenCursor(cursor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void runningAStatementClosesTheOpenCursor() throws Exception {
+        Statement st = conn.createStatement();
+        st.close();
+        assertEquals(1, cursor.closed);
+    }
+
+    @Test
+    public void preparingAStatementClosesTheOpenCursor() throws Exception {
+        conn.prepareStatement("SELECT 1").close();
+        assertEquals(1, cursor.closed);
+    }
+
+    @Test
+    public void readingMetaDataClosesTheOpenCursor() throws Exception {
+        conn.getSQLMetaData().getTables(null, null, "%", new String[]{"TABLE"}, null);
+        assertEquals(1, cursor.closed);
+    }
+
+    @Test
+    public void endingTheTransactionClosesTheOpenCursor() throws Exception {
+        conn.getAutoCommit();
+        assertEquals(1, cursor.closed);
+        conn.setOpenCursor(cursor);
+        conn.rollback();
+        assertEquals(2, cursor.closed);
+    }
+
+    @Test
+    public void closingTheConnectionClosesTheOpenCursor() throws Exception {
+        conn.close();
+        assertEquals(1, cursor.closed);
+    }
+
+    @Test
+    public void releasedCursorIsNotClosed() throws Exception {
+        conn.releaseOpenCursor(new Cursor());
+        conn.releaseOpenCursor(cursor);
+        conn.createStatement().close();
+        assertEquals(0, cursor.closed);
+    }
+
+    @Test
+    public void cursorIsClosedOnce() throws Exception {
+        conn.createStatement().close();
+        conn.createStatement().close();
+        assertEquals(1, cursor.closed);
+    }
+
+    private static final class Cursor implements AutoCloseable {
+        int closed;
+
+        public void close() {
+            closed++;
+        }
+    }
+}
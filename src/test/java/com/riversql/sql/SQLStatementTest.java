@@ -0,0 +1,160 @@
+package com.riversql.sql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SQLStatementTest {
+
+    @Test
+    public void kinds() {
+        assertEquals(SQLStatement.Kind.QUERY, SQLStatement.parse("select * from t").getKind());
+        assertEquals(SQLStatement.Kind.QUERY, SQLStatement.parse("((SELECT 1))").getKind());
+        assertEquals(SQLStatement.Kind.QUERY, SQLStatement.parse("-- comment\n/* other */ WITH x AS (SELECT 1) SELECT * FROM x").getKind());
+        assertEquals(SQLStatement.Kind.DML, SQLStatement.parse("insert into t values (1)").getKind());
+        assertEquals(SQLStatement.Kind.DML, SQLStatement.parse("MERGE INTO t USING u ON (1 = 1)").getKind());
+        assertEquals(SQLStatement.Kind.DDL, SQLStatement.parse("create table t (id int)").getKind());
+        assertEquals(SQLStatement.Kind.OTHER, SQLStatement.parse("GRANT SELECT ON t TO u").getKind());
+        assertEquals(SQLStatement.Kind.OTHER, SQLStatement.parse("").getKind());
+        assertFalse(SQLStatement.parse("SELECT 1").changesMetaData());
+        assertNull(SQLStatement.parse("SELECT 1").getObjectType());
+    }
+
+    @Test
+    public void queriesWhichWriteAreNotReadOnly() {
+        assertTrue(SQLStatement.parse("SELECT * FROM t WHERE name = 'delete me' -- update\n").isReadOnly());
+        assertTrue(SQLStatement.parse("SELECT id FROM t FOR UPDATE").isReadOnly());
+        assertTrue(SQLStatement.parse("SELECT id FROM t FOR NO KEY UPDATE").isReadOnly());
+        assertTrue(SQLStatement.parse("SELECT \"delete\", update_count FROM t").isReadOnly());
+        assertTrue(SQLStatement.parse("SHOW CREATE TABLE t").isReadOnly());
+        assertTrue(SQLStatement.parse("EXPLAIN SELECT 1").isReadOnly());
+
+        assertFalse(SQLStatement.parse("WITH d AS (DELETE FROM t RETURNING *) SELECT * FROM d").isReadOnly());
+        assertFalse(SQLStatement.parse("EXPLAIN ANALYZE DELETE FROM t").isReadOnly());
+        assertFalse(SQLStatement.parse("SELECT * INTO newtable FROM t").isReadOnly());
+        assertFalse(SQLStatement.parse("SELECT * FROM t INTO OUTFILE '/tmp/t.csv'").isReadOnly());
+        assertFalse(SQLStatement.parse("DELETE FROM t").isReadOnly());
+        assertFalse(SQLStatement.parse("CREATE TABLE t (id INT)").isReadOnly());
+
+        // beyond the words read for DDL
+        StringBuilder sql = new StringBuilder("SELECT 1");
+        for (int i = 0; i < 300; i++) {
+            sql.append(", ").append(i);
+        }
+        assertTrue(SQLStatement.parse(sql.toString()).isReadOnly());
+        sql.append(" INTO newtable");
+        assertFalse(SQLStatement.parse(sql.toString()).isReadOnly());
+    }
+
+    @Test
+    public void createTable() {
+        SQLStatement s = SQLStatement.parse("CREATE GLOBAL TEMPORARY TABLE IF NOT EXISTS app.\"Order\" (id INT)");
+        assertEquals("CREATE", s.getVerb());
+        assertEquals("TABLE", s.getObjectType());
+        assertTrue(s.changesMetaData());
+        assertTrue(s.changesObjectList());
+        assertEquals(1, s.getNames().size());
+        assertArrayEquals(new String[]{"app", "\"Order\""}, s.getNames().get(0));
+        assertNull(s.getTable());
+    }
+
+    @Test
+    public void createOrReplaceSkipsModifiers() {
+        SQLStatement s = SQLStatement.parse("create or replace force editionable view v as select 1 from dual");
+        assertEquals("VIEW", s.getObjectType());
+        assertArrayEquals(new String[]{"v"}, s.getNames().get(0));
+
+        s = SQLStatement.parse("CREATE DEFINER = `root`@`localhost` SQL SECURITY DEFINER VIEW `v` AS SELECT 1");
+        assertEquals("VIEW", s.getObjectType());
+        assertArrayEquals(new String[]{"`v`"}, s.getNames().get(0));
+
+        s = SQLStatement.parse("CREATE OR REPLACE PACKAGE BODY hr.pkg AS END;");
+        assertEquals("PACKAGE BODY", s.getObjectType());
+        assertArrayEquals(new String[]{"hr", "pkg"}, s.getNames().get(0));
+    }
+
+    @Test
+    public void dropSeveral() {
+        SQLStatement s = SQLStatement.parse("DROP TABLE IF EXISTS a, s.b, [c d] CASCADE");
+        assertEquals("TABLE", s.getObjectType());
+        List<String[]> names = s.getNames();
+        assertEquals(3, names.size());
+        assertArrayEquals(new String[]{"a"}, names.get(0));
+        assertArrayEquals(new String[]{"s", "b"}, names.get(1));
+        assertArrayEquals(new String[]{"[c d]"}, names.get(2));
+        assertTrue(s.changesObjectList());
+    }
+
+    @Test
+    public void indexesAndTriggersKeepTheirTable() {
+        SQLStatement s = SQLStatement.parse("CREATE UNIQUE INDEX CONCURRENTLY idx ON ONLY s.t (a, b)");
+        assertEquals("INDEX", s.getObjectType());
+        assertArrayEquals(new String[]{"idx"}, s.getNames().get(0));
+        assertArrayEquals(new String[]{"s", "t"}, s.getTable());
+
+        s = SQLStatement.parse("CREATE INDEX ON t (a)");
+        assertEquals(0, s.getNames().size());
+        assertArrayEquals(new String[]{"t"}, s.getTable());
+
+        s = SQLStatement.parse("CREATE TRIGGER trg BEFORE INSERT OR UPDATE ON t FOR EACH ROW BEGIN END");
+        assertEquals("TRIGGER", s.getObjectType());
+        assertArrayEquals(new String[]{"t"}, s.getTable());
+    }
+
+    @Test
+    public void alterChangesTheListOnlyWhenRenaming() {
+        SQLStatement s = SQLStatement.parse("ALTER TABLE t ADD COLUMN c INT");
+        assertEquals("TABLE", s.getObjectType());
+        assertTrue(s.changesMetaData());
+        assertFalse(s.changesObjectList());
+        assertTrue(SQLStatement.parse("ALTER TABLE t RENAME TO u").changesObjectList());
+    }
+
+    @Test
+    public void renameListsBothNames() {
+        SQLStatement s = SQLStatement.parse("RENAME TABLE a TO b, c TO d");
+        assertEquals("TABLE", s.getObjectType());
+        assertEquals(4, s.getNames().size());
+        assertArrayEquals(new String[]{"d"}, s.getNames().get(3));
+        assertTrue(s.changesObjectList());
+    }
+
+    @Test
+    public void commentOnColumnNamesItsTable() {
+        SQLStatement s = SQLStatement.parse("COMMENT ON COLUMN s.t.c IS 'it''s a -- comment'");
+        assertEquals("COLUMN", s.getObjectType());
+        assertArrayEquals(new String[]{"s", "t", "c"}, s.getNames().get(0));
+        assertArrayEquals(new String[]{"s", "t"}, s.getTable());
+        assertFalse(s.changesObjectList());
+    }
+
+    @Test
+    public void truncateDoesNotChangeTheCatalog() {
+        SQLStatement s = SQLStatement.parse("TRUNCATE TABLE t");
+        assertEquals(SQLStatement.Kind.DDL, s.getKind());
+        assertFalse(s.changesMetaData());
+    }
+
+    @Test
+    public void tokenizeSkipsCommentsAndLiterals() {
+        assertEquals(Arrays.asList("SELECT", "'", ",", "\"a\"\"b\"", "FROM", "t"),
+                SQLStatement.tokenize("SELECT 'x -- y', \"a\"\"b\" /* c */ FROM # d\n t"));
+    }
+
+    @Test
+    public void storedCase() {
+        assertEquals("ABC", SQLStatement.toStoredCase("abc", true, false));
+        assertEquals("abc", SQLStatement.toStoredCase("ABC", false, true));
+        assertEquals("AbC", SQLStatement.toStoredCase("AbC", false, false));
+        assertEquals("a\"b", SQLStatement.toStoredCase("\"a\"\"b\"", true, false));
+        assertEquals("a b", SQLStatement.toStoredCase("[a b]", true, false));
+        assertEquals("Mixed", SQLStatement.toStoredCase("`Mixed`", false, true));
+    }
+}
@@ -0,0 +1,102 @@
+package com.riversql.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JSONStreamWriterTest {
+
+    @Test
+    public void rowsAreEncodedLikeOrgJson() throws Exception {
+        List<Object> row = Arrays.<Object>asList("a \"quoted\" </script> line\n", 42, 3000000000L, 1.5d,
+                new BigDecimal("12345678901234567890.000001"), true, null,
+                new Timestamp(0), "\u00e9\u4e2d\u0001");
+        StringWriter out = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(out);
+        // as the rows were put in the JSONArray of the page before
+        JSONArray expected = new JSONArray();
+        writer.array();
+        for (Object value : row) {
+            writer.value(value);
+            expected.put(value == null ? JSONObject.NULL : value);
+        }
+        writer.endArray();
+
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void resultIsWrittenAsTheClientReadsIt() throws Exception {
+        StringWriter out = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(out);
+        writer.object();
+        writer.key("meta").array().object().key("l").value("ID").key("al").value("right").endObject().endArray();
+        writer.key("data").array().array().value(1).endArray().array().value(2).endArray().endArray();
+        writer.key("info").array().value("0001").value("SELECT ID FROM T").value(true).endArray();
+        writer.endObject();
+
+        JSONObject result = new JSONObject(out.toString());
+        assertEquals("ID", result.getJSONArray("meta").getJSONObject(0).getString("l"));
+        assertEquals(2, result.getJSONArray("data").getJSONArray(1).getInt(0));
+        assertEquals("SELECT ID FROM T", result.getJSONArray("info").getString(1));
+    }
+
+    @Test
+    public void unwindingAfterAnErrorKeepsTheOutputWellFormed() throws Exception {
+        StringWriter out = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(out);
+        writer.object();
+        int depth = writer.depth();
+        // a row was half written when reading the next column failed
+        writer.key("data").array().array().value(1).value("a");
+        writer.unwind(depth);
+        writer.key("error").value("failed");
+        writer.endObject();
+
+        JSONObject result = new JSONObject(out.toString());
+        assertEquals("failed", result.getString("error"));
+        assertEquals(2, result.getJSONArray("data").getJSONArray(0).length());
+    }
+
+    @Test
+    public void danglingKeyIsGivenANullValue() throws Exception {
+        StringWriter out = new StringWriter();
+        JSONStreamWriter writer = new JSONStreamWriter(out);
+        writer.object().key("meta");
+        writer.unwind(0);
+
+        assertEquals("{\"meta\":null}", out.toString());
+    }
+
+    @Test
+    public void misplacedKeyIsRefused() throws Exception {
+        JSONStreamWriter writer = new JSONStreamWriter(new StringWriter());
+        writer.array();
+        try {
+            writer.key("data");
+            fail("an array has no keys");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void writerCanBeReused() throws Exception {
+        JSONStreamWriter writer = new JSONStreamWriter(new StringWriter());
+        writer.array().value(1);
+        StringWriter out = new StringWriter();
+        writer.reset(out);
+        writer.array().value(2).endArray();
+
+        assertEquals("[2]", out.toString());
+    }
+}
@@ -0,0 +1,183 @@
+package com.riversql.utils;
+
+import com.riversql.IDManager;
+import com.riversql.WebSQLSession;
+import com.riversql.sql.ConnectionPool;
+import com.riversql.sql.ConnectionPools;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class QueryJobTest {
+
+    private WebSQLSession sessions;
+    private ConnectionPool pool;
+    private SQLConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        sessions = new WebSQLSession();
+        pool = ConnectionPools.getPool(1, "org.h2.Driver", "jdbc:h2:mem:jobs;DB_CLOSE_DELAY=-1", "sa", "");
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(pool.borrow(), null, driver, pool);
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE T (ID INT PRIMARY KEY)");
+        st.execute("INSERT INTO T VALUES (1), (2), (3)");
+        st.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        IDManager.configure(IDManager.DEFAULT_MAX_SIZE, IDManager.DEFAULT_IDLE_TIMEOUT);
+        conn.rollback();
+        conn.setAutoCommit(true);
+        Statement st = conn.createStatement();
+        st.execute("DROP ALL OBJECTS");
+        st.close();
+        conn.close();
+        ConnectionPools.shutdown();
+    }
+
+    @Test
+    public void jobRunsOnAConnectionOfItsOwn() throws Exception {
+        conn.setAutoCommit(false);
+        Statement st = conn.createStatement();
+        st.execute("INSERT INTO T VALUES (4)");
+        st.close();
+
+        QueryJob job = job("SELECT COUNT(*) FROM T", "INSERT INTO T VALUES (5)");
+        job.run();
+
+        assertEquals(QueryJob.DONE, job.getStatus());
+        assertNull(job.getError());
+        // what the session did not commit is not seen, the job commits its own work
+        assertEquals(3, data(job, 0).getJSONArray(0).getInt(0));
+        conn.rollback();
+        assertEquals(4, count(conn));
+        // no result left to read : the connection is given back at once
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    public void connectionIsKeptForTheResultsLeftToRead() throws Exception {
+        QueryJob job = job("SELECT ID FROM T ORDER BY ID");
+        job.run();
+        assertEquals(2, data(job, 0).length());
+        assertEquals(2, pool.getActiveCount());
+
+        sessions.getIDManager().release(job.getId());
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    public void expiredJobReleasesItsResults() throws Exception {
+        QueryJob job = job("SELECT ID FROM T ORDER BY ID");
+        job.run();
+        String executor = new JSONObject(job.getResults().get(0)).getJSONArray("info").getString(0);
+        assertTrue(sessions.getIDManager().get(executor) instanceof SQLExecutor);
+
+        IDManager.configure(IDManager.DEFAULT_MAX_SIZE, 10);
+        Thread.sleep(50);
+        assertNull(sessions.getIDManager().get(job.getId()));
+        assertNull(sessions.getIDManager().get(executor));
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    public void cancelledJobSkipsTheRestOfTheScript() throws Exception {
+        QueryJob job = job(
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) A, SYSTEM_RANGE(1, 100000) B WHERE A.X + B.X < 0",
+                "INSERT INTO T VALUES (6)");
+        Thread thread = start(job);
+        job.cancel();
+        thread.join(10000);
+
+        assertFalse(thread.isAlive());
+        assertEquals(QueryJob.CANCELLED, job.getStatus());
+        assertEquals(1, job.getResults().size());
+        assertFalse(new JSONObject(job.getResults().get(0)).getJSONArray("info").getBoolean(2));
+        assertEquals(3, count(conn));
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    public void cancellingTheSessionStopsTheScript() throws Exception {
+        QueryJob job = job(
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) A, SYSTEM_RANGE(1, 100000) B WHERE A.X + B.X < 0",
+                "INSERT INTO T VALUES (6)");
+        Thread thread = start(job);
+        // as cancelQuery without a job does
+        assertEquals(1, sessions.getRunningStatements().cancel("s1"));
+        thread.join(10000);
+
+        assertFalse(thread.isAlive());
+        assertEquals(QueryJob.CANCELLED, job.getStatus());
+        assertEquals(1, job.getResults().size());
+        assertEquals(3, count(conn));
+    }
+
+    @Test
+    public void jobCancelledWhileQueuedDoesNotRun() throws Exception {
+        QueryJob job = job("INSERT INTO T VALUES (7)");
+        assertEquals(QueryJob.PENDING, job.getStatus());
+        job.cancel();
+        assertTrue(job.isFinished());
+        job.run();
+
+        assertEquals(QueryJob.CANCELLED, job.getStatus());
+        assertEquals(0, job.getResults().size());
+        assertEquals(3, count(conn));
+        // no longer pinned
+        assertSame(job, sessions.getIDManager().get(job.getId()));
+        assertEquals(0, sessions.getIDManager().getStatistics().get("_pinned").intValue());
+    }
+
+    /**
+     * Runs the job on a thread of its own, until its first statement runs.
+     */
+    private Thread start(QueryJob job) throws InterruptedException {
+        Thread thread = new Thread(job);
+        thread.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sessions.getRunningStatements().getRunningCount("s1") == 0) {
+            assertTrue("the statement never ran", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        return thread;
+    }
+
+    private QueryJob job(String... queries) {
+        return new QueryJob(sessions, conn, "s1", Arrays.asList(queries), 2, 100);
+    }
+
+    private static JSONArray data(QueryJob job, int statement) {
+        return new JSONObject(job.getResults().get(statement)).getJSONArray("data");
+    }
+
+    private static int count(SQLConnection conn) throws SQLException {
+        Statement st = conn.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM T");
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            st.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.riversql.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryJobsTest {
+
+    @After
+    public void tearDown() {
+        QueryJobs.shutdown();
+    }
+
+    @Test
+    public void jobsOfAKeyRunOneAfterTheOtherInOrder() throws Exception {
+        QueryJobs.start(4, 16);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(10);
+        Object key = new Object();
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            QueryJobs.submit(key, new Runnable() {
+                public void run() {
+                    if (running.incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    order.add(n);
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void failingJobDoesNotStopTheFollowingOnes() throws Exception {
+        QueryJobs.start(1, 4);
+        final CountDownLatch done = new CountDownLatch(1);
+        Object key = new Object();
+        QueryJobs.submit(key, new Runnable() {
+            public void run() {
+                throw new IllegalStateException("fails");
+            }
+        });
+        QueryJobs.submit(key, new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void tooManyJobsQueuedForAKeyAreRejected() throws Exception {
+        QueryJobs.start(1, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        Object key = new Object();
+        Runnable blocked = new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            // the first one may be running, the queue of the key holds 2 more
+            for (int i = 0; i < 4; i++) {
+                QueryJobs.submit(key, blocked);
+            }
+            fail("too many jobs were queued");
+        } catch (RejectedExecutionException e) {
+            // expected
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.riversql.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads an H2 table with columns of mixed types, once with
+ * <TT>ResultSetReader</TT>, which chooses a reader per column up front, and
+ * once the way it used to, asking the metadata for the type of every value
+ * and normalizing what <TT>getObject()</TT> returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetReaderBenchmark {
+
+    private static final String QUERY = "SELECT ID, NAME, AMOUNT, RATIO, CREATED, DAY, FLAG, TOTAL FROM MIXED";
+
+    @Param({"10000"})
+    int rows;
+
+    private Connection conn;
+
+    @Setup(Level.Trial)
+    public void createTable() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:rsreader");
+        Statement st = conn.createStatement();
+        st.execute("CREATE TABLE MIXED (ID INT PRIMARY KEY, NAME VARCHAR(64), AMOUNT DECIMAL(12,2), "
+                + "RATIO DOUBLE, CREATED TIMESTAMP, DAY DATE, FLAG BOOLEAN, TOTAL BIGINT)");
+        st.close();
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO MIXED VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            ps.setInt(1, i);
+            ps.setString(2, i % 10 == 0 ? null : "name " + i);
+            ps.setBigDecimal(3, BigDecimal.valueOf(i, 2));
+            ps.setDouble(4, i / 7.0);
+            ps.setTimestamp(5, new Timestamp(now + i * 1000L));
+            ps.setDate(6, new java.sql.Date(now - i * 86400000L));
+            ps.setBoolean(7, i % 2 == 0);
+            ps.setLong(8, (long) i * i);
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void dropTable() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public void columnReaders(Blackhole bh) throws SQLException {
+        Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery(QUERY);
+        ResultSetReader reader = new ResultSetReader(rs);
+        Object[] row;
+        while ((row = reader.readRow()) != null) {
+            bh.consume(row);
+        }
+        rs.close();
+        st.close();
+    }
+
+    @Benchmark
+    public void metadataPerValue(Blackhole bh) throws SQLException {
+        Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery(QUERY);
+        rs.setFetchSize(500);
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int count = rsmd.getColumnCount();
+        while (rs.next()) {
+            bh.consume(readRow(rs, rsmd, count));
+        }
+        rs.close();
+        st.close();
+    }
+
+    /**
+     * The former <TT>ResultSetReader.doRead()</TT>, for the types of the table.
+     */
+    private static Object[] readRow(ResultSet rs, ResultSetMetaData rsmd, int count) throws SQLException {
+        Object[] row = new Object[count];
+        for (int i = 0; i < count; i++) {
+            int idx = i + 1;
+            Object o;
+            switch (rsmd.getColumnType(idx)) {
+                case Types.BOOLEAN:
+                    o = rs.getObject(idx);
+                    if (o != null && !(o instanceof Boolean)) {
+                        o = o instanceof Number ? Boolean.valueOf(((Number) o).intValue() != 0)
+                                : Boolean.valueOf(o.toString());
+                    }
+                    break;
+                case Types.DATE:
+                    o = rs.getDate(idx);
+                    break;
+                case Types.TIMESTAMP:
+                    o = rs.getTimestamp(idx);
+                    break;
+                case Types.BIGINT:
+                    o = rs.getObject(idx);
+                    if (o != null && !(o instanceof Long)) {
+                        o = o instanceof Number ? Long.valueOf(((Number) o).longValue()) : Long.valueOf(o.toString());
+                    }
+                    break;
+                case Types.DOUBLE:
+                    o = rs.getObject(idx);
+                    if (o != null && !(o instanceof Double)) {
+                        o = o instanceof Number ? Double.valueOf(((Number) o).doubleValue()) : Double.valueOf(o.toString());
+                    }
+                    break;
+                case Types.DECIMAL:
+                    o = rs.getObject(idx);
+                    if (o != null && !(o instanceof BigDecimal)) {
+                        o = new BigDecimal(o.toString());
+                    }
+                    break;
+                case Types.INTEGER:
+                    o = rs.getObject(idx);
+                    if (o != null && !(o instanceof Integer)) {
+                        o = o instanceof Number ? Integer.valueOf(((Number) o).intValue()) : Integer.valueOf(o.toString());
+                    }
+                    break;
+                case Types.VARCHAR:
+                    o = rs.getString(idx);
+                    if (rs.wasNull()) {
+                        o = null;
+                    }
+                    break;
+                default:
+                    o = "Unknown";
+            }
+            row[i] = o;
+        }
+        return row;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ResultSetReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
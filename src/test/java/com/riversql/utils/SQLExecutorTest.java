@@ -0,0 +1,364 @@
+package com.riversql.utils;
+
+import com.riversql.IDManager;
+import com.riversql.sql.SQLConnection;
+import com.riversql.sql.SQLDriver;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SQLExecutorTest {
+
+    private Connection h2;
+    private SQLConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        IDManager.set(new IDManager() {
+        });
+        h2 = DriverManager.getConnection("jdbc:h2:mem:");
+        Statement st = h2.createStatement();
+        st.execute("CREATE TABLE T (ID INT PRIMARY KEY)");
+        st.execute("INSERT INTO T VALUES (1), (2), (3)");
+        st.close();
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        conn = new SQLConnection(abortingOnError(h2), null, driver);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        IDManager.set(null);
+        conn.close();
+    }
+
+    @Test
+    public void queryWhichCannotBeLimitedRunsAsIsInTheTransaction() throws Exception {
+        conn.setAutoCommit(false);
+        Statement st = conn.createStatement();
+        st.execute("INSERT INTO T VALUES (4)");
+        st.close();
+
+        StringWriter out = new StringWriter();
+        SQLExecutor executor = new SQLExecutor(conn, 2, 100, "SELECT ID FROM T ORDER BY ID");
+        executor.setLimitRows(true);
+        assertTrue(out.toString(), executor.executeQuery(new JSONStreamWriter(out)));
+        JSONArray data = new JSONObject(out.toString()).getJSONArray("data");
+        assertEquals(2, data.length());
+        assertEquals(1, data.getJSONArray(0).getInt(0));
+        executor.close();
+
+        // the row of the transaction is still there
+        st = conn.createStatement();
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM T");
+        rs.next();
+        assertEquals(4, rs.getInt(1));
+        st.close();
+        conn.rollback();
+    }
+
+    @Test
+    public void unorderedQueryIsLimitedThenReadFromASingleRun() throws Exception {
+        List<String> prepared = new ArrayList<String>();
+        SQLConnection limited = limitedConnection(prepared);
+        SQLExecutor executor = new SQLExecutor(limited, 2, 100, "SELECT ID FROM T");
+        executor.setLimitRows(true);
+        StringWriter out = new StringWriter();
+        assertTrue(out.toString(), executor.executeQuery(new JSONStreamWriter(out)));
+        List<Integer> ids = ids(new JSONObject(out.toString()).getJSONArray("data"));
+        assertEquals("SELECT ID FROM T\nLIMIT 3", prepared.get(0));
+
+        ids.addAll(nextPage(executor));
+        ids.addAll(nextPage(executor));
+        // the query as is, once, for all the following pages
+        assertEquals(2, prepared.size());
+        assertEquals("SELECT ID FROM T", prepared.get(1));
+        assertTrue(executor.isClosed());
+        Collections.sort(ids);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids);
+    }
+
+    @Test
+    public void orderedQueryIsPagedByRunningItAgain() throws Exception {
+        List<String> prepared = new ArrayList<String>();
+        SQLConnection limited = limitedConnection(prepared);
+        SQLExecutor executor = new SQLExecutor(limited, 2, 100, "SELECT ID FROM T ORDER BY ID");
+        executor.setLimitRows(true);
+        StringWriter out = new StringWriter();
+        assertTrue(out.toString(), executor.executeQuery(new JSONStreamWriter(out)));
+        List<Integer> ids = ids(new JSONObject(out.toString()).getJSONArray("data"));
+
+        ids.addAll(nextPage(executor));
+        ids.addAll(nextPage(executor));
+        assertEquals(3, prepared.size());
+        assertEquals("SELECT ID FROM T ORDER BY ID\nLIMIT 3 OFFSET 2", prepared.get(1));
+        assertEquals("SELECT ID FROM T ORDER BY ID\nLIMIT 3 OFFSET 4", prepared.get(2));
+        assertTrue(executor.isClosed());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), ids);
+    }
+
+    @Test
+    public void statementCancelledBeforeItRunsIsNotRun() throws Exception {
+        StringWriter out = new StringWriter();
+        SQLExecutor executor = new SQLExecutor(conn, 2, 100, "INSERT INTO T VALUES (5)");
+        // as a job cancelled once running, before its statement is prepared
+        executor.cancel();
+        assertFalse(executor.executeQuery(new JSONStreamWriter(out)));
+        assertTrue(out.toString(), out.toString().contains("cancelled"));
+
+        Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM T WHERE ID = 5");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        st.close();
+    }
+
+    @Test
+    public void statementCancelledFromAnotherRequestStops() throws Exception {
+        final StatementRegistry registry = new StatementRegistry();
+        final SQLExecutor executor = new SQLExecutor(conn, 2, 100,
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) A, SYSTEM_RANGE(1, 100000) B WHERE A.X + B.X < 0",
+                registry, "s1");
+        final StringWriter out = new StringWriter();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    executor.executeQuery(new JSONStreamWriter(out));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (registry.getRunningCount("s1") == 0) {
+            assertTrue("the statement never ran", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        // as cancelQuery does
+        assertEquals(1, registry.cancel("s1"));
+        thread.join(10000);
+
+        assertFalse(thread.isAlive());
+        assertTrue(executor.isCancelled());
+        assertFalse(new JSONObject(out.toString()).getJSONArray("info").getBoolean(2));
+        assertEquals(0, registry.getRunningCount("s1"));
+    }
+
+    @Test
+    public void mySQLResultIsStreamed() throws Exception {
+        List<String> calls = new ArrayList<String>();
+        SQLConnection mysql = as("MySQL", "jdbc:mysql://localhost/test", calls);
+        SQLExecutor executor = new SQLExecutor(mysql, 2, 100, "SELECT ID FROM T ORDER BY ID");
+        assertTrue(executor.executeQuery(new JSONStreamWriter(new StringWriter())));
+        // Connector/J only streams with this fetch size, reading all the rows otherwise
+        assertTrue(calls.toString(), calls.contains("setFetchSize " + Integer.MIN_VALUE));
+        executor.close();
+    }
+
+    @Test
+    public void mySQLCursorFetchHonorsThePageSize() throws Exception {
+        List<String> calls = new ArrayList<String>();
+        SQLConnection mysql = as("MySQL", "jdbc:mysql://localhost/test?useCursorFetch=true", calls);
+        SQLExecutor executor = new SQLExecutor(mysql, 2, 100, "SELECT ID FROM T ORDER BY ID");
+        assertTrue(executor.executeQuery(new JSONStreamWriter(new StringWriter())));
+        assertTrue(calls.toString(), calls.contains("setFetchSize 2"));
+        executor.close();
+    }
+
+    @Test
+    public void postgreSQLResultIsReadThroughACursor() throws Exception {
+        List<String> calls = new ArrayList<String>();
+        SQLConnection pg = as("PostgreSQL", "jdbc:postgresql://localhost/test", calls);
+        SQLExecutor executor = new SQLExecutor(pg, 2, 100, "SELECT ID FROM T ORDER BY ID");
+        assertTrue(executor.executeQuery(new JSONStreamWriter(new StringWriter())));
+        // the driver only uses a cursor, honoring the fetch size, in a transaction
+        assertEquals(Arrays.asList("setAutoCommit false", "setFetchSize 100"), calls);
+        // not through pg, which would close the result first
+        assertFalse(h2.getAutoCommit());
+
+        executor.close();
+        assertEquals("setAutoCommit true", calls.get(calls.size() - 1));
+        assertTrue(h2.getAutoCommit());
+    }
+
+    @Test
+    public void streamedResultClosedByAnotherUseIsReported() throws Exception {
+        final List<String> calls = new ArrayList<String>();
+        SQLConnection mysql = as("MySQL", "jdbc:mysql://localhost/test", calls);
+
+        StringWriter out = new StringWriter();
+        SQLExecutor executor = new SQLExecutor(mysql, 2, 100, "SELECT ID FROM T ORDER BY ID");
+        assertTrue(out.toString(), executor.executeQuery(new JSONStreamWriter(out)));
+        assertEquals(2, new JSONObject(out.toString()).getJSONArray("data").length());
+
+        // reading the tree closes the streamed result, cancelled not to read its rows
+        mysql.getConnection();
+        assertEquals(1, Collections.frequency(calls, "cancel"));
+        try {
+            executor.next(new JSONStreamWriter(new StringWriter()), false);
+            fail("an interrupted result must not look complete");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("run the query again"));
+        }
+
+        // a result read to its end is not cancelled
+        out = new StringWriter();
+        executor.redoQuery(new JSONStreamWriter(out));
+        out = new StringWriter();
+        executor.next(new JSONStreamWriter(out), false);
+        assertEquals(1, new JSONArray(out.toString()).length());
+        assertEquals(1, Collections.frequency(calls, "cancel"));
+    }
+
+    /**
+     * Adds two rows to <TT>T</TT>, and returns a connection which records the
+     * statements prepared.
+     */
+    private SQLConnection limitedConnection(final List<String> prepared) throws Exception {
+        Statement st = h2.createStatement();
+        st.execute("INSERT INTO T VALUES (4), (5)");
+        st.close();
+        Connection recording = (Connection) Proxy.newProxyInstance(SQLExecutorTest.class.getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("prepareStatement")) {
+                            prepared.add((String) args[0]);
+                        }
+                        return SQLExecutorTest.invoke(h2, method, args);
+                    }
+                });
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        return new SQLConnection(recording, null, driver);
+    }
+
+    private static List<Integer> nextPage(SQLExecutor executor) throws Exception {
+        StringWriter out = new StringWriter();
+        executor.next(new JSONStreamWriter(out), false);
+        return ids(new JSONArray(out.toString()));
+    }
+
+    private static List<Integer> ids(JSONArray rows) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < rows.length(); i++) {
+            ids.add(rows.getJSONArray(i).getInt(0));
+        }
+        return ids;
+    }
+
+    /**
+     * Reports the database as <TT>product</TT>, and records the changes of
+     * autocommit, and the fetch sizes and cancels of the statements.
+     */
+    private SQLConnection as(final String product, final String url, final List<String> calls) throws Exception {
+        final Connection conn = h2;
+        Connection recording = (Connection) Proxy.newProxyInstance(SQLExecutorTest.class.getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("setAutoCommit")) {
+                            calls.add("setAutoCommit " + args[0]);
+                        }
+                        Object result = SQLExecutorTest.invoke(conn, method, args);
+                        if (method.getName().equals("getMetaData")) {
+                            final DatabaseMetaData md = (DatabaseMetaData) result;
+                            return Proxy.newProxyInstance(SQLExecutorTest.class.getClassLoader(),
+                                    new Class[]{DatabaseMetaData.class}, new InvocationHandler() {
+                                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                                            if (method.getName().equals("getDatabaseProductName")) {
+                                                return product;
+                                            }
+                                            if (method.getName().equals("getURL")) {
+                                                return url;
+                                            }
+                                            return SQLExecutorTest.invoke(md, method, args);
+                                        }
+                                    });
+                        }
+                        if (method.getName().equals("prepareStatement")) {
+                            final PreparedStatement ps = (PreparedStatement) result;
+                            return Proxy.newProxyInstance(SQLExecutorTest.class.getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                                            if (method.getName().equals("cancel")) {
+                                                calls.add("cancel");
+                                            } else if (method.getName().equals("setFetchSize")) {
+                                                calls.add("setFetchSize " + args[0]);
+                                            }
+                                            return SQLExecutorTest.invoke(ps, method, args);
+                                        }
+                                    });
+                        }
+                        return result;
+                    }
+                });
+        SQLDriver driver = new SQLDriver();
+        driver.setDriverClassName("org.h2.Driver");
+        return new SQLConnection(recording, null, driver);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Refuses the queries limited by the <TT>RowLimiter</TT>, then, as
+     * PostgreSQL does, any statement of the transaction until it is rolled
+     * back.
+     */
+    private static Connection abortingOnError(final Connection conn) {
+        return (Connection) Proxy.newProxyInstance(SQLExecutorTest.class.getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    private boolean aborted;
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("rollback")) {
+                            aborted = false;
+                        } else if (name.startsWith("prepare") || name.equals("createStatement")) {
+                            if (aborted) {
+                                throw new SQLException("current transaction is aborted", "25P02");
+                            }
+                            if (name.startsWith("prepare") && ((String) args[0]).contains("LIMIT")) {
+                                aborted = !conn.getAutoCommit();
+                                throw new SQLException("syntax error", "42601");
+                            }
+                        }
+                        try {
+                            return method.invoke(conn, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+}